@@ -0,0 +1,278 @@
+package com.opsysinc.scripting.server.engine;
+
+import com.opsysinc.scripting.server.object.ExecutorObjectUtils;
+import com.opsysinc.scripting.shared.JobDataFormat;
+import com.opsysinc.scripting.shared.JobExecutorData;
+import com.opsysinc.scripting.shared.JobExecutorType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.python.core.Options;
+
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-engine script executor costs, for every executor type: cold start
+ * (new executor/engine + first eval), warm eval (engine parses each time),
+ * cached eval (executor path, w/compiled script cache), binding injection
+ * (put + eval reading it) and variable read (formatted, as the UI reads them).
+ * <p/>
+ * Executors are driven directly (replica 0, no worker threads/file area)
+ * against a minimal job manager, so no other engine is loaded in the fork.
+ * Run w/"mvn -Pbenchmarks test-compile exec:exec" (JSON results go to
+ * target/jmh-(version).json; e.g., -Djmh.args=ScriptEngine to run these only).
+ *
+ * @author mkitchin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptEngineBenchmark {
+
+    /**
+     * Default binding name.
+     */
+    private static final String DEFAULT_BINDING_NAME = "x";
+
+    /**
+     * Eval scripts (by executor type).
+     */
+    private static final Map<JobExecutorType, String> EVAL_SCRIPTS;
+
+    /**
+     * Binding scripts, reading DEFAULT_BINDING_NAME (by executor type).
+     */
+    private static final Map<JobExecutorType, String> BINDING_SCRIPTS;
+
+    static {
+
+        final Map<JobExecutorType, String> evalScripts = new EnumMap<>(JobExecutorType.class);
+        evalScripts.put(JobExecutorType.r_renjin, "sum(1:100)");
+        evalScripts.put(JobExecutorType.python_jython, "sum(range(100))");
+        evalScripts.put(JobExecutorType.javascript_rhino, "var s = 0; for (var i = 0; i < 100; i++) { s += i; } s");
+        evalScripts.put(JobExecutorType.groovy_groovy, "(0..<100).sum()");
+        evalScripts.put(JobExecutorType.beanshell_beanshell, "s = 0; for (i = 0; i < 100; i++) { s += i; } s;");
+        evalScripts.put(JobExecutorType.lisp_abcl, "(loop for i below 100 sum i)");
+
+        final Map<JobExecutorType, String> bindingScripts = new EnumMap<>(JobExecutorType.class);
+        bindingScripts.put(JobExecutorType.r_renjin, "x + 1");
+        bindingScripts.put(JobExecutorType.python_jython, "x + 1");
+        bindingScripts.put(JobExecutorType.javascript_rhino, "x + 1");
+        bindingScripts.put(JobExecutorType.groovy_groovy, "x + 1");
+        bindingScripts.put(JobExecutorType.beanshell_beanshell, "x + 1;");
+        bindingScripts.put(JobExecutorType.lisp_abcl, "(+ x 1)");
+
+        EVAL_SCRIPTS = evalScripts;
+        BINDING_SCRIPTS = bindingScripts;
+    }
+
+    /**
+     * Creates (reset, not started) executor.
+     *
+     * @param executorType Executor type.
+     * @return Executor.
+     */
+    private static ScriptEngineJobExecutor createExecutor(final JobExecutorType executorType) {
+
+        final JobExecutorData executorData = new JobExecutorData("Benchmark", executorType, false, 1);
+        JobExecutorUtils.checkJobExecutorData(executorData, false);
+
+        final ScriptEngineJobExecutor result = new ScriptEngineJobExecutor(
+                ScriptEngineBenchmark.createJobManager(), executorData);
+        result.resetScriptEngine();
+
+        return result;
+    }
+
+    /**
+     * Creates minimal job manager (executor objects only; no output capture).
+     *
+     * @return Job manager.
+     */
+    private static JobManager createJobManager() {
+
+        return (JobManager) Proxy.newProxyInstance(JobManager.class.getClassLoader(),
+                new Class<?>[]{JobManager.class}, new InvocationHandler() {
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Object invoke(final Object proxy, final Method method,
+                                         final Object[] args) throws Throwable {
+
+                        switch (method.getName()) {
+
+                            case "getExecutorObjects":
+                                return ExecutorObjectUtils.getExecutorObjects(
+                                        (Map<String, Object>) args[0], (Boolean) args[1]);
+
+                            case "getThreadPrintStream":
+                                return null;
+
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+
+                            case "equals":
+                                return proxy == args[0];
+
+                            case "toString":
+                                return "BenchmarkJobManager";
+
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    }
+                });
+    }
+
+    @Benchmark
+    public Object bindingInject(final ScriptEngineBenchmark.ExecutorState executorState) throws Throwable {
+
+        executorState.engineBindings.put(ScriptEngineBenchmark.DEFAULT_BINDING_NAME,
+                ++executorState.bindingValue);
+        return executorState.executor.runWorkImpl(0, executorState.bindingScript);
+    }
+
+    @Benchmark
+    public Object cachedEval(final ScriptEngineBenchmark.ExecutorState executorState) throws Throwable {
+
+        return executorState.executor.runWorkImpl(0, executorState.evalScript);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(5)
+    public Object coldStart(final ScriptEngineBenchmark.TypeState typeState) throws Throwable {
+
+        return ScriptEngineBenchmark.createExecutor(typeState.type)
+                .runWorkImpl(0, ScriptEngineBenchmark.EVAL_SCRIPTS.get(typeState.type));
+    }
+
+    @Benchmark
+    public Map<String, String> variableRead(final ScriptEngineBenchmark.ExecutorState executorState) {
+
+        // new value each time, so formatting isn't served from cache
+        executorState.engineBindings.put(ScriptEngineBenchmark.DEFAULT_BINDING_NAME,
+                ++executorState.bindingValue);
+        executorState.executor.getVariables(ScriptContext.ENGINE_SCOPE,
+                JobDataFormat.raw.ordinal(), executorState.variables, true);
+
+        return executorState.variables;
+    }
+
+    @Benchmark
+    public Object warmEval(final ScriptEngineBenchmark.ExecutorState executorState) throws Throwable {
+
+        return executorState.executor.getScriptEngine().eval(executorState.evalScript);
+    }
+
+    /**
+     * Executor type (fork-wide settings applied as the job manager would).
+     *
+     * @author mkitchin
+     */
+    @State(Scope.Benchmark)
+    public static class TypeState {
+
+        /**
+         * Executor type name.
+         */
+        @Param({"r_renjin", "python_jython", "javascript_rhino",
+                "groovy_groovy", "beanshell_beanshell", "lisp_abcl"})
+        private String executorType;
+
+        /**
+         * Executor type.
+         */
+        private JobExecutorType type;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+
+            this.type = JobExecutorType.valueOf(this.executorType);
+
+            if (this.type == JobExecutorType.python_jython) {
+
+                System.setProperty("python.console.encoding", "UTF-8");
+                Options.importSite = false;
+                Options.respectJavaAccessibility = false;
+            }
+        }
+    }
+
+    /**
+     * Warm executor (scripts compiled/cached by first eval).
+     *
+     * @author mkitchin
+     */
+    @State(Scope.Benchmark)
+    public static class ExecutorState {
+
+        /**
+         * Executor.
+         */
+        private ScriptEngineJobExecutor executor;
+
+        /**
+         * Engine-scope bindings (replica 0).
+         */
+        private Bindings engineBindings;
+
+        /**
+         * Eval script.
+         */
+        private String evalScript;
+
+        /**
+         * Binding script.
+         */
+        private String bindingScript;
+
+        /**
+         * Binding value (changes per op).
+         */
+        private int bindingValue;
+
+        /**
+         * Variables (read target).
+         */
+        private Map<String, String> variables;
+
+        @Setup(Level.Trial)
+        public void setUp(final ScriptEngineBenchmark.TypeState typeState) throws Throwable {
+
+            this.executor = ScriptEngineBenchmark.createExecutor(typeState.type);
+            this.engineBindings = this.executor.getScriptEngine()
+                    .getBindings(ScriptContext.ENGINE_SCOPE);
+            this.evalScript = ScriptEngineBenchmark.EVAL_SCRIPTS.get(typeState.type);
+            this.bindingScript = ScriptEngineBenchmark.BINDING_SCRIPTS.get(typeState.type);
+            this.bindingValue = 0;
+            this.variables = new HashMap<>();
+
+            this.engineBindings.put(ScriptEngineBenchmark.DEFAULT_BINDING_NAME, this.bindingValue);
+            this.executor.runWorkImpl(0, this.evalScript);
+            this.executor.runWorkImpl(0, this.bindingScript);
+        }
+    }
+}
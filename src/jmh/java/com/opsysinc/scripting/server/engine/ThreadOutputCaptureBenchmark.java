@@ -0,0 +1,244 @@
+package com.opsysinc.scripting.server.engine;
+
+import com.google.common.io.ByteStreams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Output capture throughput: thread-local routing (ThreadOutputCapture) vs.
+ * the previous synchronized, thread-keyed map lookup, for threads that are
+ * and aren't registered for capture.
+ *
+ * @author mkitchin
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ThreadOutputCaptureBenchmark {
+
+    /**
+     * Writes between drains of captured output.
+     */
+    private static final int DEFAULT_DRAIN_INTERVAL = 4096;
+
+    /**
+     * Text written per operation.
+     */
+    private static final String DEFAULT_OUTPUT_TEXT = "x";
+
+    @Benchmark
+    public void captureRegistered(final ThreadOutputCaptureBenchmark.SharedState sharedState,
+                                  final ThreadOutputCaptureBenchmark.RegisteredState registeredState) {
+
+        sharedState.captureStream.print(ThreadOutputCaptureBenchmark.DEFAULT_OUTPUT_TEXT);
+        registeredState.checkDrain();
+    }
+
+    @Benchmark
+    public void captureUnregistered(final ThreadOutputCaptureBenchmark.SharedState sharedState) {
+
+        sharedState.captureStream.print(ThreadOutputCaptureBenchmark.DEFAULT_OUTPUT_TEXT);
+    }
+
+    @Benchmark
+    public void lockedRegistered(final ThreadOutputCaptureBenchmark.SharedState sharedState,
+                                 final ThreadOutputCaptureBenchmark.RegisteredState registeredState) {
+
+        sharedState.lockedStream.print(ThreadOutputCaptureBenchmark.DEFAULT_OUTPUT_TEXT);
+        registeredState.checkDrain();
+    }
+
+    @Benchmark
+    public void lockedUnregistered(final ThreadOutputCaptureBenchmark.SharedState sharedState) {
+
+        sharedState.lockedStream.print(ThreadOutputCaptureBenchmark.DEFAULT_OUTPUT_TEXT);
+    }
+
+    /**
+     * Shared streams (both discard parent output).
+     *
+     * @author mkitchin
+     */
+    @State(Scope.Benchmark)
+    public static class SharedState {
+
+        /**
+         * Thread-local capture.
+         */
+        private ThreadOutputCapture outputCapture;
+
+        /**
+         * Thread-local capture stream.
+         */
+        private PrintStream captureStream;
+
+        /**
+         * Locked capture stream.
+         */
+        private ThreadOutputCaptureBenchmark.LockedPrintStream lockedStream;
+
+        @Setup
+        public void setUp() {
+
+            this.outputCapture = new ThreadOutputCapture();
+            this.captureStream = this.outputCapture.createPrintStream(
+                    new PrintStream(ByteStreams.nullOutputStream(), true));
+            this.lockedStream = new ThreadOutputCaptureBenchmark.LockedPrintStream(
+                    new PrintStream(ByteStreams.nullOutputStream(), true));
+        }
+    }
+
+    /**
+     * Per-thread registration (in both capture implementations).
+     *
+     * @author mkitchin
+     */
+    @State(Scope.Thread)
+    public static class RegisteredState {
+
+        /**
+         * Shared state.
+         */
+        private ThreadOutputCaptureBenchmark.SharedState sharedState;
+
+        /**
+         * Writes since last drain.
+         */
+        private int writeCount;
+
+        /**
+         * Drains captured output every so often (keeps buffers small).
+         */
+        private void checkDrain() {
+
+            if (++this.writeCount >= ThreadOutputCaptureBenchmark.DEFAULT_DRAIN_INTERVAL) {
+
+                this.sharedState.outputCapture.readThreadOutput();
+                this.sharedState.lockedStream.readThreadOutput();
+                this.writeCount = 0;
+            }
+        }
+
+        @Setup
+        public void setUp(final ThreadOutputCaptureBenchmark.SharedState sharedState) {
+
+            this.sharedState = sharedState;
+
+            sharedState.outputCapture.registerThread();
+            sharedState.outputCapture.enableThreadOutput();
+            sharedState.lockedStream.registerThread();
+        }
+
+        @TearDown
+        public void tearDown() {
+
+            this.sharedState.outputCapture.deRegisterThread();
+            this.sharedState.lockedStream.deRegisterThread();
+        }
+    }
+
+    /**
+     * Previous capture implementation (synchronized identity map lookup on
+     * every write), kept here as the baseline.
+     *
+     * @author mkitchin
+     */
+    private static final class LockedPrintStream extends PrintStream {
+
+        /**
+         * Parent stream.
+         */
+        private final PrintStream parentStream;
+
+        /**
+         * Capture streams.
+         */
+        private final Map<Thread, PrintStream> outputStreams;
+
+        /**
+         * Basic ctor.
+         *
+         * @param parentStream Parent stream.
+         */
+        private LockedPrintStream(final PrintStream parentStream) {
+
+            super(parentStream, true);
+
+            this.parentStream = parentStream;
+            this.outputStreams = new IdentityHashMap<>();
+        }
+
+        /**
+         * De-register current thread.
+         */
+        private void deRegisterThread() {
+
+            synchronized (this.outputStreams) {
+
+                this.outputStreams.remove(Thread.currentThread());
+            }
+        }
+
+        /**
+         * Gets print stream.
+         *
+         * @return Print stream.
+         */
+        private PrintStream getPrintStream() {
+
+            PrintStream outputStream = null;
+
+            synchronized (this.outputStreams) {
+
+                outputStream = this.outputStreams.get(Thread.currentThread());
+            }
+
+            return (outputStream == null) ? this.parentStream : outputStream;
+        }
+
+        @Override
+        public void print(final String s) {
+
+            this.getPrintStream().print(s);
+        }
+
+        /**
+         * Read/truncate captured output (swaps in a fresh buffer).
+         */
+        private void readThreadOutput() {
+
+            this.registerThread();
+        }
+
+        /**
+         * Register current thread.
+         */
+        private void registerThread() {
+
+            synchronized (this.outputStreams) {
+
+                this.outputStreams.put(Thread.currentThread(),
+                        new PrintStream(new ByteArrayOutputStream(), true));
+            }
+        }
+    }
+}
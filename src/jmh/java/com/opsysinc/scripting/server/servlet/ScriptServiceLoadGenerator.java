@@ -0,0 +1,944 @@
+package com.opsysinc.scripting.server.servlet;
+
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.server.rpc.RPC;
+import com.google.gwt.user.server.rpc.SerializationPolicy;
+import com.opsysinc.scripting.client.service.ScriptService;
+import com.opsysinc.scripting.server.engine.ChangeNotifier;
+import com.opsysinc.scripting.server.engine.JobManager;
+import com.opsysinc.scripting.shared.JobContentData;
+import com.opsysinc.scripting.shared.JobExecutorData;
+import com.opsysinc.scripting.shared.JobExecutorType;
+import com.opsysinc.scripting.shared.JobSnapshotData;
+import com.opsysinc.scripting.shared.JobState;
+import com.opsysinc.scripting.shared.JobStatus;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process load generator for ScriptServiceImpl (no network, no container).
+ * <p/>
+ * Polling clients follow the web client's refresh loop (change wait long
+ * poll, as the change servlet answers it, then getSnapshot; 2s refresh fallback when the server turns waits
+ * away), and submitters run closed-loop jobs across a weighted mix of
+ * executor types (submit, wait until a polling client sees it complete,
+ * think, repeat). Snapshot and submit responses are encoded as GWT RPC
+ * responses, to measure serialization cost.
+ * <p/>
+ * Reports job throughput, submit-to-complete latency (as clients observe it)
+ * and RPC encode cost. Settings are name=value args, e.g.:
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec@load \
+ *     -Dload.args="clients=500 submitters=40 seconds=120 mix=python_jython:3,groovy_groovy:1"
+ * </pre>
+ *
+ * @author mkitchin
+ */
+public final class ScriptServiceLoadGenerator {
+
+    /**
+     * Default polling client count.
+     */
+    public static final int DEFAULT_CLIENT_COUNT = 200;
+
+    /**
+     * Default submitter count.
+     */
+    public static final int DEFAULT_SUBMITTER_COUNT = 20;
+
+    /**
+     * Default measured run time in seconds.
+     */
+    public static final int DEFAULT_RUN_SECONDS = 60;
+
+    /**
+     * Default warm-up time in seconds (not measured).
+     */
+    public static final int DEFAULT_WARMUP_SECONDS = 10;
+
+    /**
+     * Default submitter think time in ms (between jobs).
+     */
+    public static final int DEFAULT_THINK_TIME_MS = 50;
+
+    /**
+     * Default job timeout in ms (counted as lost past this).
+     */
+    public static final int DEFAULT_JOB_TIMEOUT_MS = 60000;
+
+    /**
+     * Default executor type mix (type:weight, ...).
+     */
+    public static final String DEFAULT_MIX = "python_jython:1,javascript_rhino:1,groovy_groovy:1,"
+            + "beanshell_beanshell:1,r_renjin:1,lisp_abcl:1";
+
+    /**
+     * Refresh fallback in ms (as the web client's refresh timer).
+     */
+    private static final long DEFAULT_REFRESH_INTERVAL_MS = 2000L;
+
+    /**
+     * Job scripts (by executor type).
+     */
+    private static final Map<JobExecutorType, String> JOB_SCRIPTS;
+
+    static {
+
+        final Map<JobExecutorType, String> jobScripts = new EnumMap<>(JobExecutorType.class);
+        jobScripts.put(JobExecutorType.r_renjin, "sum(1:1000)");
+        jobScripts.put(JobExecutorType.python_jython, "sum(range(1000))");
+        jobScripts.put(JobExecutorType.javascript_rhino, "var s = 0; for (var i = 0; i < 1000; i++) { s += i; } s");
+        jobScripts.put(JobExecutorType.groovy_groovy, "(0..<1000).sum()");
+        jobScripts.put(JobExecutorType.beanshell_beanshell, "s = 0; for (i = 0; i < 1000; i++) { s += i; } s;");
+        jobScripts.put(JobExecutorType.lisp_abcl, "(loop for i below 1000 sum i)");
+
+        JOB_SCRIPTS = Collections.unmodifiableMap(jobScripts);
+    }
+
+    /**
+     * Settings (name=value args).
+     */
+    private final Map<String, String> settings;
+
+    /**
+     * Service under load.
+     */
+    private ScriptServiceImpl scriptService;
+
+    /**
+     * Executors to submit to (repeated by mix weight).
+     */
+    private List<JobExecutorData> mixExecutors;
+
+    /**
+     * Jobs awaiting completion (by job id).
+     */
+    private Map<String, ScriptServiceLoadGenerator.PendingJob> pendingJobs;
+
+    /**
+     * Submit-to-complete latencies in ns.
+     */
+    private ScriptServiceLoadGenerator.LatencyRecorder jobLatencies;
+
+    /**
+     * Snapshot encode times in ns.
+     */
+    private ScriptServiceLoadGenerator.LatencyRecorder encodeTimes;
+
+    /**
+     * Completed jobs (by status).
+     */
+    private Map<JobStatus, AtomicLong> completedJobs;
+
+    /**
+     * Lost jobs (not seen complete in time).
+     */
+    private AtomicLong lostJobs;
+
+    /**
+     * Change waits (long polls).
+     */
+    private AtomicLong waitCalls;
+
+    /**
+     * Change waits turned away (server busy).
+     */
+    private AtomicLong busyWaits;
+
+    /**
+     * Snapshot calls.
+     */
+    private AtomicLong snapshotCalls;
+
+    /**
+     * Encoded response bytes (chars).
+     */
+    private AtomicLong encodedChars;
+
+    /**
+     * Encoded responses.
+     */
+    private AtomicLong encodedCount;
+
+    /**
+     * Is load running?
+     */
+    private volatile boolean isRunning;
+
+    /**
+     * Is load measured (past warm-up)?
+     */
+    private volatile boolean isMeasuring;
+
+    /**
+     * Basic ctor.
+     *
+     * @param settings Settings (name=value args).
+     */
+    private ScriptServiceLoadGenerator(final Map<String, String> settings) {
+
+        this.settings = settings;
+        this.init();
+    }
+
+    /**
+     * Creates servlet config (in-process; install path is a temp folder).
+     *
+     * @return Servlet config.
+     */
+    private static ServletConfig createServletConfig() {
+
+        final String installPath = new File(System.getProperty("java.io.tmpdir"),
+                "scriptwebapp-load").getAbsolutePath();
+
+        final ServletContext servletContext = ScriptServiceLoadGenerator.createServletContext(
+                installPath);
+
+        final Map<String, Object> configValues = new HashMap<>();
+        configValues.put("getServletContext", servletContext);
+        configValues.put("getServletName", "scriptServlet");
+        configValues.put("getInitParameterNames", Collections.enumeration(Collections.<String>emptyList()));
+
+        return (ServletConfig) ScriptServiceLoadGenerator.createStub(ServletConfig.class, configValues);
+    }
+
+    /**
+     * Creates servlet context (in-process; keeps attributes, e.g., the job
+     * manager ScriptServiceImpl publishes).
+     *
+     * @param installPath Install path.
+     * @return Servlet context.
+     */
+    private static ServletContext createServletContext(final String installPath) {
+
+        final Object defaultStub = ScriptServiceLoadGenerator.createStub(ServletContext.class,
+                Collections.<String, Object>singletonMap("getRealPath", installPath));
+        final Map<String, Object> attributes = new ConcurrentHashMap<>();
+
+        return (ServletContext) Proxy.newProxyInstance(ServletContext.class.getClassLoader(),
+                new Class<?>[]{ServletContext.class}, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args)
+                            throws Exception {
+
+                        switch (method.getName()) {
+
+                            case "getAttribute":
+                                return attributes.get((String) args[0]);
+
+                            case "setAttribute":
+
+                                if (args[1] == null) {
+
+                                    attributes.remove((String) args[0]);
+
+                                } else {
+
+                                    attributes.put((String) args[0], args[1]);
+                                }
+
+                                return null;
+
+                            case "removeAttribute":
+                                attributes.remove((String) args[0]);
+                                return null;
+
+                            default:
+                                return method.invoke(defaultStub, args);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Creates interface stub (fixed return values by method name; defaults
+     * otherwise).
+     *
+     * @param stubType     Interface.
+     * @param returnValues Return values (by method name).
+     * @return Stub.
+     */
+    private static Object createStub(final Class<?> stubType, final Map<String, Object> returnValues) {
+
+        return Proxy.newProxyInstance(stubType.getClassLoader(), new Class<?>[]{stubType},
+                new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+
+                        if (returnValues.containsKey(method.getName())) {
+
+                            return returnValues.get(method.getName());
+                        }
+
+                        final Class<?> returnType = method.getReturnType();
+
+                        if (returnType == boolean.class) {
+
+                            return Boolean.FALSE;
+
+                        } else if (returnType == int.class) {
+
+                            return 0;
+
+                        } else if (returnType == long.class) {
+
+                            return 0L;
+                        }
+
+                        return null;
+                    }
+                });
+    }
+
+    /**
+     * Formats latency (ns) in ms.
+     *
+     * @param latencyInNS Latency in ns.
+     * @return Formatted text.
+     */
+    private static String formatMS(final long latencyInNS) {
+
+        return String.format(Locale.ROOT, "%.3f ms", latencyInNS / 1000000.0);
+    }
+
+    /**
+     * Entry point.
+     *
+     * @param args Settings (name=value).
+     * @throws Exception Any exception.
+     */
+    public static void main(final String[] args) throws Exception {
+
+        final Map<String, String> settings = new HashMap<>();
+
+        for (final String item : args) {
+
+            final int equalsIndex = item.indexOf('=');
+
+            if (equalsIndex < 1) {
+
+                throw new IllegalArgumentException("invalid input (" + item + ")");
+            }
+
+            settings.put(item.substring(0, equalsIndex).trim(),
+                    item.substring(equalsIndex + 1).trim());
+        }
+
+        new ScriptServiceLoadGenerator(settings).run();
+        System.exit(0);
+    }
+
+    /**
+     * Sleeps (returns early on interrupt).
+     *
+     * @param sleepTimeInMS Sleep time in ms.
+     */
+    private static void sleepMS(final long sleepTimeInMS) {
+
+        try {
+
+            Thread.sleep(sleepTimeInMS);
+
+        } catch (final InterruptedException ex) {
+
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Builds executor mix.
+     *
+     * @return Executors (repeated by weight).
+     */
+    private List<JobExecutorData> buildMix() {
+
+        final Map<JobExecutorType, JobExecutorData> executors = new EnumMap<>(JobExecutorType.class);
+
+        for (final JobExecutorData item : this.scriptService.getAllExecutors()) {
+
+            if (!executors.containsKey(item.getType())) {
+
+                executors.put(item.getType(), item);
+            }
+        }
+
+        final List<JobExecutorData> result = new ArrayList<>();
+
+        for (final String item : this.getSetting("mix", ScriptServiceLoadGenerator.DEFAULT_MIX).split(",")) {
+
+            final String[] parts = item.trim().split(":");
+            final JobExecutorType executorType = JobExecutorType.valueOf(parts[0].trim());
+            final int weight = (parts.length > 1) ? Integer.parseInt(parts[1].trim()) : 1;
+            final JobExecutorData executorData = executors.get(executorType);
+
+            if (executorData == null) {
+
+                throw new IllegalStateException("No executor: " + executorType);
+            }
+
+            for (int ctr = 0; ctr < weight; ctr++) {
+
+                result.add(executorData);
+            }
+        }
+
+        if (result.isEmpty()) {
+
+            throw new IllegalArgumentException("invalid input (mix)");
+        }
+
+        return result;
+    }
+
+    /**
+     * Encodes response (as the RPC servlet would), recording cost.
+     *
+     * @param serviceMethod Service method.
+     * @param resultObject  Result.
+     * @param isToRecord    True to record encode time, false otherwise.
+     */
+    private void encodeResponse(final Method serviceMethod, final Object resultObject,
+                                final boolean isToRecord) {
+
+        final long startTime = System.nanoTime();
+        final String payloadText;
+
+        try {
+
+            payloadText = RPC.encodeResponseForSuccess(serviceMethod, resultObject,
+                    ScriptServiceLoadGenerator.OpenSerializationPolicy.INSTANCE);
+
+        } catch (final SerializationException ex) {
+
+            throw new IllegalStateException("Can't encode response", ex);
+        }
+
+        if (isToRecord &&
+                this.isMeasuring) {
+
+            this.encodeTimes.add(System.nanoTime() - startTime);
+            this.encodedChars.addAndGet(payloadText.length());
+            this.encodedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gets int setting.
+     *
+     * @param name         Setting name.
+     * @param defaultValue Default value.
+     * @return Setting value.
+     */
+    private int getSetting(final String name, final int defaultValue) {
+
+        final String valueText = this.settings.get(name);
+        return (valueText == null) ? defaultValue : Integer.parseInt(valueText);
+    }
+
+    /**
+     * Gets setting.
+     *
+     * @param name         Setting name.
+     * @param defaultValue Default value.
+     * @return Setting value.
+     */
+    private String getSetting(final String name, final String defaultValue) {
+
+        final String valueText = this.settings.get(name);
+        return (valueText == null) ? defaultValue : valueText;
+    }
+
+    /**
+     * One-shot init.
+     */
+    private void init() {
+
+        this.pendingJobs = new ConcurrentHashMap<>();
+        this.jobLatencies = new ScriptServiceLoadGenerator.LatencyRecorder();
+        this.encodeTimes = new ScriptServiceLoadGenerator.LatencyRecorder();
+        this.completedJobs = new EnumMap<>(JobStatus.class);
+        this.lostJobs = new AtomicLong(0L);
+        this.waitCalls = new AtomicLong(0L);
+        this.busyWaits = new AtomicLong(0L);
+        this.snapshotCalls = new AtomicLong(0L);
+        this.encodedChars = new AtomicLong(0L);
+        this.encodedCount = new AtomicLong(0L);
+        this.isRunning = false;
+        this.isMeasuring = false;
+
+        for (final JobStatus item : JobStatus.values()) {
+
+            this.completedJobs.put(item, new AtomicLong(0L));
+        }
+    }
+
+    /**
+     * Prints report.
+     *
+     * @param measuredTimeInNS Measured time in ns.
+     */
+    private void printReport(final long measuredTimeInNS) {
+
+        final double measuredSeconds = measuredTimeInNS / 1000000000.0;
+        long completedCount = 0L;
+
+        for (final AtomicLong item : this.completedJobs.values()) {
+
+            completedCount += item.get();
+        }
+
+        final long encodeCount = Math.max(1L, this.encodedCount.get());
+
+        System.out.println();
+        System.out.println("# ScriptServiceImpl load: " + this.settings);
+        System.out.println(String.format(Locale.ROOT, "measured:        %.1f s", measuredSeconds));
+        System.out.println(String.format(Locale.ROOT, "jobs:            %d completed (%s), %d lost",
+                completedCount, this.completedJobs, this.lostJobs.get()));
+        System.out.println(String.format(Locale.ROOT, "throughput:      %.1f jobs/s",
+                completedCount / measuredSeconds));
+        System.out.println("latency p50:     " + ScriptServiceLoadGenerator.formatMS(this.jobLatencies.getPercentile(50.0)));
+        System.out.println("latency p99:     " + ScriptServiceLoadGenerator.formatMS(this.jobLatencies.getPercentile(99.0)));
+        System.out.println("latency p999:    " + ScriptServiceLoadGenerator.formatMS(this.jobLatencies.getPercentile(99.9)));
+        System.out.println("latency max:     " + ScriptServiceLoadGenerator.formatMS(this.jobLatencies.getPercentile(100.0)));
+        System.out.println(String.format(Locale.ROOT, "polls:           %d waits (%d busy), %d snapshots (%.1f/s)",
+                this.waitCalls.get(), this.busyWaits.get(), this.snapshotCalls.get(),
+                this.snapshotCalls.get() / measuredSeconds));
+        System.out.println(String.format(Locale.ROOT, "rpc encode:      %d responses, avg %d chars",
+                this.encodedCount.get(), this.encodedChars.get() / encodeCount));
+        System.out.println("rpc encode p50:  " + ScriptServiceLoadGenerator.formatMS(this.encodeTimes.getPercentile(50.0)));
+        System.out.println("rpc encode p99:  " + ScriptServiceLoadGenerator.formatMS(this.encodeTimes.getPercentile(99.0)));
+        System.out.println("rpc encode p999: " + ScriptServiceLoadGenerator.formatMS(this.encodeTimes.getPercentile(99.9)));
+    }
+
+    /**
+     * Runs load, then prints report.
+     *
+     * @throws ServletException Servlet exception.
+     */
+    private void run() throws ServletException {
+
+        this.scriptService = new ScriptServiceImpl();
+        this.scriptService.init(ScriptServiceLoadGenerator.createServletConfig());
+        this.mixExecutors = this.buildMix();
+        this.isRunning = true;
+
+        final int clientCount = this.getSetting("clients", ScriptServiceLoadGenerator.DEFAULT_CLIENT_COUNT);
+        final int submitterCount = this.getSetting("submitters", ScriptServiceLoadGenerator.DEFAULT_SUBMITTER_COUNT);
+
+        for (int ctr = 0; ctr < clientCount; ctr++) {
+
+            this.startThread("load-client-" + ctr, new Runnable() {
+
+                @Override
+                public void run() {
+
+                    ScriptServiceLoadGenerator.this.runClient();
+                }
+            });
+        }
+
+        for (int ctr = 0; ctr < submitterCount; ctr++) {
+
+            final long randomSeed = ctr;
+
+            this.startThread("load-submitter-" + ctr, new Runnable() {
+
+                @Override
+                public void run() {
+
+                    ScriptServiceLoadGenerator.this.runSubmitter(new Random(randomSeed));
+                }
+            });
+        }
+
+        ScriptServiceLoadGenerator.sleepMS(TimeUnit.SECONDS.toMillis(
+                this.getSetting("warmup", ScriptServiceLoadGenerator.DEFAULT_WARMUP_SECONDS)));
+
+        final long startTime = System.nanoTime();
+        this.isMeasuring = true;
+
+        ScriptServiceLoadGenerator.sleepMS(TimeUnit.SECONDS.toMillis(
+                this.getSetting("seconds", ScriptServiceLoadGenerator.DEFAULT_RUN_SECONDS)));
+
+        this.isMeasuring = false;
+        final long measuredTime = System.nanoTime() - startTime;
+
+        this.isRunning = false;
+        this.printReport(measuredTime);
+        this.scriptService.removeAllExecutors();
+    }
+
+    /**
+     * Waits for a change (as the change servlet does: async waiter, answered
+     * on change or timeout).
+     *
+     * @param changeSequence Change sequence to wait past.
+     * @return Last change sequence (unchanged on timeout), or -1L if the
+     * server turned the wait away.
+     */
+    private long waitForChange(final long changeSequence) {
+
+        // as the change servlet finds it
+        final JobManager jobManager = (JobManager) this.scriptService.getServletContext()
+                .getAttribute(ScriptServiceImpl.DEFAULT_JOB_MANAGER_ATTR);
+        final BlockingQueue<Long> changes = new ArrayBlockingQueue<>(1);
+        final ChangeNotifier.Waiter waiter = new ChangeNotifier.Waiter() {
+
+            @Override
+            public void onChange(final long sequence) {
+
+                changes.offer(sequence);
+            }
+        };
+
+        if (!jobManager.addChangeWaiter(changeSequence, waiter)) {
+
+            return -1L;
+        }
+
+        try {
+
+            final Long nextChangeSequence = changes.poll(
+                    ScriptServiceImpl.DEFAULT_CHANGE_WAIT_MS, TimeUnit.MILLISECONDS);
+
+            if (nextChangeSequence != null) {
+
+                return nextChangeSequence;
+            }
+
+        } catch (final InterruptedException ex) {
+
+            Thread.currentThread().interrupt();
+        }
+
+        jobManager.removeChangeWaiter(waiter);
+        return jobManager.getChangeSequence();
+    }
+
+    /**
+     * Polling client loop (as the web client's refresh loop).
+     */
+    private void runClient() {
+
+        final Method snapshotMethod;
+
+        try {
+
+            snapshotMethod = ScriptService.class.getMethod("getSnapshot",
+                    long.class, long.class, long.class);
+
+        } catch (final NoSuchMethodException ex) {
+
+            throw new IllegalStateException(ex);
+        }
+
+        long changeSequence = 0L;
+        long executorSequence = 0L;
+        long jobSequence = 0L;
+
+        while (this.isRunning) {
+
+            final long nextChangeSequence = this.waitForChange(changeSequence);
+            this.waitCalls.incrementAndGet();
+
+            if (nextChangeSequence < 0L) {
+
+                this.busyWaits.incrementAndGet();
+                ScriptServiceLoadGenerator.sleepMS(ScriptServiceLoadGenerator.DEFAULT_REFRESH_INTERVAL_MS);
+
+            } else if (nextChangeSequence == changeSequence) {
+
+                continue;
+            }
+
+            final JobSnapshotData snapshotData = this.scriptService.getSnapshot(
+                    changeSequence, executorSequence, jobSequence);
+            this.snapshotCalls.incrementAndGet();
+            this.encodeResponse(snapshotMethod, snapshotData, true);
+
+            changeSequence = snapshotData.getChangeSequence();
+            executorSequence = snapshotData.getExecutorSequence();
+            jobSequence = snapshotData.getJobSequence();
+
+            for (final JobContentData item : snapshotData.getJobs()) {
+
+                if (item.getState() == JobState.completed) {
+
+                    final ScriptServiceLoadGenerator.PendingJob pendingJob =
+                            this.pendingJobs.remove(item.getId());
+
+                    // first client to see it wins
+                    if (pendingJob != null) {
+
+                        pendingJob.complete(item.getStatus());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Submitter loop (closed: one job at a time).
+     *
+     * @param random Random (mix selection).
+     */
+    private void runSubmitter(final Random random) {
+
+        final Method submitMethod;
+
+        try {
+
+            submitMethod = ScriptService.class.getMethod("submitJob", JobContentData.class);
+
+        } catch (final NoSuchMethodException ex) {
+
+            throw new IllegalStateException(ex);
+        }
+
+        final int thinkTimeInMS = this.getSetting("think", ScriptServiceLoadGenerator.DEFAULT_THINK_TIME_MS);
+        final int jobTimeoutInMS = this.getSetting("timeout", ScriptServiceLoadGenerator.DEFAULT_JOB_TIMEOUT_MS);
+
+        while (this.isRunning) {
+
+            final JobExecutorData executorData = this.mixExecutors.get(
+                    random.nextInt(this.mixExecutors.size()));
+            final JobContentData contentData = new JobContentData(
+                    ScriptServiceLoadGenerator.JOB_SCRIPTS.get(executorData.getType()), false);
+
+            // id up front, so completion can't be seen before it's tracked
+            contentData.setExecutorData(executorData);
+            contentData.setId(UUID.randomUUID().toString());
+
+            final ScriptServiceLoadGenerator.PendingJob pendingJob =
+                    new ScriptServiceLoadGenerator.PendingJob(this.isMeasuring);
+            this.pendingJobs.put(contentData.getId(), pendingJob);
+
+            this.encodeResponse(submitMethod, this.scriptService.submitJob(contentData), false);
+
+            if (!pendingJob.await(jobTimeoutInMS)) {
+
+                this.pendingJobs.remove(contentData.getId());
+
+                if (pendingJob.isMeasured) {
+
+                    this.lostJobs.incrementAndGet();
+                }
+            }
+
+            if (thinkTimeInMS > 0) {
+
+                ScriptServiceLoadGenerator.sleepMS(thinkTimeInMS);
+            }
+        }
+    }
+
+    /**
+     * Starts (daemon) load thread.
+     *
+     * @param threadName Thread name.
+     * @param runnable   Runnable.
+     */
+    private void startThread(final String threadName, final Runnable runnable) {
+
+        final Thread thread = new Thread(runnable, threadName);
+
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Latency recorder (all samples; sorted on read).
+     *
+     * @author mkitchin
+     */
+    private static final class LatencyRecorder {
+
+        /**
+         * Samples.
+         */
+        private long[] samples;
+
+        /**
+         * Sample count.
+         */
+        private int sampleCount;
+
+        /**
+         * Basic ctor.
+         */
+        private LatencyRecorder() {
+
+            this.samples = new long[1024];
+            this.sampleCount = 0;
+        }
+
+        /**
+         * Adds sample.
+         *
+         * @param latencyInNS Latency in ns.
+         */
+        private synchronized void add(final long latencyInNS) {
+
+            if (this.sampleCount == this.samples.length) {
+
+                this.samples = Arrays.copyOf(this.samples, this.samples.length * 2);
+            }
+
+            this.samples[this.sampleCount++] = latencyInNS;
+        }
+
+        /**
+         * Gets percentile (nearest rank).
+         *
+         * @param percentile Percentile (0-100).
+         * @return Latency in ns (0 = no samples).
+         */
+        private synchronized long getPercentile(final double percentile) {
+
+            if (this.sampleCount == 0) {
+
+                return 0L;
+            }
+
+            final long[] sortedSamples = Arrays.copyOf(this.samples, this.sampleCount);
+            Arrays.sort(sortedSamples);
+
+            final int rank = (int) Math.ceil((percentile / 100.0) * sortedSamples.length);
+            return sortedSamples[Math.max(0, Math.min(sortedSamples.length - 1, rank - 1))];
+        }
+    }
+
+    /**
+     * Serialization policy allowing all types (the deployed policy file
+     * isn't available in-process; encode cost is the same).
+     *
+     * @author mkitchin
+     */
+    private static final class OpenSerializationPolicy extends SerializationPolicy {
+
+        /**
+         * Shared instance.
+         */
+        private static final ScriptServiceLoadGenerator.OpenSerializationPolicy INSTANCE =
+                new ScriptServiceLoadGenerator.OpenSerializationPolicy();
+
+        @Override
+        public boolean shouldDeserializeFields(final Class<?> clazz) {
+
+            return true;
+        }
+
+        @Override
+        public boolean shouldSerializeFields(final Class<?> clazz) {
+
+            return true;
+        }
+
+        @Override
+        public void validateDeserialize(final Class<?> clazz) {
+        }
+
+        @Override
+        public void validateSerialize(final Class<?> clazz) {
+        }
+    }
+
+    /**
+     * Job awaiting completion.
+     *
+     * @author mkitchin
+     */
+    private final class PendingJob {
+
+        /**
+         * Submit time in ns.
+         */
+        private final long submitTime;
+
+        /**
+         * Is job measured (submitted past warm-up)?
+         */
+        private final boolean isMeasured;
+
+        /**
+         * Completion latch.
+         */
+        private final CountDownLatch completeLatch;
+
+        /**
+         * Basic ctor.
+         *
+         * @param isMeasured True if job is measured, false otherwise.
+         */
+        private PendingJob(final boolean isMeasured) {
+
+            this.submitTime = System.nanoTime();
+            this.isMeasured = isMeasured;
+            this.completeLatch = new CountDownLatch(1);
+        }
+
+        /**
+         * Waits for completion.
+         *
+         * @param timeoutInMS Timeout in ms.
+         * @return True if completed, false if timed out.
+         */
+        private boolean await(final long timeoutInMS) {
+
+            try {
+
+                return this.completeLatch.await(timeoutInMS, TimeUnit.MILLISECONDS);
+
+            } catch (final InterruptedException ex) {
+
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        /**
+         * Marks complete (records latency, if measured).
+         *
+         * @param jobStatus Job status.
+         */
+        private void complete(final JobStatus jobStatus) {
+
+            if (this.isMeasured &&
+                    ScriptServiceLoadGenerator.this.isMeasuring) {
+
+                ScriptServiceLoadGenerator.this.jobLatencies.add(System.nanoTime() - this.submitTime);
+
+                if (jobStatus != null) {
+
+                    ScriptServiceLoadGenerator.this.completedJobs.get(jobStatus).incrementAndGet();
+                }
+            }
+
+            this.completeLatch.countDown();
+        }
+    }
+}
@@ -7,6 +7,11 @@ import com.google.gwt.event.dom.client.ClickEvent;
 import com.google.gwt.event.dom.client.ClickHandler;
 import com.google.gwt.event.logical.shared.ValueChangeEvent;
 import com.google.gwt.event.logical.shared.ValueChangeHandler;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
 import com.google.gwt.user.client.Command;
 import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.Window;
@@ -47,6 +52,8 @@ public class ScriptWebApp implements EntryPoint {
 
             final FlexTable flexTable = new FlexTable();
             final TextBox textBox = new TextBox();
+            final ListBox replicaListBox = new ListBox();
+            final CheckBox spillCheckBox = new CheckBox("Save full output to files");
             final Button okButton = new Button("OK");
             final Button cancelButton = new Button("Cancel");
 
@@ -66,8 +73,12 @@ public class ScriptWebApp implements EntryPoint {
                 public void onClick(final ClickEvent event) {
 
                     ScriptWebApp.this.setLastClickTime(0L);
+                    // first entry is the session executor
                     ScriptWebApp.this.runNewExecutor(textBox.getText().trim(),
-                            executorType);
+                            executorType, (replicaListBox.getSelectedIndex() > 0),
+                            Integer.parseInt(replicaListBox
+                                    .getValue(replicaListBox.getSelectedIndex())),
+                            spillCheckBox.getValue());
                     ScriptWebApp.NewExecutorDialog.this.hide();
                 }
             });
@@ -81,10 +92,31 @@ public class ScriptWebApp implements EntryPoint {
                 }
             });
 
+            replicaListBox.addItem("Session (1 thread)",
+                    String.valueOf(JobExecutorData.DEFAULT_REPLICA_COUNT));
+
+            if (executorType.isReplicable()) {
+
+                replicaListBox.addItem("Pooled (1 per core)",
+                        String.valueOf(JobExecutorData.AUTO_REPLICA_COUNT));
+
+                for (final int item : ScriptWebApp.DEFAULT_REPLICA_COUNTS) {
+
+                    replicaListBox.addItem("Pooled (" + item + " threads)",
+                            String.valueOf(item));
+                }
+            }
+
+            replicaListBox.setEnabled(executorType.isReplicable());
+
             flexTable.setText(0, 0, "Title:");
             flexTable.setWidget(0, 1, textBox);
-            flexTable.setWidget(1, 0, okButton);
-            flexTable.setWidget(1, 1, cancelButton);
+            flexTable.setText(1, 0, "Workers:");
+            flexTable.setWidget(1, 1, replicaListBox);
+            flexTable.setText(2, 0, "Output:");
+            flexTable.setWidget(2, 1, spillCheckBox);
+            flexTable.setWidget(3, 0, okButton);
+            flexTable.setWidget(3, 1, cancelButton);
 
             this.setWidget(flexTable);
             this.center();
@@ -112,6 +144,17 @@ public class ScriptWebApp implements EntryPoint {
      */
     public static final int DEFAULT_REFRESH_TIMER_INTERVAL_MS = 2000;
 
+    /**
+     * Default change wait request timeout in milliseconds (past the
+     * server's own wait).
+     */
+    public static final int DEFAULT_CHANGE_WAIT_TIMEOUT_MS = 35000;
+
+    /**
+     * Default pooled executor replica counts (new executor dialog).
+     */
+    private static final int[] DEFAULT_REPLICA_COUNTS = {2, 4, 8};
+
     /**
      * Main menu.
      */
@@ -153,14 +196,24 @@ public class ScriptWebApp implements EntryPoint {
     private Map<JobExecutorData, ExecutorTab> hiddenExecutorTabs;
 
     /**
-     * Prev job modified time.
+     * Last job change sequence seen.
+     */
+    private long currJobSequence;
+
+    /**
+     * Last executor sequence seen.
+     */
+    private long currExecutorSequence;
+
+    /**
+     * Last job/executor change sequence seen.
      */
-    private long currJobModifiedTime;
+    private long currChangeSequence;
 
     /**
-     * Next job modified time.
+     * Is a change wait (long poll) pending?
      */
-    private long nextJobModifiedTime;
+    private boolean isChangeWaitPending;
 
     /**
      * Previous click time.
@@ -533,16 +586,25 @@ public class ScriptWebApp implements EntryPoint {
     /**
      * Create new executor.
      *
-     * @param executorType Executor type.
+     * @param executorTitle Executor title.
+     * @param executorType  Executor type.
+     * @param isPooled      True for pooled executor, false for session executor.
+     * @param replicaCount  Replica count (0 = one per core).
+     * @param isOutputSpilled True to save full job output to executor files,
+     *                        false otherwise.
      */
     private void runNewExecutor(final String executorTitle,
-                                final JobExecutorType executorType) {
+                                final JobExecutorType executorType,
+                                final boolean isPooled,
+                                final int replicaCount,
+                                final boolean isOutputSpilled) {
 
         JobDataUtils.checkEmptyString(executorTitle, true);
         JobDataUtils.checkNullObject(executorType, true);
 
         final JobExecutorData executorData = new JobExecutorData(executorTitle,
-                executorType);
+                executorType, isPooled, replicaCount);
+        executorData.setOutputSpilled(isOutputSpilled);
 
         ScriptWebApp.showWaitCursor();
         this.scriptService.addExecutor(executorData,
@@ -571,8 +633,9 @@ public class ScriptWebApp implements EntryPoint {
      */
     private void runRefresh() {
 
-        this.scriptService
-                .getAllExecutors(new AsyncCallback<JobExecutorData[]>() {
+        this.scriptService.getSnapshot(this.currChangeSequence,
+                this.currExecutorSequence, this.currJobSequence,
+                new AsyncCallback<JobSnapshotData>() {
 
                     @Override
                     public void onFailure(final Throwable arg0) {
@@ -581,9 +644,9 @@ public class ScriptWebApp implements EntryPoint {
                     }
 
                     @Override
-                    public void onSuccess(final JobExecutorData[] arg0) {
+                    public void onSuccess(final JobSnapshotData arg0) {
 
-                        ScriptWebApp.this.runUpdateStep1(arg0, false);
+                        ScriptWebApp.this.runUpdateSnapshot(arg0);
                     }
                 });
     }
@@ -600,8 +663,10 @@ public class ScriptWebApp implements EntryPoint {
         this.nextExecutors = new LinkedHashSet<>();
         this.visibleExecutorTabs = new LinkedHashMap<>();
         this.hiddenExecutorTabs = new LinkedHashMap<>();
-        this.currJobModifiedTime = 0L;
-        this.nextJobModifiedTime = 0L;
+        this.currJobSequence = 0L;
+        this.currExecutorSequence = 0L;
+        this.currChangeSequence = 0L;
+        this.isChangeWaitPending = false;
 
         this.scriptService
                 .getAllExecutors(new AsyncCallback<JobExecutorData[]>() {
@@ -685,32 +750,103 @@ public class ScriptWebApp implements EntryPoint {
         if (isReset) {
 
             this.scheduleRefreshTimer(true);
+        }
+    }
 
-        } else {
+    /**
+     * Run snapshot update (executors if changed, then jobs).
+     *
+     * @param snapshotData Snapshot data.
+     */
+    private void runUpdateSnapshot(final JobSnapshotData snapshotData) {
 
-            // get jobs
-            this.scriptService.getAllJobs(this.currJobModifiedTime,
-                    new AsyncCallback<JobContentData[]>() {
+        if (snapshotData.getExecutors() != null) {
 
-                        @Override
-                        public void onFailure(final Throwable arg0) {
+            this.runUpdateStep1(snapshotData.getExecutors(), false);
+        }
 
-                            ScriptWebApp.this.handleUpdateError(arg0, false);
-                        }
+        if (snapshotData.isJobReset()
+                || (snapshotData.getRemovedJobIds().length > 0)) {
 
-                        @Override
-                        public void onSuccess(final JobContentData[] arg0) {
+            this.runRemoveJobs(snapshotData.getRemovedJobIds(),
+                    snapshotData.isJobReset());
+        }
 
-                            ScriptWebApp.this.runUpdateStep2(arg0, false);
-                        }
-                    });
+        if (snapshotData.getJobs().length > 0) {
+
+            this.runUpdateStep2(snapshotData.getJobs(), false);
+        }
+
+        // stash change sequences
+        this.currChangeSequence = snapshotData.getChangeSequence();
+        this.currExecutorSequence = snapshotData.getExecutorSequence();
+        this.currJobSequence = snapshotData.getJobSequence();
+
+        // wait for next change
+        this.runWaitForChange();
+    }
+
+    /**
+     * Run job removal (before a snapshot's changed jobs are added).
+     *
+     * @param removedJobIds Removed job ids.
+     * @param isRemoveAll   True to remove all jobs (reset), false otherwise.
+     */
+    private void runRemoveJobs(final String[] removedJobIds,
+                               final boolean isRemoveAll) {
+
+        // jobs match by id
+        final List<JobContentData> removedJobs = new ArrayList<>();
+
+        for (final String item : removedJobIds) {
+
+            final JobContentData removedJob = new JobContentData();
+            removedJob.setId(item);
+
+            removedJobs.add(removedJob);
+        }
+
+        final List<ExecutorTab> executorTabs = new ArrayList<>();
+
+        executorTabs.addAll(this.visibleExecutorTabs.values());
+        executorTabs.addAll(this.hiddenExecutorTabs.values());
+
+        for (final ExecutorTab item : executorTabs) {
+
+            if (isRemoveAll) {
+
+                item.removeAllCompletedJobs(false);
+                item.removeAllPendingJobs(false);
+            }
+
+            for (final JobContentData removedJob : removedJobs) {
+
+                item.removeCompletedJob(removedJob, false);
+                item.removePendingJob(removedJob, false);
+            }
+
+            item.updateJobDataGrids();
+        }
+
+        if (isRemoveAll) {
+
+            this.statusTab.removeAllCompletedJobs(false);
+            this.statusTab.removeAllPendingJobs(false);
+        }
+
+        for (final JobContentData removedJob : removedJobs) {
+
+            this.statusTab.removeCompletedJob(removedJob, false);
+            this.statusTab.removePendingJob(removedJob, false);
         }
+
+        this.statusTab.updateJobDataGrids();
     }
 
     /**
      * Run update step 2.
      *
-     * @param foundJobs New pending jobs.
+     * @param foundJobs Changed jobs.
      * @param isReset   True to clear and re-populate, false to update.
      */
     private void runUpdateStep2(final JobContentData[] foundJobs,
@@ -720,8 +856,6 @@ public class ScriptWebApp implements EntryPoint {
 
         for (final JobContentData item : foundJobs) {
 
-            this.nextJobModifiedTime = Math.max(this.nextJobModifiedTime,
-                    item.getModifiedTime());
             final ExecutorTab executorTab = this.visibleExecutorTabs.get(item
                     .getExecutorData());
 
@@ -759,12 +893,85 @@ public class ScriptWebApp implements EntryPoint {
 
             this.statusTab.updateJobDataGrids();
         }
+    }
 
-        // stash update time
-        this.currJobModifiedTime = this.nextJobModifiedTime;
+    /**
+     * Run change wait (async long poll on the change servlet; refreshes on
+     * change, falls back to refresh timer on error or if server is busy).
+     */
+    private void runWaitForChange() {
 
-        // schedule timer
-        this.scheduleRefreshTimer(true);
+        if (!this.isAppActive || this.isChangeWaitPending) {
+
+            return;
+        }
+
+        final RequestBuilder requestBuilder = new RequestBuilder(RequestBuilder.GET,
+                GWT.getModuleBaseURL() + "change?fromSequence=" + this.currChangeSequence);
+        requestBuilder.setTimeoutMillis(ScriptWebApp.DEFAULT_CHANGE_WAIT_TIMEOUT_MS);
+
+        this.isChangeWaitPending = true;
+
+        try {
+
+            requestBuilder.sendRequest(null, new RequestCallback() {
+
+                @Override
+                public void onError(final Request arg0, final Throwable arg1) {
+
+                    ScriptWebApp.this.isChangeWaitPending = false;
+                    ScriptWebApp.this.scheduleRefreshTimer(true);
+                }
+
+                @Override
+                public void onResponseReceived(final Request arg0, final Response arg1) {
+
+                    ScriptWebApp.this.isChangeWaitPending = false;
+                    ScriptWebApp.this.runChangeWaitResponse(arg1);
+                }
+            });
+
+        } catch (final RequestException ex) {
+
+            this.isChangeWaitPending = false;
+            this.scheduleRefreshTimer(true);
+        }
+    }
+
+    /**
+     * Run change wait response (refresh, wait again or fall back to refresh
+     * timer).
+     *
+     * @param response Change servlet response (last change sequence).
+     */
+    private void runChangeWaitResponse(final Response response) {
+
+        long nextChangeSequence = -1L;
+
+        if (response.getStatusCode() == Response.SC_OK) {
+
+            try {
+
+                nextChangeSequence = Long.parseLong(response.getText().trim());
+
+            } catch (final NumberFormatException ex) {
+
+                nextChangeSequence = -1L;
+            }
+        }
+
+        if (nextChangeSequence < 0L) {
+
+            this.scheduleRefreshTimer(true);
+
+        } else if (nextChangeSequence == this.currChangeSequence) {
+
+            this.runWaitForChange();
+
+        } else {
+
+            this.runRefresh();
+        }
     }
 
     /**
@@ -873,6 +1080,10 @@ public class ScriptWebApp implements EntryPoint {
         }
 
         this.lastClickTime = workLastClickTime;
-        this.scheduleRefreshTimer(false);
+
+        if (!this.isChangeWaitPending) {
+
+            this.scheduleRefreshTimer(false);
+        }
     }
 }
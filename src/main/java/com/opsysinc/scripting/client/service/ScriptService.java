@@ -2,9 +2,15 @@ package com.opsysinc.scripting.client.service;
 
 import com.google.gwt.user.client.rpc.RemoteService;
 import com.google.gwt.user.client.rpc.RemoteServiceRelativePath;
+import com.opsysinc.scripting.shared.JobChangesData;
 import com.opsysinc.scripting.shared.JobContentData;
 import com.opsysinc.scripting.shared.JobExecutorData;
-import com.opsysinc.scripting.shared.JobFileData;
+import com.opsysinc.scripting.shared.JobFilesData;
+import com.opsysinc.scripting.shared.JobOutputChunkData;
+import com.opsysinc.scripting.shared.JobSnapshotData;
+import com.opsysinc.scripting.shared.JobTimingStatsData;
+import com.opsysinc.scripting.shared.JobVariableData;
+import com.opsysinc.scripting.shared.JobVariableValueData;
 
 /**
  * The client-side stub for the RPC service.
@@ -90,14 +96,85 @@ public interface ScriptService extends RemoteService {
                                     int variableScope, int variableFormat);
 
     /**
-     * Gets executor files.
+     * Gets executor variable info (names, types and estimated sizes; values
+     * are read on demand).
+     *
+     * @param executorData  Executor data.
+     * @param variableScope Variable scope.
+     * @return Variable info (sorted by name).
+     */
+    JobVariableData[] getExecutorVariableInfo(JobExecutorData executorData,
+                                              int variableScope);
+
+    /**
+     * Gets one page of a formatted executor variable value.
+     *
+     * @param executorData   Executor data.
+     * @param variableScope  Variable scope.
+     * @param variableFormat Variable format.
+     * @param name           Variable name.
+     * @param fromOffset     Char offset to read from.
+     * @return Value page.
+     */
+    JobVariableValueData getExecutorVariableValue(JobExecutorData executorData,
+                                                  int variableScope, int variableFormat,
+                                                  String name, int fromOffset);
+
+    /**
+     * Gets executor files (folder listing page, or changes since index version).
      *
      * @param executorData Executor data.
      * @param basePath     Base path w/in executor file system.
-     * @return Variable keys/values.
+     * @param fromVersion  Index version to get changes after (0 = listing).
+     * @param fromIndex    Index of first file w/in sorted listing.
+     * @param maxCount     Max files per page.
+     * @param sortOrder    Sort order (see JobFileSortOrder).
+     * @param isDescending True to sort descending, false otherwise.
+     * @return Files data.
+     */
+    JobFilesData getExecutorFiles(JobExecutorData executorData,
+                                  String basePath, long fromVersion,
+                                  int fromIndex, int maxCount,
+                                  int sortOrder, boolean isDescending);
+
+    /**
+     * Gets executor job timing stats (phase totals/maxes over completed jobs).
+     *
+     * @param executorData Executor data.
+     * @return Timing stats.
+     */
+    JobTimingStatsData getExecutorTimingStats(JobExecutorData executorData);
+
+    /**
+     * Gets jobs changed (or removed) after change sequence.
+     *
+     * @param fromSequence Change sequence to select after (0 = all).
+     * @return Changed jobs and removed job ids, with last change sequence
+     * covered (all jobs, flagged as reset, if the sequence is too old).
+     */
+    JobChangesData getJobChanges(long fromSequence);
+
+    /**
+     * Gets running job output from offset.
+     *
+     * @param executorData Executor data.
+     * @param jobId        Job id.
+     * @param fromOffset   Byte offset to read from.
+     * @return Output chunk if job is running, null otherwise.
+     */
+    JobOutputChunkData getJobOutput(JobExecutorData executorData,
+                                    String jobId, long fromOffset);
+
+    /**
+     * Gets executor and job changes since last snapshot (one round trip).
+     *
+     * @param changeSequence   Last snapshot change sequence (0 = all).
+     * @param executorSequence Last snapshot executor sequence (0 = all).
+     * @param jobSequence      Last snapshot job change sequence (0 = all).
+     * @return Snapshot (no executors or jobs if nothing changed).
      */
-    JobFileData[] getExecutorFiles(JobExecutorData executorData,
-                                   String basePath);
+    JobSnapshotData getSnapshot(long changeSequence, long executorSequence,
+                                long jobSequence);
 
     /**
      * Remove all executors.
@@ -1,9 +1,15 @@
 package com.opsysinc.scripting.client.service;
 
 import com.google.gwt.user.client.rpc.AsyncCallback;
+import com.opsysinc.scripting.shared.JobChangesData;
 import com.opsysinc.scripting.shared.JobContentData;
 import com.opsysinc.scripting.shared.JobExecutorData;
-import com.opsysinc.scripting.shared.JobFileData;
+import com.opsysinc.scripting.shared.JobFilesData;
+import com.opsysinc.scripting.shared.JobOutputChunkData;
+import com.opsysinc.scripting.shared.JobSnapshotData;
+import com.opsysinc.scripting.shared.JobTimingStatsData;
+import com.opsysinc.scripting.shared.JobVariableData;
+import com.opsysinc.scripting.shared.JobVariableValueData;
 
 /**
  * The async counterpart of <code>ScriptService</code>.
@@ -36,8 +42,32 @@ public interface ScriptServiceAsync {
                               int variableScope, int variableFormat,
                               AsyncCallback<String[][]> callback);
 
+    void getExecutorVariableInfo(JobExecutorData executorData,
+                                 int variableScope,
+                                 AsyncCallback<JobVariableData[]> callback);
+
+    void getExecutorVariableValue(JobExecutorData executorData,
+                                  int variableScope, int variableFormat,
+                                  String name, int fromOffset,
+                                  AsyncCallback<JobVariableValueData> callback);
+
     void getExecutorFiles(JobExecutorData executorData,
-                          String basePath, AsyncCallback<JobFileData[]> async);
+                          String basePath, long fromVersion,
+                          int fromIndex, int maxCount,
+                          int sortOrder, boolean isDescending,
+                          AsyncCallback<JobFilesData> async);
+
+    void getExecutorTimingStats(JobExecutorData executorData,
+                                AsyncCallback<JobTimingStatsData> callback);
+
+    void getJobChanges(long fromSequence,
+                       AsyncCallback<JobChangesData> callback);
+
+    void getJobOutput(JobExecutorData executorData, String jobId,
+                      long fromOffset, AsyncCallback<JobOutputChunkData> callback);
+
+    void getSnapshot(long changeSequence, long executorSequence,
+                     long jobSequence, AsyncCallback<JobSnapshotData> callback);
 
     void removeAllExecutors(AsyncCallback<Boolean> callback);
 
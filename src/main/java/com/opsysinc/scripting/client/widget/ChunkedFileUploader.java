@@ -0,0 +1,569 @@
+package com.opsysinc.scripting.client.widget;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.http.client.URL;
+import com.google.gwt.user.client.ui.FileUpload;
+import com.opsysinc.scripting.shared.JobDataUtils;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Chunked file uploader (see ChunkedUploadServlet).
+ * <p/>
+ * Keeps several chunks in flight at once, retries failed chunks and, once
+ * started, can resume after a failure by re-sending only the chunks the
+ * server is missing.
+ *
+ * @author mkitchin
+ */
+public class ChunkedFileUploader {
+
+    /**
+     * Default chunk size in bytes.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Default max chunks in flight.
+     */
+    public static final int DEFAULT_MAX_PARALLEL_CHUNKS = 4;
+
+    /**
+     * Default max retries per chunk.
+     */
+    public static final int DEFAULT_MAX_CHUNK_RETRIES = 3;
+
+    /**
+     * Upload listener.
+     *
+     * @author mkitchin
+     */
+    public interface UploadListener {
+
+        /**
+         * Upload completed.
+         *
+         * @param uploader   Uploader.
+         * @param resultText Server result text.
+         */
+        void onComplete(ChunkedFileUploader uploader, String resultText);
+
+        /**
+         * Upload failed (may be resumed w/start()).
+         *
+         * @param uploader    Uploader.
+         * @param failureText Failure text.
+         */
+        void onFailure(ChunkedFileUploader uploader, String failureText);
+
+        /**
+         * Chunk completed.
+         *
+         * @param uploader   Uploader.
+         * @param sentBytes  Bytes sent (and stored).
+         * @param totalBytes File size in bytes.
+         */
+        void onProgress(ChunkedFileUploader uploader, double sentBytes, double totalBytes);
+    }
+
+    /**
+     * Servlet URL.
+     */
+    private final String servletUrl;
+
+    /**
+     * Executor id.
+     */
+    private final String executorId;
+
+    /**
+     * Target folder path (relative to executor file area).
+     */
+    private final String folderPath;
+
+    /**
+     * File (browser File object).
+     */
+    private final JavaScriptObject file;
+
+    /**
+     * File name.
+     */
+    private final String fileName;
+
+    /**
+     * File size in bytes.
+     */
+    private final double fileSize;
+
+    /**
+     * Chunk count.
+     */
+    private final int chunkCount;
+
+    /**
+     * Upload listener.
+     */
+    private final ChunkedFileUploader.UploadListener listener;
+
+    /**
+     * Chunks to send.
+     */
+    private final LinkedList<Integer> pendingChunks;
+
+    /**
+     * Retry counts (by chunk index).
+     */
+    private final Map<Integer, Integer> retryCounts;
+
+    /**
+     * Upload id (null until started).
+     */
+    private String uploadId;
+
+    /**
+     * Chunks in flight.
+     */
+    private int inFlightCount;
+
+    /**
+     * Bytes sent (and stored).
+     */
+    private double sentBytes;
+
+    /**
+     * Is upload running?
+     */
+    private boolean isRunning;
+
+    /**
+     * Is upload complete?
+     */
+    private boolean isComplete;
+
+    /**
+     * Basic ctor.
+     *
+     * @param servletUrl Servlet URL.
+     * @param executorId Executor id.
+     * @param folderPath Target folder path (relative; may be empty).
+     * @param file       File (browser File object).
+     * @param listener   Upload listener.
+     */
+    public ChunkedFileUploader(final String servletUrl, final String executorId,
+                               final String folderPath, final JavaScriptObject file,
+                               final ChunkedFileUploader.UploadListener listener) {
+
+        JobDataUtils.checkEmptyString(servletUrl, true);
+        JobDataUtils.checkEmptyString(executorId, true);
+        JobDataUtils.checkNullObject(folderPath, true);
+        JobDataUtils.checkNullObject(file, true);
+        JobDataUtils.checkNullObject(listener, true);
+
+        this.servletUrl = servletUrl;
+        this.executorId = executorId;
+        this.folderPath = folderPath;
+        this.file = file;
+        this.fileName = ChunkedFileUploader.getFileName(file);
+        this.fileSize = ChunkedFileUploader.getFileSize(file);
+        this.chunkCount = (int) Math.ceil(this.fileSize / ChunkedFileUploader.DEFAULT_CHUNK_SIZE);
+        this.listener = listener;
+        this.pendingChunks = new LinkedList<>();
+        this.retryCounts = new HashMap<>();
+        this.uploadId = null;
+        this.inFlightCount = 0;
+        this.sentBytes = 0.0;
+        this.isRunning = false;
+        this.isComplete = false;
+    }
+
+    /**
+     * Gets file name.
+     *
+     * @param file File (browser File object).
+     * @return File name.
+     */
+    private static native String getFileName(final JavaScriptObject file) /*-{
+        return file.name;
+    }-*/;
+
+    /**
+     * Gets file size.
+     *
+     * @param file File (browser File object).
+     * @return File size in bytes.
+     */
+    private static native double getFileSize(final JavaScriptObject file) /*-{
+        return file.size;
+    }-*/;
+
+    /**
+     * Gets selected file.
+     *
+     * @param fileUpload File upload widget.
+     * @return Selected file (browser File object) if any, null otherwise.
+     */
+    public static native JavaScriptObject getSelectedFile(final FileUpload fileUpload) /*-{
+        var element = fileUpload.@com.google.gwt.user.client.ui.UIObject::getElement()();
+        return (element.files && (element.files.length > 0)) ? element.files[0] : null;
+    }-*/;
+
+    /**
+     * Builds request URL.
+     *
+     * @param opText    Operation.
+     * @param paramText Extra parameters (encoded; may be empty).
+     * @return Request URL.
+     */
+    private String buildUrl(final String opText, final String paramText) {
+
+        return this.servletUrl + "?op=" + opText
+                + ((this.uploadId == null) ? "" : ("&uploadId=" + URL.encodeQueryString(this.uploadId)))
+                + paramText;
+    }
+
+    /**
+     * Marks upload failed.
+     *
+     * @param failureText Failure text.
+     */
+    private void failUpload(final String failureText) {
+
+        if (this.isRunning) {
+
+            this.isRunning = false;
+            this.pendingChunks.clear();
+            this.listener.onFailure(this, failureText);
+        }
+    }
+
+    /**
+     * Gets file name.
+     *
+     * @return File name.
+     */
+    public String getFileName() {
+
+        return this.fileName;
+    }
+
+    /**
+     * Gets file size.
+     *
+     * @return File size in bytes.
+     */
+    public double getFileSize() {
+
+        return this.fileSize;
+    }
+
+    /**
+     * Gets if upload is complete.
+     *
+     * @return True if complete, false otherwise.
+     */
+    public boolean isComplete() {
+
+        return this.isComplete;
+    }
+
+    /**
+     * Gets if file is same as the one being uploaded (name, size, modified time).
+     *
+     * @param otherFile Other file (browser File object).
+     * @return True if same, false otherwise.
+     */
+    public native boolean isSameFile(final JavaScriptObject otherFile) /*-{
+        var file = this.@com.opsysinc.scripting.client.widget.ChunkedFileUploader::file;
+        return (otherFile != null) &&
+            (file.name === otherFile.name) &&
+            (file.size === otherFile.size) &&
+            (file.lastModified === otherFile.lastModified);
+    }-*/;
+
+    /**
+     * Gets if upload is running.
+     *
+     * @return True if running, false otherwise.
+     */
+    public boolean isRunning() {
+
+        return this.isRunning;
+    }
+
+    /**
+     * Handles chunk completion (from XHR).
+     *
+     * @param chunkIndex Chunk index.
+     * @param statusCode HTTP status code (0 = network error).
+     */
+    private void onChunkDone(final int chunkIndex, final int statusCode) {
+
+        this.inFlightCount--;
+
+        if (statusCode == Response.SC_OK) {
+
+            this.sentBytes += Math.min(ChunkedFileUploader.DEFAULT_CHUNK_SIZE,
+                    this.fileSize - (((double) chunkIndex) * ChunkedFileUploader.DEFAULT_CHUNK_SIZE));
+            this.listener.onProgress(this, this.sentBytes, this.fileSize);
+
+        } else {
+
+            final Integer retryCount = this.retryCounts.get(chunkIndex);
+            final int nextRetryCount = (retryCount == null) ? 1 : (retryCount + 1);
+
+            if (nextRetryCount > ChunkedFileUploader.DEFAULT_MAX_CHUNK_RETRIES) {
+
+                this.failUpload("chunk " + chunkIndex + " failed (status " + statusCode + ")");
+
+            } else if (this.isRunning) {
+
+                this.retryCounts.put(chunkIndex, nextRetryCount);
+                this.pendingChunks.addLast(chunkIndex);
+            }
+        }
+
+        this.runPump();
+    }
+
+    /**
+     * Commits upload.
+     */
+    private void runCommit() {
+
+        this.sendRequest(RequestBuilder.POST, this.buildUrl("commit", ""),
+                new RequestCallback() {
+
+                    @Override
+                    public void onError(final Request arg0, final Throwable arg1) {
+
+                        ChunkedFileUploader.this.failUpload("commit failed (" + arg1.getMessage() + ")");
+                    }
+
+                    @Override
+                    public void onResponseReceived(final Request arg0, final Response arg1) {
+
+                        if (arg1.getStatusCode() == Response.SC_OK) {
+
+                            ChunkedFileUploader.this.isRunning = false;
+                            ChunkedFileUploader.this.isComplete = true;
+                            ChunkedFileUploader.this.listener.onComplete(
+                                    ChunkedFileUploader.this, arg1.getText());
+
+                        } else {
+
+                            // resume re-sends missing chunks (or starts over, if dropped)
+                            ChunkedFileUploader.this.failUpload("commit failed (status "
+                                    + arg1.getStatusCode() + ")");
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Sends pending chunks (up to max in flight); commits once all are in.
+     */
+    private void runPump() {
+
+        if (!this.isRunning) {
+
+            return;
+        }
+
+        while ((this.inFlightCount < ChunkedFileUploader.DEFAULT_MAX_PARALLEL_CHUNKS) &&
+                !this.pendingChunks.isEmpty()) {
+
+            final int chunkIndex = this.pendingChunks.removeFirst();
+            final double startOffset = ((double) chunkIndex) * ChunkedFileUploader.DEFAULT_CHUNK_SIZE;
+
+            this.inFlightCount++;
+            this.sendChunk(this.buildUrl("chunk", "&index=" + chunkIndex), this.file,
+                    startOffset, Math.min(startOffset + ChunkedFileUploader.DEFAULT_CHUNK_SIZE,
+                            this.fileSize), chunkIndex);
+        }
+
+        if ((this.inFlightCount == 0) &&
+                this.pendingChunks.isEmpty()) {
+
+            this.runCommit();
+        }
+    }
+
+    /**
+     * Starts new upload on server.
+     */
+    private void runStart() {
+
+        final String paramText = "&executorId=" + URL.encodeQueryString(this.executorId)
+                + "&path=" + URL.encodeQueryString(this.folderPath)
+                + "&name=" + URL.encodeQueryString(this.fileName)
+                + "&size=" + ((long) this.fileSize)
+                + "&chunkSize=" + ChunkedFileUploader.DEFAULT_CHUNK_SIZE;
+
+        this.sendRequest(RequestBuilder.POST, this.buildUrl("start", paramText),
+                new RequestCallback() {
+
+                    @Override
+                    public void onError(final Request arg0, final Throwable arg1) {
+
+                        ChunkedFileUploader.this.failUpload("start failed (" + arg1.getMessage() + ")");
+                    }
+
+                    @Override
+                    public void onResponseReceived(final Request arg0, final Response arg1) {
+
+                        if (arg1.getStatusCode() != Response.SC_OK) {
+
+                            ChunkedFileUploader.this.failUpload("start failed (status "
+                                    + arg1.getStatusCode() + ")");
+                            return;
+                        }
+
+                        ChunkedFileUploader.this.uploadId = arg1.getText().trim();
+
+                        for (int ctr = 0; ctr < ChunkedFileUploader.this.chunkCount; ctr++) {
+
+                            ChunkedFileUploader.this.pendingChunks.addLast(ctr);
+                        }
+
+                        ChunkedFileUploader.this.runPump();
+                    }
+                });
+    }
+
+    /**
+     * Resumes upload (re-sends missing chunks only).
+     */
+    private void runResume() {
+
+        this.sendRequest(RequestBuilder.GET, this.buildUrl("status", ""),
+                new RequestCallback() {
+
+                    @Override
+                    public void onError(final Request arg0, final Throwable arg1) {
+
+                        ChunkedFileUploader.this.failUpload("resume failed (" + arg1.getMessage() + ")");
+                    }
+
+                    @Override
+                    public void onResponseReceived(final Request arg0, final Response arg1) {
+
+                        if (arg1.getStatusCode() == Response.SC_NOT_FOUND) {
+
+                            // expired; start over
+                            ChunkedFileUploader.this.uploadId = null;
+                            ChunkedFileUploader.this.sentBytes = 0.0;
+                            ChunkedFileUploader.this.runStart();
+                            return;
+                        }
+
+                        if (arg1.getStatusCode() != Response.SC_OK) {
+
+                            ChunkedFileUploader.this.failUpload("resume failed (status "
+                                    + arg1.getStatusCode() + ")");
+                            return;
+                        }
+
+                        double missingBytes = 0.0;
+
+                        for (final String item : arg1.getText().trim().split(",")) {
+
+                            if (!item.isEmpty()) {
+
+                                final int chunkIndex = Integer.parseInt(item);
+                                final double startOffset = ((double) chunkIndex)
+                                        * ChunkedFileUploader.DEFAULT_CHUNK_SIZE;
+
+                                ChunkedFileUploader.this.pendingChunks.addLast(chunkIndex);
+                                missingBytes += Math.min(ChunkedFileUploader.DEFAULT_CHUNK_SIZE,
+                                        ChunkedFileUploader.this.fileSize - startOffset);
+                            }
+                        }
+
+                        ChunkedFileUploader.this.sentBytes =
+                                ChunkedFileUploader.this.fileSize - missingBytes;
+                        ChunkedFileUploader.this.runPump();
+                    }
+                });
+    }
+
+    /**
+     * Sends one chunk (file slice) w/XHR.
+     *
+     * @param url         Request URL.
+     * @param file        File (browser File object).
+     * @param startOffset Start offset.
+     * @param endOffset   End offset (exclusive).
+     * @param chunkIndex  Chunk index.
+     */
+    private native void sendChunk(final String url, final JavaScriptObject file,
+                                  final double startOffset, final double endOffset,
+                                  final int chunkIndex) /*-{
+        var self = this;
+        var xhr = new $wnd.XMLHttpRequest();
+        var done = $entry(function (statusCode) {
+            self.@com.opsysinc.scripting.client.widget.ChunkedFileUploader::onChunkDone(II)(chunkIndex, statusCode);
+        });
+
+        xhr.open("PUT", url, true);
+        xhr.onload = function () {
+            done(xhr.status);
+        };
+        xhr.onerror = function () {
+            done(0);
+        };
+        xhr.send(file.slice(startOffset, endOffset));
+    }-*/;
+
+    /**
+     * Sends control request.
+     *
+     * @param method   Request method.
+     * @param url      Request URL.
+     * @param callback Request callback.
+     */
+    private void sendRequest(final RequestBuilder.Method method, final String url,
+                             final RequestCallback callback) {
+
+        try {
+
+            new RequestBuilder(method, url).sendRequest(null, callback);
+
+        } catch (final RequestException ex) {
+
+            this.failUpload("request failed (" + ex.getMessage() + ")");
+        }
+    }
+
+    /**
+     * Starts (or resumes) upload.
+     */
+    public void start() {
+
+        if (this.isRunning || this.isComplete) {
+
+            return;
+        }
+
+        this.isRunning = true;
+        this.pendingChunks.clear();
+        this.retryCounts.clear();
+
+        if (this.uploadId == null) {
+
+            this.sentBytes = 0.0;
+            this.runStart();
+
+        } else {
+
+            this.runResume();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.opsysinc.scripting.client.widget;
 
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.JavaScriptObject;
 import com.google.gwt.dom.client.Style;
 import com.google.gwt.event.dom.client.*;
 import com.google.gwt.event.logical.shared.SelectionEvent;
@@ -10,12 +12,18 @@ import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.gwt.user.client.ui.*;
 import com.google.gwt.view.client.CellPreviewEvent;
 import com.google.gwt.view.client.ListDataProvider;
+import com.google.gwt.view.client.SelectionChangeEvent;
+import com.google.gwt.view.client.SingleSelectionModel;
 import com.opsysinc.scripting.client.app.ScriptWebApp;
 import com.opsysinc.scripting.client.service.ScriptServiceAsync;
+import com.opsysinc.scripting.shared.JobBinaryUtils;
 import com.opsysinc.scripting.shared.JobContentData;
 import com.opsysinc.scripting.shared.JobDataFormat;
 import com.opsysinc.scripting.shared.JobDataUtils;
 import com.opsysinc.scripting.shared.JobExecutorData;
+import com.opsysinc.scripting.shared.JobOutputChunkData;
+import com.opsysinc.scripting.shared.JobVariableData;
+import com.opsysinc.scripting.shared.JobVariableValueData;
 
 import java.util.*;
 
@@ -73,6 +81,16 @@ public class ExecutorTab extends AbstractTab {
      */
     public static final int DEFAULT_MAX_COMPLETED_JOBS = 20;
 
+    /**
+     * Default text marking dropped (unread) output.
+     */
+    public static final String DEFAULT_OUTPUT_GAP_TEXT = "\n[...]\n";
+
+    /**
+     * Default max elements shown for binary variable values.
+     */
+    public static final int DEFAULT_MAX_BINARY_PREVIEW_ELEMENTS = 100;
+
     /**
      * Executor data.
      */
@@ -128,6 +146,26 @@ public class ExecutorTab extends AbstractTab {
      */
     private JobContentData latestDisplayedJob;
 
+    /**
+     * Id of job whose output is being streamed.
+     */
+    private String outputJobId;
+
+    /**
+     * Next output offset to read (for streamed job).
+     */
+    private long outputOffset;
+
+    /**
+     * Has streamed job completed?
+     */
+    private boolean isOutputComplete;
+
+    /**
+     * Is output read in flight?
+     */
+    private boolean isOutputReadPending;
+
     /**
      * Local variables.
      */
@@ -148,6 +186,16 @@ public class ExecutorTab extends AbstractTab {
      */
     private DataGrid<Map.Entry<String, String>> globalVariablesDataGrid;
 
+    /**
+     * Loaded variable value text (by scope/name key).
+     */
+    private Map<String, String> variableValueTexts;
+
+    /**
+     * Next variable value offsets (by scope/name key; absent = all read).
+     */
+    private Map<String, Integer> variableValueOffsets;
+
     /**
      * Input text area.
      */
@@ -158,6 +206,26 @@ public class ExecutorTab extends AbstractTab {
      */
     private TextArea outputTextArea;
 
+    /**
+     * Reset (restore engine variables before execute) check box.
+     */
+    private CheckBox codeResetCheckBox;
+
+    /**
+     * File upload (file chooser).
+     */
+    private FileUpload fileUpload;
+
+    /**
+     * File upload status label.
+     */
+    private Label fileStatusLabel;
+
+    /**
+     * Latest file uploader (kept so a failed upload of the same file resumes).
+     */
+    private ChunkedFileUploader fileUploader;
+
     /**
      * Global data format.
      */
@@ -202,6 +270,12 @@ public class ExecutorTab extends AbstractTab {
         this.removePendingJob(completedJob, false);
         final boolean result = !this.removeCompletedJob(completedJob, false);
 
+        if ((completedJob.getId() != null)
+                && completedJob.getId().equals(this.outputJobId)) {
+
+            this.isOutputComplete = true;
+        }
+
         this.completedJobs.getList().add(completedJob);
         this.latestCompletedJob = completedJob;
 
@@ -308,12 +382,19 @@ public class ExecutorTab extends AbstractTab {
                 new LinkedList<JobContentData>());
         this.localVariables = new LinkedHashMap<>();
         this.globalVariables = new LinkedHashMap<>();
+        this.variableValueTexts = new HashMap<>();
+        this.variableValueOffsets = new HashMap<>();
         this.pendingJobModifiedTime = 0L;
         this.completedJobModifiedTime = 0L;
         this.latestPendingJob = null;
         this.latestCompletedJob = null;
         this.latestSubmittedJob = null;
         this.latestDisplayedJob = null;
+        this.outputJobId = null;
+        this.outputOffset = 0L;
+        this.isOutputComplete = false;
+        this.isOutputReadPending = false;
+        this.fileUploader = null;
         this.globalFormat = JobDataFormat.raw;
         this.engineFormat = JobDataFormat.raw;
     }
@@ -420,7 +501,8 @@ public class ExecutorTab extends AbstractTab {
             return;
         }
 
-        this.latestSubmittedJob = new JobContentData(inputText, false);
+        this.latestSubmittedJob = new JobContentData(inputText,
+                this.codeResetCheckBox.getValue());
         this.latestSubmittedJob.setExecutorData(this.executorData);
 
         this.getScriptService().submitJob(this.latestSubmittedJob,
@@ -441,19 +523,247 @@ public class ExecutorTab extends AbstractTab {
     }
 
     /**
-     * Retrieves variables.
+     * On file upload (starts new, or resumes failed, chunked upload).
+     */
+    private void runFileUpload() {
+
+        final JavaScriptObject selectedFile = ChunkedFileUploader.getSelectedFile(this.fileUpload);
+
+        if (selectedFile == null) {
+
+            this.fileStatusLabel.setText("No file selected.");
+            return;
+        }
+
+        final ChunkedFileUploader prevUploader = this.fileUploader;
+
+        if ((prevUploader != null) &&
+                prevUploader.isRunning()) {
+
+            return;
+        }
+
+        // same file, failed before? resume; otherwise, start over
+        if ((prevUploader == null) ||
+                prevUploader.isComplete() ||
+                !prevUploader.isSameFile(selectedFile)) {
+
+            this.fileUploader = new ChunkedFileUploader(GWT.getModuleBaseURL() + "chunk",
+                    this.executorData.getId(), "", selectedFile,
+                    new ChunkedFileUploader.UploadListener() {
+
+                        @Override
+                        public void onComplete(final ChunkedFileUploader arg0, final String arg1) {
+
+                            ExecutorTab.this.fileStatusLabel.setText("Uploaded: " + arg0.getFileName());
+                        }
+
+                        @Override
+                        public void onFailure(final ChunkedFileUploader arg0, final String arg1) {
+
+                            ExecutorTab.this.fileStatusLabel.setText("Upload failed: " + arg1
+                                    + " (upload again to resume)");
+                        }
+
+                        @Override
+                        public void onProgress(final ChunkedFileUploader arg0,
+                                               final double arg1, final double arg2) {
+
+                            ExecutorTab.this.fileStatusLabel.setText("Uploading: " + arg0.getFileName()
+                                    + " (" + ((arg2 > 0.0) ? ((int) ((arg1 * 100.0) / arg2)) : 100) + "%)");
+                        }
+                    });
+        }
+
+        this.fileStatusLabel.setText("Uploading: " + this.fileUploader.getFileName());
+        this.fileUploader.start();
+    }
+
+    /**
+     * Reads (appends) new output of latest submitted job, while it runs.
+     */
+    private void runReadOutput() {
+
+        final JobContentData runningJob = this.latestSubmittedJob;
+
+        if ((runningJob == null) || (runningJob.getId() == null)
+                || this.isOutputReadPending || !this.isActiveTab()) {
+
+            return;
+        }
+
+        if (!runningJob.getId().equals(this.outputJobId)) {
+
+            this.outputJobId = runningJob.getId();
+            this.outputOffset = 0L;
+            this.isOutputComplete = this.completedJobs.getList().contains(runningJob);
+
+            if (!this.isOutputComplete) {
+
+                this.outputTextArea.setText("");
+            }
+        }
+
+        if (this.isOutputComplete) {
+
+            return;
+        }
+
+        this.isOutputReadPending = true;
+        this.getScriptService().getJobOutput(this.executorData,
+                this.outputJobId, this.outputOffset,
+                new AsyncCallback<JobOutputChunkData>() {
+
+                    @Override
+                    public void onFailure(final Throwable arg0) {
+
+                        ExecutorTab.this.isOutputReadPending = false;
+                        ExecutorTab.this.handleError("read job output", arg0);
+                    }
+
+                    @Override
+                    public void onSuccess(final JobOutputChunkData arg0) {
+
+                        ExecutorTab.this.isOutputReadPending = false;
+                        ExecutorTab.this.runUpdateOutput(arg0);
+                    }
+                });
+    }
+
+    /**
+     * Adds variable data grid selection handler (reads first value page).
+     *
+     * @param variablesDataGrid Variables data grid.
+     * @param variableScope     Variable scope.
+     */
+    private void addVariableSelectionHandler(
+            final DataGrid<Map.Entry<String, String>> variablesDataGrid,
+            final ExecutorTab.VariableScope variableScope) {
+
+        variablesDataGrid.getSelectionModel().addSelectionChangeHandler(
+                new SelectionChangeEvent.Handler() {
+
+                    @Override
+                    public void onSelectionChange(final SelectionChangeEvent arg0) {
+
+                        final String name = ExecutorTab.this.getSelectedVariableName(
+                                variablesDataGrid);
+
+                        if ((name != null) && !ExecutorTab.this.variableValueTexts
+                                .containsKey(ExecutorTab.buildVariableKey(variableScope, name))) {
+
+                            ExecutorTab.this.runReadVariableValue(variableScope, name, 0);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Builds variable key (for loaded value maps).
+     *
+     * @param variableScope Variable scope.
+     * @param name          Variable name.
+     * @return Variable key.
+     */
+    private static String buildVariableKey(final ExecutorTab.VariableScope variableScope,
+                                           final String name) {
+
+        return variableScope.name() + ":" + name;
+    }
+
+    /**
+     * Gets selected variable name.
+     *
+     * @param variablesDataGrid Variables data grid.
+     * @return Selected variable name if found, null otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    private String getSelectedVariableName(
+            final DataGrid<Map.Entry<String, String>> variablesDataGrid) {
+
+        final Map.Entry<String, String> selectedEntry =
+                ((SingleSelectionModel<Map.Entry<String, String>>) variablesDataGrid
+                        .getSelectionModel()).getSelectedObject();
+
+        return (selectedEntry == null) ? null : selectedEntry.getKey();
+    }
+
+    /**
+     * Reads next value page of selected variable.
      *
      * @param variableScope Variable scope.
-     * @param dataFormat    Data format.
      */
-    private void runReadVariables(final ExecutorTab.VariableScope variableScope,
-                                  final JobDataFormat dataFormat) {
+    private void runReadMoreVariableValue(final ExecutorTab.VariableScope variableScope) {
+
+        final String name = this.getSelectedVariableName(
+                (variableScope == ExecutorTab.VariableScope.engine)
+                        ? this.localVariablesDataGrid : this.globalVariablesDataGrid);
+
+        if (name == null) {
+
+            return;
+        }
+
+        final Integer fromOffset = this.variableValueOffsets.get(
+                ExecutorTab.buildVariableKey(variableScope, name));
+
+        if (fromOffset != null) {
+
+            this.runReadVariableValue(variableScope, name, fromOffset);
+        }
+    }
+
+    /**
+     * Retrieves one variable value page.
+     *
+     * @param variableScope Variable scope.
+     * @param name          Variable name.
+     * @param fromOffset    Char offset to read from.
+     */
+    private void runReadVariableValue(final ExecutorTab.VariableScope variableScope,
+                                      final String name, final int fromOffset) {
 
         JobDataUtils.checkNullObject(variableScope, true);
         ScriptWebApp.showWaitCursor();
 
-        this.getScriptService().getExecutorVariables(this.executorData,
-                variableScope.getValue(), dataFormat.ordinal(), new AsyncCallback<String[][]>() {
+        final JobDataFormat dataFormat = (variableScope == ExecutorTab.VariableScope.engine)
+                ? this.engineFormat : this.globalFormat;
+
+        this.getScriptService().getExecutorVariableValue(this.executorData,
+                variableScope.getValue(), dataFormat.ordinal(), name, fromOffset,
+                new AsyncCallback<JobVariableValueData>() {
+
+                    @Override
+                    public void onFailure(final Throwable arg0) {
+
+                        ScriptWebApp.showDefaultCursor();
+                        ExecutorTab.this.handleError("read " + variableScope
+                                + " variable (" + name + ")", arg0);
+                    }
+
+                    @Override
+                    public void onSuccess(final JobVariableValueData arg0) {
+
+                        ScriptWebApp.showDefaultCursor();
+                        ExecutorTab.this
+                                .runUpdateVariableValue(variableScope, dataFormat, arg0);
+                    }
+                });
+    }
+
+    /**
+     * Retrieves variables (names, types and sizes; values are read on
+     * selection).
+     *
+     * @param variableScope Variable scope.
+     */
+    private void runReadVariables(final ExecutorTab.VariableScope variableScope) {
+
+        JobDataUtils.checkNullObject(variableScope, true);
+        ScriptWebApp.showWaitCursor();
+
+        this.getScriptService().getExecutorVariableInfo(this.executorData,
+                variableScope.getValue(), new AsyncCallback<JobVariableData[]>() {
 
                     @Override
                     public void onFailure(final Throwable arg0) {
@@ -464,7 +774,7 @@ public class ExecutorTab extends AbstractTab {
                     }
 
                     @Override
-                    public void onSuccess(final String[][] arg0) {
+                    public void onSuccess(final JobVariableData[] arg0) {
 
                         ScriptWebApp.showDefaultCursor();
                         ExecutorTab.this
@@ -495,8 +805,12 @@ public class ExecutorTab extends AbstractTab {
 
                 if (this.isActiveTab()) {
 
-                    this.updateJobTextAreas();
-                    this.latestDisplayedJob = this.latestCompletedJob;
+                    // don't clobber output still streaming in
+                    if ((this.outputJobId == null) || this.isOutputComplete) {
+
+                        this.updateJobTextAreas();
+                        this.latestDisplayedJob = this.latestCompletedJob;
+                    }
 
                 } else {
 
@@ -509,6 +823,7 @@ public class ExecutorTab extends AbstractTab {
         }
 
         this.getParentPanel().setTabText(tabIndex, nextTitle);
+        this.runReadOutput();
     }
 
     /**
@@ -595,6 +910,10 @@ public class ExecutorTab extends AbstractTab {
         codeClearButton.setWidth("5em");
         codeButtonPanel.addWest(codeClearButton, 6);
 
+        this.codeResetCheckBox = new CheckBox("Reset");
+        this.codeResetCheckBox.setTitle("Restore engine variables before execute");
+        codeButtonPanel.addWest(this.codeResetCheckBox, 6);
+
         final Button codeSelectButton = new Button("Select",
                 new ClickHandler() {
 
@@ -627,6 +946,28 @@ public class ExecutorTab extends AbstractTab {
         final DockLayoutPanel filesLayoutPanel = new DockLayoutPanel(Style.Unit.EM);
         inputTabPanel.add(filesLayoutPanel, new HTML("Files"));
 
+        final DockLayoutPanel filesButtonPanel = new DockLayoutPanel(Style.Unit.EM);
+        filesLayoutPanel.addNorth(filesButtonPanel, 2);
+
+        final Button filesUploadButton = new Button("Upload",
+                new ClickHandler() {
+
+                    @Override
+                    public void onClick(final ClickEvent arg0) {
+
+                        ExecutorTab.this.getScriptWebApp().setLastClickTime(0L);
+                        ExecutorTab.this.runFileUpload();
+                    }
+                });
+        filesUploadButton.setWidth("5em");
+        filesButtonPanel.addWest(filesUploadButton, 6);
+
+        this.fileUpload = new FileUpload();
+        filesButtonPanel.addWest(this.fileUpload, 20);
+
+        this.fileStatusLabel = new Label();
+        filesLayoutPanel.add(this.fileStatusLabel);
+
         // OUTPUT (west, south/remainder)
         final StackLayoutPanel outputStackPanel = new StackLayoutPanel(Style.Unit.EM);
         westPanel.add(outputStackPanel); // +
@@ -709,13 +1050,26 @@ public class ExecutorTab extends AbstractTab {
                     public void onClick(final ClickEvent arg0) {
 
                         ExecutorTab.this.getScriptWebApp().setLastClickTime(0L);
-                        ExecutorTab.this.runReadVariables(ExecutorTab.VariableScope.global,
-                                ExecutorTab.this.globalFormat);
+                        ExecutorTab.this.runReadVariables(ExecutorTab.VariableScope.global);
                     }
                 });
         globalVariablesSelectButton.setWidth("5em");
         globalVariablesButtonPanel.addWest(globalVariablesSelectButton, 6);
 
+        // Global more button
+        final Button globalVariablesMoreButton = new Button("More",
+                new ClickHandler() {
+
+                    @Override
+                    public void onClick(final ClickEvent arg0) {
+
+                        ExecutorTab.this.getScriptWebApp().setLastClickTime(0L);
+                        ExecutorTab.this.runReadMoreVariableValue(ExecutorTab.VariableScope.global);
+                    }
+                });
+        globalVariablesMoreButton.setWidth("5em");
+        globalVariablesButtonPanel.addWest(globalVariablesMoreButton, 6);
+
         // Global format list
         final ListBox globalVariablesFormatList = JobWidgetUtils.createDataFormatListBox();
         globalVariablesFormatList.addChangeHandler(new ChangeHandler() {
@@ -732,6 +1086,8 @@ public class ExecutorTab extends AbstractTab {
 
         this.globalVariablesDataGrid = JobWidgetUtils
                 .createNameValueDataGrid(new ArrayList<Map.Entry<String, String>>(0));
+        this.addVariableSelectionHandler(this.globalVariablesDataGrid,
+                ExecutorTab.VariableScope.global);
         globalVariablesLayoutPanel.add(this.globalVariablesDataGrid);
 
         // VARIABLES: LOCAL
@@ -751,13 +1107,26 @@ public class ExecutorTab extends AbstractTab {
                     public void onClick(final ClickEvent arg0) {
 
                         ExecutorTab.this.getScriptWebApp().setLastClickTime(0L);
-                        ExecutorTab.this.runReadVariables(ExecutorTab.VariableScope.engine,
-                                ExecutorTab.this.engineFormat);
+                        ExecutorTab.this.runReadVariables(ExecutorTab.VariableScope.engine);
                     }
                 });
         localVariablesSelectButton.setWidth("5em");
         localVariablesButtonPanel.addWest(localVariablesSelectButton, 6);
 
+        // Local more button
+        final Button localVariablesMoreButton = new Button("More",
+                new ClickHandler() {
+
+                    @Override
+                    public void onClick(final ClickEvent arg0) {
+
+                        ExecutorTab.this.getScriptWebApp().setLastClickTime(0L);
+                        ExecutorTab.this.runReadMoreVariableValue(ExecutorTab.VariableScope.engine);
+                    }
+                });
+        localVariablesMoreButton.setWidth("5em");
+        localVariablesButtonPanel.addWest(localVariablesMoreButton, 6);
+
         // Local format list
         final ListBox localVariablesFormatList = JobWidgetUtils.createDataFormatListBox();
         localVariablesFormatList.addChangeHandler(new ChangeHandler() {
@@ -774,6 +1143,8 @@ public class ExecutorTab extends AbstractTab {
 
         this.localVariablesDataGrid = JobWidgetUtils
                 .createNameValueDataGrid(new ArrayList<Map.Entry<String, String>>(0));
+        this.addVariableSelectionHandler(this.localVariablesDataGrid,
+                ExecutorTab.VariableScope.engine);
         localVariablesLayoutPanel.add(this.localVariablesDataGrid);
 
         variablesTabPanel.selectTab(localVariablesLayoutPanel);
@@ -859,6 +1230,109 @@ public class ExecutorTab extends AbstractTab {
         this.latestSubmittedJob = contentData;
     }
 
+    /**
+     * Appends streamed output.
+     *
+     * @param chunkData Output chunk (null if job isn't running).
+     */
+    private void runUpdateOutput(final JobOutputChunkData chunkData) {
+
+        if ((chunkData == null) || this.isOutputComplete
+                || !chunkData.getJobId().equals(this.outputJobId)) {
+
+            return;
+        }
+
+        final String outputText = chunkData.getOutputBody();
+        final boolean isGap = (chunkData.getStartOffset() > this.outputOffset);
+
+        if (isGap || !outputText.isEmpty()) {
+
+            final StringBuilder tempText = new StringBuilder(this.outputTextArea.getText());
+
+            if (isGap) {
+
+                tempText.append(ExecutorTab.DEFAULT_OUTPUT_GAP_TEXT);
+            }
+
+            tempText.append(outputText);
+
+            this.outputTextArea.setText(tempText.toString());
+            this.outputTextArea.getElement().setScrollTop(
+                    this.outputTextArea.getElement().getScrollHeight());
+        }
+
+        this.outputOffset = chunkData.getEndOffset();
+
+        if (chunkData.isMore()) {
+
+            this.runReadOutput();
+        }
+    }
+
+    /**
+     * Updates one variable value (appends page to loaded text).
+     *
+     * @param variableScope Variable scope.
+     * @param dataFormat    Data format (read with).
+     * @param valueData     Value page.
+     */
+    private void runUpdateVariableValue(final ExecutorTab.VariableScope variableScope,
+                                        final JobDataFormat dataFormat,
+                                        final JobVariableValueData valueData) {
+
+        JobDataUtils.checkNullObject(variableScope, true);
+        JobDataUtils.checkNullObject(dataFormat, true);
+        JobDataUtils.checkNullObject(valueData, true);
+
+        final Map<String, String> variables = (variableScope == ExecutorTab.VariableScope.engine)
+                ? this.localVariables : this.globalVariables;
+
+        if (!variables.containsKey(valueData.getName())) {
+
+            // variables were re-read since
+            return;
+        }
+
+        final String variableKey = ExecutorTab.buildVariableKey(variableScope,
+                valueData.getName());
+        String valueText = valueData.getValueBody();
+
+        if (valueData.getStartOffset() > 0) {
+
+            valueText = String.valueOf(this.variableValueTexts.get(variableKey)) + valueText;
+        }
+
+        this.variableValueTexts.put(variableKey, valueText);
+
+        if (valueData.isMore()) {
+
+            this.variableValueOffsets.put(variableKey, valueData.getEndOffset());
+            valueText += "\n[... " + (valueData.getTotalLength() - valueData.getEndOffset())
+                    + " more chars; select More to read ...]";
+
+        } else {
+
+            this.variableValueOffsets.remove(variableKey);
+
+            if (dataFormat == JobDataFormat.binary) {
+
+                try {
+
+                    valueText = JobBinaryUtils.formatText(valueText,
+                            ExecutorTab.DEFAULT_MAX_BINARY_PREVIEW_ELEMENTS);
+
+                } catch (final IllegalArgumentException ex) {
+
+                    valueText = "[unreadable binary value: " + ex.getMessage() + "]";
+                }
+            }
+        }
+
+        variables.put(valueData.getName(), valueText);
+        this.updateVariableDataGrids();
+    }
+
     /**
      * Updates variables.
      *
@@ -866,7 +1340,7 @@ public class ExecutorTab extends AbstractTab {
      * @param variableData  Variable data.
      */
     private void runUpdateVariables(final ExecutorTab.VariableScope variableScope,
-                                    final String[][] variableData) {
+                                    final JobVariableData[] variableData) {
 
         JobDataUtils.checkNullObject(variableScope, true);
         JobDataUtils.checkNullObject(variableData, true);
@@ -884,9 +1358,24 @@ public class ExecutorTab extends AbstractTab {
 
         variables.clear();
 
-        for (final String[] item : variableData) {
+        // forget loaded values for this scope
+        final String keyPrefix = ExecutorTab.buildVariableKey(variableScope, "");
+        final Iterator<String> valueKeys = this.variableValueTexts.keySet().iterator();
+
+        while (valueKeys.hasNext()) {
+
+            final String valueKey = valueKeys.next();
+
+            if (valueKey.startsWith(keyPrefix)) {
+
+                valueKeys.remove();
+                this.variableValueOffsets.remove(valueKey);
+            }
+        }
+
+        for (final JobVariableData item : variableData) {
 
-            variables.put(item[0], item[1]);
+            variables.put(item.getName(), item.getSummaryText());
         }
 
         this.updateVariableDataGrids();
@@ -68,6 +68,53 @@ public final class JobWidgetUtils {
         return tempText.toString();
     }
 
+    /**
+     * Build job timing text (phase breakdown, in ms).
+     *
+     * @param contentData Content data.
+     * @return Timing text (empty if not yet dequeued).
+     */
+    public static String buildJobTimingText(final JobContentData contentData) {
+
+        JobDataUtils.checkNullObject(contentData, true);
+
+        final StringBuilder tempText = new StringBuilder();
+        final JobTimingData timingData = contentData.getTimingData();
+
+        if (timingData != null) {
+
+            for (final JobTimingPhase phase : JobTimingPhase.values()) {
+
+                if (phase != JobTimingPhase.total) {
+
+                    if (tempText.length() > 0) {
+
+                        tempText.append(" / ");
+                    }
+
+                    tempText.append(phase.getPhaseTitle().charAt(0)).append(' ')
+                            .append(JobWidgetUtils.formatTimingMillis(
+                                    timingData.getPhaseTime(phase)));
+                }
+            }
+
+            tempText.append(" ms");
+        }
+
+        return tempText.toString();
+    }
+
+    /**
+     * Format timing ns as ms (tenths).
+     *
+     * @param input Input (ns).
+     * @return Formatted text.
+     */
+    private static String formatTimingMillis(final long input) {
+
+        return String.valueOf((input / 100000L) / 10.0);
+    }
+
     /**
      * Build data format list box.
      *
@@ -273,6 +320,29 @@ public final class JobWidgetUtils {
         result.addColumn(fromColumn, "From");
         result.setColumnWidth(fromColumn, 10.0, Style.Unit.EM);
 
+        // timing column
+        final Column<JobContentData, String> timingColumn = new Column<JobContentData, String>(
+                new TextCell()) {
+            @Override
+            public String getValue(final JobContentData arg0) {
+
+                return JobWidgetUtils.formatCellText(
+                        JobWidgetUtils.buildJobTimingText(arg0), true);
+            }
+        };
+        timingColumn.setSortable(true);
+        sortHandler.setComparator(timingColumn, new Comparator<JobContentData>() {
+
+            @Override
+            public int compare(final JobContentData o1, final JobContentData o2) {
+
+                return Long.compare(JobWidgetUtils.getJobTotalTime(o1),
+                        JobWidgetUtils.getJobTotalTime(o2));
+            }
+        });
+        result.addColumn(timingColumn, "Timing");
+        result.setColumnWidth(timingColumn, 20.0, Style.Unit.EM);
+
         // STYLE
         result.setRowStyles(new RowStyles<JobContentData>() {
 
@@ -675,6 +745,25 @@ public final class JobWidgetUtils {
         return result;
     }
 
+    /**
+     * Gets job total time.
+     *
+     * @param contentData Content data.
+     * @return Total time (ns; 0L if not yet completed).
+     */
+    private static long getJobTotalTime(final JobContentData contentData) {
+
+        final JobTimingData timingData = contentData.getTimingData();
+        long result = 0L;
+
+        if (timingData != null) {
+
+            result = timingData.getPhaseTime(JobTimingPhase.total);
+        }
+
+        return result;
+    }
+
     /**
      * Build cell text.
      *
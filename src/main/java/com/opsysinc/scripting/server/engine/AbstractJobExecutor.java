@@ -1,5 +1,6 @@
 package com.opsysinc.scripting.server.engine;
 
+import com.opsysinc.scripting.server.util.FormatUtils;
 import com.opsysinc.scripting.server.util.ThreadLocalKey;
 import com.opsysinc.scripting.server.util.ThreadLocalMap;
 import com.opsysinc.scripting.shared.*;
@@ -9,12 +10,20 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,11 +39,6 @@ public abstract class AbstractJobExecutor implements JobExecutor {
      */
     public static final long DEFAULT_THREAD_JOIN_WAIT_MS = 5000L;
 
-    /**
-     * Default job wait in ms.
-     */
-    public static final long DEFAULT_JOB_WAIT_MS = 500L;
-
     /**
      * Default none text.
      */
@@ -46,9 +50,56 @@ public abstract class AbstractJobExecutor implements JobExecutor {
     public static final String DEFAULT_ERROR_PREFIX_TEXT = "Error: ";
 
     /**
-     * Default thread join wait in ms.
+     * Default drained job response text.
+     */
+    public static final String DEFAULT_DRAINED_TEXT = "Drained from executor queue (not run).";
+
+    /**
+     * Default max completed jobs returned per read (newest are kept).
+     */
+    public static final int DEFAULT_MAX_COMPLETED_READ_JOBS = 200;
+
+    /**
+     * Default max pending (incl. running) jobs returned per read (next to
+     * run are kept).
      */
-    public static final int DEFAULT_MAX_COMPLETED_JOBS = 20;
+    public static final int DEFAULT_MAX_PENDING_READ_JOBS = 200;
+
+    /**
+     * Default max output bytes returned per read.
+     */
+    public static final int DEFAULT_MAX_OUTPUT_READ_BYTES = 65536;
+
+    /**
+     * Default folder for spilled job output (w/in executor files).
+     */
+    public static final String DEFAULT_OUTPUT_FOLDER = "output";
+
+    /**
+     * Default spilled job output file suffix.
+     */
+    public static final String DEFAULT_OUTPUT_FILE_SUFFIX = ".log";
+
+    /**
+     * Default max variable value chars returned per read (preview budget).
+     */
+    public static final int DEFAULT_MAX_VARIABLE_READ_CHARS = 16384;
+
+    /**
+     * Default max formatted variable values kept (per executor).
+     */
+    public static final int DEFAULT_MAX_FORMATTED_VARIABLES = 64;
+
+    /**
+     * Default max formatted variable chars kept (per executor).
+     */
+    public static final long DEFAULT_MAX_FORMATTED_VARIABLE_CHARS = 4194304L;
+
+    /**
+     * Default max chars of one formatted variable value kept (larger values
+     * are formatted per read).
+     */
+    public static final int DEFAULT_MAX_FORMATTED_VALUE_CHARS = 262144;
 
     /**
      * Default base folder for files.
@@ -66,94 +117,102 @@ public abstract class AbstractJobExecutor implements JobExecutor {
     private final JobManager jobManager;
 
     /**
-     * Worker.
+     * Workers (one per engine replica; null if not started).
      */
-    private Thread worker;
+    private volatile List<Thread> workers;
 
     /**
-     * Pending jobs.
+     * Engine replica (worker) count (see resize()).
      */
-    private BlockingDeque<JobContentData> pendingJobs;
+    private volatile int replicaCount;
 
     /**
-     * Completed jobs.
+     * Worker generation (bumped as workers are stopped; stale workers exit
+     * instead of taking another job).
      */
-    private BlockingDeque<JobContentData> completedJobs;
+    private volatile int workerGeneration;
 
     /**
-     * Job executor data.
+     * Live worker count (all generations).
      */
-    private JobExecutorData executorData;
+    private AtomicInteger liveWorkerCount;
 
     /**
-     * Thread local map on creation (should be obtained with every submit
-     * but...no).
+     * True while a resize waits for stale workers to exit, false otherwise.
      */
-    private Map<ThreadLocalKey, Object> threadMap;
+    private AtomicBoolean isRestartPending;
 
     /**
-     * File base folder.
+     * Replica count to apply on pending restart.
      */
-    private File fileBase;
-
-    static {
-
-        LOGGER = Logger.getLogger(AbstractJobExecutor.class.getName());
-        DEFAULT_FILE_BASEDIR = new File(FileUtils.getTempDirectoryPath(), "scriptwebapp");
-    }
+    private int pendingReplicaCount;
 
     /**
-     * Executor runnable.
+     * Pending jobs.
      */
-    private final Runnable workerRunnable = new Runnable() {
-
-        @Override
-        public void run() {
-
-            AbstractJobExecutor.LOGGER.log(Level.INFO, "Executor started ("
-                    + Thread.currentThread().getName() + "; "
-                    + AbstractJobExecutor.this.executorData + ").");
-            AbstractJobExecutor.this.jobManager.registerThread();
-
-            try {
+    private BlockingDeque<JobContentData> pendingJobs;
 
-                while (!Thread.interrupted()) {
+    /**
+     * Running (in-flight) jobs.
+     */
+    private Set<JobContentData> runningJobs;
 
-                    try {
+    /**
+     * Pending job enqueue times in ns (by job id).
+     */
+    private Map<String, Long> pendingTimes;
 
-                        AbstractJobExecutor.this.runWork();
+    /**
+     * Running job output buffers (by job id).
+     */
+    private Map<String, JobOutputBuffer> outputBuffers;
 
-                    } catch (final InterruptedException ex) {
+    /**
+     * Job timing stats (completed jobs).
+     */
+    private JobTimingStats timingStats;
 
-                        AbstractJobExecutor.LOGGER.log(Level.FINE, "Exiting",
-                                ex);
-                        break;
+    /**
+     * Job metrics (counters + histograms).
+     */
+    private JobMetrics metrics;
 
-                    } catch (final Throwable ex) {
+    /**
+     * Completed jobs (by modified time).
+     */
+    private CompletedJobStore completedJobs;
 
-                        AbstractJobExecutor.LOGGER.log(Level.WARNING,
-                                "Can't execute", ex);
-                    }
-                }
+    /**
+     * Formatted variable values (valid until next job completes).
+     */
+    private VariableFormatCache variableFormats;
 
-            } catch (final Throwable ex) {
+    /**
+     * Job executor data.
+     */
+    private JobExecutorData executorData;
 
-                AbstractJobExecutor.LOGGER.log(Level.WARNING,
-                        "Executor error (" + Thread.currentThread().getName()
-                                + "; " + AbstractJobExecutor.this.executorData
-                                + ").", ex);
+    /**
+     * Thread local map on creation (should be obtained with every submit
+     * but...no).
+     */
+    private Map<ThreadLocalKey, Object> threadMap;
 
-            } finally {
+    /**
+     * File base folder.
+     */
+    private File fileBase;
 
-                AbstractJobExecutor.this.jobManager.deRegisterThread();
+    /**
+     * File base index (while started).
+     */
+    private volatile JobFileIndex fileIndex;
 
-                AbstractJobExecutor.LOGGER.log(Level.INFO, "Executor stopped ("
-                        + Thread.currentThread().getName() + "; "
-                        + AbstractJobExecutor.this.executorData + ").");
-            }
-        }
+    static {
 
-    };
+        LOGGER = Logger.getLogger(AbstractJobExecutor.class.getName());
+        DEFAULT_FILE_BASEDIR = new File(FileUtils.getTempDirectoryPath(), "scriptwebapp");
+    }
 
     /**
      * Basic ctor.
@@ -163,30 +222,11 @@ public abstract class AbstractJobExecutor implements JobExecutor {
 
         this.jobManager = jobManager;
         this.setExecutorData(executorData, false);
+        this.replicaCount = Math.max(1, executorData.getReplicaCount());
 
         this.init();
     }
 
-    /*
-     * (non-Javadoc)
-     *
-     * @see com.opsysinc.scripting.engine.JobManager#pollPendingJob(boolean)
-     */
-    @Override
-    public JobContentData checkNextPendingJob(final boolean isToBlock)
-            throws InterruptedException {
-
-        JobContentData pendingJob = this.pendingJobs.peek();
-
-        while (isToBlock && (pendingJob == null)) {
-
-            Thread.sleep(AbstractJobExecutor.DEFAULT_JOB_WAIT_MS);
-            pendingJob = this.pendingJobs.peek();
-        }
-
-        return pendingJob;
-    }
-
     /*
      * (non-Javadoc)
      *
@@ -195,7 +235,8 @@ public abstract class AbstractJobExecutor implements JobExecutor {
     @Override
     public synchronized void cleanUp() {
 
-        if (this.worker == null) {
+        // cancels any pending (resize) restart
+        if ((this.workers == null) && !this.isRestartPending.getAndSet(false)) {
 
             // ignore, return
             return;
@@ -203,8 +244,10 @@ public abstract class AbstractJobExecutor implements JobExecutor {
 
         try {
 
-            this.worker.interrupt();
-            this.worker.join(AbstractJobExecutor.DEFAULT_THREAD_JOIN_WAIT_MS);
+            if (this.workers != null) {
+
+                AbstractJobExecutor.joinWorkers(this.stopWorkers());
+            }
 
             this.cleanUpImpl();
             this.cleanUpFiles();
@@ -215,7 +258,7 @@ public abstract class AbstractJobExecutor implements JobExecutor {
 
         } finally {
 
-            this.worker = null;
+            this.workers = null;
         }
     }
 
@@ -226,6 +269,12 @@ public abstract class AbstractJobExecutor implements JobExecutor {
      */
     private void cleanUpFiles() throws IOException {
 
+        if (this.fileIndex != null) {
+
+            this.fileIndex.close();
+            this.fileIndex = null;
+        }
+
         FileUtils.deleteDirectory(this.fileBase);
         AbstractJobExecutor.LOGGER.log(Level.INFO, "Executor folder removed: " +
                 this.fileBase.getAbsolutePath());
@@ -250,15 +299,61 @@ public abstract class AbstractJobExecutor implements JobExecutor {
 
         JobContentUtils.checkJobStateData(completedJob, false);
 
-        synchronized (this.completedJobs) {
+        // bindings may have changed (incl. in place)
+        this.variableFormats.invalidate();
+
+        this.completedJobs.add(completedJob);
+        this.jobManager.recordJobChange(completedJob);
+    }
+
+    /**
+     * Creates job output buffer (per executor output budget).
+     *
+     * @param contentData Content data.
+     * @return Output buffer.
+     */
+    private JobOutputBuffer createOutputBuffer(final JobContentData contentData) {
+
+        File spillFile = null;
+
+        if (this.executorData.isOutputSpilled()) {
 
-            this.completedJobs.addLast(completedJob);
+            final File outputFolder = new File(this.fileBase,
+                    AbstractJobExecutor.DEFAULT_OUTPUT_FOLDER);
 
-            while (this.completedJobs.size() > AbstractJobExecutor.DEFAULT_MAX_COMPLETED_JOBS) {
+            if (outputFolder.isDirectory() || outputFolder.mkdirs()) {
 
-                this.completedJobs.removeFirst();
+                spillFile = new File(outputFolder, contentData.getId()
+                        + AbstractJobExecutor.DEFAULT_OUTPUT_FILE_SUFFIX);
             }
         }
+
+        return new JobOutputBuffer(this.executorData.getOutputHeadSize(),
+                this.executorData.getOutputTailSize(), spillFile);
+    }
+
+    /**
+     * Deletes job's spilled output file, if any (once the job is dropped).
+     *
+     * @param contentData Content data.
+     */
+    private void deleteOutputFile(final JobContentData contentData) {
+
+        final JobOutputData outputData = contentData.getOutputData();
+
+        if ((outputData == null)
+                || JobDataUtils.checkEmptyString(outputData.getOutputPath(), false)) {
+
+            return;
+        }
+
+        final File outputFile = new File(this.fileBase, outputData.getOutputPath());
+
+        if (outputFile.isFile() && !outputFile.delete()) {
+
+            AbstractJobExecutor.LOGGER.log(Level.WARNING, "Can't delete output file ("
+                    + outputFile.getAbsolutePath() + ").");
+        }
     }
 
     /*
@@ -271,14 +366,7 @@ public abstract class AbstractJobExecutor implements JobExecutor {
     public boolean getAllCompletedJobs(
             final Collection<JobContentData> target, final boolean isClearFirst) {
 
-        JobDataUtils.checkNullObject(target, true);
-
-        if (isClearFirst) {
-
-            target.clear();
-        }
-
-        return target.addAll(this.completedJobs);
+        return this.completedJobs.getAll(target, isClearFirst);
     }
 
     /*
@@ -303,8 +391,8 @@ public abstract class AbstractJobExecutor implements JobExecutor {
     }
 
     @Override
-    public boolean getCompletedJobsFromTime(final long timeInMS,
-                                            final Collection<JobContentData> target, final boolean isClearFirst) {
+    public boolean getAllRunningJobs(
+            final Collection<JobContentData> target, final boolean isClearFirst) {
 
         JobDataUtils.checkNullObject(target, true);
 
@@ -313,16 +401,59 @@ public abstract class AbstractJobExecutor implements JobExecutor {
             target.clear();
         }
 
+        return target.addAll(this.runningJobs);
+    }
+
+    @Override
+    public boolean getCompletedJobsFromTime(final long timeInMS,
+                                            final Collection<JobContentData> target, final boolean isClearFirst) {
+
+        return this.completedJobs.getFromTime(timeInMS,
+                AbstractJobExecutor.DEFAULT_MAX_COMPLETED_READ_JOBS, target, isClearFirst);
+    }
+
+    @Override
+    public boolean getJobs(final Collection<String> jobIds,
+                           final Collection<JobContentData> target,
+                           final boolean isClearFirst) {
+
+        JobDataUtils.checkNullObject(jobIds, true);
+        JobDataUtils.checkNullObject(target, true);
         boolean result = false;
 
-        for (final JobContentData item : this.completedJobs) {
+        if (isClearFirst && !target.isEmpty()) {
 
-            if (item.getModifiedTime() > timeInMS) {
+            target.clear();
+            result = true;
+        }
 
-                if (target.add(item)) {
+        // pending, then running, then completed: jobs only move forward,
+        // so one that moves mid-scan is still found
+        final Set<String> workIds = new HashSet<>(jobIds);
 
-                    result = true;
-                }
+        for (final JobContentData item : this.pendingJobs) {
+
+            if (workIds.remove(item.getId()) && target.add(item)) {
+
+                result = true;
+            }
+        }
+
+        for (final JobContentData item : this.runningJobs) {
+
+            if (workIds.remove(item.getId()) && target.add(item)) {
+
+                result = true;
+            }
+        }
+
+        for (final String item : workIds) {
+
+            final JobContentData completedJob = this.completedJobs.get(item);
+
+            if ((completedJob != null) && target.add(completedJob)) {
+
+                result = true;
             }
         }
 
@@ -346,6 +477,31 @@ public abstract class AbstractJobExecutor implements JobExecutor {
         return this.jobManager;
     }
 
+    @Override
+    public JobOutputChunkData getJobOutput(final String jobId,
+                                           final long fromOffset) {
+
+        JobDataUtils.checkEmptyString(jobId, true);
+        final JobOutputBuffer outputBuffer = this.outputBuffers.get(jobId);
+
+        if (outputBuffer == null) {
+
+            return null;
+        }
+
+        final JobOutputChunkData result = outputBuffer.readChunk(fromOffset,
+                AbstractJobExecutor.DEFAULT_MAX_OUTPUT_READ_BYTES);
+        result.setJobId(jobId);
+
+        return result;
+    }
+
+    @Override
+    public int getReplicaCount() {
+
+        return this.replicaCount;
+    }
+
     @Override
     public boolean getPendingJobsFromTime(final long timeInMS,
                                           final Collection<JobContentData> target, final boolean isClearFirst) {
@@ -361,20 +517,223 @@ public abstract class AbstractJobExecutor implements JobExecutor {
             }
         }
 
+        // running jobs are still "pending" from the client's perspective
+        final List<JobContentData> foundJobs = new ArrayList<>();
+
+        for (final JobContentData item : this.runningJobs) {
+
+            if (item.getModifiedTime() > timeInMS) {
+
+                foundJobs.add(item);
+            }
+        }
+
         for (final JobContentData item : this.pendingJobs) {
 
+            if (foundJobs.size() >= AbstractJobExecutor.DEFAULT_MAX_PENDING_READ_JOBS) {
+
+                break;
+            }
+
             if (item.getModifiedTime() > timeInMS) {
 
-                if (target.add(item)) {
+                foundJobs.add(item);
+            }
+        }
 
-                    result = true;
-                }
+        if (target.addAll(foundJobs)) {
+
+            result = true;
+        }
+
+        return result;
+    }
+
+    @Override
+    public boolean getVariableInfo(final int variableScope,
+                                   final List<JobVariableData> target,
+                                   final boolean isClearFirst) {
+
+        JobDataUtils.checkNullObject(target, true);
+        boolean result = false;
+
+        if (isClearFirst) {
+
+            if (result = !target.isEmpty()) {
+
+                target.clear();
+            }
+        }
+
+        final Map<String, Object> variables = new TreeMap<>();
+        this.getVariableObjectsImpl(variableScope, variables, false);
+
+        for (final Map.Entry<String, Object> item : variables.entrySet()) {
+
+            final Object valueObject = item.getValue();
+
+            if (target.add(new JobVariableData(item.getKey(),
+                    (valueObject == null) ? null : valueObject.getClass().getName(),
+                    FormatUtils.getObjectLength(valueObject),
+                    FormatUtils.estimateObjectSize(valueObject)))) {
+
+                result = true;
             }
         }
 
         return result;
     }
 
+    @Override
+    public JobVariableValueData getVariableValue(final int variableScope,
+                                                 final int variableFormat,
+                                                 final String name,
+                                                 final int fromOffset) {
+
+        JobDataUtils.checkEmptyString(name, true);
+        final JobDataFormat dataFormat = AbstractJobExecutor.getDataFormat(variableFormat);
+
+        // only this entry is formatted
+        final Object valueObject = this.getVariableObjectImpl(variableScope, name);
+
+        // binary values are already size-bounded and only decode whole
+        if (dataFormat == JobDataFormat.binary) {
+
+            final String valueText = this.formatVariable(variableScope,
+                    variableFormat, name, valueObject);
+            final int startOffset = Math.min(Math.max(fromOffset, 0),
+                    valueText.length());
+
+            return AbstractJobExecutor.buildValuePage(name, startOffset,
+                    valueText.length(), valueText.substring(startOffset));
+        }
+
+        String valueText = this.variableFormats.getIfPresent(variableScope,
+                dataFormat, name, valueObject);
+
+        if (valueText == null) {
+
+            // stream, keeping whole value only if small enough to cache
+            final int startOffset = Math.max(fromOffset, 0);
+            final VariablePageWriter pageWriter = new VariablePageWriter(startOffset,
+                    AbstractJobExecutor.DEFAULT_MAX_VARIABLE_READ_CHARS,
+                    this.variableFormats.getMaxValueChars());
+
+            try {
+
+                FormatUtils.formatObject(valueObject, dataFormat, pageWriter);
+
+            } catch (final IOException ex) {
+
+                // page writers don't throw
+                throw new IllegalStateException(ex);
+            }
+
+            valueText = pageWriter.getValueText();
+
+            if (valueText == null) {
+
+                final int totalLength = (int) pageWriter.getTotalChars();
+
+                return AbstractJobExecutor.buildValuePage(name,
+                        Math.min(startOffset, totalLength), totalLength,
+                        pageWriter.getPageText());
+            }
+
+            this.variableFormats.put(variableScope, dataFormat, name,
+                    valueObject, valueText);
+        }
+
+        final int startOffset = Math.min(Math.max(fromOffset, 0), valueText.length());
+        final int endOffset = Math.min(startOffset
+                + AbstractJobExecutor.DEFAULT_MAX_VARIABLE_READ_CHARS, valueText.length());
+
+        return AbstractJobExecutor.buildValuePage(name, startOffset,
+                valueText.length(), valueText.substring(startOffset, endOffset));
+    }
+
+    /**
+     * Builds variable value page (keeping surrogate pairs whole).
+     *
+     * @param name        Variable name.
+     * @param startOffset Page start offset.
+     * @param totalLength Total value chars.
+     * @param pageText    Page text (from start offset).
+     * @return Value page.
+     */
+    private static JobVariableValueData buildValuePage(final String name,
+                                                       final int startOffset,
+                                                       final int totalLength,
+                                                       final String pageText) {
+
+        int endOffset = startOffset + pageText.length();
+
+        // keep surrogate pairs whole
+        if ((endOffset < totalLength) && (endOffset > startOffset)
+                && Character.isHighSurrogate(pageText.charAt(pageText.length() - 1))) {
+
+            endOffset--;
+        }
+
+        return new JobVariableValueData(name, startOffset, endOffset,
+                totalLength, pageText.substring(0, endOffset - startOffset));
+    }
+
+    /**
+     * Gets data format (by ordinal).
+     *
+     * @param variableFormat Variable format ordinal.
+     * @return Data format.
+     */
+    private static JobDataFormat getDataFormat(final int variableFormat) {
+
+        if ((variableFormat < 0)
+                || (variableFormat >= JobDataFormat.values().length)) {
+
+            throw new IllegalArgumentException("invalid input (variableFormat)");
+        }
+
+        return JobDataFormat.values()[variableFormat];
+    }
+
+    /**
+     * Formats variable value (cached until next job completes).
+     *
+     * @param variableScope  Variable scope.
+     * @param variableFormat Variable format.
+     * @param name           Variable name.
+     * @param valueObject    Variable object (may be null).
+     * @return Formatted value.
+     */
+    protected String formatVariable(final int variableScope, final int variableFormat,
+                                    final String name, final Object valueObject) {
+
+        return this.variableFormats.format(variableScope,
+                AbstractJobExecutor.getDataFormat(variableFormat), name, valueObject);
+    }
+
+    /**
+     * Get variable object implementation.
+     *
+     * @param variableScope Variable scope.
+     * @param name          Variable name.
+     * @return Variable object if found, null otherwise.
+     */
+    protected abstract Object getVariableObjectImpl(final int variableScope,
+                                                    final String name);
+
+    /**
+     * Get variable objects implementation (unformatted).
+     *
+     * @param variableScope Variable scope.
+     * @param target        Target map.
+     * @param isClearFirst  True to clear map before adding, false otherwise.
+     * @return True if target was modified, false otherwise.
+     */
+    protected abstract boolean getVariableObjectsImpl(final int variableScope,
+                                                      final Map<String, Object> target,
+                                                      final boolean isClearFirst);
+
     @Override
     public boolean getVariables(final int variableScope, final int variableFormat,
                                 final Map<String, String> target, final boolean isClearFirst) {
@@ -411,42 +770,94 @@ public abstract class AbstractJobExecutor implements JobExecutor {
                                                 final Map<String, String> target, final boolean isClearFirst);
 
     @Override
-    public boolean getFiles(final String basePath,
-                            final List<JobFileData> target,
-                            final boolean isClearFirst) {
+    public long getRetainedJobBytes() {
 
-        JobFileUtils.checkBadFilePath(basePath, true);
-        JobDataUtils.checkNullObject(target, true);
+        return this.completedJobs.getTotalBytes();
+    }
 
-        boolean result = false;
+    @Override
+    public int getRetainedJobCount() {
 
-        if (isClearFirst) {
+        return this.completedJobs.getSize();
+    }
 
-            if (result = !target.isEmpty()) {
+    @Override
+    public boolean getWorkerThreads(final Collection<Thread> target,
+                                    final boolean isClearFirst) {
 
-                target.clear();
-            }
+        JobDataUtils.checkNullObject(target, true);
+
+        if (isClearFirst) {
+
+            target.clear();
         }
 
-        final File searchPath = new File(this.fileBase.getAbsolutePath(), basePath);
+        final List<Thread> workWorkers = this.workers;
+
+        return ((workWorkers != null) && target.addAll(workWorkers));
+    }
+
+    @Override
+    public JobMetrics getMetrics() {
+
+        return this.metrics;
+    }
+
+    @Override
+    public CompiledScriptCache getCompiledScriptCache() {
+
+        // no compiled scripts by default
+        return null;
+    }
+
+    @Override
+    public int getPendingJobCount() {
+
+        return this.pendingJobs.size();
+    }
+
+    @Override
+    public int getRunningJobCount() {
+
+        return this.runningJobs.size();
+    }
+
+    @Override
+    public JobTimingStatsData getTimingStats() {
+
+        return this.timingStats.getStatsData();
+    }
+
+    @Override
+    public void resetStats() {
+
+        this.timingStats.reset();
+        this.metrics.reset();
+    }
+
+    @Override
+    public JobFilesData getFiles(final String basePath,
+                                 final long fromVersion,
+                                 final int fromIndex,
+                                 final int maxCount,
+                                 final int sortOrder,
+                                 final boolean isDescending) {
 
-        for (final File item : FileUtils.listFiles(searchPath, null, false)) {
+        if ((sortOrder < 0)
+                || (sortOrder >= JobFileSortOrder.values().length)) {
 
-            final JobFileData fileData = new JobFileData(this.executorData,
-                    basePath, item.getName(),
-                    (item.isFile() ? JobFileType.file : JobFileType.folder),
-                    (item.isFile() ? item.length() : -1L));
+            throw new IllegalArgumentException("invalid input (sortOrder)");
+        }
 
-            fileData.setCreatedTime(item.lastModified());
-            fileData.setModifiedTime(item.lastModified());
+        final JobFileIndex workIndex = this.fileIndex;
 
-            if (target.add(fileData)) {
+        if (workIndex == null) {
 
-                result = true;
-            }
+            throw new IllegalStateException("executor not started");
         }
 
-        return result;
+        return workIndex.getFiles(basePath, fromVersion, fromIndex, maxCount,
+                JobFileSortOrder.values()[sortOrder], isDescending);
     }
 
     /**
@@ -455,7 +866,33 @@ public abstract class AbstractJobExecutor implements JobExecutor {
     private void init() {
 
         this.pendingJobs = new LinkedBlockingDeque<>();
-        this.completedJobs = new LinkedBlockingDeque<>();
+        this.runningJobs = Collections.newSetFromMap(
+                new ConcurrentHashMap<JobContentData, Boolean>());
+        this.pendingTimes = new ConcurrentHashMap<>();
+        this.liveWorkerCount = new AtomicInteger();
+        this.isRestartPending = new AtomicBoolean();
+        this.outputBuffers = new ConcurrentHashMap<>();
+        this.timingStats = new JobTimingStats();
+        this.metrics = new JobMetrics();
+        this.completedJobs = new CompletedJobStore(
+                this.executorData.getCompletedJobCount(),
+                this.executorData.getCompletedJobBytes(),
+                this.executorData.getCompletedJobAge(),
+                new CompletedJobStore.RemovalListener() {
+
+                    @Override
+                    public void jobRemoved(final JobContentData contentData) {
+
+                        AbstractJobExecutor.this.jobManager.recordJobRemoval(
+                                AbstractJobExecutor.this.executorData,
+                                contentData.getId());
+                        AbstractJobExecutor.this.deleteOutputFile(contentData);
+                    }
+                });
+        this.variableFormats = new VariableFormatCache(
+                AbstractJobExecutor.DEFAULT_MAX_FORMATTED_VARIABLES,
+                AbstractJobExecutor.DEFAULT_MAX_FORMATTED_VARIABLE_CHARS,
+                AbstractJobExecutor.DEFAULT_MAX_FORMATTED_VALUE_CHARS);
         this.threadMap = Collections.unmodifiableMap(ThreadLocalMap
                 .getInstance().get());
     }
@@ -468,8 +905,34 @@ public abstract class AbstractJobExecutor implements JobExecutor {
     @Override
     public boolean removeAllCompletedJobs() {
 
-        final boolean result = !this.completedJobs.isEmpty();
-        this.completedJobs.clear();
+        return this.completedJobs.clear();
+    }
+
+    @Override
+    public int drainPendingJobs() {
+
+        int result = 0;
+        JobContentData pendingJob = this.pendingJobs.pollFirst();
+
+        while (pendingJob != null) {
+
+            this.pendingTimes.remove(pendingJob.getId());
+
+            pendingJob.setResponseData(new JobResponseData(
+                    AbstractJobExecutor.DEFAULT_DRAINED_TEXT));
+            pendingJob.setStateAndStatus(JobState.completed, JobStatus.failure);
+            this.completeJob(pendingJob);
+            this.metrics.recordDrained();
+
+            result++;
+            pendingJob = this.pendingJobs.pollFirst();
+        }
+
+        if (result > 0) {
+
+            AbstractJobExecutor.LOGGER.log(Level.INFO, "Jobs drained ("
+                    + this.executorData + "; " + result + " jobs).");
+        }
 
         return result;
     }
@@ -482,8 +945,18 @@ public abstract class AbstractJobExecutor implements JobExecutor {
     @Override
     public boolean removeAllPendingJobs() {
 
-        final boolean result = !this.pendingJobs.isEmpty();
-        this.pendingJobs.clear();
+        boolean result = false;
+        JobContentData pendingJob = this.pendingJobs.pollFirst();
+
+        while (pendingJob != null) {
+
+            this.pendingTimes.remove(pendingJob.getId());
+            this.jobManager.recordJobRemoval(this.executorData,
+                    pendingJob.getId());
+
+            result = true;
+            pendingJob = this.pendingJobs.pollFirst();
+        }
 
         return result;
     }
@@ -497,18 +970,7 @@ public abstract class AbstractJobExecutor implements JobExecutor {
     public JobContentData removeNextCompletedJob(final boolean isToBlock)
             throws InterruptedException {
 
-        final JobContentData completedJob;
-
-        if (isToBlock) {
-
-            completedJob = this.completedJobs.takeFirst();
-
-        } else {
-
-            completedJob = this.completedJobs.pollFirst();
-        }
-
-        return completedJob;
+        return this.completedJobs.removeFirst(isToBlock);
     }
 
     /*
@@ -531,9 +993,37 @@ public abstract class AbstractJobExecutor implements JobExecutor {
             pendingJob = this.pendingJobs.pollFirst();
         }
 
+        if (pendingJob != null) {
+
+            this.pendingTimes.remove(pendingJob.getId());
+            this.jobManager.recordJobRemoval(this.executorData,
+                    pendingJob.getId());
+        }
+
         return pendingJob;
     }
 
+    /**
+     * Takes next pending job for a worker (blocks). Unlike
+     * removeNextPendingJob(), the job isn't removed: it moves straight to
+     * running and keeps its enqueue time.
+     *
+     * @return Taken job.
+     * @throws InterruptedException Interrupted exception.
+     */
+    private AbstractJobExecutor.TakenJob takeNextPendingJob()
+            throws InterruptedException {
+
+        final JobContentData contentData = this.pendingJobs.takeFirst();
+        final long dequeuedAt = System.nanoTime();
+        final Long pendingAt = this.pendingTimes.remove(contentData.getId());
+
+        this.runningJobs.add(contentData);
+
+        return new AbstractJobExecutor.TakenJob(contentData,
+                (pendingAt == null) ? dequeuedAt : pendingAt, dequeuedAt);
+    }
+
     /**
      * Build script engine.
      */
@@ -543,6 +1033,137 @@ public abstract class AbstractJobExecutor implements JobExecutor {
         this.removeAllCompletedJobs();
 
         this.resetScriptEngineImpl();
+        this.variableFormats.invalidate();
+    }
+
+    @Override
+    public synchronized void resetEngine() {
+
+        // clear before draining, so drained jobs stay visible
+        this.removeAllCompletedJobs();
+        this.drainPendingJobs();
+
+        this.resetScriptEngineImpl();
+        this.variableFormats.invalidate();
+
+        AbstractJobExecutor.LOGGER.log(Level.INFO, "Executor reset ("
+                + this.executorData + ").");
+    }
+
+    @Override
+    public void resize(final int replicaCount) {
+
+        if (replicaCount < 1) {
+
+            throw new IllegalArgumentException("invalid input (replicaCount)");
+        }
+
+        final List<Thread> oldWorkers;
+
+        synchronized (this) {
+
+            if (this.isRestartPending.get()) {
+
+                // picked up by pending restart
+                this.pendingReplicaCount = replicaCount;
+                return;
+            }
+
+            if (replicaCount == this.replicaCount) {
+
+                // ignore, return
+                return;
+            }
+
+            if (this.workers == null) {
+
+                // not started; rebuild in place
+                this.applyReplicaCount(replicaCount);
+                return;
+            }
+
+            this.pendingReplicaCount = replicaCount;
+            this.isRestartPending.set(true);
+
+            oldWorkers = this.stopWorkers();
+        }
+
+        // wait outside lock (exiting workers may restart pool themselves)
+        try {
+
+            AbstractJobExecutor.joinWorkers(oldWorkers);
+
+        } catch (final InterruptedException ex) {
+
+            // carry on; last stale worker restarts pool
+            Thread.currentThread().interrupt();
+        }
+
+        if (this.liveWorkerCount.get() > 0) {
+
+            AbstractJobExecutor.LOGGER.log(Level.INFO, "Executor resize postponed until running jobs finish ("
+                    + this.executorData + "; " + this.liveWorkerCount.get()
+                    + " workers).");
+        }
+
+        this.restartWorkers();
+    }
+
+    /**
+     * Applies replica count, rebuilding replica engines.
+     *
+     * @param replicaCount Replica count.
+     */
+    private void applyReplicaCount(final int replicaCount) {
+
+        final int oldReplicaCount = this.replicaCount;
+
+        try {
+
+            // pooled replicas are stateless; rebuild all at new count
+            this.replicaCount = replicaCount;
+            this.executorData.setReplicaCount(replicaCount);
+
+            this.resetScriptEngineImpl();
+
+        } catch (final RuntimeException ex) {
+
+            // engines are only replaced once all are built
+            this.replicaCount = oldReplicaCount;
+            this.executorData.setReplicaCount(oldReplicaCount);
+
+            throw ex;
+
+        } finally {
+
+            this.variableFormats.invalidate();
+        }
+
+        AbstractJobExecutor.LOGGER.log(Level.INFO, "Executor resized ("
+                + this.executorData + "; " + replicaCount + " replicas).");
+    }
+
+    /**
+     * Restarts workers at pending replica count, once every stale worker
+     * has exited (no-op otherwise, or if no restart is pending).
+     */
+    private synchronized void restartWorkers() {
+
+        if ((this.liveWorkerCount.get() > 0)
+                || !this.isRestartPending.compareAndSet(true, false)) {
+
+            // ignore, return
+            return;
+        }
+
+        try {
+
+            this.applyReplicaCount(this.pendingReplicaCount);
+
+        } finally {
+
+            this.startWorkers();
+        }
     }
 
     /**
@@ -550,37 +1171,77 @@ public abstract class AbstractJobExecutor implements JobExecutor {
      */
     protected abstract void resetScriptEngineImpl();
 
+    /**
+     * Restore a replica's engine state to its post-reset baseline (per-job
+     * reset; cheaper than resetScriptEngineImpl()).
+     *
+     * @param replicaIndex Replica index of calling worker.
+     */
+    protected abstract void restoreBaselineImpl(int replicaIndex);
+
     /**
      * Main work method.
      *
+     * @param replicaIndex Replica index of calling worker.
      * @throws Throwable Any exception.
      */
-    protected void runWork() throws Throwable {
+    protected void runWork(final int replicaIndex) throws Throwable {
 
-        final JobContentData contentData = this.checkNextPendingJob(true);
+        final AbstractJobExecutor.TakenJob takenJob = this.takeNextPendingJob();
+        final JobContentData contentData = takenJob.contentData;
+        final long enqueuedAt = takenJob.enqueuedAt;
+        final long dequeuedAt = takenJob.dequeuedAt;
 
-        if (contentData == null) {
-
-            return;
-        }
+        // offsets are kept > 0L (0L = phase not reached)
+        final JobTimingData timingData = new JobTimingData(
+                System.currentTimeMillis()
+                        - TimeUnit.NANOSECONDS.toMillis(dequeuedAt - enqueuedAt),
+                Math.max(1L, dequeuedAt - enqueuedAt));
 
+        JobOutputBuffer outputBuffer = null;
         Throwable lastEx = null;
 
         try {
 
             ThreadLocalMap.getInstance().set(this.threadMap);
+
+            contentData.setQueueWaitTime(TimeUnit.NANOSECONDS
+                    .toMillis(timingData.getDequeuedOffset()));
+            contentData.setTimingData(timingData);
             contentData.setState(JobState.started);
+            this.jobManager.recordJobChange(contentData);
 
             AbstractJobExecutor.LOGGER.log(Level.INFO, "Job started ("
-                    + this.executorData + "; " + contentData + ").");
+                    + this.executorData + "; " + contentData + "; waited "
+                    + contentData.getQueueWaitTime() + " ms).");
 
             final String requestBody = contentData.getRequestData()
                     .getRequestBody();
 
             JobDataUtils.checkEmptyString(requestBody, true);
 
+            if (contentData.isReset()) {
+
+                this.restoreBaselineImpl(replicaIndex);
+            }
+
+            outputBuffer = this.createOutputBuffer(contentData);
+
+            this.jobManager.setThreadOutputBuffer(outputBuffer);
             this.jobManager.enableThreadOutput();
-            final Object resultObject = this.runWorkImpl(requestBody);
+            this.outputBuffers.put(contentData.getId(), outputBuffer);
+
+            timingData.setEvalStartOffset(AbstractJobExecutor.getTimingOffset(enqueuedAt));
+            final Object resultObject;
+
+            try {
+
+                resultObject = this.runWorkImpl(replicaIndex, requestBody);
+
+            } finally {
+
+                timingData.setEvalEndOffset(AbstractJobExecutor.getTimingOffset(enqueuedAt));
+            }
 
             if (!JobDataUtils.checkEmptyString(resultObject, false)) {
 
@@ -618,11 +1279,33 @@ public abstract class AbstractJobExecutor implements JobExecutor {
             this.jobManager.disableThreadOutput();
             final String outputText = this.jobManager.readThreadOutput();
 
+            if (outputBuffer != null) {
+
+                outputBuffer.close();
+            }
+
             if (!JobDataUtils.checkEmptyString(outputText, false)) {
 
-                contentData.setOutputData(new JobOutputData(outputText));
+                final JobOutputData outputData = new JobOutputData(outputText);
+
+                if (outputBuffer != null) {
+
+                    outputData.setOutputLength(outputBuffer.getEndOffset());
+                    final File spillFile = outputBuffer.getSpillFile();
+
+                    if (spillFile != null) {
+
+                        outputData.setOutputPath(AbstractJobExecutor.DEFAULT_OUTPUT_FOLDER
+                                + "/" + spillFile.getName());
+                    }
+                }
+
+                contentData.setOutputData(outputData);
             }
 
+            this.outputBuffers.remove(contentData.getId());
+            timingData.setOutputDrainedOffset(AbstractJobExecutor.getTimingOffset(enqueuedAt));
+
             if (lastEx == null) {
 
                 AbstractJobExecutor.LOGGER.log(Level.INFO, "Job succeeded ("
@@ -635,21 +1318,38 @@ public abstract class AbstractJobExecutor implements JobExecutor {
                                 + "; " + contentData + ").", lastEx);
             }
 
+            timingData.setCompletedOffset(AbstractJobExecutor.getTimingOffset(enqueuedAt));
             contentData.setState(JobState.completed);
 
             this.completeJob(contentData);
-            this.removeNextPendingJob(false);
+            this.runningJobs.remove(contentData);
+            this.timingStats.recordTiming(timingData);
+            this.metrics.recordCompleted(timingData, contentData.getStatus(),
+                    (outputBuffer == null ? 0L : outputBuffer.getEndOffset()));
         }
     }
 
+    /**
+     * Gets timing offset (ns since enqueue, > 0L).
+     *
+     * @param enqueuedAt Enqueue time (ns; System.nanoTime()).
+     * @return Timing offset.
+     */
+    private static long getTimingOffset(final long enqueuedAt) {
+
+        return Math.max(1L, System.nanoTime() - enqueuedAt);
+    }
+
     /**
      * Run method.
      *
-     * @param inputText Input text.
+     * @param replicaIndex Replica index of calling worker.
+     * @param inputText    Input text.
      * @return Result object (may be null).
      * @throws Throwable Any exeception (caller handles :P ).
      */
-    protected abstract Object runWorkImpl(String inputText) throws Throwable;
+    protected abstract Object runWorkImpl(int replicaIndex, String inputText)
+            throws Throwable;
 
     /**
      * Sets executor data and resets script engine.
@@ -688,7 +1388,7 @@ public abstract class AbstractJobExecutor implements JobExecutor {
     @Override
     public synchronized void startUp() {
 
-        if (this.worker != null) {
+        if ((this.workers != null) || this.isRestartPending.get()) {
 
             // ignore, return
             return;
@@ -699,17 +1399,72 @@ public abstract class AbstractJobExecutor implements JobExecutor {
             this.startUpFiles();
             this.startUpImpl();
             this.resetScriptEngine();
+            this.startWorkers();
+
+        } catch (final Throwable ex) {
+
+            AbstractJobExecutor.LOGGER.log(Level.WARNING, "Can't start up", ex);
+        }
+    }
+
+    /**
+     * Starts workers (one per replica).
+     */
+    private void startWorkers() {
 
-            final Thread newWorker = new Thread(this.workerRunnable);
+        final int replicaCount = this.getReplicaCount();
+        final int generation = this.workerGeneration;
+        final List<Thread> newWorkers = new ArrayList<>(replicaCount);
+
+        for (int ctr = 0; ctr < replicaCount; ctr++) {
+
+            final Thread newWorker = new Thread(
+                    new AbstractJobExecutor.WorkerRunnable(ctr, generation),
+                    "JobExecutor-" + this.executorData.getId() + "-" + ctr);
 
             newWorker.setDaemon(true);
+            this.liveWorkerCount.incrementAndGet();
             newWorker.start();
 
-            this.worker = newWorker;
+            newWorkers.add(newWorker);
+        }
 
-        } catch (final Throwable ex) {
+        this.workers = Collections.unmodifiableList(newWorkers);
+    }
 
-            AbstractJobExecutor.LOGGER.log(Level.WARNING, "Can't start up", ex);
+    /**
+     * Stops workers (retires their generation and interrupts running jobs;
+     * stale workers exit before taking another job).
+     *
+     * @return Stopped workers.
+     */
+    private List<Thread> stopWorkers() {
+
+        final List<Thread> oldWorkers = this.workers;
+
+        this.workers = null;
+        this.workerGeneration++;
+
+        for (final Thread item : oldWorkers) {
+
+            item.interrupt();
+        }
+
+        return oldWorkers;
+    }
+
+    /**
+     * Waits for workers to exit (each up to DEFAULT_THREAD_JOIN_WAIT_MS).
+     *
+     * @param oldWorkers Stopped workers.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    private static void joinWorkers(final List<Thread> oldWorkers)
+            throws InterruptedException {
+
+        for (final Thread item : oldWorkers) {
+
+            item.join(AbstractJobExecutor.DEFAULT_THREAD_JOIN_WAIT_MS);
         }
     }
 
@@ -720,10 +1475,13 @@ public abstract class AbstractJobExecutor implements JobExecutor {
      */
     private void startUpFiles() throws IOException {
 
-        this.fileBase = new File(AbstractJobExecutor.DEFAULT_FILE_BASEDIR,
+        this.fileBase = JobFileUtils.getExecutorFileBase(
                 this.getExecutorData().getId());
         FileUtils.forceMkdir(this.fileBase);
 
+        this.fileIndex = new JobFileIndex(this.executorData, this.fileBase);
+        this.fileIndex.start();
+
         AbstractJobExecutor.LOGGER.log(Level.INFO, "Executor folder added: " +
                 this.fileBase.getAbsolutePath());
     }
@@ -745,6 +1503,153 @@ public abstract class AbstractJobExecutor implements JobExecutor {
     public void submitJob(final JobContentData pendingJob) {
 
         JobContentUtils.checkJobStateData(pendingJob, false);
+
+        this.pendingTimes.put(pendingJob.getId(), System.nanoTime());
         this.pendingJobs.addLast(pendingJob);
+        this.metrics.recordSubmitted();
+        this.jobManager.recordJobChange(pendingJob);
+    }
+
+    /**
+     * Job taken by a worker (w/queue times).
+     *
+     * @author mkitchin
+     */
+    private static final class TakenJob {
+
+        /**
+         * Job content data.
+         */
+        private final JobContentData contentData;
+
+        /**
+         * Enqueue time (ns).
+         */
+        private final long enqueuedAt;
+
+        /**
+         * Dequeue time (ns).
+         */
+        private final long dequeuedAt;
+
+        /**
+         * Basic ctor.
+         *
+         * @param contentData Job content data.
+         * @param enqueuedAt  Enqueue time (ns).
+         * @param dequeuedAt  Dequeue time (ns).
+         */
+        private TakenJob(final JobContentData contentData,
+                         final long enqueuedAt, final long dequeuedAt) {
+
+            this.contentData = contentData;
+            this.enqueuedAt = enqueuedAt;
+            this.dequeuedAt = dequeuedAt;
+        }
+    }
+
+    /**
+     * Worker runnable (one per engine replica).
+     *
+     * @author mkitchin
+     */
+    private final class WorkerRunnable implements Runnable {
+
+        /**
+         * Replica index.
+         */
+        private final int replicaIndex;
+
+        /**
+         * Worker generation.
+         */
+        private final int generation;
+
+        /**
+         * Basic ctor.
+         *
+         * @param replicaIndex Replica index.
+         * @param generation   Worker generation.
+         */
+        private WorkerRunnable(final int replicaIndex, final int generation) {
+
+            this.replicaIndex = replicaIndex;
+            this.generation = generation;
+        }
+
+        /**
+         * Checks worker generation.
+         *
+         * @return True if worker is current (not stopped), false otherwise.
+         */
+        private boolean isCurrent() {
+
+            return (this.generation == AbstractJobExecutor.this.workerGeneration);
+        }
+
+        @Override
+        public void run() {
+
+            AbstractJobExecutor.LOGGER.log(Level.INFO, "Executor started ("
+                    + Thread.currentThread().getName() + "; "
+                    + AbstractJobExecutor.this.executorData + "; replica "
+                    + this.replicaIndex + ").");
+            AbstractJobExecutor.this.jobManager.registerThread();
+
+            try {
+
+                // checked before each dequeue; stale workers never take jobs
+                while (!Thread.interrupted() && this.isCurrent()) {
+
+                    try {
+
+                        AbstractJobExecutor.this.runWork(this.replicaIndex);
+
+                    } catch (final InterruptedException ex) {
+
+                        AbstractJobExecutor.LOGGER.log(Level.FINE, "Exiting",
+                                ex);
+                        break;
+
+                    } catch (final Throwable ex) {
+
+                        AbstractJobExecutor.LOGGER.log(Level.WARNING,
+                                "Can't execute", ex);
+                    }
+                }
+
+            } catch (final Throwable ex) {
+
+                AbstractJobExecutor.LOGGER.log(Level.WARNING,
+                        "Executor error (" + Thread.currentThread().getName()
+                                + "; " + AbstractJobExecutor.this.executorData
+                                + ").", ex);
+
+            } finally {
+
+                AbstractJobExecutor.this.jobManager.deRegisterThread();
+
+                AbstractJobExecutor.LOGGER.log(Level.INFO, "Executor stopped ("
+                        + Thread.currentThread().getName() + "; "
+                        + AbstractJobExecutor.this.executorData + "; replica "
+                        + this.replicaIndex + ").");
+
+                if ((AbstractJobExecutor.this.liveWorkerCount.decrementAndGet() == 0)
+                        && AbstractJobExecutor.this.isRestartPending.get()) {
+
+                    try {
+
+                        AbstractJobExecutor.this.restartWorkers();
+
+                    } catch (final Throwable ex) {
+
+                        AbstractJobExecutor.LOGGER.log(Level.WARNING,
+                                "Can't restart workers ("
+                                        + AbstractJobExecutor.this.executorData
+                                        + ").", ex);
+                    }
+                }
+            }
+        }
     }
 }
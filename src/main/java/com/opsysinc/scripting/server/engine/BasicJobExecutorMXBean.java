@@ -0,0 +1,285 @@
+package com.opsysinc.scripting.server.engine;
+
+import com.opsysinc.scripting.shared.JobDataUtils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Job executor management bean (JMX).
+ * <p/>
+ * Worker CPU time/allocated bytes cover the current worker threads (they
+ * restart w/resizePool()), from the platform ThreadMXBean.
+ *
+ * @author mkitchin
+ */
+public class BasicJobExecutorMXBean implements JobExecutorMXBean {
+
+    /**
+     * Job executor.
+     */
+    private final JobExecutor executor;
+
+    /**
+     * Platform thread bean.
+     */
+    private final ThreadMXBean threadBean;
+
+    /**
+     * Basic ctor.
+     *
+     * @param executor Job executor.
+     */
+    public BasicJobExecutorMXBean(final JobExecutor executor) {
+
+        JobDataUtils.checkNullObject(executor, true);
+
+        this.executor = executor;
+        this.threadBean = ManagementFactory.getThreadMXBean();
+    }
+
+    @Override
+    public int drainQueue() {
+
+        return this.executor.drainPendingJobs();
+    }
+
+    @Override
+    public int getCompiledScriptCount() {
+
+        final CompiledScriptCache compiledScripts = this.executor.getCompiledScriptCache();
+
+        return (compiledScripts == null) ? -1 : compiledScripts.getSize();
+    }
+
+    @Override
+    public long getCompiledScriptEvictionCount() {
+
+        final CompiledScriptCache compiledScripts = this.executor.getCompiledScriptCache();
+
+        return (compiledScripts == null) ? -1L : compiledScripts.getEvictionCount();
+    }
+
+    @Override
+    public long getCompiledScriptHitCount() {
+
+        final CompiledScriptCache compiledScripts = this.executor.getCompiledScriptCache();
+
+        return (compiledScripts == null) ? -1L : compiledScripts.getHitCount();
+    }
+
+    @Override
+    public long getCompiledScriptMissCount() {
+
+        final CompiledScriptCache compiledScripts = this.executor.getCompiledScriptCache();
+
+        return (compiledScripts == null) ? -1L : compiledScripts.getMissCount();
+    }
+
+    @Override
+    public long getDrainedJobCount() {
+
+        return this.executor.getMetrics().getDrainedCount();
+    }
+
+    @Override
+    public String getExecutorId() {
+
+        return this.executor.getExecutorData().getId();
+    }
+
+    @Override
+    public long getFailedJobCount() {
+
+        return this.executor.getMetrics().getFailureCount();
+    }
+
+    @Override
+    public int getPendingJobCount() {
+
+        return this.executor.getPendingJobCount();
+    }
+
+    @Override
+    public int getReplicaCount() {
+
+        return this.executor.getReplicaCount();
+    }
+
+    @Override
+    public long getRetainedJobAgeLimit() {
+
+        return this.executor.getExecutorData().getCompletedJobAge();
+    }
+
+    @Override
+    public long getRetainedJobBytes() {
+
+        return this.executor.getRetainedJobBytes();
+    }
+
+    @Override
+    public long getRetainedJobBytesLimit() {
+
+        return this.executor.getExecutorData().getCompletedJobBytes();
+    }
+
+    @Override
+    public int getRetainedJobCount() {
+
+        return this.executor.getRetainedJobCount();
+    }
+
+    @Override
+    public int getRetainedJobCountLimit() {
+
+        return this.executor.getExecutorData().getCompletedJobCount();
+    }
+
+    @Override
+    public int getRunningJobCount() {
+
+        return this.executor.getRunningJobCount();
+    }
+
+    @Override
+    public long getSubmittedJobCount() {
+
+        return this.executor.getMetrics().getSubmittedCount();
+    }
+
+    @Override
+    public long getSucceededJobCount() {
+
+        return this.executor.getMetrics().getSuccessCount();
+    }
+
+    @Override
+    public String getTitle() {
+
+        return this.executor.getExecutorData().getTitle();
+    }
+
+    @Override
+    public String getType() {
+
+        return this.executor.getExecutorData().getType().name();
+    }
+
+    @Override
+    public long getWorkerAllocatedBytes() {
+
+        if (!(this.threadBean instanceof com.sun.management.ThreadMXBean)) {
+
+            return -1L;
+        }
+
+        final com.sun.management.ThreadMXBean workBean = (com.sun.management.ThreadMXBean) this.threadBean;
+
+        if (!workBean.isThreadAllocatedMemorySupported()
+                || !workBean.isThreadAllocatedMemoryEnabled()) {
+
+            return -1L;
+        }
+
+        long result = 0L;
+
+        for (final Thread item : this.getWorkers()) {
+
+            // -1L = thread ended
+            result += Math.max(0L, workBean.getThreadAllocatedBytes(item.getId()));
+        }
+
+        return result;
+    }
+
+    @Override
+    public long getWorkerCpuTime() {
+
+        if (!this.threadBean.isThreadCpuTimeSupported()
+                || !this.threadBean.isThreadCpuTimeEnabled()) {
+
+            return -1L;
+        }
+
+        long result = 0L;
+
+        for (final Thread item : this.getWorkers()) {
+
+            result += Math.max(0L, this.threadBean.getThreadCpuTime(item.getId()));
+        }
+
+        return result;
+    }
+
+    @Override
+    public String[] getWorkerThreadStates() {
+
+        final List<Thread> workers = this.getWorkers();
+        final String[] result = new String[workers.size()];
+
+        for (int ctr = 0; ctr < result.length; ctr++) {
+
+            result[ctr] = workers.get(ctr).getName() + ": "
+                    + workers.get(ctr).getState();
+        }
+
+        return result;
+    }
+
+    @Override
+    public long getWorkerUserTime() {
+
+        if (!this.threadBean.isThreadCpuTimeSupported()
+                || !this.threadBean.isThreadCpuTimeEnabled()) {
+
+            return -1L;
+        }
+
+        long result = 0L;
+
+        for (final Thread item : this.getWorkers()) {
+
+            result += Math.max(0L, this.threadBean.getThreadUserTime(item.getId()));
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets workers.
+     *
+     * @return Worker threads (snapshot).
+     */
+    private List<Thread> getWorkers() {
+
+        final List<Thread> result = new ArrayList<>();
+        this.executor.getWorkerThreads(result, false);
+
+        return result;
+    }
+
+    @Override
+    public void resetEngine() {
+
+        this.executor.resetEngine();
+    }
+
+    @Override
+    public void resetStats() {
+
+        this.executor.resetStats();
+    }
+
+    @Override
+    public int resizePool(final int replicaCount) {
+
+        final JobExecutor result = this.executor.getJobManager().resizeExecutorInstance(
+                this.executor.getExecutorData(), replicaCount);
+        JobDataUtils.checkNullObject(result, true);
+
+        return result.getReplicaCount();
+    }
+}
@@ -4,11 +4,17 @@ import com.opsysinc.scripting.server.object.ExecutorObjectUtils;
 import com.opsysinc.scripting.shared.*;
 import org.python.core.Options;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -19,10 +25,27 @@ import java.util.logging.Logger;
 public final class BasicJobManager implements JobManager {
 
     /**
-     * Default job executors.
+     * Default job executors (replica cap for pooled executors, if more than
+     * available cores).
      */
     public static final int DEFAULT_JOB_EXECUTOR_COUNT = 10;
 
+    /**
+     * Default max jobs kept in change log.
+     */
+    public static final int DEFAULT_MAX_JOB_CHANGES = 10000;
+
+    /**
+     * Default max concurrent change waiters (async long-poll requests; no
+     * thread is held per waiter).
+     */
+    public static final int DEFAULT_MAX_CHANGE_WAITERS = 1000;
+
+    /**
+     * Default management (JMX) domain.
+     */
+    public static final String DEFAULT_MBEAN_DOMAIN = "com.opsysinc.scripting";
+
     /**
      * Logger.
      */
@@ -43,19 +66,52 @@ public final class BasicJobManager implements JobManager {
      */
     private static BasicJobManager.JobExecutorFactory DEFAULT_EXECUTOR_FACTORY;
 
+    /**
+     * Thread output capture (shared by all job managers).
+     */
+    private static ThreadOutputCapture OUTPUT_CAPTURE;
+
+    /**
+     * Is output capture installed behind System.out/System.err?
+     */
+    private static boolean IS_OUTPUT_CAPTURE_INSTALLED;
+
+    /**
+     * Job manager count (names management beans of each manager).
+     */
+    private static final AtomicInteger MANAGER_COUNT;
+
     /**
      * JobContentData executors.
      */
     private Map<JobExecutorData, JobExecutor> executors;
 
     /**
-     * Output streams.
+     * Job change log.
+     */
+    private JobChangeLog jobChanges;
+
+    /**
+     * Change notifier (jobs and executors).
+     */
+    private ChangeNotifier changeNotifier;
+
+    /**
+     * Executor sequence (bumped by executor add/remove).
      */
-    private Map<Thread, BasicJobManager.OutputStreamEntry> outputStreams;
+    private AtomicLong executorSequence;
+
+    /**
+     * Manager name (w/in management beans).
+     */
+    private String managerName;
 
     static {
 
         LOGGER = Logger.getLogger(BasicJobManager.class.getName());
+        OUTPUT_CAPTURE = new ThreadOutputCapture();
+        IS_OUTPUT_CAPTURE_INSTALLED = false;
+        MANAGER_COUNT = new AtomicInteger(0);
 
         final Map<JobExecutorType, BasicJobManager.JobExecutorFactory> executorFactories =
                 new EnumMap<>(JobExecutorType.class);
@@ -92,17 +148,37 @@ public final class BasicJobManager implements JobManager {
     }
 
     /**
-     * Basic ctor.
+     * Basic ctor (w/default executors).
      */
     public BasicJobManager() {
 
-        this.init();
+        this(true);
+    }
+
+    /**
+     * Basic ctor.
+     *
+     * @param isDefaultExecutors True to add a default executor per executor
+     *                           type, false to start w/none.
+     */
+    public BasicJobManager(final boolean isDefaultExecutors) {
+
+        this.init(isDefaultExecutors);
     }
 
     @Override
     public JobExecutor addExecutorInstance(final JobExecutorData executorData) {
 
         JobExecutorUtils.checkJobExecutorData(executorData, false);
+        executorData.setPooled(executorData.isPooled()
+                && executorData.getType().isReplicable());
+        executorData.setReplicaCount(this.resolveReplicaCount(executorData));
+
+        if (!executorData.getType().isContextOutput()) {
+
+            BasicJobManager.installOutputCapture();
+        }
+
         BasicJobManager.JobExecutorFactory executorFactory = BasicJobManager.EXECUTOR_FACTORIES
                 .get(executorData.getType());
 
@@ -116,10 +192,70 @@ public final class BasicJobManager implements JobManager {
 
         executor.startUp();
         this.executors.put(executorData, executor);
+        BasicJobManager.registerMBean(new BasicJobExecutorMXBean(executor),
+                this.buildExecutorMBeanName(executorData));
+        this.executorSequence.incrementAndGet();
+        this.changeNotifier.signal();
 
         return executor;
     }
 
+    @Override
+    public boolean addChangeWaiter(final long fromSequence,
+                                   final ChangeNotifier.Waiter waiter) {
+
+        return this.changeNotifier.addWaiter(fromSequence, waiter);
+    }
+
+    /**
+     * Builds executor management bean name.
+     *
+     * @param executorData Executor data.
+     * @return Bean name.
+     */
+    private ObjectName buildExecutorMBeanName(final JobExecutorData executorData) {
+
+        return BasicJobManager.buildMBeanName("type=JobExecutor,manager="
+                + this.managerName + ",executorType=" + executorData.getType().name()
+                + ",id=" + ObjectName.quote(String.valueOf(executorData.getId())));
+    }
+
+    /**
+     * Builds manager management bean name.
+     *
+     * @return Bean name.
+     */
+    private ObjectName buildManagerMBeanName() {
+
+        return BasicJobManager.buildMBeanName("type=JobManager,name="
+                + this.managerName);
+    }
+
+    /**
+     * Builds management bean name.
+     *
+     * @param keysText Key properties text.
+     * @return Bean name.
+     */
+    private static ObjectName buildMBeanName(final String keysText) {
+
+        try {
+
+            return new ObjectName(BasicJobManager.DEFAULT_MBEAN_DOMAIN + ":" + keysText);
+
+        } catch (final MalformedObjectNameException ex) {
+
+            throw new IllegalArgumentException("invalid input (keysText)", ex);
+        }
+    }
+
+    @Override
+    public void cleanUp() {
+
+        this.removeAllExecutorInstances();
+        BasicJobManager.unregisterMBean(this.buildManagerMBeanName());
+    }
+
     /**
      * Build default executors.
      */
@@ -140,71 +276,19 @@ public final class BasicJobManager implements JobManager {
     @Override
     public boolean deRegisterThread() {
 
-        boolean result = false;
-
-        synchronized (this.outputStreams) {
-
-            final BasicJobManager.OutputStreamEntry outputEntry = this.outputStreams
-                    .remove(Thread.currentThread());
-
-            if (outputEntry != null) {
-
-                try {
-
-                    outputEntry.close();
-
-                } catch (final Throwable ignore) {
-
-                    // ignore;
-                }
-
-                result = true;
-            }
-        }
-
-        return result;
+        return BasicJobManager.OUTPUT_CAPTURE.deRegisterThread();
     }
 
     @Override
     public boolean disableThreadOutput() {
 
-        BasicJobManager.OutputStreamEntry outputEntry = null;
-
-        synchronized (this.outputStreams) {
-
-            outputEntry = this.outputStreams.get(Thread.currentThread());
-        }
-
-        boolean result = false;
-
-        if (outputEntry != null) {
-
-            result = outputEntry.isEnabled();
-            outputEntry.setEnabled(false);
-        }
-
-        return result;
+        return BasicJobManager.OUTPUT_CAPTURE.disableThreadOutput();
     }
 
     @Override
     public boolean enableThreadOutput() {
 
-        BasicJobManager.OutputStreamEntry outputEntry = null;
-
-        synchronized (this.outputStreams) {
-
-            outputEntry = this.outputStreams.get(Thread.currentThread());
-        }
-
-        boolean result = false;
-
-        if (outputEntry != null) {
-
-            result = !outputEntry.isEnabled();
-            outputEntry.setEnabled(true);
-        }
-
-        return result;
+        return BasicJobManager.OUTPUT_CAPTURE.enableThreadOutput();
     }
 
     @Override
@@ -321,6 +405,18 @@ public final class BasicJobManager implements JobManager {
                 .getCompletedJobsFromTime(timeInMS, target, isClearFirst);
     }
 
+    @Override
+    public long getChangeSequence() {
+
+        return this.changeNotifier.getSequence();
+    }
+
+    @Override
+    public long getExecutorSequence() {
+
+        return this.executorSequence.get();
+    }
+
     @Override
     public JobExecutor getExecutorInstance(final JobExecutorData executorData) {
 
@@ -369,504 +465,435 @@ public final class BasicJobManager implements JobManager {
     }
 
     @Override
-    public boolean getExecutorFiles(final JobExecutorData executorData,
-                                    final String basePath,
-                                    final List<JobFileData> target,
-                                    final boolean isClearFirst) {
+    public boolean getExecutorVariableInfo(final JobExecutorData executorData,
+                                           final int variableScope,
+                                           final List<JobVariableData> target,
+                                           final boolean isClearFirst) {
 
         final JobExecutor executor = this.getExecutorInstance(executorData);
         JobDataUtils.checkNullObject(executor, true);
 
-        return executor.getFiles(basePath, target, isClearFirst);
+        return executor.getVariableInfo(variableScope, target, isClearFirst);
     }
 
-    /**
-     * One-off init.
-     */
-    private void init() {
-
-        this.executors = new ConcurrentHashMap<>();
-        this.outputStreams = new IdentityHashMap<>();
+    @Override
+    public JobVariableValueData getExecutorVariableValue(final JobExecutorData executorData,
+                                                         final int variableScope,
+                                                         final int variableFormat,
+                                                         final String name,
+                                                         final int fromOffset) {
 
-        System.setOut(new OutputStreamHandler(System.out, this.outputStreams));
-        System.setErr(new OutputStreamHandler(System.err, this.outputStreams));
+        final JobExecutor executor = this.getExecutorInstance(executorData);
+        JobDataUtils.checkNullObject(executor, true);
 
-        this.buildDefaultExecutors();
+        return executor.getVariableValue(variableScope, variableFormat,
+                name, fromOffset);
     }
 
     @Override
-    public String readThreadOutput() {
-        BasicJobManager.OutputStreamEntry outputEntry = null;
-
-        synchronized (this.outputStreams) {
-
-            outputEntry = this.outputStreams.get(Thread.currentThread());
-        }
-
-        String result = null;
+    public JobFilesData getExecutorFiles(final JobExecutorData executorData,
+                                         final String basePath,
+                                         final long fromVersion,
+                                         final int fromIndex,
+                                         final int maxCount,
+                                         final int sortOrder,
+                                         final boolean isDescending) {
 
-        if (outputEntry != null) {
-
-            result = outputEntry.readOutput();
-        }
+        final JobExecutor executor = this.getExecutorInstance(executorData);
+        JobDataUtils.checkNullObject(executor, true);
 
-        return result;
+        return executor.getFiles(basePath, fromVersion, fromIndex,
+                maxCount, sortOrder, isDescending);
     }
 
     @Override
-    public boolean registerThread() {
+    public JobTimingStatsData getExecutorTimingStats(final JobExecutorData executorData) {
 
-        boolean result = false;
-
-        synchronized (this.outputStreams) {
-
-            final BasicJobManager.OutputStreamEntry outputEntry = this.outputStreams.get(Thread
-                    .currentThread());
-
-            if (outputEntry == null) {
-
-                this.outputStreams.put(Thread.currentThread(),
-                        new BasicJobManager.OutputStreamEntry());
-                result = true;
-            }
-        }
+        final JobExecutor executor = this.getExecutorInstance(executorData);
+        JobDataUtils.checkNullObject(executor, true);
 
-        return result;
+        return executor.getTimingStats();
     }
 
     @Override
-    public boolean removeAllExecutorInstances() {
+    public boolean getJobChanges(final long fromSequence,
+                                 final long toSequence,
+                                 final Collection<JobContentData> changedTarget,
+                                 final Collection<String> removedTarget,
+                                 final boolean isClearFirst) {
 
-        final List<JobExecutorData> toRemove = new ArrayList<>(
-                this.executors.keySet());
-        final boolean result = !toRemove.isEmpty();
+        JobDataUtils.checkNullObject(changedTarget, true);
+        JobDataUtils.checkNullObject(removedTarget, true);
 
-        for (final JobExecutorData item : toRemove) {
+        if (isClearFirst) {
 
-            this.removeExecutorInstance(item);
+            changedTarget.clear();
+            removedTarget.clear();
         }
 
-        return result;
-    }
+        final List<JobChangeLog.ChangeRecord> changeRecords = new ArrayList<>();
 
-    @Override
-    public JobExecutor removeExecutorInstance(final JobExecutorData executorData) {
+        if (this.jobChanges.getFromSequence(fromSequence, toSequence,
+                changeRecords, false)) {
 
-        JobExecutorUtils.checkJobExecutorData(executorData, true);
-        final JobExecutor result = this.executors.remove(executorData);
+            // capped like other job reads (newest completed, running and
+            // next pending); later changes bring in the rest as they move
+            for (final JobExecutor item : this.executors.values()) {
 
-        if (result != null) {
+                item.getCompletedJobsFromTime(0L, changedTarget, false);
+                item.getPendingJobsFromTime(0L, changedTarget, false);
+            }
 
-            result.cleanUp();
+            return true;
         }
 
-        return result;
-    }
+        // group changed job ids by executor, so each is scanned once
+        final Map<JobExecutorData, Set<String>> changedIds = new LinkedHashMap<>();
 
-    /*
-     * (non-Javadoc)
-     *
-     * @see com.opsysinc.scripting.engine.JobManager#pushPendingJob(com.opsysinc
-     * .oe.r.test1.shared.JobStateData)
-     */
-    @Override
-    public JobContentData submitJob(final JobContentData contentData) {
+        for (final JobChangeLog.ChangeRecord item : changeRecords) {
 
-        JobContentUtils.checkJobStateData(contentData, false);
+            if (item.getChangeKind() == JobChangeLog.ChangeKind.removed) {
 
-        final JobExecutorData executorData = contentData.getExecutorData();
-        JobExecutorUtils.checkJobExecutorData(executorData, true);
+                removedTarget.add(item.getJobId());
 
-        final JobExecutor executor = this.getExecutorInstance(executorData);
+            } else {
 
-        if (executor == null) {
+                Set<String> jobIds = changedIds.get(item.getExecutorData());
 
-            throw new IllegalArgumentException("missing executor");
+                if (jobIds == null) {
 
-        } else {
+                    jobIds = new LinkedHashSet<>();
+                    changedIds.put(item.getExecutorData(), jobIds);
+                }
 
-            executor.submitJob(contentData);
+                jobIds.add(item.getJobId());
+            }
         }
 
-        return contentData;
-    }
+        final List<JobContentData> foundJobs = new ArrayList<>();
 
-    /**
-     * Job executor factory.
-     *
-     * @author mkitchin
-     */
-    private interface JobExecutorFactory {
+        for (final Map.Entry<JobExecutorData, Set<String>> item : changedIds.entrySet()) {
 
-        /**
-         * Creates job executor (main method).
-         *
-         * @return Job executor.
-         */
-        JobExecutor createJobExecutor(JobManager jobManager,
-                                      JobExecutorData executorData);
-    }
+            final JobExecutor executor = this.executors.get(item.getKey());
 
-    /**
-     * Holder for printstream/bytearrayoutputstream pair.
-     *
-     * @author mkit
-     */
-    private final class OutputStreamEntry {
+            if (executor != null) {
 
-        /**
-         * Print stream.
-         */
-        private final PrintStream printStream;
+                executor.getJobs(item.getValue(), foundJobs, true);
 
-        /**
-         * Output stream.
-         */
-        private final ByteArrayOutputStream outputStream;
+                for (final JobContentData foundJob : foundJobs) {
 
-        /**
-         * Is enabled?
-         */
-        private boolean isEnabled;
+                    item.getValue().remove(foundJob.getId());
+                }
 
-        /**
-         * Basic ctor.
-         */
-        private OutputStreamEntry() {
+                changedTarget.addAll(foundJobs);
+            }
 
-            this.outputStream = new ByteArrayOutputStream();
-            this.printStream = new PrintStream(this.outputStream, true);
-            this.isEnabled = false;
+            // not found: gone since (job or executor removed)
+            removedTarget.addAll(item.getValue());
         }
 
-        /**
-         * Close everything.
-         */
-        private void close() {
-
-            try {
-
-                this.outputStream.close();
+        return false;
+    }
 
-            } catch (final Throwable ignore) {
+    @Override
+    public long getJobSequence() {
 
-                // ignore;
-            }
+        return this.jobChanges.getSequence();
+    }
 
-            try {
+    @Override
+    public JobOutputChunkData getJobOutput(final JobExecutorData executorData,
+                                           final String jobId,
+                                           final long fromOffset) {
 
-                this.printStream.close();
+        final JobExecutor executor = this.getExecutorInstance(executorData);
+        JobDataUtils.checkNullObject(executor, true);
 
-            } catch (final Throwable ignore) {
+        return executor.getJobOutput(jobId, fromOffset);
+    }
 
-                // ignore;
-            }
-        }
+    @Override
+    public PrintStream getThreadPrintStream() {
 
-        /**
-         * Gets output stream.
-         *
-         * @return Output stream.
-         */
-        private ByteArrayOutputStream getOutputStream() {
+        return BasicJobManager.OUTPUT_CAPTURE.getThreadPrintStream();
+    }
 
-            return this.outputStream;
-        }
+    /**
+     * One-off init.
+     *
+     * @param isDefaultExecutors True to add default executors, false
+     *                           otherwise.
+     */
+    private void init(final boolean isDefaultExecutors) {
 
-        /**
-         * Gets print stream.
-         *
-         * @return Print stream.
-         */
-        private PrintStream getPrintStream() {
+        this.executors = new ConcurrentHashMap<>();
+        this.jobChanges = new JobChangeLog(BasicJobManager.DEFAULT_MAX_JOB_CHANGES);
+        this.changeNotifier = new ChangeNotifier(BasicJobManager.DEFAULT_MAX_CHANGE_WAITERS);
+        this.executorSequence = new AtomicLong(0L);
+        this.managerName = "manager-" + BasicJobManager.MANAGER_COUNT.incrementAndGet();
 
-            return this.printStream;
-        }
+        BasicJobManager.registerMBean(new BasicJobManagerMXBean(this),
+                this.buildManagerMBeanName());
 
-        /**
-         * Gets is enabled?
-         *
-         * @return Is enabled?
-         */
-        private boolean isEnabled() {
+        if (isDefaultExecutors) {
 
-            return this.isEnabled;
+            this.buildDefaultExecutors();
         }
+    }
 
-        /**
-         * Read/truncate output stream.
-         *
-         * @return Truncated output.
-         */
-        private String readOutput() {
-
-            this.printStream.flush();
+    /**
+     * Installs output capture behind System.out/System.err (once, and only
+     * for engines that don't write to their script context writers).
+     */
+    private static synchronized void installOutputCapture() {
 
-            final String result = this.outputStream.toString();
-            this.outputStream.reset();
+        if (BasicJobManager.IS_OUTPUT_CAPTURE_INSTALLED) {
 
-            return result;
+            return;
         }
 
-        /**
-         * Sets is enabled?
-         *
-         * @param isEnabled Is enabled?
-         */
-        private void setEnabled(final boolean isEnabled) {
+        System.setOut(BasicJobManager.OUTPUT_CAPTURE.createPrintStream(System.out));
+        System.setErr(BasicJobManager.OUTPUT_CAPTURE.createPrintStream(System.err));
 
-            this.isEnabled = isEnabled;
-        }
+        BasicJobManager.IS_OUTPUT_CAPTURE_INSTALLED = true;
     }
 
     /**
-     * Output stream handler.
+     * Registers management bean (logs, doesn't throw, on failure).
      *
-     * @author mkit
+     * @param mBean     Bean.
+     * @param mBeanName Bean name.
      */
-    private class OutputStreamHandler extends PrintStream {
+    private static void registerMBean(final Object mBean, final ObjectName mBeanName) {
 
-        /**
-         * Parent stream.
-         */
-        private final PrintStream parentStream;
-
-        /**
-         * Output streams.
-         */
-        private final Map<Thread, BasicJobManager.OutputStreamEntry> outputStreams;
-
-        /**
-         * Basic ctor.
-         *
-         * @param parentStream  Parent stream.
-         * @param outputStreams Output streams map.
-         */
-        public OutputStreamHandler(final PrintStream parentStream,
-                                   final Map<Thread, BasicJobManager.OutputStreamEntry> outputStreams) {
+        try {
 
-            super(parentStream, true);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(mBean, mBeanName);
 
-            this.parentStream = parentStream;
-            this.outputStreams = outputStreams;
-        }
-
-        @Override
-        public PrintStream append(final char c) {
+        } catch (final JMException ex) {
 
-            return this.getPrintStream().append(c);
+            BasicJobManager.LOGGER.log(Level.WARNING, "Can't register MBean: "
+                    + mBeanName, ex);
         }
+    }
 
-        @Override
-        public PrintStream append(final CharSequence csq) {
-
-            return this.getPrintStream().append(csq);
-        }
-
-        @Override
-        public PrintStream append(final CharSequence csq, final int start,
-                                  final int end) {
-
-            return this.getPrintStream().append(csq, start, end);
-        }
+    /**
+     * Unregisters management bean (ignores missing beans).
+     *
+     * @param mBeanName Bean name.
+     */
+    private static void unregisterMBean(final ObjectName mBeanName) {
 
-        @Override
-        public boolean checkError() {
+        try {
 
-            return this.getPrintStream().checkError();
-        }
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mBeanName);
 
-        @Override
-        public void close() {
+        } catch (final InstanceNotFoundException ex) {
 
-            this.getPrintStream().close();
-        }
+            BasicJobManager.LOGGER.log(Level.FINE, "MBean not registered: "
+                    + mBeanName, ex);
 
-        @Override
-        public void flush() {
+        } catch (final JMException ex) {
 
-            this.getPrintStream().flush();
+            BasicJobManager.LOGGER.log(Level.WARNING, "Can't unregister MBean: "
+                    + mBeanName, ex);
         }
+    }
 
-        @Override
-        public PrintStream format(final Locale l, final String format,
-                                  final Object... args) {
+    @Override
+    public String readThreadOutput() {
 
-            return this.getPrintStream().format(l, format, args);
-        }
+        return BasicJobManager.OUTPUT_CAPTURE.readThreadOutput();
+    }
 
-        @Override
-        public PrintStream format(final String format, final Object... args) {
+    @Override
+    public boolean removeChangeWaiter(final ChangeNotifier.Waiter waiter) {
 
-            return this.getPrintStream().format(format, args);
-        }
+        return this.changeNotifier.removeWaiter(waiter);
+    }
 
-        /**
-         * Gets print stream.
-         *
-         * @return Print stream.
-         */
-        private PrintStream getPrintStream() {
+    @Override
+    public long recordJobChange(final JobContentData contentData) {
 
-            PrintStream result = this.parentStream;
-            BasicJobManager.OutputStreamEntry outputEntry = null;
+        JobDataUtils.checkNullObject(contentData, true);
 
-            synchronized (this.outputStreams) {
+        final long result = this.jobChanges.add(contentData.getExecutorData(),
+                contentData.getId(), JobChangeLog.ChangeKind.changed);
+        this.changeNotifier.signal();
 
-                outputEntry = this.outputStreams.get(Thread.currentThread());
-            }
+        return result;
+    }
 
-            if ((outputEntry != null) && outputEntry.isEnabled()) {
+    @Override
+    public long recordJobRemoval(final JobExecutorData executorData,
+                                 final String jobId) {
 
-                result = outputEntry.getPrintStream();
-            }
+        final long result = this.jobChanges.add(executorData, jobId,
+                JobChangeLog.ChangeKind.removed);
+        this.changeNotifier.signal();
 
-            return result;
-        }
+        return result;
+    }
 
-        @Override
-        public void print(final boolean b) {
+    @Override
+    public boolean registerThread() {
 
-            this.getPrintStream().print(b);
-        }
+        return BasicJobManager.OUTPUT_CAPTURE.registerThread();
+    }
 
-        @Override
-        public void print(final char c) {
+    @Override
+    public boolean removeAllExecutorInstances() {
 
-            this.getPrintStream().print(c);
-        }
+        final List<JobExecutorData> toRemove = new ArrayList<>(
+                this.executors.keySet());
+        final boolean result = !toRemove.isEmpty();
 
-        @Override
-        public void print(final char[] s) {
+        for (final JobExecutorData item : toRemove) {
 
-            this.getPrintStream().print(s);
+            this.removeExecutorInstance(item);
         }
 
-        @Override
-        public void print(final double d) {
+        return result;
+    }
 
-            this.getPrintStream().print(d);
-        }
+    @Override
+    public JobExecutor removeExecutorInstance(final JobExecutorData executorData) {
 
-        @Override
-        public void print(final float f) {
+        JobExecutorUtils.checkJobExecutorData(executorData, true);
+        final JobExecutor result = this.executors.remove(executorData);
 
-            this.getPrintStream().print(f);
-        }
+        if (result != null) {
 
-        @Override
-        public void print(final int i) {
+            BasicJobManager.unregisterMBean(this.buildExecutorMBeanName(
+                    result.getExecutorData()));
+            result.cleanUp();
 
-            this.getPrintStream().print(i);
-        }
+            // its jobs go w/ it
+            final List<JobContentData> removedJobs = new ArrayList<>();
 
-        @Override
-        public void print(final long l) {
+            result.getAllCompletedJobs(removedJobs, false);
+            result.getAllRunningJobs(removedJobs, false);
+            result.getAllPendingJobs(removedJobs, false);
 
-            this.getPrintStream().print(l);
-        }
+            for (final JobContentData item : removedJobs) {
 
-        @Override
-        public void print(final Object obj) {
+                this.jobChanges.add(result.getExecutorData(), item.getId(),
+                        JobChangeLog.ChangeKind.removed);
+            }
 
-            this.getPrintStream().print(obj);
+            this.executorSequence.incrementAndGet();
+            this.changeNotifier.signal();
         }
 
-        @Override
-        public void print(final String s) {
-
-            this.getPrintStream().print(s);
-        }
+        return result;
+    }
 
-        @Override
-        public PrintStream printf(final Locale l, final String format,
-                                  final Object... args) {
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.opsysinc.scripting.server.engine.JobManager#resizeExecutorInstance(com.opsysinc.scripting.shared.JobExecutorData, int)
+     */
+    @Override
+    public JobExecutor resizeExecutorInstance(final JobExecutorData executorData,
+                                              final int replicaCount) {
 
-            return this.getPrintStream().printf(l, format, args);
-        }
+        JobExecutorUtils.checkJobExecutorData(executorData, true);
+        final JobExecutor result = this.executors.get(executorData);
 
-        @Override
-        public PrintStream printf(final String format, final Object... args) {
+        if (result != null) {
 
-            return this.getPrintStream().printf(format, args);
+            result.resize(this.resolveReplicaCount(result.getExecutorData(),
+                    replicaCount));
+            this.executorSequence.incrementAndGet();
+            this.changeNotifier.signal();
         }
 
-        @Override
-        public void println() {
+        return result;
+    }
 
-            this.getPrintStream().println();
-        }
+    /**
+     * Resolves effective replica count for an executor.
+     *
+     * @param executorData Executor data.
+     * @return Replica count (1 for session executors and non-replicable
+     * engines, one per core for auto-sized pools).
+     */
+    private int resolveReplicaCount(final JobExecutorData executorData) {
 
-        @Override
-        public void println(final boolean x) {
+        return this.resolveReplicaCount(executorData,
+                executorData.getReplicaCount());
+    }
 
-            this.getPrintStream().println(x);
-        }
+    /**
+     * Resolves effective replica count for an executor.
+     *
+     * @param executorData Executor data.
+     * @param replicaCount Requested replica count.
+     * @return Replica count (1 for session executors and non-replicable
+     * engines, one per core for auto-sized pools).
+     */
+    private int resolveReplicaCount(final JobExecutorData executorData,
+                                    final int replicaCount) {
 
-        @Override
-        public void println(final char x) {
+        if (!executorData.isPooled()
+                || !executorData.getType().isReplicable()) {
 
-            this.getPrintStream().println(x);
+            return JobExecutorData.DEFAULT_REPLICA_COUNT;
         }
 
-        @Override
-        public void println(final char[] x) {
-
-            this.getPrintStream().println(x);
-        }
+        final int coreCount = Runtime.getRuntime().availableProcessors();
+        int result = replicaCount;
 
-        @Override
-        public void println(final double x) {
+        if (result == JobExecutorData.AUTO_REPLICA_COUNT) {
 
-            this.getPrintStream().println(x);
+            result = coreCount;
         }
 
-        @Override
-        public void println(final float x) {
-
-            this.getPrintStream().println(x);
-        }
+        return Math.min(result,
+                Math.max(BasicJobManager.DEFAULT_JOB_EXECUTOR_COUNT, coreCount));
+    }
 
-        @Override
-        public void println(final int x) {
+    @Override
+    public boolean setThreadOutputBuffer(final JobOutputBuffer outputBuffer) {
 
-            this.getPrintStream().println(x);
-        }
+        return BasicJobManager.OUTPUT_CAPTURE.setThreadOutputBuffer(outputBuffer);
+    }
 
-        @Override
-        public void println(final long x) {
+    @Override
+    public JobContentData submitJob(final JobContentData contentData) {
 
-            this.getPrintStream().println(x);
-        }
+        JobContentUtils.checkJobStateData(contentData, false);
 
-        @Override
-        public void println(final Object x) {
+        final JobExecutorData executorData = contentData.getExecutorData();
+        JobExecutorUtils.checkJobExecutorData(executorData, true);
 
-            this.getPrintStream().println(x);
-        }
+        final JobExecutor executor = this.getExecutorInstance(executorData);
 
-        @Override
-        public void println(final String x) {
+        if (executor == null) {
 
-            this.getPrintStream().println(x);
-        }
+            throw new IllegalArgumentException("missing executor");
 
-        @Override
-        public void write(final byte[] arg0) throws IOException {
+        } else {
 
-            this.getPrintStream().write(arg0);
+            executor.submitJob(contentData);
         }
 
-        @Override
-        public void write(final byte[] buf, final int off, final int len) {
-
-            this.getPrintStream().write(buf, off, len);
-        }
+        return contentData;
+    }
 
-        @Override
-        public void write(final int b) {
+    /**
+     * Job executor factory.
+     *
+     * @author mkitchin
+     */
+    private interface JobExecutorFactory {
 
-            this.getPrintStream().write(b);
-        }
+        /**
+         * Creates job executor (main method).
+         *
+         * @return Job executor.
+         */
+        JobExecutor createJobExecutor(JobManager jobManager,
+                                      JobExecutorData executorData);
     }
 }
@@ -0,0 +1,100 @@
+package com.opsysinc.scripting.server.engine;
+
+import com.opsysinc.scripting.shared.JobDataUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Job manager management bean (JMX).
+ *
+ * @author mkitchin
+ */
+public class BasicJobManagerMXBean implements JobManagerMXBean {
+
+    /**
+     * Job manager.
+     */
+    private final JobManager jobManager;
+
+    /**
+     * Basic ctor.
+     *
+     * @param jobManager Job manager.
+     */
+    public BasicJobManagerMXBean(final JobManager jobManager) {
+
+        JobDataUtils.checkNullObject(jobManager, true);
+        this.jobManager = jobManager;
+    }
+
+    @Override
+    public int drainAllQueues() {
+
+        int result = 0;
+
+        for (final JobExecutor item : this.getExecutors()) {
+
+            result += item.drainPendingJobs();
+        }
+
+        return result;
+    }
+
+    @Override
+    public long getChangeSequence() {
+
+        return this.jobManager.getChangeSequence();
+    }
+
+    @Override
+    public int getExecutorCount() {
+
+        return this.getExecutors().size();
+    }
+
+    @Override
+    public long getExecutorSequence() {
+
+        return this.jobManager.getExecutorSequence();
+    }
+
+    /**
+     * Gets executors.
+     *
+     * @return Executors (snapshot).
+     */
+    private List<JobExecutor> getExecutors() {
+
+        final List<JobExecutor> result = new ArrayList<>();
+        this.jobManager.getAllExecutorInstances(result, false);
+
+        return result;
+    }
+
+    @Override
+    public int getPendingJobCount() {
+
+        int result = 0;
+
+        for (final JobExecutor item : this.getExecutors()) {
+
+            result += item.getPendingJobCount();
+        }
+
+        return result;
+    }
+
+    @Override
+    public int getRunningJobCount() {
+
+        int result = 0;
+
+        for (final JobExecutor item : this.getExecutors()) {
+
+            result += item.getRunningJobCount();
+        }
+
+        return result;
+    }
+}
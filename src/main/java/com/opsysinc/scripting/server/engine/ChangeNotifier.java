@@ -0,0 +1,198 @@
+package com.opsysinc.scripting.server.engine;
+
+import com.opsysinc.scripting.shared.JobDataUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Change notifier (job/executor changes), for long-poll waiters.
+ * <p/>
+ * Each change bumps a sequence and calls back all waiters once (outside the
+ * notifier lock), so no request thread is parked while waiting. Waiters are
+ * capped, to bound per-change fan-out.
+ *
+ * @author mkitchin
+ */
+public class ChangeNotifier {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER;
+
+    /**
+     * Max concurrent waiters.
+     */
+    private final int maxWaiters;
+
+    /**
+     * Current waiters.
+     */
+    private final Set<ChangeNotifier.Waiter> waiters;
+
+    /**
+     * Last change sequence.
+     */
+    private long sequence;
+
+    static {
+
+        LOGGER = Logger.getLogger(ChangeNotifier.class.getName());
+    }
+
+    /**
+     * Basic ctor.
+     *
+     * @param maxWaiters Max concurrent waiters (>=0).
+     */
+    public ChangeNotifier(final int maxWaiters) {
+
+        if (maxWaiters < 0) {
+
+            throw new IllegalArgumentException("invalid input (maxWaiters)");
+        }
+
+        this.maxWaiters = maxWaiters;
+        this.waiters = new LinkedHashSet<>();
+        this.sequence = 0L;
+    }
+
+    /**
+     * Adds waiter for a change after sequence (called back at once if
+     * already past it, e.g., after a restart).
+     *
+     * @param fromSequence Change sequence to wait past.
+     * @param waiter       Waiter (called back once).
+     * @return True if added (or called back), false if too many waiters
+     * (caller should poll instead).
+     */
+    public boolean addWaiter(final long fromSequence,
+                             final ChangeNotifier.Waiter waiter) {
+
+        JobDataUtils.checkNullObject(waiter, true);
+        final long workSequence;
+
+        synchronized (this) {
+
+            if (this.sequence == fromSequence) {
+
+                if (this.waiters.size() >= this.maxWaiters) {
+
+                    return false;
+                }
+
+                this.waiters.add(waiter);
+                return true;
+            }
+
+            workSequence = this.sequence;
+        }
+
+        ChangeNotifier.callWaiter(waiter, workSequence);
+        return true;
+    }
+
+    /**
+     * Calls back waiter (errors are logged, so signallers never see them).
+     *
+     * @param waiter   Waiter.
+     * @param sequence Last change sequence.
+     */
+    private static void callWaiter(final ChangeNotifier.Waiter waiter,
+                                   final long sequence) {
+
+        try {
+
+            waiter.onChange(sequence);
+
+        } catch (final RuntimeException ex) {
+
+            ChangeNotifier.LOGGER.log(Level.WARNING, "Can't call change waiter", ex);
+        }
+    }
+
+    /**
+     * Gets last change sequence.
+     *
+     * @return Last change sequence (0 = no changes).
+     */
+    public synchronized long getSequence() {
+
+        return this.sequence;
+    }
+
+    /**
+     * Gets current waiters.
+     *
+     * @return Current waiters.
+     */
+    public synchronized int getWaiterCount() {
+
+        return this.waiters.size();
+    }
+
+    /**
+     * Removes waiter (e.g., on timeout).
+     *
+     * @param waiter Waiter.
+     * @return True if removed (not yet called back), false otherwise.
+     */
+    public synchronized boolean removeWaiter(final ChangeNotifier.Waiter waiter) {
+
+        JobDataUtils.checkNullObject(waiter, true);
+        return this.waiters.remove(waiter);
+    }
+
+    /**
+     * Signals change (calls back all waiters).
+     *
+     * @return New change sequence.
+     */
+    public long signal() {
+
+        final long result;
+        final List<ChangeNotifier.Waiter> workWaiters;
+
+        synchronized (this) {
+
+            this.sequence++;
+            result = this.sequence;
+
+            if (this.waiters.isEmpty()) {
+
+                return result;
+            }
+
+            workWaiters = new ArrayList<>(this.waiters);
+            this.waiters.clear();
+        }
+
+        for (final ChangeNotifier.Waiter item : workWaiters) {
+
+            ChangeNotifier.callWaiter(item, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Change waiter.
+     *
+     * @author mkitchin
+     */
+    public interface Waiter {
+
+        /**
+         * Change after waited-for sequence (called on the signalling
+         * thread, e.g., a job worker; hand off any I/O).
+         *
+         * @param sequence Last change sequence.
+         */
+        void onChange(long sequence);
+    }
+}
@@ -0,0 +1,241 @@
+package com.opsysinc.scripting.server.engine;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.opsysinc.scripting.shared.JobDataUtils;
+
+import javax.script.CompiledScript;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of compiled scripts, keyed by engine replica and request
+ * body hash (SHA-256, trusted as unique; the text itself isn't kept).
+ * <p/>
+ * Compiled scripts are bound to the engine that compiled them, so the cache
+ * must be invalidated whenever engines are replaced (new engine generation).
+ *
+ * @author mkitchin
+ */
+public class CompiledScriptCache {
+
+    /**
+     * Max entries.
+     */
+    private final int maxEntries;
+
+    /**
+     * Cache entries (access-ordered).
+     */
+    private final Map<String, CompiledScript> entries;
+
+    /**
+     * Hit count.
+     */
+    private final AtomicLong hitCount;
+
+    /**
+     * Miss count.
+     */
+    private final AtomicLong missCount;
+
+    /**
+     * Eviction count.
+     */
+    private final AtomicLong evictionCount;
+
+    /**
+     * Engine generation.
+     */
+    private final AtomicLong generation;
+
+    /**
+     * Basic ctor.
+     *
+     * @param maxEntries Max entries (>0).
+     */
+    public CompiledScriptCache(final int maxEntries) {
+
+        if (maxEntries < 1) {
+
+            throw new IllegalArgumentException("invalid input (maxEntries)");
+        }
+
+        this.maxEntries = maxEntries;
+        this.hitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+        this.evictionCount = new AtomicLong();
+        this.generation = new AtomicLong();
+
+        this.entries = new LinkedHashMap<String, CompiledScript>(
+                16, 0.75f, true) {
+
+            /**
+             * Default serial version UID.
+             */
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<String, CompiledScript> eldest) {
+
+                final boolean result = this.size() > CompiledScriptCache.this.maxEntries;
+
+                if (result) {
+
+                    CompiledScriptCache.this.evictionCount.incrementAndGet();
+                }
+
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Builds cache key (once per script run; pass it to get(), then to put()
+     * on a miss).
+     *
+     * @param replicaIndex Engine replica index.
+     * @param inputText    Script text.
+     * @return Cache key.
+     */
+    public static String buildKey(final int replicaIndex,
+                                  final String inputText) {
+
+        JobDataUtils.checkNullObject(inputText, true);
+
+        return replicaIndex + ":"
+                + Hashing.sha256().hashString(inputText, Charsets.UTF_8);
+    }
+
+    /**
+     * Gets compiled script.
+     *
+     * @param key Cache key (from buildKey()).
+     * @return Compiled script if found, null otherwise.
+     */
+    public CompiledScript get(final String key) {
+
+        JobDataUtils.checkNullObject(key, true);
+        final CompiledScript result;
+
+        synchronized (this.entries) {
+
+            result = this.entries.get(key);
+        }
+
+        if (result != null) {
+
+            this.hitCount.incrementAndGet();
+
+        } else {
+
+            this.missCount.incrementAndGet();
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets eviction count.
+     *
+     * @return Eviction count.
+     */
+    public long getEvictionCount() {
+
+        return this.evictionCount.get();
+    }
+
+    /**
+     * Gets engine generation.
+     *
+     * @return Engine generation (bumped by each invalidate()).
+     */
+    public long getGeneration() {
+
+        return this.generation.get();
+    }
+
+    /**
+     * Gets hit count.
+     *
+     * @return Hit count.
+     */
+    public long getHitCount() {
+
+        return this.hitCount.get();
+    }
+
+    /**
+     * Gets max entries.
+     *
+     * @return Max entries.
+     */
+    public int getMaxEntries() {
+
+        return this.maxEntries;
+    }
+
+    /**
+     * Gets miss count.
+     *
+     * @return Miss count.
+     */
+    public long getMissCount() {
+
+        return this.missCount.get();
+    }
+
+    /**
+     * Gets current size.
+     *
+     * @return Current entry count.
+     */
+    public int getSize() {
+
+        synchronized (this.entries) {
+
+            return this.entries.size();
+        }
+    }
+
+    /**
+     * Drops all entries and starts a new engine generation.
+     */
+    public void invalidate() {
+
+        synchronized (this.entries) {
+
+            this.entries.clear();
+            this.generation.incrementAndGet();
+        }
+    }
+
+    /**
+     * Puts compiled script.
+     *
+     * @param key            Cache key (from buildKey()).
+     * @param compiledScript Compiled script.
+     * @param generation     Engine generation script was compiled under.
+     * @return True if stored, false if generation is stale.
+     */
+    public boolean put(final String key, final CompiledScript compiledScript,
+                       final long generation) {
+
+        JobDataUtils.checkNullObject(key, true);
+        JobDataUtils.checkNullObject(compiledScript, true);
+
+        synchronized (this.entries) {
+
+            if (generation != this.generation.get()) {
+
+                return false;
+            }
+
+            this.entries.put(key, compiledScript);
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,586 @@
+package com.opsysinc.scripting.server.engine;
+
+import com.opsysinc.scripting.shared.JobContentData;
+import com.opsysinc.scripting.shared.JobDataUtils;
+import com.opsysinc.scripting.shared.JobOutputData;
+import com.opsysinc.scripting.shared.JobRequestData;
+import com.opsysinc.scripting.shared.JobResponseData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Completed job store, indexed by modified time (at completion).
+ * <p/>
+ * Range reads are lock-free and O(log n + k); adds/removes serialize on the
+ * store. Retention is bounded by job count, estimated bytes and age (oldest
+ * jobs go first); expired jobs are removed on add and before reads. An
+ * optional removal listener hears about every job dropped (evicted, cleared
+ * or taken), so change logs can track removals.
+ *
+ * @author mkitchin
+ */
+public class CompletedJobStore {
+
+    /**
+     * Default estimated fixed bytes per job (object overhead).
+     */
+    public static final long DEFAULT_JOB_OVERHEAD_BYTES = 512L;
+
+    /**
+     * Max jobs retained.
+     */
+    private final int maxCount;
+
+    /**
+     * Max estimated bytes retained.
+     */
+    private final long maxBytes;
+
+    /**
+     * Max job age in ms (0 = no limit).
+     */
+    private final long maxAgeInMS;
+
+    /**
+     * Jobs by (modified time, sequence).
+     */
+    private final ConcurrentSkipListMap<CompletedJobStore.StoreKey, JobContentData> jobs;
+
+    /**
+     * Keys by job id.
+     */
+    private final Map<String, CompletedJobStore.StoreKey> keys;
+
+    /**
+     * Removal listener (may be null).
+     */
+    private final CompletedJobStore.RemovalListener removalListener;
+
+    /**
+     * Next sequence (tie-breaker for equal modified times).
+     */
+    private long nextSequence;
+
+    /**
+     * Estimated bytes retained.
+     */
+    private long totalBytes;
+
+    /**
+     * Basic ctor.
+     *
+     * @param maxCount   Max jobs retained (>0).
+     * @param maxBytes   Max estimated bytes retained (>0).
+     * @param maxAgeInMS Max job age in ms (0 = no limit).
+     */
+    public CompletedJobStore(final int maxCount, final long maxBytes,
+                             final long maxAgeInMS) {
+
+        this(maxCount, maxBytes, maxAgeInMS, null);
+    }
+
+    /**
+     * Basic ctor.
+     *
+     * @param maxCount        Max jobs retained (>0).
+     * @param maxBytes        Max estimated bytes retained (>0).
+     * @param maxAgeInMS      Max job age in ms (0 = no limit).
+     * @param removalListener Removal listener (may be null).
+     */
+    public CompletedJobStore(final int maxCount, final long maxBytes,
+                             final long maxAgeInMS,
+                             final CompletedJobStore.RemovalListener removalListener) {
+
+        if (maxCount < 1) {
+
+            throw new IllegalArgumentException("invalid input (maxCount)");
+        }
+
+        if (maxBytes < 1L) {
+
+            throw new IllegalArgumentException("invalid input (maxBytes)");
+        }
+
+        if (maxAgeInMS < 0L) {
+
+            throw new IllegalArgumentException("invalid input (maxAgeInMS)");
+        }
+
+        this.maxCount = maxCount;
+        this.maxBytes = maxBytes;
+        this.maxAgeInMS = maxAgeInMS;
+        this.removalListener = removalListener;
+        this.jobs = new ConcurrentSkipListMap<>();
+        this.keys = new ConcurrentHashMap<>();
+        this.nextSequence = 0L;
+        this.totalBytes = 0L;
+    }
+
+    /**
+     * Estimates retained size of job.
+     *
+     * @param contentData Content data.
+     * @return Estimated bytes.
+     */
+    private static long estimateBytes(final JobContentData contentData) {
+
+        long result = CompletedJobStore.DEFAULT_JOB_OVERHEAD_BYTES;
+
+        final JobRequestData requestData = contentData.getRequestData();
+        final JobResponseData responseData = contentData.getResponseData();
+        final JobOutputData outputData = contentData.getOutputData();
+
+        if ((requestData != null) && (requestData.getRequestBody() != null)) {
+
+            result += 2L * requestData.getRequestBody().length();
+        }
+
+        if ((responseData != null) && (responseData.getResponseBody() != null)) {
+
+            result += 2L * responseData.getResponseBody().length();
+        }
+
+        if ((outputData != null) && (outputData.getOutputBody() != null)) {
+
+            result += 2L * outputData.getOutputBody().length();
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds (or replaces) job, then applies retention limits.
+     *
+     * @param contentData Content data.
+     */
+    public void add(final JobContentData contentData) {
+
+        JobDataUtils.checkNullObject(contentData, true);
+        final List<JobContentData> removedJobs = new ArrayList<>();
+
+        synchronized (this) {
+
+            this.removeKey(this.keys.get(contentData.getId()));
+
+            final CompletedJobStore.StoreKey storeKey = new CompletedJobStore.StoreKey(
+                    contentData.getModifiedTime(), this.nextSequence++,
+                    CompletedJobStore.estimateBytes(contentData));
+
+            this.jobs.put(storeKey, contentData);
+            this.keys.put(contentData.getId(), storeKey);
+            this.totalBytes += storeKey.getBytes();
+
+            this.applyLimits(System.currentTimeMillis(), removedJobs);
+            this.notifyAll();
+        }
+
+        this.notifyRemoved(removedJobs);
+    }
+
+    /**
+     * Applies retention limits (caller must hold store lock).
+     *
+     * @param nowInMS     Current time in ms.
+     * @param removedJobs Removed jobs target (notified once lock is released).
+     * @return True if anything was removed, false otherwise.
+     */
+    private boolean applyLimits(final long nowInMS,
+                                final List<JobContentData> removedJobs) {
+
+        boolean result = false;
+
+        while (!this.jobs.isEmpty()) {
+
+            final CompletedJobStore.StoreKey firstKey = this.jobs.firstKey();
+
+            if ((this.jobs.size() > this.maxCount)
+                    || (this.totalBytes > this.maxBytes)
+                    || ((this.maxAgeInMS > 0L)
+                    && ((nowInMS - firstKey.getModifiedTime()) > this.maxAgeInMS))) {
+
+                removedJobs.add(this.removeKey(firstKey));
+                result = true;
+
+            } else {
+
+                break;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes all jobs.
+     *
+     * @return True if store was modified, false otherwise.
+     */
+    public boolean clear() {
+
+        final List<JobContentData> removedJobs;
+
+        synchronized (this) {
+
+            removedJobs = new ArrayList<>(this.jobs.values());
+
+            this.jobs.clear();
+            this.keys.clear();
+            this.totalBytes = 0L;
+        }
+
+        this.notifyRemoved(removedJobs);
+        return !removedJobs.isEmpty();
+    }
+
+    /**
+     * Gets all jobs (oldest first).
+     *
+     * @param target       Target collection.
+     * @param isClearFirst True to clear target collection first, false otherwise.
+     * @return True if target collection modified, false otherwise.
+     */
+    public boolean getAll(final Collection<JobContentData> target,
+                          final boolean isClearFirst) {
+
+        JobDataUtils.checkNullObject(target, true);
+
+        if (isClearFirst) {
+
+            target.clear();
+        }
+
+        this.checkExpired();
+
+        return target.addAll(this.jobs.values());
+    }
+
+    /**
+     * Removes expired jobs, if oldest job is past max age (lock-free check
+     * first, so reads only serialize when there is something to remove).
+     */
+    private void checkExpired() {
+
+        if (this.maxAgeInMS < 1L) {
+
+            // ignore, return
+            return;
+        }
+
+        final Map.Entry<CompletedJobStore.StoreKey, JobContentData> firstEntry = this.jobs
+                .firstEntry();
+
+        if ((firstEntry != null)
+                && ((System.currentTimeMillis() - firstEntry.getKey()
+                .getModifiedTime()) > this.maxAgeInMS)) {
+
+            this.removeExpired();
+        }
+    }
+
+    /**
+     * Gets job by id.
+     *
+     * @param jobId Job id.
+     * @return Job if found, null otherwise.
+     */
+    public JobContentData get(final String jobId) {
+
+        JobDataUtils.checkEmptyString(jobId, true);
+        final CompletedJobStore.StoreKey storeKey = this.keys.get(jobId);
+
+        return (storeKey == null) ? null : this.jobs.get(storeKey);
+    }
+
+    /**
+     * Gets jobs modified after time (oldest first).
+     *
+     * @param timeInMS     Job modified time to select after (0 = all).
+     * @param maxCount     Max jobs to select (newest are kept).
+     * @param target       Target collection.
+     * @param isClearFirst True to clear target collection first, false otherwise.
+     * @return True if target collection modified, false otherwise.
+     */
+    public boolean getFromTime(final long timeInMS, final int maxCount,
+                               final Collection<JobContentData> target,
+                               final boolean isClearFirst) {
+
+        JobDataUtils.checkNullObject(target, true);
+        boolean result = false;
+
+        if (isClearFirst && !target.isEmpty()) {
+
+            target.clear();
+            result = true;
+        }
+
+        this.checkExpired();
+
+        // newest first, then restore order
+        final NavigableMap<CompletedJobStore.StoreKey, JobContentData> fromJobs = this.jobs
+                .tailMap(new CompletedJobStore.StoreKey(timeInMS, Long.MAX_VALUE, 0L), false)
+                .descendingMap();
+        final List<JobContentData> foundJobs = new ArrayList<>();
+
+        for (final JobContentData item : fromJobs.values()) {
+
+            if (foundJobs.size() >= maxCount) {
+
+                break;
+            }
+
+            foundJobs.add(item);
+        }
+
+        Collections.reverse(foundJobs);
+
+        if (target.addAll(foundJobs)) {
+
+            result = true;
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets max jobs retained.
+     *
+     * @return Max jobs retained.
+     */
+    public int getMaxCount() {
+
+        return this.maxCount;
+    }
+
+    /**
+     * Gets job count.
+     *
+     * @return Job count.
+     */
+    public int getSize() {
+
+        this.checkExpired();
+
+        return this.jobs.size();
+    }
+
+    /**
+     * Gets estimated bytes retained.
+     *
+     * @return Estimated bytes retained.
+     */
+    public long getTotalBytes() {
+
+        this.checkExpired();
+
+        synchronized (this) {
+
+            return this.totalBytes;
+        }
+    }
+
+    /**
+     * Removes jobs past max age.
+     *
+     * @return True if anything was removed, false otherwise.
+     */
+    public boolean removeExpired() {
+
+        final List<JobContentData> removedJobs = new ArrayList<>();
+        final boolean result;
+
+        synchronized (this) {
+
+            result = this.applyLimits(System.currentTimeMillis(), removedJobs);
+        }
+
+        this.notifyRemoved(removedJobs);
+        return result;
+    }
+
+    /**
+     * Removes (oldest) first job.
+     *
+     * @param isToBlock True to block until a job is available, false
+     *                  otherwise.
+     * @return First job if found, null otherwise.
+     * @throws InterruptedException Interrupted exception.
+     */
+    public JobContentData removeFirst(final boolean isToBlock)
+            throws InterruptedException {
+
+        final JobContentData result;
+
+        synchronized (this) {
+
+            while (isToBlock && this.jobs.isEmpty()) {
+
+                this.wait();
+            }
+
+            if (this.jobs.isEmpty()) {
+
+                return null;
+            }
+
+            result = this.removeKey(this.jobs.firstKey());
+        }
+
+        this.notifyRemoved(Collections.singletonList(result));
+        return result;
+    }
+
+    /**
+     * Notifies removal listener (caller must not hold store lock).
+     *
+     * @param removedJobs Removed jobs (null entries are skipped).
+     */
+    private void notifyRemoved(final List<JobContentData> removedJobs) {
+
+        if (this.removalListener == null) {
+
+            return;
+        }
+
+        for (final JobContentData item : removedJobs) {
+
+            if (item != null) {
+
+                this.removalListener.jobRemoved(item);
+            }
+        }
+    }
+
+    /**
+     * Removes job by key (caller must hold store lock).
+     *
+     * @param storeKey Store key (may be null).
+     * @return Removed job if found, null otherwise.
+     */
+    private JobContentData removeKey(final CompletedJobStore.StoreKey storeKey) {
+
+        if (storeKey == null) {
+
+            return null;
+        }
+
+        final JobContentData contentData = this.jobs.remove(storeKey);
+
+        if (contentData != null) {
+
+            this.keys.remove(contentData.getId());
+            this.totalBytes -= storeKey.getBytes();
+        }
+
+        return contentData;
+    }
+
+    /**
+     * Removal listener (called on the removing thread, after the store lock
+     * is released).
+     *
+     * @author mkitchin
+     */
+    public interface RemovalListener {
+
+        /**
+         * Job removed (evicted, cleared or taken).
+         *
+         * @param contentData Removed job.
+         */
+        void jobRemoved(JobContentData contentData);
+    }
+
+    /**
+     * Store key (modified time, then insertion sequence).
+     *
+     * @author mkitchin
+     */
+    private static final class StoreKey implements Comparable<CompletedJobStore.StoreKey> {
+
+        /**
+         * Modified time in ms.
+         */
+        private final long modifiedTime;
+
+        /**
+         * Insertion sequence.
+         */
+        private final long sequence;
+
+        /**
+         * Estimated job bytes.
+         */
+        private final long bytes;
+
+        /**
+         * Basic ctor.
+         *
+         * @param modifiedTime Modified time in ms.
+         * @param sequence     Insertion sequence.
+         * @param bytes        Estimated job bytes.
+         */
+        private StoreKey(final long modifiedTime, final long sequence,
+                         final long bytes) {
+
+            this.modifiedTime = modifiedTime;
+            this.sequence = sequence;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int compareTo(final CompletedJobStore.StoreKey o) {
+
+            if (this.modifiedTime != o.modifiedTime) {
+
+                return (this.modifiedTime < o.modifiedTime) ? -1 : 1;
+            }
+
+            if (this.sequence != o.sequence) {
+
+                return (this.sequence < o.sequence) ? -1 : 1;
+            }
+
+            return 0;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+
+            return (obj instanceof CompletedJobStore.StoreKey)
+                    && (this.compareTo((CompletedJobStore.StoreKey) obj) == 0);
+        }
+
+        /**
+         * Gets estimated job bytes.
+         *
+         * @return Estimated job bytes.
+         */
+        private long getBytes() {
+
+            return this.bytes;
+        }
+
+        /**
+         * Gets modified time.
+         *
+         * @return Modified time in ms.
+         */
+        private long getModifiedTime() {
+
+            return this.modifiedTime;
+        }
+
+        @Override
+        public int hashCode() {
+
+            return (int) (this.modifiedTime ^ (this.sequence * 31L));
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.opsysinc.scripting.server.engine;
+
+import com.opsysinc.scripting.shared.JobDataUtils;
+import com.opsysinc.scripting.shared.JobExecutorData;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Job change log, ordered by a monotonic change sequence.
+ * <p/>
+ * Keeps small change records (job id, executor, kind) rather than job
+ * bodies; readers resolve bodies from the live executors. Each job is kept
+ * once, at its latest change, so reads from a sequence return exactly the
+ * jobs changed (or removed) since then in O(log n + k). Adds serialize on
+ * the log; reads are lock-free.
+ * <p/>
+ * Once the oldest records are trimmed, readers from before the trim point
+ * are told to resync (reload all jobs), since their missed changes are gone.
+ *
+ * @author mkitchin
+ */
+public class JobChangeLog {
+
+    /**
+     * Max records retained.
+     */
+    private final int maxSize;
+
+    /**
+     * Records by change sequence.
+     */
+    private final ConcurrentSkipListMap<Long, JobChangeLog.ChangeRecord> changes;
+
+    /**
+     * Change sequences by job id.
+     */
+    private final Map<String, Long> sequences;
+
+    /**
+     * Last (published) change sequence.
+     */
+    private final AtomicLong sequence;
+
+    /**
+     * Last trimmed change sequence (0 = none trimmed).
+     */
+    private volatile long trimmedSequence;
+
+    /**
+     * Basic ctor.
+     *
+     * @param maxSize Max records retained (>0; oldest changes are dropped).
+     */
+    public JobChangeLog(final int maxSize) {
+
+        if (maxSize < 1) {
+
+            throw new IllegalArgumentException("invalid input (maxSize)");
+        }
+
+        this.maxSize = maxSize;
+        this.changes = new ConcurrentSkipListMap<>();
+        this.sequences = new ConcurrentHashMap<>();
+        this.sequence = new AtomicLong(0L);
+        this.trimmedSequence = 0L;
+    }
+
+    /**
+     * Adds job change.
+     *
+     * @param executorData Executor data.
+     * @param jobId        Job id.
+     * @param changeKind   Change kind.
+     * @return Change sequence.
+     */
+    public synchronized long add(final JobExecutorData executorData,
+                                 final String jobId,
+                                 final JobChangeLog.ChangeKind changeKind) {
+
+        JobDataUtils.checkNullObject(executorData, true);
+        JobDataUtils.checkEmptyString(jobId, true);
+        JobDataUtils.checkNullObject(changeKind, true);
+
+        final long result = this.sequence.get() + 1L;
+        final Long prevSequence = this.sequences.put(jobId, result);
+
+        if (prevSequence != null) {
+
+            this.changes.remove(prevSequence);
+        }
+
+        this.changes.put(result, new JobChangeLog.ChangeRecord(result,
+                executorData, jobId, changeKind));
+
+        while (this.changes.size() > this.maxSize) {
+
+            final Map.Entry<Long, JobChangeLog.ChangeRecord> oldEntry = this.changes
+                    .pollFirstEntry();
+
+            this.sequences.remove(oldEntry.getValue().getJobId());
+            this.trimmedSequence = oldEntry.getKey();
+        }
+
+        // publish last, so readers never see a sequence w/o its record
+        this.sequence.set(result);
+        return result;
+    }
+
+    /**
+     * Gets records changed after sequence, up to (and incl.) a later
+     * sequence.
+     *
+     * @param fromSequence Change sequence to select after (0 = none yet).
+     * @param toSequence   Change sequence to select up to (e.g., from
+     *                     {@link #getSequence()}).
+     * @param target       Target collection (oldest change first).
+     * @param isClearFirst True to clear target collection first, false otherwise.
+     * @return True if caller must resync instead (from sequence is 0, past
+     * to sequence, e.g., after a restart, or older than the trimmed
+     * records), false otherwise.
+     */
+    public boolean getFromSequence(final long fromSequence,
+                                   final long toSequence,
+                                   final Collection<JobChangeLog.ChangeRecord> target,
+                                   final boolean isClearFirst) {
+
+        JobDataUtils.checkNullObject(target, true);
+
+        if (isClearFirst) {
+
+            target.clear();
+        }
+
+        if ((fromSequence < 1L) || (fromSequence > toSequence)
+                || (fromSequence < this.trimmedSequence)) {
+
+            return true;
+        }
+
+        if (fromSequence < toSequence) {
+
+            target.addAll(this.changes.subMap(fromSequence, false,
+                    toSequence, true).values());
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets last change sequence.
+     *
+     * @return Last change sequence (0 = no changes).
+     */
+    public long getSequence() {
+
+        return this.sequence.get();
+    }
+
+    /**
+     * Gets record count.
+     *
+     * @return Record count.
+     */
+    public int getSize() {
+
+        return this.changes.size();
+    }
+
+    /**
+     * Gets last trimmed change sequence.
+     *
+     * @return Last trimmed change sequence (0 = none trimmed).
+     */
+    public long getTrimmedSequence() {
+
+        return this.trimmedSequence;
+    }
+
+    /**
+     * Change kind.
+     *
+     * @author mkitchin
+     */
+    public static enum ChangeKind {
+
+        /**
+         * Job submitted, started or completed.
+         */
+        changed,
+
+        /**
+         * Job removed (evicted, cleared or executor removed).
+         */
+        removed
+    }
+
+    /**
+     * Change record.
+     *
+     * @author mkitchin
+     */
+    public static final class ChangeRecord {
+
+        /**
+         * Change sequence.
+         */
+        private final long sequence;
+
+        /**
+         * Executor data.
+         */
+        private final JobExecutorData executorData;
+
+        /**
+         * Job id.
+         */
+        private final String jobId;
+
+        /**
+         * Change kind.
+         */
+        private final JobChangeLog.ChangeKind changeKind;
+
+        /**
+         * Basic ctor.
+         *
+         * @param sequence     Change sequence.
+         * @param executorData Executor data.
+         * @param jobId        Job id.
+         * @param changeKind   Change kind.
+         */
+        private ChangeRecord(final long sequence,
+                             final JobExecutorData executorData,
+                             final String jobId,
+                             final JobChangeLog.ChangeKind changeKind) {
+
+            this.sequence = sequence;
+            this.executorData = executorData;
+            this.jobId = jobId;
+            this.changeKind = changeKind;
+        }
+
+        /**
+         * Gets change kind.
+         *
+         * @return Change kind.
+         */
+        public JobChangeLog.ChangeKind getChangeKind() {
+
+            return this.changeKind;
+        }
+
+        /**
+         * Gets executor data.
+         *
+         * @return Executor data.
+         */
+        public JobExecutorData getExecutorData() {
+
+            return this.executorData;
+        }
+
+        /**
+         * Gets job id.
+         *
+         * @return Job id.
+         */
+        public String getJobId() {
+
+            return this.jobId;
+        }
+
+        /**
+         * Gets change sequence.
+         *
+         * @return Change sequence.
+         */
+        public long getSequence() {
+
+            return this.sequence;
+        }
+
+        @Override
+        public String toString() {
+
+            return "ChangeRecord [sequence=" + this.sequence + ", jobId="
+                    + this.jobId + ", changeKind=" + this.changeKind + "]";
+        }
+    }
+}
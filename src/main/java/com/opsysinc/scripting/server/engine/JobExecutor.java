@@ -2,7 +2,11 @@ package com.opsysinc.scripting.server.engine;
 
 import com.opsysinc.scripting.shared.JobContentData;
 import com.opsysinc.scripting.shared.JobExecutorData;
-import com.opsysinc.scripting.shared.JobFileData;
+import com.opsysinc.scripting.shared.JobFilesData;
+import com.opsysinc.scripting.shared.JobOutputChunkData;
+import com.opsysinc.scripting.shared.JobTimingStatsData;
+import com.opsysinc.scripting.shared.JobVariableData;
+import com.opsysinc.scripting.shared.JobVariableValueData;
 
 import java.util.Collection;
 import java.util.List;
@@ -15,16 +19,6 @@ import java.util.Map;
  */
 public interface JobExecutor {
 
-    /**
-     * Peek pending job.
-     *
-     * @param isToBlock True to block, false otherwise.
-     * @return Returns pending job if found, null otherwise.
-     * @throws InterruptedException Interrupted exception.
-     */
-    JobContentData checkNextPendingJob(boolean isToBlock)
-            throws InterruptedException;
-
     /**
      * Clean up executor.
      */
@@ -53,6 +47,17 @@ public interface JobExecutor {
     boolean getAllPendingJobs(Collection<JobContentData> target,
                               boolean isClearFirst);
 
+    /**
+     * Gets running (in-flight) jobs.
+     *
+     * @param target       Target collection.
+     * @param isClearFirst True to clear target collection before adding, false
+     *                     otherwise.
+     * @return True if target collection modified, false otherwise.
+     */
+    boolean getAllRunningJobs(Collection<JobContentData> target,
+                              boolean isClearFirst);
+
     /**
      * Gets completed jobs from last job id.
      *
@@ -65,6 +70,19 @@ public interface JobExecutor {
     boolean getCompletedJobsFromTime(long lastJobId,
                                      Collection<JobContentData> target, boolean isClearFirst);
 
+    /**
+     * Gets jobs by id (pending, running or completed; missing ids are
+     * skipped).
+     *
+     * @param jobIds       Job ids.
+     * @param target       Target collection.
+     * @param isClearFirst True to clear target collection before adding, false
+     *                     otherwise.
+     * @return True if target collection modified, false otherwise.
+     */
+    boolean getJobs(Collection<String> jobIds,
+                    Collection<JobContentData> target, boolean isClearFirst);
+
     /**
      * Gets job executor data.
      *
@@ -79,6 +97,22 @@ public interface JobExecutor {
      */
     JobManager getJobManager();
 
+    /**
+     * Gets running job output from offset.
+     *
+     * @param jobId      Job id.
+     * @param fromOffset Byte offset to read from.
+     * @return Output chunk if job is running, null otherwise.
+     */
+    JobOutputChunkData getJobOutput(String jobId, long fromOffset);
+
+    /**
+     * Gets engine replica (worker) count.
+     *
+     * @return Replica count (1 for single-threaded session executors).
+     */
+    int getReplicaCount();
+
     /**
      * Gets pending jobs from last job id.
      *
@@ -91,6 +125,29 @@ public interface JobExecutor {
     boolean getPendingJobsFromTime(long lastJobId,
                                    Collection<JobContentData> target, boolean isClearFirst);
 
+    /**
+     * Gets variable info (names, types and estimated sizes; no values).
+     *
+     * @param variableScope Variable scope.
+     * @param target        Target list (sorted by name).
+     * @param isClearFirst  True to clear target list before populating, false otherwise.
+     * @return True if target list was altered, false otherwise.
+     */
+    boolean getVariableInfo(int variableScope, List<JobVariableData> target,
+                            boolean isClearFirst);
+
+    /**
+     * Gets one page of a formatted variable value.
+     *
+     * @param variableScope  Variable scope.
+     * @param variableFormat Data format.
+     * @param name           Variable name.
+     * @param fromOffset     Char offset to read from.
+     * @return Value page (null values/missing variables read as "null").
+     */
+    JobVariableValueData getVariableValue(int variableScope, int variableFormat,
+                                          String name, int fromOffset);
+
     /**
      * Gets variables.
      *
@@ -104,15 +161,83 @@ public interface JobExecutor {
                          Map<String, String> target, boolean isClearFirst);
 
     /**
-     * Gets files.
+     * Gets files (folder listing page, or changes since index version).
      *
      * @param basePath     Base path w/in file system.
-     * @param target       Target list.
-     * @param isClearFirst True to clear target list before populating, false otherwise.
-     * @return True if target list was altered, false otherwise.
+     * @param fromVersion  Index version to get changes after (0 = listing).
+     * @param fromIndex    Index of first file w/in sorted listing.
+     * @param maxCount     Max files per page.
+     * @param sortOrder    Sort order (see JobFileSortOrder).
+     * @param isDescending True to sort descending, false otherwise.
+     * @return Files data.
+     */
+    JobFilesData getFiles(String basePath, long fromVersion,
+                          int fromIndex, int maxCount,
+                          int sortOrder, boolean isDescending);
+
+    /**
+     * Gets job metrics (counters + histograms).
+     *
+     * @return Job metrics.
+     */
+    JobMetrics getMetrics();
+
+    /**
+     * Gets compiled script cache (hit/miss/eviction counts).
+     *
+     * @return Compiled script cache, null if executor doesn't compile scripts.
+     */
+    CompiledScriptCache getCompiledScriptCache();
+
+    /**
+     * Gets retained (completed) job bytes (estimate).
+     *
+     * @return Retained job bytes.
+     */
+    long getRetainedJobBytes();
+
+    /**
+     * Gets retained (completed) job count.
+     *
+     * @return Retained job count.
+     */
+    int getRetainedJobCount();
+
+    /**
+     * Gets worker threads (none if not started).
+     *
+     * @param target       Target collection.
+     * @param isClearFirst True to clear target collection before adding, false
+     *                     otherwise.
+     * @return True if target collection was altered, false otherwise.
      */
-    boolean getFiles(String basePath,
-                     List<JobFileData> target, boolean isClearFirst);
+    boolean getWorkerThreads(Collection<Thread> target, boolean isClearFirst);
+
+    /**
+     * Gets pending (queued) job count.
+     *
+     * @return Pending job count.
+     */
+    int getPendingJobCount();
+
+    /**
+     * Gets running (in-flight) job count.
+     *
+     * @return Running job count.
+     */
+    int getRunningJobCount();
+
+    /**
+     * Gets job timing stats (phase totals/maxes over completed jobs).
+     *
+     * @return Timing stats.
+     */
+    JobTimingStatsData getTimingStats();
+
+    /**
+     * Resets job stats (timing stats and metrics).
+     */
+    void resetStats();
 
     /**
      * Clear completed jobs.
@@ -121,6 +246,13 @@ public interface JobExecutor {
      */
     boolean removeAllCompletedJobs();
 
+    /**
+     * Drain pending jobs (each completes as failed, w/o running).
+     *
+     * @return Drained job count.
+     */
+    int drainPendingJobs();
+
     /**
      * Clear pending jobs.
      *
@@ -148,6 +280,23 @@ public interface JobExecutor {
     JobContentData removeNextPendingJob(boolean isToBlock)
             throws InterruptedException;
 
+    /**
+     * Reset script engine(s) (clears completed jobs, then drains pending jobs;
+     * drained jobs are kept as completed).
+     */
+    void resetEngine();
+
+    /**
+     * Resize engine replica (worker) pool.
+     * <p/>
+     * Workers are stopped (running jobs are interrupted) and replica engines
+     * rebuilt at the new count once every old worker has exited (deferred to
+     * the last one if any outlive the join wait); pending jobs are kept.
+     *
+     * @param replicaCount Replica count (>= 1).
+     */
+    void resize(int replicaCount);
+
     /**
      * Sets job executor data.
      *
@@ -0,0 +1,196 @@
+package com.opsysinc.scripting.server.engine;
+
+/**
+ * Job executor management interface (JMX).
+ *
+ * @author mkitchin
+ */
+public interface JobExecutorMXBean {
+
+    /**
+     * Drain pending jobs (each completes as failed, w/o running).
+     *
+     * @return Drained job count.
+     */
+    int drainQueue();
+
+    /**
+     * Gets compiled script cache entry count.
+     *
+     * @return Entry count (-1 if executor doesn't compile scripts).
+     */
+    int getCompiledScriptCount();
+
+    /**
+     * Gets compiled script cache evictions.
+     *
+     * @return Eviction count (-1L if executor doesn't compile scripts).
+     */
+    long getCompiledScriptEvictionCount();
+
+    /**
+     * Gets compiled script cache hits.
+     *
+     * @return Hit count (-1L if executor doesn't compile scripts).
+     */
+    long getCompiledScriptHitCount();
+
+    /**
+     * Gets compiled script cache misses.
+     *
+     * @return Miss count (-1L if executor doesn't compile scripts).
+     */
+    long getCompiledScriptMissCount();
+
+    /**
+     * Gets drained (not run) job count.
+     *
+     * @return Drained job count.
+     */
+    long getDrainedJobCount();
+
+    /**
+     * Gets executor id.
+     *
+     * @return Executor id.
+     */
+    String getExecutorId();
+
+    /**
+     * Gets failed job count.
+     *
+     * @return Failed job count.
+     */
+    long getFailedJobCount();
+
+    /**
+     * Gets pending (queued) job count.
+     *
+     * @return Pending job count.
+     */
+    int getPendingJobCount();
+
+    /**
+     * Gets engine replica (worker) count.
+     *
+     * @return Replica count.
+     */
+    int getReplicaCount();
+
+    /**
+     * Gets max retained (completed) job age.
+     *
+     * @return Max age in ms.
+     */
+    long getRetainedJobAgeLimit();
+
+    /**
+     * Gets retained (completed) job bytes (estimate).
+     *
+     * @return Retained job bytes.
+     */
+    long getRetainedJobBytes();
+
+    /**
+     * Gets max retained (completed) job bytes.
+     *
+     * @return Max bytes.
+     */
+    long getRetainedJobBytesLimit();
+
+    /**
+     * Gets retained (completed) job count.
+     *
+     * @return Retained job count.
+     */
+    int getRetainedJobCount();
+
+    /**
+     * Gets max retained (completed) job count.
+     *
+     * @return Max count.
+     */
+    int getRetainedJobCountLimit();
+
+    /**
+     * Gets running (in-flight) job count.
+     *
+     * @return Running job count.
+     */
+    int getRunningJobCount();
+
+    /**
+     * Gets submitted job count.
+     *
+     * @return Submitted job count.
+     */
+    long getSubmittedJobCount();
+
+    /**
+     * Gets succeeded job count.
+     *
+     * @return Succeeded job count.
+     */
+    long getSucceededJobCount();
+
+    /**
+     * Gets executor title.
+     *
+     * @return Executor title.
+     */
+    String getTitle();
+
+    /**
+     * Gets executor type.
+     *
+     * @return Executor type name.
+     */
+    String getType();
+
+    /**
+     * Gets allocated bytes of current workers.
+     *
+     * @return Allocated bytes (-1L if not supported/enabled).
+     */
+    long getWorkerAllocatedBytes();
+
+    /**
+     * Gets CPU time of current workers.
+     *
+     * @return CPU time in ns (-1L if not supported/enabled).
+     */
+    long getWorkerCpuTime();
+
+    /**
+     * Gets worker thread states.
+     *
+     * @return Worker thread states ("name: state").
+     */
+    String[] getWorkerThreadStates();
+
+    /**
+     * Gets user-mode CPU time of current workers.
+     *
+     * @return User time in ns (-1L if not supported/enabled).
+     */
+    long getWorkerUserTime();
+
+    /**
+     * Reset script engine(s) (drains pending jobs first).
+     */
+    void resetEngine();
+
+    /**
+     * Reset job stats (counts, timings and histograms).
+     */
+    void resetStats();
+
+    /**
+     * Resize engine replica (worker) pool (pooled, replicable executors only;
+     * capped as on creation).
+     *
+     * @param replicaCount Requested replica count.
+     * @return Effective replica count.
+     */
+    int resizePool(int replicaCount);
+}
@@ -0,0 +1,883 @@
+package com.opsysinc.scripting.server.engine;
+
+import com.opsysinc.scripting.shared.JobDataUtils;
+import com.opsysinc.scripting.shared.JobExecutorData;
+import com.opsysinc.scripting.shared.JobFileData;
+import com.opsysinc.scripting.shared.JobFileSortOrder;
+import com.opsysinc.scripting.shared.JobFileType;
+import com.opsysinc.scripting.shared.JobFilesData;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Job file index (in-memory tree of an executor file area).
+ * <p/>
+ * Kept current by a watch service (one watch key per folder, since watches
+ * aren't recursive), so listings don't touch the file system. Each change
+ * bumps the index version and stamps the entry with it; removals leave
+ * (bounded) tombstones, so clients can fetch only what changed since the
+ * version they last saw. Where no watch service is available, each read
+ * rescans instead.
+ *
+ * @author mkitchin
+ */
+public class JobFileIndex implements Closeable {
+
+    /**
+     * Default max removed entries (tombstones) kept for deltas.
+     */
+    public static final int DEFAULT_MAX_REMOVED_ENTRIES = 4096;
+
+    /**
+     * Default max files per listing page.
+     */
+    public static final int DEFAULT_MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER;
+
+    static {
+
+        LOGGER = Logger.getLogger(JobFileIndex.class.getName());
+    }
+
+    /**
+     * Job executor data.
+     */
+    private final JobExecutorData executorData;
+
+    /**
+     * File area.
+     */
+    private final Path fileBase;
+
+    /**
+     * Entries by folder path, then by name ("" = file area).
+     */
+    private final Map<String, TreeMap<String, JobFileIndex.IndexEntry>> folders;
+
+    /**
+     * Removed entries (tombstones) by path, oldest removal first.
+     */
+    private final LinkedHashMap<String, JobFileIndex.IndexEntry> removedEntries;
+
+    /**
+     * Max removed entries (tombstones) kept for deltas.
+     */
+    private final int maxRemovedEntries;
+
+    /**
+     * Watched folders by watch key.
+     */
+    private final Map<WatchKey, Path> watchKeys;
+
+    /**
+     * Index version (last change).
+     */
+    private long version;
+
+    /**
+     * Oldest version deltas may start from (older tombstones were dropped).
+     */
+    private long minDeltaVersion;
+
+    /**
+     * Watch service (null = none, rescan on read).
+     */
+    private WatchService watchService;
+
+    /**
+     * Watch thread.
+     */
+    private Thread watchThread;
+
+    /**
+     * Basic ctor (default max removed entries).
+     *
+     * @param executorData Job executor data.
+     * @param fileBase     File area (must exist).
+     * @throws IOException I/O exception.
+     */
+    public JobFileIndex(final JobExecutorData executorData, final File fileBase)
+            throws IOException {
+
+        this(executorData, fileBase, JobFileIndex.DEFAULT_MAX_REMOVED_ENTRIES);
+    }
+
+    /**
+     * Basic ctor.
+     *
+     * @param executorData      Job executor data.
+     * @param fileBase          File area (must exist).
+     * @param maxRemovedEntries Max removed entries (tombstones) kept for deltas (>0).
+     * @throws IOException I/O exception.
+     */
+    public JobFileIndex(final JobExecutorData executorData, final File fileBase,
+                        final int maxRemovedEntries)
+            throws IOException {
+
+        JobDataUtils.checkNullObject(executorData, true);
+        JobDataUtils.checkNullObject(fileBase, true);
+
+        if (maxRemovedEntries < 1) {
+
+            throw new IllegalArgumentException("invalid input (maxRemovedEntries)");
+        }
+
+        this.executorData = executorData;
+        this.fileBase = fileBase.getCanonicalFile().toPath();
+        this.folders = new HashMap<>();
+        this.removedEntries = new LinkedHashMap<>();
+        this.maxRemovedEntries = maxRemovedEntries;
+        this.watchKeys = new ConcurrentHashMap<>();
+        this.version = 0L;
+        this.minDeltaVersion = 0L;
+        this.watchService = null;
+        this.watchThread = null;
+    }
+
+    /**
+     * Gets folder part of index path.
+     *
+     * @param filePath Index path.
+     * @return Folder path ("" = file area).
+     */
+    private static String getFolderPath(final String filePath) {
+
+        final int lastSlash = filePath.lastIndexOf('/');
+        return (lastSlash < 0) ? "" : filePath.substring(0, lastSlash);
+    }
+
+    /**
+     * Gets name part of index path.
+     *
+     * @param filePath Index path.
+     * @return Name.
+     */
+    private static String getName(final String filePath) {
+
+        return filePath.substring(filePath.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Joins folder path and name into index path.
+     *
+     * @param folderPath Folder path ("" = file area).
+     * @param name       Name.
+     * @return Index path.
+     */
+    private static String joinPath(final String folderPath, final String name) {
+
+        return folderPath.isEmpty() ? name : (folderPath + "/" + name);
+    }
+
+    /**
+     * Normalizes requested folder path into index path.
+     *
+     * @param folderPath Folder path (relative; may be empty).
+     * @return Index path.
+     */
+    private static String normalizePath(final String folderPath) {
+
+        JobFileUtils.checkBadFilePath(folderPath, true);
+
+        String result = folderPath.trim().replace('\\', '/');
+
+        while (result.endsWith("/")) {
+
+            result = result.substring(0, result.length() - 1);
+        }
+
+        while (result.startsWith("./")) {
+
+            result = result.substring(2);
+        }
+
+        return result.equals(".") ? "" : result;
+    }
+
+    /**
+     * Gets entry comparator.
+     *
+     * @param sortOrder Sort order.
+     * @return Comparator (ties broken by name).
+     */
+    private static Comparator<JobFileIndex.IndexEntry> getComparator(final JobFileSortOrder sortOrder) {
+
+        return new Comparator<JobFileIndex.IndexEntry>() {
+
+            @Override
+            public int compare(final JobFileIndex.IndexEntry o1, final JobFileIndex.IndexEntry o2) {
+
+                int result;
+
+                switch (sortOrder) {
+
+                    case type:
+                        result = o1.type.compareTo(o2.type);
+                        break;
+
+                    case size:
+                        result = Long.compare(o1.size, o2.size);
+                        break;
+
+                    case modified:
+                        result = Long.compare(o1.lastModified, o2.lastModified);
+                        break;
+
+                    default:
+                        result = 0;
+                        break;
+                }
+
+                return (result == 0) ? o1.name.compareTo(o2.name) : result;
+            }
+        };
+    }
+
+    /**
+     * Adds removed entry (tombstone), dropping oldest past max.
+     *
+     * @param filePath Index path.
+     * @param oldEntry Removed entry.
+     */
+    private void addRemovedEntry(final String filePath, final JobFileIndex.IndexEntry oldEntry) {
+
+        this.removedEntries.remove(filePath);
+        this.removedEntries.put(filePath, new JobFileIndex.IndexEntry(oldEntry.folderPath,
+                oldEntry.name, oldEntry.type, -1L, 0L, ++this.version));
+
+        final Iterator<JobFileIndex.IndexEntry> iter = this.removedEntries.values().iterator();
+
+        while (this.removedEntries.size() > this.maxRemovedEntries) {
+
+            this.minDeltaVersion = iter.next().version;
+            iter.remove();
+        }
+    }
+
+    @Override
+    public void close() {
+
+        final WatchService workService;
+        final Thread workThread;
+
+        synchronized (this) {
+
+            workService = this.watchService;
+            workThread = this.watchThread;
+
+            this.watchService = null;
+            this.watchThread = null;
+        }
+
+        if (workService != null) {
+
+            try {
+
+                workService.close();
+
+            } catch (final IOException ex) {
+
+                JobFileIndex.LOGGER.log(Level.FINE, "Can't close watch service", ex);
+            }
+        }
+
+        if (workThread != null) {
+
+            workThread.interrupt();
+        }
+
+        this.watchKeys.clear();
+    }
+
+    /**
+     * Gets files (folder listing page, or changes since version).
+     * <p/>
+     * Changes are returned where the version is still covered by the kept
+     * tombstones and they fit one page; otherwise a listing page is.
+     *
+     * @param folderPath   Folder path (relative; may be empty).
+     * @param fromVersion  Index version to get changes after (0 = listing).
+     * @param fromIndex    Index of first file w/in sorted listing.
+     * @param maxCount     Max files per page.
+     * @param sortOrder    Sort order.
+     * @param isDescending True to sort descending, false otherwise.
+     * @return Files data.
+     */
+    public synchronized JobFilesData getFiles(final String folderPath,
+                                              final long fromVersion,
+                                              final int fromIndex,
+                                              final int maxCount,
+                                              final JobFileSortOrder sortOrder,
+                                              final boolean isDescending) {
+
+        JobDataUtils.checkNullObject(sortOrder, true);
+
+        final String workPath = JobFileIndex.normalizePath(folderPath);
+
+        if (this.watchService == null) {
+
+            this.rescan();
+        }
+
+        final TreeMap<String, JobFileIndex.IndexEntry> children = this.folders.get(workPath);
+        final int totalCount = (children == null) ? 0 : children.size();
+        final int workMaxCount = Math.max(1, Math.min(maxCount, JobFileIndex.DEFAULT_MAX_PAGE_SIZE));
+
+        if ((fromVersion > 0L) &&
+                (fromVersion <= this.version) &&
+                (fromVersion >= this.minDeltaVersion)) {
+
+            final List<JobFileData> changedFiles = new ArrayList<>();
+            final List<String> removedIds = new ArrayList<>();
+
+            if (children != null) {
+
+                for (final JobFileIndex.IndexEntry item : children.values()) {
+
+                    if (item.version > fromVersion) {
+
+                        changedFiles.add(this.toFileData(item));
+                    }
+                }
+            }
+
+            for (final Map.Entry<String, JobFileIndex.IndexEntry> item : this.removedEntries.entrySet()) {
+
+                if ((item.getValue().version > fromVersion) &&
+                        item.getValue().folderPath.equals(workPath)) {
+
+                    removedIds.add(item.getKey());
+                }
+            }
+
+            if ((changedFiles.size() + removedIds.size()) <= workMaxCount) {
+
+                return new JobFilesData(this.version, true, totalCount, 0,
+                        changedFiles.toArray(new JobFileData[changedFiles.size()]),
+                        removedIds.toArray(new String[removedIds.size()]));
+            }
+        }
+
+        final List<JobFileIndex.IndexEntry> sortedEntries = (children == null)
+                ? new ArrayList<JobFileIndex.IndexEntry>()
+                : new ArrayList<>(children.values());
+
+        // already in name order
+        if (sortOrder != JobFileSortOrder.name) {
+
+            Collections.sort(sortedEntries, JobFileIndex.getComparator(sortOrder));
+        }
+
+        if (isDescending) {
+
+            Collections.reverse(sortedEntries);
+        }
+
+        final int workFromIndex = Math.max(0, Math.min(fromIndex, totalCount));
+        final List<JobFileIndex.IndexEntry> pageEntries = sortedEntries.subList(workFromIndex,
+                Math.min(totalCount, workFromIndex + workMaxCount));
+        final JobFileData[] pageFiles = new JobFileData[pageEntries.size()];
+
+        for (int ctr = 0; ctr < pageFiles.length; ctr++) {
+
+            pageFiles[ctr] = this.toFileData(pageEntries.get(ctr));
+        }
+
+        return new JobFilesData(this.version, false, totalCount, workFromIndex,
+                pageFiles, new String[0]);
+    }
+
+    /**
+     * Gets index path of file.
+     *
+     * @param filePath File path (w/in file area).
+     * @return Index path ("" = file area).
+     */
+    private String getIndexPath(final Path filePath) {
+
+        final StringBuilder result = new StringBuilder();
+
+        for (final Path item : this.fileBase.relativize(filePath)) {
+
+            if (result.length() > 0) {
+
+                result.append('/');
+            }
+
+            result.append(item.toString());
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Gets index version.
+     *
+     * @return Index version (last change).
+     */
+    public synchronized long getVersion() {
+
+        return this.version;
+    }
+
+    /**
+     * Handles watch event (one file or folder changed).
+     *
+     * @param filePath File path.
+     */
+    private synchronized void handleChange(final Path filePath) {
+
+        final String indexPath = this.getIndexPath(filePath);
+
+        if (indexPath.isEmpty()) {
+
+            return;
+        }
+
+        try {
+
+            final BasicFileAttributes fileAttributes = Files.readAttributes(filePath,
+                    BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+
+            // new folder: watch, and index what landed before the watch did
+            if (this.updateEntry(indexPath, fileAttributes) &&
+                    fileAttributes.isDirectory()) {
+
+                this.scanTree(filePath, null);
+            }
+
+        } catch (final IOException ex) {
+
+            // gone (or unreadable)
+            this.removeEntry(indexPath);
+        }
+    }
+
+    /**
+     * Registers folder w/watch service.
+     *
+     * @param folderPath Folder path.
+     */
+    private void registerFolder(final Path folderPath) {
+
+        if (this.watchService == null) {
+
+            return;
+        }
+
+        try {
+
+            this.watchKeys.put(folderPath.register(this.watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY), folderPath);
+
+        } catch (final IOException | ClosedWatchServiceException ex) {
+
+            JobFileIndex.LOGGER.log(Level.FINE, "Can't watch folder: " + folderPath, ex);
+        }
+    }
+
+    /**
+     * Removes entry (and, if a folder, everything under it).
+     *
+     * @param filePath Index path.
+     */
+    private void removeEntry(final String filePath) {
+
+        final TreeMap<String, JobFileIndex.IndexEntry> children =
+                this.folders.get(JobFileIndex.getFolderPath(filePath));
+
+        if (children == null) {
+
+            return;
+        }
+
+        final JobFileIndex.IndexEntry oldEntry = children.remove(JobFileIndex.getName(filePath));
+
+        if (oldEntry != null) {
+
+            this.addRemovedEntry(filePath, oldEntry);
+
+            if (oldEntry.type == JobFileType.folder) {
+
+                this.removeFolder(filePath);
+            }
+        }
+    }
+
+    /**
+     * Removes folder contents.
+     *
+     * @param folderPath Index path of folder.
+     */
+    private void removeFolder(final String folderPath) {
+
+        final TreeMap<String, JobFileIndex.IndexEntry> children = this.folders.remove(folderPath);
+
+        if (children == null) {
+
+            return;
+        }
+
+        for (final JobFileIndex.IndexEntry item : children.values()) {
+
+            final String childPath = JobFileIndex.joinPath(folderPath, item.name);
+            this.addRemovedEntry(childPath, item);
+
+            if (item.type == JobFileType.folder) {
+
+                this.removeFolder(childPath);
+            }
+        }
+    }
+
+    /**
+     * Rescans whole file area (on start, overflow, or per read w/o watch
+     * service); only actual differences bump the version.
+     */
+    private synchronized void rescan() {
+
+        final Set<String> foundPaths = new HashSet<>();
+
+        try {
+
+            this.scanTree(this.fileBase, foundPaths);
+
+        } catch (final IOException ex) {
+
+            JobFileIndex.LOGGER.log(Level.WARNING, "Can't scan file area: " + this.fileBase, ex);
+            return;
+        }
+
+        final List<String> oldPaths = new ArrayList<>();
+
+        for (final Map.Entry<String, TreeMap<String, JobFileIndex.IndexEntry>> item : this.folders.entrySet()) {
+
+            for (final String name : item.getValue().keySet()) {
+
+                final String filePath = JobFileIndex.joinPath(item.getKey(), name);
+
+                if (!foundPaths.contains(filePath)) {
+
+                    oldPaths.add(filePath);
+                }
+            }
+        }
+
+        for (final String item : oldPaths) {
+
+            this.removeEntry(item);
+        }
+    }
+
+    /**
+     * Watch loop.
+     */
+    private void runWatch() {
+
+        final WatchService workService;
+
+        synchronized (this) {
+
+            workService = this.watchService;
+        }
+
+        while (workService != null) {
+
+            final WatchKey watchKey;
+
+            try {
+
+                watchKey = workService.take();
+
+            } catch (final InterruptedException | ClosedWatchServiceException ex) {
+
+                break;
+            }
+
+            final Path folderPath = this.watchKeys.get(watchKey);
+
+            for (final WatchEvent<?> item : watchKey.pollEvents()) {
+
+                if (item.kind() == StandardWatchEventKinds.OVERFLOW) {
+
+                    // events lost; resync
+                    this.rescan();
+
+                } else if (folderPath != null) {
+
+                    this.handleChange(folderPath.resolve((Path) item.context()));
+                }
+            }
+
+            if (!watchKey.reset()) {
+
+                // folder gone
+                this.watchKeys.remove(watchKey);
+            }
+        }
+    }
+
+    /**
+     * Scans tree into index (watching each folder first, so nothing
+     * created during the scan is missed).
+     *
+     * @param startPath  Start folder.
+     * @param foundPaths Found index paths (null = don't collect).
+     * @throws IOException I/O exception.
+     */
+    private void scanTree(final Path startPath, final Set<String> foundPaths) throws IOException {
+
+        Files.walkFileTree(startPath, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
+
+                JobFileIndex.this.registerFolder(dir);
+                JobFileIndex.this.scanVisit(dir, attrs, foundPaths);
+
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+
+                JobFileIndex.this.scanVisit(file, attrs, foundPaths);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Indexes one scanned file or folder.
+     *
+     * @param filePath       File path.
+     * @param fileAttributes File attributes.
+     * @param foundPaths     Found index paths (null = don't collect).
+     */
+    private void scanVisit(final Path filePath, final BasicFileAttributes fileAttributes,
+                           final Set<String> foundPaths) {
+
+        final String indexPath = this.getIndexPath(filePath);
+
+        if (!indexPath.isEmpty()) {
+
+            this.updateEntry(indexPath, fileAttributes);
+
+            if (foundPaths != null) {
+
+                foundPaths.add(indexPath);
+            }
+        }
+    }
+
+    /**
+     * Starts index (scans file area, then watches it).
+     */
+    public synchronized void start() {
+
+        if (this.watchThread != null) {
+
+            // ignore, return
+            return;
+        }
+
+        try {
+
+            this.watchService = this.fileBase.getFileSystem().newWatchService();
+
+        } catch (final IOException | UnsupportedOperationException ex) {
+
+            JobFileIndex.LOGGER.log(Level.WARNING, "No watch service, will rescan: " + this.fileBase, ex);
+            this.watchService = null;
+        }
+
+        this.rescan();
+
+        if (this.watchService != null) {
+
+            this.watchThread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+
+                    JobFileIndex.this.runWatch();
+                }
+            }, "JobFileIndex-" + this.executorData.getId());
+
+            this.watchThread.setDaemon(true);
+            this.watchThread.start();
+        }
+    }
+
+    /**
+     * Converts entry to file data.
+     *
+     * @param indexEntry Index entry.
+     * @return File data (id = index path).
+     */
+    private JobFileData toFileData(final JobFileIndex.IndexEntry indexEntry) {
+
+        final JobFileData result = new JobFileData(this.executorData,
+                indexEntry.folderPath, indexEntry.name, indexEntry.type, indexEntry.size);
+
+        result.setId(JobFileIndex.joinPath(indexEntry.folderPath, indexEntry.name));
+        result.setCreatedTime(indexEntry.lastModified);
+        result.setModifiedTime(indexEntry.lastModified);
+
+        return result;
+    }
+
+    /**
+     * Adds or updates entry (no-op if unchanged).
+     *
+     * @param filePath       Index path.
+     * @param fileAttributes File attributes.
+     * @return True if entry is new (or changed type), false otherwise.
+     */
+    private boolean updateEntry(final String filePath, final BasicFileAttributes fileAttributes) {
+
+        final String folderPath = JobFileIndex.getFolderPath(filePath);
+        final String name = JobFileIndex.getName(filePath);
+        final JobFileType fileType = fileAttributes.isDirectory() ? JobFileType.folder
+                : (fileAttributes.isRegularFile() ? JobFileType.file : JobFileType.other);
+        final long fileSize = (fileType == JobFileType.file) ? fileAttributes.size() : -1L;
+        final long lastModified = fileAttributes.lastModifiedTime().toMillis();
+
+        TreeMap<String, JobFileIndex.IndexEntry> children = this.folders.get(folderPath);
+
+        if (children == null) {
+
+            children = new TreeMap<>();
+            this.folders.put(folderPath, children);
+        }
+
+        final JobFileIndex.IndexEntry oldEntry = children.get(name);
+
+        if ((oldEntry != null) &&
+                (oldEntry.type == fileType) &&
+                (oldEntry.size == fileSize) &&
+                (oldEntry.lastModified == lastModified)) {
+
+            return false;
+        }
+
+        if ((oldEntry != null) &&
+                (oldEntry.type == JobFileType.folder) &&
+                (fileType != JobFileType.folder)) {
+
+            this.removeFolder(filePath);
+        }
+
+        children.put(name, new JobFileIndex.IndexEntry(folderPath, name,
+                fileType, fileSize, lastModified, ++this.version));
+        this.removedEntries.remove(filePath);
+
+        if ((fileType == JobFileType.folder) &&
+                !this.folders.containsKey(filePath)) {
+
+            this.folders.put(filePath, new TreeMap<String, JobFileIndex.IndexEntry>());
+        }
+
+        return (oldEntry == null) ||
+                (oldEntry.type != fileType);
+    }
+
+    /**
+     * Index entry (immutable; replaced on change).
+     *
+     * @author mkitchin
+     */
+    private static final class IndexEntry {
+
+        /**
+         * Folder path ("" = file area).
+         */
+        private final String folderPath;
+
+        /**
+         * Name.
+         */
+        private final String name;
+
+        /**
+         * File type.
+         */
+        private final JobFileType type;
+
+        /**
+         * File size (-1 = not a file).
+         */
+        private final long size;
+
+        /**
+         * Last modified time.
+         */
+        private final long lastModified;
+
+        /**
+         * Index version of last change.
+         */
+        private final long version;
+
+        /**
+         * Basic ctor.
+         *
+         * @param folderPath   Folder path.
+         * @param name         Name.
+         * @param type         File type.
+         * @param size         File size.
+         * @param lastModified Last modified time.
+         * @param version      Index version of last change.
+         */
+        private IndexEntry(final String folderPath, final String name,
+                           final JobFileType type, final long size,
+                           final long lastModified, final long version) {
+
+            this.folderPath = folderPath;
+            this.name = name;
+            this.type = type;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.version = version;
+        }
+    }
+}
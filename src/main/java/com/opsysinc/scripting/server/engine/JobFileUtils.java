@@ -4,6 +4,7 @@ import com.opsysinc.scripting.shared.JobDataUtils;
 import com.opsysinc.scripting.shared.JobFileData;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -85,6 +86,52 @@ public final class JobFileUtils {
         return result;
     }
 
+    /**
+     * Gets executor file area (may not exist yet/any longer).
+     *
+     * @param executorId Executor id (single path segment).
+     * @return Executor file area.
+     */
+    public static File getExecutorFileBase(final String executorId) {
+
+        JobDataUtils.checkEmptyString(executorId, true);
+
+        if (executorId.contains("/") ||
+                executorId.contains("\\") ||
+                JobFileUtils.checkBadFilePath(executorId, false)) {
+
+            throw new IllegalArgumentException("invalid input (executorId)");
+        }
+
+        return new File(AbstractJobExecutor.DEFAULT_FILE_BASEDIR, executorId.trim());
+    }
+
+    /**
+     * Resolves file path w/in a file area (no escaping it, incl. via links).
+     *
+     * @param fileBase File area.
+     * @param filePath Relative file path (empty = file area itself).
+     * @return Resolved file.
+     * @throws IOException I/O exception.
+     */
+    public static File resolveFile(final File fileBase, final String filePath)
+            throws IOException {
+
+        JobDataUtils.checkNullObject(fileBase, true);
+        JobFileUtils.checkBadFilePath(filePath, true);
+
+        final File baseFile = fileBase.getCanonicalFile();
+        final File result = new File(baseFile, filePath.trim()).getCanonicalFile();
+
+        if (!result.equals(baseFile) &&
+                !result.getPath().startsWith(baseFile.getPath() + File.separator)) {
+
+            throw new IllegalArgumentException("invalid input (filePath)");
+        }
+
+        return result;
+    }
+
     /**
      * Private ctor for util class.
      */
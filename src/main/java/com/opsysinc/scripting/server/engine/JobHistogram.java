@@ -0,0 +1,224 @@
+package com.opsysinc.scripting.server.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear (HDR-style) value histogram.
+ * <p/>
+ * Values are counted in power-of-2 ranges, each split into
+ * DEFAULT_SUB_BUCKET_COUNT linear buckets, so recorded values are kept to
+ * within 1/DEFAULT_SUB_BUCKET_COUNT (~3%) of their magnitude over the full
+ * non-negative long range, in a fixed footprint. Recording is lock-free;
+ * reads are not atomic across buckets (a concurrent record may be partly
+ * visible).
+ *
+ * @author mkitchin
+ */
+public class JobHistogram {
+
+    /**
+     * Sub-bucket bits (linear buckets per power of 2 = 2^bits).
+     */
+    public static final int DEFAULT_SUB_BUCKET_BITS = 5;
+
+    /**
+     * Sub-bucket count.
+     */
+    public static final int DEFAULT_SUB_BUCKET_COUNT = (1 << JobHistogram.DEFAULT_SUB_BUCKET_BITS);
+
+    /**
+     * Bucket count (values < sub-bucket count, then one range per remaining
+     * power of 2).
+     */
+    public static final int DEFAULT_BUCKET_COUNT = JobHistogram.DEFAULT_SUB_BUCKET_COUNT
+            + ((63 - JobHistogram.DEFAULT_SUB_BUCKET_BITS) * JobHistogram.DEFAULT_SUB_BUCKET_COUNT);
+
+    /**
+     * Bucket counts.
+     */
+    private final AtomicLongArray counts;
+
+    /**
+     * Total count.
+     */
+    private final AtomicLong totalCount;
+
+    /**
+     * Total (sum of) values.
+     */
+    private final AtomicLong totalValue;
+
+    /**
+     * Max value.
+     */
+    private final AtomicLong maxValue;
+
+    /**
+     * Basic ctor.
+     */
+    public JobHistogram() {
+
+        this.counts = new AtomicLongArray(JobHistogram.DEFAULT_BUCKET_COUNT);
+        this.totalCount = new AtomicLong();
+        this.totalValue = new AtomicLong();
+        this.maxValue = new AtomicLong();
+    }
+
+    /**
+     * Gets bucket index.
+     *
+     * @param value Value (>= 0L).
+     * @return Bucket index.
+     */
+    static int getBucketIndex(final long value) {
+
+        if (value < JobHistogram.DEFAULT_SUB_BUCKET_COUNT) {
+
+            return (int) value;
+        }
+
+        final int shift = (63 - Long.numberOfLeadingZeros(value))
+                - JobHistogram.DEFAULT_SUB_BUCKET_BITS;
+
+        return JobHistogram.DEFAULT_SUB_BUCKET_COUNT
+                + (shift * JobHistogram.DEFAULT_SUB_BUCKET_COUNT)
+                + (int) ((value >>> shift) - JobHistogram.DEFAULT_SUB_BUCKET_COUNT);
+    }
+
+    /**
+     * Gets highest value counted by bucket.
+     *
+     * @param index Bucket index.
+     * @return Highest value.
+     */
+    static long getBucketValue(final int index) {
+
+        if (index < JobHistogram.DEFAULT_SUB_BUCKET_COUNT) {
+
+            return index;
+        }
+
+        final int shift = (index - JobHistogram.DEFAULT_SUB_BUCKET_COUNT)
+                / JobHistogram.DEFAULT_SUB_BUCKET_COUNT;
+        final long subBucket = JobHistogram.DEFAULT_SUB_BUCKET_COUNT
+                + ((index - JobHistogram.DEFAULT_SUB_BUCKET_COUNT)
+                % JobHistogram.DEFAULT_SUB_BUCKET_COUNT);
+
+        return ((subBucket + 1L) << shift) - 1L;
+    }
+
+    /**
+     * Gets total count.
+     *
+     * @return Total count.
+     */
+    public long getCount() {
+
+        return this.totalCount.get();
+    }
+
+    /**
+     * Gets max value.
+     *
+     * @return Max value (0L if none).
+     */
+    public long getMax() {
+
+        return this.maxValue.get();
+    }
+
+    /**
+     * Gets total (sum of) values.
+     *
+     * @return Total value.
+     */
+    public long getSum() {
+
+        return this.totalValue.get();
+    }
+
+    /**
+     * Gets value at percentile.
+     *
+     * @param percentile Percentile (0.0-100.0).
+     * @return Value (highest value counted by matching bucket, capped at max
+     * value; 0L if none).
+     */
+    public long getValueAtPercentile(final double percentile) {
+
+        if ((percentile < 0.0) || (percentile > 100.0)) {
+
+            throw new IllegalArgumentException("invalid input (percentile)");
+        }
+
+        final long[] workCounts = new long[JobHistogram.DEFAULT_BUCKET_COUNT];
+        long workTotal = 0L;
+
+        for (int ctr = 0; ctr < workCounts.length; ctr++) {
+
+            workCounts[ctr] = this.counts.get(ctr);
+            workTotal += workCounts[ctr];
+        }
+
+        if (workTotal == 0L) {
+
+            return 0L;
+        }
+
+        // nearest rank
+        final long targetCount = Math.max(1L,
+                (long) Math.ceil((percentile / 100.0) * workTotal));
+        long foundCount = 0L;
+
+        for (int ctr = 0; ctr < workCounts.length; ctr++) {
+
+            foundCount += workCounts[ctr];
+
+            if (foundCount >= targetCount) {
+
+                return Math.min(JobHistogram.getBucketValue(ctr), this.maxValue.get());
+            }
+        }
+
+        return this.maxValue.get();
+    }
+
+    /**
+     * Records value.
+     *
+     * @param value Value (negative values count as 0L).
+     */
+    public void recordValue(final long value) {
+
+        final long workValue = Math.max(0L, value);
+
+        this.counts.incrementAndGet(JobHistogram.getBucketIndex(workValue));
+        this.totalValue.addAndGet(workValue);
+
+        long maxValue = this.maxValue.get();
+
+        while ((workValue > maxValue)
+                && !this.maxValue.compareAndSet(maxValue, workValue)) {
+
+            maxValue = this.maxValue.get();
+        }
+
+        this.totalCount.incrementAndGet();
+    }
+
+    /**
+     * Resets histogram.
+     */
+    public void reset() {
+
+        for (int ctr = 0; ctr < this.counts.length(); ctr++) {
+
+            this.counts.set(ctr, 0L);
+        }
+
+        this.totalCount.set(0L);
+        this.totalValue.set(0L);
+        this.maxValue.set(0L);
+    }
+}
@@ -2,8 +2,13 @@ package com.opsysinc.scripting.server.engine;
 
 import com.opsysinc.scripting.shared.JobContentData;
 import com.opsysinc.scripting.shared.JobExecutorData;
-import com.opsysinc.scripting.shared.JobFileData;
+import com.opsysinc.scripting.shared.JobFilesData;
+import com.opsysinc.scripting.shared.JobOutputChunkData;
+import com.opsysinc.scripting.shared.JobTimingStatsData;
+import com.opsysinc.scripting.shared.JobVariableData;
+import com.opsysinc.scripting.shared.JobVariableValueData;
 
+import java.io.PrintStream;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -18,6 +23,21 @@ public interface JobManager {
      */
     JobExecutor addExecutorInstance(JobExecutorData executorData);
 
+    /**
+     * Clean up (removes all executors, unregisters management beans).
+     */
+    void cleanUp();
+
+    /**
+     * Adds waiter for a job/executor change after change sequence.
+     *
+     * @param fromSequence Change sequence to wait past.
+     * @param waiter       Waiter (called back once, at once if already past).
+     * @return True if added (or called back), false if too many waiters
+     * (caller should poll instead).
+     */
+    boolean addChangeWaiter(long fromSequence, ChangeNotifier.Waiter waiter);
+
     /**
      * Register the current thread for thread-local output (to catch scripting
      * engine output).
@@ -109,6 +129,20 @@ public interface JobManager {
                                      long timeInMS, Collection<JobContentData> target,
                                      boolean isClearFirst);
 
+    /**
+     * Gets last job/executor change sequence.
+     *
+     * @return Last change sequence (0 = no changes).
+     */
+    long getChangeSequence();
+
+    /**
+     * Gets last executor sequence (bumped by executor add/remove).
+     *
+     * @return Last executor sequence.
+     */
+    long getExecutorSequence();
+
     /**
      * Get executor instance.
      *
@@ -154,17 +188,103 @@ public interface JobManager {
                                  Map<String, String> target, boolean isClearFirst);
 
     /**
-     * Gets executor files.
+     * Gets executor variable info (names, types and estimated sizes).
+     *
+     * @param executorData  Executor data.
+     * @param variableScope Variable scope.
+     * @param target        Target list.
+     * @param isClearFirst  True to clear target list before populating, false otherwise.
+     * @return True if target list was altered, false otherwise.
+     */
+    boolean getExecutorVariableInfo(JobExecutorData executorData,
+                                    int variableScope, List<JobVariableData> target,
+                                    boolean isClearFirst);
+
+    /**
+     * Gets one page of a formatted executor variable value.
+     *
+     * @param executorData   Executor data.
+     * @param variableScope  Variable scope.
+     * @param variableFormat Variable format.
+     * @param name           Variable name.
+     * @param fromOffset     Char offset to read from.
+     * @return Value page.
+     */
+    JobVariableValueData getExecutorVariableValue(JobExecutorData executorData,
+                                                  int variableScope, int variableFormat,
+                                                  String name, int fromOffset);
+
+    /**
+     * Gets executor files (folder listing page, or changes since index version).
      *
      * @param executorData Executor data.
      * @param basePath     Base path w/in executor file system.
-     * @param target       Target list.
-     * @param isClearFirst True to clear target list before populating, false otherwise.
-     * @return True if target list was altered, false otherwise.
+     * @param fromVersion  Index version to get changes after (0 = listing).
+     * @param fromIndex    Index of first file w/in sorted listing.
+     * @param maxCount     Max files per page.
+     * @param sortOrder    Sort order (see JobFileSortOrder).
+     * @param isDescending True to sort descending, false otherwise.
+     * @return Files data.
+     */
+    JobFilesData getExecutorFiles(JobExecutorData executorData,
+                                  String basePath, long fromVersion,
+                                  int fromIndex, int maxCount,
+                                  int sortOrder, boolean isDescending);
+
+    /**
+     * Gets executor job timing stats (phase totals/maxes over completed jobs).
+     *
+     * @param executorData Executor data.
+     * @return Timing stats.
+     */
+    JobTimingStatsData getExecutorTimingStats(JobExecutorData executorData);
+
+    /**
+     * Gets jobs changed (or removed) after change sequence, up to a later
+     * sequence. Changed jobs are read from the live executors; if the caller
+     * must resync, current jobs are returned instead (per executor, capped
+     * like other job reads).
+     *
+     * @param fromSequence   Change sequence to select after (0 = all).
+     * @param toSequence     Change sequence to select up to (e.g., from
+     *                       {@link #getJobSequence()}).
+     * @param changedTarget  Changed jobs target collection.
+     * @param removedTarget  Removed job ids target collection.
+     * @param isClearFirst   True to clear target collections before adding,
+     *                       false otherwise.
+     * @return True if caller must resync (drop all jobs before adding these),
+     * false otherwise.
+     */
+    boolean getJobChanges(long fromSequence, long toSequence,
+                          Collection<JobContentData> changedTarget,
+                          Collection<String> removedTarget,
+                          boolean isClearFirst);
+
+    /**
+     * Gets last job change sequence.
+     *
+     * @return Last job change sequence (0 = no changes).
+     */
+    long getJobSequence();
+
+    /**
+     * Gets running job output from offset.
+     *
+     * @param executorData Executor data.
+     * @param jobId        Job id.
+     * @param fromOffset   Byte offset to read from.
+     * @return Output chunk if job is running, null otherwise.
      */
-    boolean getExecutorFiles(JobExecutorData executorData,
-                             String basePath,
-                             List<JobFileData> target, boolean isClearFirst);
+    JobOutputChunkData getJobOutput(JobExecutorData executorData,
+                                    String jobId, long fromOffset);
+
+    /**
+     * Gets thread output stream (to hand scripting engines directly, instead
+     * of catching their System.out/System.err output).
+     *
+     * @return Thread output stream if registered and enabled, null otherwise.
+     */
+    PrintStream getThreadPrintStream();
 
     /**
      * Fetch and clear stored thread output.
@@ -173,6 +293,23 @@ public interface JobManager {
      */
     String readThreadOutput();
 
+    /**
+     * Records job change (submitted, started, completed).
+     *
+     * @param contentData Content data.
+     * @return Change sequence.
+     */
+    long recordJobChange(JobContentData contentData);
+
+    /**
+     * Records job removal (evicted, cleared or executor removed).
+     *
+     * @param executorData Executor data.
+     * @param jobId        Job id.
+     * @return Change sequence.
+     */
+    long recordJobRemoval(JobExecutorData executorData, String jobId);
+
     /**
      * Register the current thread for thread-local output (to catch scripting
      * engine output).
@@ -182,6 +319,23 @@ public interface JobManager {
      */
     boolean registerThread();
 
+    /**
+     * Sets thread output buffer (current job's output, readable as it's
+     * written).
+     *
+     * @param outputBuffer Output buffer.
+     * @return True if thread is registered, false otherwise.
+     */
+    boolean setThreadOutputBuffer(JobOutputBuffer outputBuffer);
+
+    /**
+     * Removes change waiter (e.g., on timeout).
+     *
+     * @param waiter Waiter.
+     * @return True if removed (not yet called back), false otherwise.
+     */
+    boolean removeChangeWaiter(ChangeNotifier.Waiter waiter);
+
     /**
      * Remove all executors.
      *
@@ -197,6 +351,17 @@ public interface JobManager {
      */
     JobExecutor removeExecutorInstance(JobExecutorData executorData);
 
+    /**
+     * Resize executor engine replica (worker) pool.
+     *
+     * @param executorData Executor data.
+     * @param replicaCount Requested replica count (capped as on creation;
+     *                     unpooled/non-replicable executors stay at 1).
+     * @return Executor instance if found, null otherwise.
+     */
+    JobExecutor resizeExecutorInstance(JobExecutorData executorData,
+                                       int replicaCount);
+
     /**
      * Submit job.
      *
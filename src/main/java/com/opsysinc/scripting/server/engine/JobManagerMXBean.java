@@ -0,0 +1,51 @@
+package com.opsysinc.scripting.server.engine;
+
+/**
+ * Job manager management interface (JMX).
+ *
+ * @author mkitchin
+ */
+public interface JobManagerMXBean {
+
+    /**
+     * Drain pending jobs of all executors.
+     *
+     * @return Drained job count.
+     */
+    int drainAllQueues();
+
+    /**
+     * Gets change sequence.
+     *
+     * @return Change sequence.
+     */
+    long getChangeSequence();
+
+    /**
+     * Gets executor count.
+     *
+     * @return Executor count.
+     */
+    int getExecutorCount();
+
+    /**
+     * Gets executor sequence.
+     *
+     * @return Executor sequence.
+     */
+    long getExecutorSequence();
+
+    /**
+     * Gets pending (queued) job count, across executors.
+     *
+     * @return Pending job count.
+     */
+    int getPendingJobCount();
+
+    /**
+     * Gets running (in-flight) job count, across executors.
+     *
+     * @return Running job count.
+     */
+    int getRunningJobCount();
+}
@@ -0,0 +1,194 @@
+package com.opsysinc.scripting.server.engine;
+
+import com.opsysinc.scripting.shared.JobDataUtils;
+import com.opsysinc.scripting.shared.JobStatus;
+import com.opsysinc.scripting.shared.JobTimingData;
+import com.opsysinc.scripting.shared.JobTimingPhase;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Job metrics (per executor counters + latency/size histograms).
+ * <p/>
+ * Lock-free; recorded by submitting/worker threads, scraped from any thread.
+ *
+ * @author mkitchin
+ */
+public class JobMetrics {
+
+    /**
+     * Submitted job count.
+     */
+    private final AtomicLong submittedCount;
+
+    /**
+     * Succeeded job count.
+     */
+    private final AtomicLong successCount;
+
+    /**
+     * Failed job count.
+     */
+    private final AtomicLong failureCount;
+
+    /**
+     * Drained (not run) job count.
+     */
+    private final AtomicLong drainedCount;
+
+    /**
+     * Queue wait times (ns).
+     */
+    private final JobHistogram queueWaitTimes;
+
+    /**
+     * Execution (dequeued - completed) times (ns).
+     */
+    private final JobHistogram executionTimes;
+
+    /**
+     * Output sizes (bytes).
+     */
+    private final JobHistogram outputSizes;
+
+    /**
+     * Basic ctor.
+     */
+    public JobMetrics() {
+
+        this.submittedCount = new AtomicLong();
+        this.successCount = new AtomicLong();
+        this.failureCount = new AtomicLong();
+        this.drainedCount = new AtomicLong();
+        this.queueWaitTimes = new JobHistogram();
+        this.executionTimes = new JobHistogram();
+        this.outputSizes = new JobHistogram();
+    }
+
+    /**
+     * Gets drained (not run) job count.
+     *
+     * @return Drained job count.
+     */
+    public long getDrainedCount() {
+
+        return this.drainedCount.get();
+    }
+
+    /**
+     * Gets execution time histogram.
+     *
+     * @return Execution times (ns).
+     */
+    public JobHistogram getExecutionTimes() {
+
+        return this.executionTimes;
+    }
+
+    /**
+     * Gets failed job count.
+     *
+     * @return Failed job count.
+     */
+    public long getFailureCount() {
+
+        return this.failureCount.get();
+    }
+
+    /**
+     * Gets output size histogram.
+     *
+     * @return Output sizes (bytes).
+     */
+    public JobHistogram getOutputSizes() {
+
+        return this.outputSizes;
+    }
+
+    /**
+     * Gets queue wait time histogram.
+     *
+     * @return Queue wait times (ns).
+     */
+    public JobHistogram getQueueWaitTimes() {
+
+        return this.queueWaitTimes;
+    }
+
+    /**
+     * Gets submitted job count.
+     *
+     * @return Submitted job count.
+     */
+    public long getSubmittedCount() {
+
+        return this.submittedCount.get();
+    }
+
+    /**
+     * Gets succeeded job count.
+     *
+     * @return Succeeded job count.
+     */
+    public long getSuccessCount() {
+
+        return this.successCount.get();
+    }
+
+    /**
+     * Records completed job.
+     *
+     * @param timingData Timing data.
+     * @param status     Job status.
+     * @param outputSize Output size (bytes).
+     */
+    public void recordCompleted(final JobTimingData timingData,
+                                final JobStatus status, final long outputSize) {
+
+        JobDataUtils.checkNullObject(timingData, true);
+
+        this.queueWaitTimes.recordValue(timingData.getPhaseTime(JobTimingPhase.queue));
+        this.executionTimes.recordValue(timingData.getPhaseTime(JobTimingPhase.total)
+                - timingData.getPhaseTime(JobTimingPhase.queue));
+        this.outputSizes.recordValue(outputSize);
+
+        if (status == JobStatus.success) {
+
+            this.successCount.incrementAndGet();
+
+        } else {
+
+            this.failureCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records drained (not run) job.
+     */
+    public void recordDrained() {
+
+        this.drainedCount.incrementAndGet();
+    }
+
+    /**
+     * Records submitted job.
+     */
+    public void recordSubmitted() {
+
+        this.submittedCount.incrementAndGet();
+    }
+
+    /**
+     * Resets counters and histograms.
+     */
+    public void reset() {
+
+        this.submittedCount.set(0L);
+        this.successCount.set(0L);
+        this.failureCount.set(0L);
+        this.drainedCount.set(0L);
+        this.queueWaitTimes.reset();
+        this.executionTimes.reset();
+        this.outputSizes.reset();
+    }
+}
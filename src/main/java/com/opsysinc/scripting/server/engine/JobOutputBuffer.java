@@ -0,0 +1,695 @@
+package com.opsysinc.scripting.server.engine;
+
+import com.google.common.base.Charsets;
+import com.opsysinc.scripting.shared.JobExecutorData;
+import com.opsysinc.scripting.shared.JobOutputChunkData;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Chunked, bounded job output buffer.
+ * <p/>
+ * Written by one worker thread, read from any thread by byte offset. Keeps
+ * the first (head) and latest (tail) output in memory; output in between is
+ * dropped (offsets keep counting from the start of the job's output). The
+ * full output may optionally be spilled to a file, up to a byte limit.
+ *
+ * @author mkitchin
+ */
+public class JobOutputBuffer extends OutputStream {
+
+    /**
+     * Output charset.
+     */
+    public static final Charset DEFAULT_CHARSET = Charsets.UTF_8;
+
+    /**
+     * Default chunk size in bytes.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    /**
+     * Default spill buffer size in bytes.
+     */
+    public static final int DEFAULT_SPILL_BUFFER_SIZE = 65536;
+
+    /**
+     * Default max spill file bytes per job (before the truncation marker).
+     */
+    public static final long DEFAULT_MAX_SPILL_BYTES = 268435456L;
+
+    /**
+     * Default spill truncation marker (appended once the limit is reached).
+     */
+    public static final String DEFAULT_SPILL_TRUNCATED_TEXT =
+            "\n[... spill limit reached, later output omitted ...]\n";
+
+    /**
+     * Empty head (shared until first output).
+     */
+    private static final byte[] DEFAULT_EMPTY_HEAD = new byte[0];
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER;
+
+    /**
+     * Chunk size in bytes.
+     */
+    private final int chunkSize;
+
+    /**
+     * Max tail chunks retained.
+     */
+    private final int maxChunks;
+
+    /**
+     * Head size in bytes.
+     */
+    private final int headSize;
+
+    /**
+     * Head (first output; grown as written, up to head size).
+     */
+    private byte[] head;
+
+    /**
+     * Head length.
+     */
+    private int headLength;
+
+    /**
+     * Tail chunks (oldest first; last one partially filled).
+     */
+    private final List<byte[]> chunks;
+
+    /**
+     * Offset of first retained tail byte.
+     */
+    private long tailOffset;
+
+    /**
+     * Offset past last written byte.
+     */
+    private long endOffset;
+
+    /**
+     * Spill file (null if not spilled).
+     */
+    private final File spillFile;
+
+    /**
+     * Spill channel (null if not spilled, or closed).
+     */
+    private FileChannel spillChannel;
+
+    /**
+     * Spill buffer.
+     */
+    private ByteBuffer spillBuffer;
+
+    /**
+     * Max spill bytes (before the truncation marker).
+     */
+    private final long maxSpillBytes;
+
+    /**
+     * Spilled bytes (excl. the truncation marker).
+     */
+    private long spillLength;
+
+    static {
+
+        LOGGER = Logger.getLogger(JobOutputBuffer.class.getName());
+    }
+
+    /**
+     * Basic ctor (default head/tail, no spill).
+     */
+    public JobOutputBuffer() {
+
+        this(JobExecutorData.DEFAULT_OUTPUT_HEAD_SIZE,
+                JobExecutorData.DEFAULT_OUTPUT_TAIL_SIZE, null);
+    }
+
+    /**
+     * Basic ctor.
+     *
+     * @param headSize  Head size in bytes (>=0).
+     * @param tailSize  Tail size in bytes (>=0; rounded up to whole chunks).
+     * @param spillFile Spill file (null = no spill).
+     */
+    public JobOutputBuffer(final int headSize, final int tailSize,
+                           final File spillFile) {
+
+        this(headSize, tailSize, spillFile, JobOutputBuffer.DEFAULT_MAX_SPILL_BYTES);
+    }
+
+    /**
+     * Basic ctor.
+     *
+     * @param headSize      Head size in bytes (>=0).
+     * @param tailSize      Tail size in bytes (>=0; rounded up to whole
+     *                      chunks).
+     * @param spillFile     Spill file (null = no spill).
+     * @param maxSpillBytes Max spill bytes (>0; later output is dropped from
+     *                      the spill file, after a truncation marker).
+     */
+    public JobOutputBuffer(final int headSize, final int tailSize,
+                           final File spillFile, final long maxSpillBytes) {
+
+        if (headSize < 0) {
+
+            throw new IllegalArgumentException("invalid input (headSize)");
+        }
+
+        if (tailSize < 0) {
+
+            throw new IllegalArgumentException("invalid input (tailSize)");
+        }
+
+        if (maxSpillBytes < 1L) {
+
+            throw new IllegalArgumentException("invalid input (maxSpillBytes)");
+        }
+
+        this.chunkSize = JobOutputBuffer.DEFAULT_CHUNK_SIZE;
+        this.maxChunks = Math.max(1, (tailSize + this.chunkSize - 1) / this.chunkSize);
+        this.headSize = headSize;
+        this.head = JobOutputBuffer.DEFAULT_EMPTY_HEAD;
+        this.headLength = 0;
+        this.chunks = new ArrayList<>();
+        this.tailOffset = headSize;
+        this.endOffset = 0L;
+        this.spillFile = spillFile;
+        this.maxSpillBytes = maxSpillBytes;
+        this.spillLength = 0L;
+
+        if (spillFile != null) {
+
+            this.openSpill();
+        }
+    }
+
+    /**
+     * Closes spill file (output is still readable from memory).
+     */
+    @Override
+    public synchronized void close() {
+
+        if (this.spillChannel == null) {
+
+            return;
+        }
+
+        try {
+
+            this.drainSpill();
+            this.spillChannel.close();
+
+        } catch (final IOException ex) {
+
+            JobOutputBuffer.LOGGER.log(Level.WARNING, "Can't close spill file ("
+                    + this.spillFile + ").", ex);
+
+        } finally {
+
+            this.spillChannel = null;
+            this.spillBuffer = null;
+        }
+    }
+
+    /**
+     * Copies retained output between offsets (must be contiguous).
+     *
+     * @param fromOffset From offset (inclusive).
+     * @param toOffset   To offset (exclusive).
+     * @return Output bytes.
+     */
+    private byte[] copyBytes(final long fromOffset, final long toOffset) {
+
+        final byte[] result = new byte[(int) (toOffset - fromOffset)];
+        long offset = fromOffset;
+        int ctr = 0;
+
+        if (offset < this.headLength) {
+
+            final int copyLength = (int) (Math.min(this.headLength, toOffset) - offset);
+            System.arraycopy(this.head, (int) offset, result, ctr, copyLength);
+
+            offset += copyLength;
+            ctr += copyLength;
+        }
+
+        while (offset < toOffset) {
+
+            final long relOffset = offset - this.tailOffset;
+            final byte[] chunk = this.chunks.get((int) (relOffset / this.chunkSize));
+            final int chunkOffset = (int) (relOffset % this.chunkSize);
+            final int copyLength = (int) Math.min(this.chunkSize - chunkOffset,
+                    toOffset - offset);
+
+            System.arraycopy(chunk, chunkOffset, result, ctr, copyLength);
+
+            offset += copyLength;
+            ctr += copyLength;
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes spill buffer to spill channel.
+     *
+     * @throws IOException I/O exception.
+     */
+    private void drainSpill() throws IOException {
+
+        this.spillBuffer.flip();
+
+        while (this.spillBuffer.hasRemaining()) {
+
+            this.spillChannel.write(this.spillBuffer);
+        }
+
+        this.spillBuffer.clear();
+    }
+
+    /**
+     * Ensures head can hold length bytes (grows by doubling, up to head
+     * size).
+     *
+     * @param minLength Min head length (<= head size).
+     */
+    private void ensureHead(final int minLength) {
+
+        if (minLength > this.head.length) {
+
+            final int newLength = Math.min(this.headSize, Math.max(minLength,
+                    Math.max(this.head.length * 2, this.chunkSize)));
+
+            this.head = Arrays.copyOf(this.head, newLength);
+        }
+    }
+
+    /**
+     * Gets byte at offset (must be retained).
+     *
+     * @param offset Offset.
+     * @return Byte.
+     */
+    private byte getByte(final long offset) {
+
+        if (offset < this.headLength) {
+
+            return this.head[(int) offset];
+        }
+
+        final long relOffset = offset - this.tailOffset;
+
+        return this.chunks.get((int) (relOffset / this.chunkSize))
+                [(int) (relOffset % this.chunkSize)];
+    }
+
+    /**
+     * Gets dropped byte count (between head and tail).
+     *
+     * @return Dropped byte count.
+     */
+    public synchronized long getDroppedLength() {
+
+        return Math.max(0L, Math.min(this.tailOffset, this.endOffset)
+                - this.headLength);
+    }
+
+    /**
+     * Gets offset past last written byte (total bytes written).
+     *
+     * @return End offset.
+     */
+    public synchronized long getEndOffset() {
+
+        return this.endOffset;
+    }
+
+    /**
+     * Gets spill file.
+     *
+     * @return Spill file if found, null otherwise.
+     */
+    public synchronized File getSpillFile() {
+
+        return ((this.spillFile != null) && this.spillFile.isFile())
+                ? this.spillFile : null;
+    }
+
+    /**
+     * Gets if byte at offset starts a character (isn't a UTF-8 continuation
+     * byte).
+     *
+     * @param offset Offset.
+     * @return True if character start, false otherwise.
+     */
+    private boolean isCharStart(final long offset) {
+
+        return (offset >= this.endOffset)
+                || ((offset >= this.headLength) && (offset < this.tailOffset))
+                || ((this.getByte(offset) & 0xC0) != 0x80);
+    }
+
+    /**
+     * Gets tail chunk to write at end offset (adds a chunk when the last one
+     * is full, recycling the oldest once max chunks are retained).
+     *
+     * @param chunkOffset Write offset within chunk.
+     * @return Tail chunk.
+     */
+    private byte[] getWriteChunk(final int chunkOffset) {
+
+        if (chunkOffset == 0) {
+
+            byte[] newChunk = null;
+
+            if (this.chunks.size() >= this.maxChunks) {
+
+                newChunk = this.chunks.remove(0);
+                this.tailOffset += this.chunkSize;
+            }
+
+            this.chunks.add((newChunk == null) ? new byte[this.chunkSize] : newChunk);
+        }
+
+        return this.chunks.get(this.chunks.size() - 1);
+    }
+
+    /**
+     * Opens spill channel (spilling is skipped if this fails).
+     */
+    private void openSpill() {
+
+        try {
+
+            this.spillChannel = FileChannel.open(this.spillFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.spillBuffer = ByteBuffer.allocate(JobOutputBuffer.DEFAULT_SPILL_BUFFER_SIZE);
+
+        } catch (final IOException ex) {
+
+            JobOutputBuffer.LOGGER.log(Level.WARNING, "Can't open spill file ("
+                    + this.spillFile + ").", ex);
+
+            this.spillChannel = null;
+            this.spillBuffer = null;
+        }
+    }
+
+    /**
+     * Reads output from offset.
+     *
+     * @param fromOffset Offset to read from (clamped to retained output).
+     * @param maxBytes   Max bytes to read (>0).
+     * @return Output chunk (empty if nothing new).
+     */
+    public synchronized JobOutputChunkData readChunk(final long fromOffset,
+                                                     final int maxBytes) {
+
+        if (maxBytes < 1) {
+
+            throw new IllegalArgumentException("invalid input (maxBytes)");
+        }
+
+        long readStart = Math.min(Math.max(fromOffset, 0L), this.endOffset);
+        long readLimit = this.endOffset;
+
+        if (readStart < this.headLength) {
+
+            // head, and tail too if nothing was dropped in between
+            if (this.tailOffset > this.headLength) {
+
+                readLimit = this.headLength;
+            }
+
+        } else {
+
+            readStart = Math.min(Math.max(readStart, this.tailOffset), this.endOffset);
+        }
+
+        long readEnd = Math.min(readStart + maxBytes, readLimit);
+
+        // keep (multi-byte) characters whole
+        while ((readStart < readEnd) && !this.isCharStart(readStart)) {
+
+            readStart++;
+        }
+
+        while ((readEnd > readStart) && !this.isCharStart(readEnd)) {
+
+            readEnd--;
+        }
+
+        return new JobOutputChunkData(readStart, readEnd, this.endOffset,
+                new String(this.copyBytes(readStart, readEnd),
+                        JobOutputBuffer.DEFAULT_CHARSET));
+    }
+
+    /**
+     * Discards all output, for reuse (closes spill file first, if any; the
+     * head stays allocated).
+     */
+    public synchronized void reset() {
+
+        this.close();
+
+        this.headLength = 0;
+        this.chunks.clear();
+        this.tailOffset = this.headSize;
+        this.endOffset = 0L;
+    }
+
+    /**
+     * Stops spilling after a write error.
+     *
+     * @param ex Write error.
+     */
+    private void stopSpill(final IOException ex) {
+
+        JobOutputBuffer.LOGGER.log(Level.WARNING, "Can't write spill file ("
+                + this.spillFile + "), spilling stopped.", ex);
+
+        try {
+
+            this.spillChannel.close();
+
+        } catch (final IOException ignore) {
+
+            // ignore;
+        }
+
+        this.spillChannel = null;
+        this.spillBuffer = null;
+    }
+
+    /**
+     * Stops spilling at the spill limit (appends the truncation marker, then
+     * closes the spill file).
+     */
+    private void truncateSpill() {
+
+        final byte[] markerBytes = JobOutputBuffer.DEFAULT_SPILL_TRUNCATED_TEXT
+                .getBytes(JobOutputBuffer.DEFAULT_CHARSET);
+
+        try {
+
+            if (this.spillBuffer.remaining() < markerBytes.length) {
+
+                this.drainSpill();
+            }
+
+            this.spillBuffer.put(markerBytes);
+            this.drainSpill();
+            this.spillChannel.close();
+
+            JobOutputBuffer.LOGGER.log(Level.FINE, "Spill limit reached ("
+                    + this.spillFile + ").");
+
+        } catch (final IOException ex) {
+
+            JobOutputBuffer.LOGGER.log(Level.WARNING, "Can't truncate spill file ("
+                    + this.spillFile + ").", ex);
+
+        } finally {
+
+            this.spillChannel = null;
+            this.spillBuffer = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+
+        synchronized (this) {
+
+            final long droppedLength = this.getDroppedLength();
+
+            if (droppedLength < 1L) {
+
+                return new String(this.copyBytes(0L, this.endOffset),
+                        JobOutputBuffer.DEFAULT_CHARSET);
+            }
+
+            return new String(this.copyBytes(0L, this.headLength),
+                    JobOutputBuffer.DEFAULT_CHARSET)
+                    + "\n[... " + droppedLength + " bytes omitted ...]\n"
+                    + new String(this.copyBytes(this.tailOffset, this.endOffset),
+                    JobOutputBuffer.DEFAULT_CHARSET);
+        }
+    }
+
+    @Override
+    public synchronized void write(final byte[] buf, final int off,
+                                   final int len) {
+
+        if ((off < 0) || (len < 0) || ((off + len) > buf.length)) {
+
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (this.spillChannel != null) {
+
+            this.writeSpill(buf, off, len);
+        }
+
+        int workOff = off;
+        int workLen = len;
+
+        // head first...
+        if (this.headLength < this.headSize) {
+
+            final int copyLength = Math.min(this.headSize - this.headLength, workLen);
+
+            this.ensureHead(this.headLength + copyLength);
+            System.arraycopy(buf, workOff, this.head, this.headLength, copyLength);
+
+            this.headLength += copyLength;
+            workOff += copyLength;
+            workLen -= copyLength;
+            this.endOffset += copyLength;
+        }
+
+        // ...then rolling tail
+        while (workLen > 0) {
+
+            final int chunkOffset = (int) ((this.endOffset - this.tailOffset)
+                    % this.chunkSize);
+            final byte[] chunk = this.getWriteChunk(chunkOffset);
+            final int copyLength = Math.min(this.chunkSize - chunkOffset, workLen);
+
+            System.arraycopy(buf, workOff, chunk, chunkOffset, copyLength);
+
+            workOff += copyLength;
+            workLen -= copyLength;
+            this.endOffset += copyLength;
+        }
+    }
+
+    @Override
+    public synchronized void write(final int b) {
+
+        if (this.spillChannel != null) {
+
+            if (this.spillLength >= this.maxSpillBytes) {
+
+                this.truncateSpill();
+
+            } else {
+
+                try {
+
+                    this.spillBuffer.put((byte) b);
+                    this.spillLength++;
+
+                    if (!this.spillBuffer.hasRemaining()) {
+
+                        this.drainSpill();
+                    }
+
+                } catch (final IOException ex) {
+
+                    this.stopSpill(ex);
+                }
+            }
+        }
+
+        if (this.headLength < this.headSize) {
+
+            this.ensureHead(this.headLength + 1);
+            this.head[this.headLength++] = (byte) b;
+
+        } else {
+
+            final int chunkOffset = (int) ((this.endOffset - this.tailOffset)
+                    % this.chunkSize);
+
+            this.getWriteChunk(chunkOffset)[chunkOffset] = (byte) b;
+        }
+
+        this.endOffset++;
+    }
+
+    /**
+     * Writes to spill file (through spill buffer); stops spilling on error,
+     * or at the spill limit.
+     *
+     * @param buf Source buffer.
+     * @param off Source offset.
+     * @param len Source length.
+     */
+    private void writeSpill(final byte[] buf, final int off, final int len) {
+
+        int workOff = off;
+        int workLen = (int) Math.min(len, this.maxSpillBytes - this.spillLength);
+        final boolean isTruncated = (workLen < len);
+
+        this.spillLength += workLen;
+
+        try {
+
+            while (workLen > 0) {
+
+                final int copyLength = Math.min(this.spillBuffer.remaining(), workLen);
+                this.spillBuffer.put(buf, workOff, copyLength);
+
+                workOff += copyLength;
+                workLen -= copyLength;
+
+                if (!this.spillBuffer.hasRemaining()) {
+
+                    this.drainSpill();
+                }
+            }
+
+        } catch (final IOException ex) {
+
+            this.stopSpill(ex);
+            return;
+        }
+
+        if (isTruncated) {
+
+            this.truncateSpill();
+        }
+    }
+}
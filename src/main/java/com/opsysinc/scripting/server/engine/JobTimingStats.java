@@ -0,0 +1,106 @@
+package com.opsysinc.scripting.server.engine;
+
+import com.opsysinc.scripting.shared.JobDataUtils;
+import com.opsysinc.scripting.shared.JobTimingData;
+import com.opsysinc.scripting.shared.JobTimingPhase;
+import com.opsysinc.scripting.shared.JobTimingStatsData;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Job timing stats (per executor phase totals/maxes).
+ * <p/>
+ * Lock-free; recorded by worker threads, read from any thread. Snapshots
+ * aren't atomic across phases (counts may lead totals by a job in flight).
+ *
+ * @author mkitchin
+ */
+public class JobTimingStats {
+
+    /**
+     * Completed job count.
+     */
+    private final AtomicLong jobCount;
+
+    /**
+     * Phase total times (ns; by phase ordinal).
+     */
+    private final AtomicLongArray totalTimes;
+
+    /**
+     * Phase max times (ns; by phase ordinal).
+     */
+    private final AtomicLongArray maxTimes;
+
+    /**
+     * Basic ctor.
+     */
+    public JobTimingStats() {
+
+        this.jobCount = new AtomicLong();
+        this.totalTimes = new AtomicLongArray(JobTimingPhase.values().length);
+        this.maxTimes = new AtomicLongArray(JobTimingPhase.values().length);
+    }
+
+    /**
+     * Gets stats data (snapshot).
+     *
+     * @return Stats data.
+     */
+    public JobTimingStatsData getStatsData() {
+
+        final int phaseCount = JobTimingPhase.values().length;
+        final long[] totalTimes = new long[phaseCount];
+        final long[] maxTimes = new long[phaseCount];
+
+        for (int ctr = 0; ctr < phaseCount; ctr++) {
+
+            totalTimes[ctr] = this.totalTimes.get(ctr);
+            maxTimes[ctr] = this.maxTimes.get(ctr);
+        }
+
+        return new JobTimingStatsData(this.jobCount.get(), totalTimes, maxTimes);
+    }
+
+    /**
+     * Records completed job timing.
+     *
+     * @param timingData Timing data.
+     */
+    public void recordTiming(final JobTimingData timingData) {
+
+        JobDataUtils.checkNullObject(timingData, true);
+
+        for (final JobTimingPhase phase : JobTimingPhase.values()) {
+
+            final int index = phase.ordinal();
+            final long phaseTime = timingData.getPhaseTime(phase);
+
+            this.totalTimes.addAndGet(index, phaseTime);
+            long maxTime = this.maxTimes.get(index);
+
+            while (phaseTime > maxTime
+                    && !this.maxTimes.compareAndSet(index, maxTime, phaseTime)) {
+
+                maxTime = this.maxTimes.get(index);
+            }
+        }
+
+        this.jobCount.incrementAndGet();
+    }
+
+    /**
+     * Resets stats.
+     */
+    public void reset() {
+
+        for (int ctr = 0; ctr < this.totalTimes.length(); ctr++) {
+
+            this.totalTimes.set(ctr, 0L);
+            this.maxTimes.set(ctr, 0L);
+        }
+
+        this.jobCount.set(0L);
+    }
+}
@@ -1,19 +1,25 @@
 package com.opsysinc.scripting.server.engine;
 
-import com.opsysinc.scripting.server.util.FormatUtils;
-import com.opsysinc.scripting.shared.JobDataFormat;
 import com.opsysinc.scripting.shared.JobDataUtils;
 import com.opsysinc.scripting.shared.JobExecutorData;
 import com.opsysinc.scripting.shared.JobFileData;
-import com.thoughtworks.xstream.XStream;
 
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Script engine (JSR223) job executor.
@@ -22,15 +28,41 @@ import java.util.Map;
  */
 public class ScriptEngineJobExecutor extends AbstractJobExecutor {
 
+    /**
+     * Default max compiled scripts (per executor, across replicas).
+     */
+    public static final int DEFAULT_MAX_COMPILED_SCRIPTS = 128;
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER;
+
     /**
      * Script engine manager.
      */
     private ScriptEngineManager scriptEngineManager;
 
     /**
-     * Script engine.
+     * Script engines (one per replica; a replica's engine may be replaced
+     * by its worker while others read it).
+     */
+    private volatile AtomicReferenceArray<ScriptEngine> scriptEngines;
+
+    /**
+     * Compiled script cache (invalidated with each engine generation).
      */
-    private ScriptEngine scriptEngine;
+    private CompiledScriptCache compiledScripts;
+
+    /**
+     * Baseline engine-scope bindings (one snapshot per replica).
+     */
+    private volatile AtomicReferenceArray<Map<String, Object>> baselineBindings;
+
+    static {
+
+        LOGGER = Logger.getLogger(ScriptEngineJobExecutor.class.getName());
+    }
 
     /**
      * Basic ctor.
@@ -68,14 +100,31 @@ public class ScriptEngineJobExecutor extends AbstractJobExecutor {
         return result;
     }
 
+    @Override
+    public CompiledScriptCache getCompiledScriptCache() {
+
+        return this.compiledScripts;
+    }
+
     /**
-     * Gets script engine.
+     * Gets (first replica) script engine.
      *
      * @return Script engine.
      */
     public ScriptEngine getScriptEngine() {
 
-        return this.scriptEngine;
+        return this.getScriptEngine(0);
+    }
+
+    /**
+     * Gets replica script engine.
+     *
+     * @param replicaIndex Replica index.
+     * @return Script engine.
+     */
+    public ScriptEngine getScriptEngine(final int replicaIndex) {
+
+        return this.scriptEngines.get(replicaIndex);
     }
 
     /**
@@ -88,6 +137,52 @@ public class ScriptEngineJobExecutor extends AbstractJobExecutor {
         return this.scriptEngineManager;
     }
 
+    @Override
+    protected Object getVariableObjectImpl(final int variableScope,
+                                           final String name) {
+
+        final Bindings bindings = this.getScriptEngine().getBindings(variableScope);
+
+        if (bindings == null) {
+
+            return null;
+        }
+
+        return bindings.get(name);
+    }
+
+    @Override
+    protected boolean getVariableObjectsImpl(final int variableScope,
+                                             final Map<String, Object> target,
+                                             final boolean isClearFirst) {
+
+        JobDataUtils.checkNullObject(target, true);
+        boolean result = false;
+
+        if (isClearFirst) {
+
+            if (result = !target.isEmpty()) {
+
+                target.clear();
+            }
+        }
+
+        // pooled replicas are stateless; first replica is representative
+        final Bindings bindings = this.getScriptEngine().getBindings(variableScope);
+
+        if ((bindings != null) &&
+                !bindings.isEmpty()) {
+
+            for (final Map.Entry<String, Object> item : bindings.entrySet()) {
+
+                target.put(item.getKey(), item.getValue());
+                result = true;
+            }
+        }
+
+        return result;
+    }
+
     @Override
     protected boolean getVariablesImpl(final int variableScope, final int variableFormat,
                                        final Map<String, String> target, final boolean isClearFirst) {
@@ -103,14 +198,12 @@ public class ScriptEngineJobExecutor extends AbstractJobExecutor {
             }
         }
 
-        final Bindings bindings = this.scriptEngine.getBindings(variableScope);
-        final JobDataFormat dataFormat = JobDataFormat.values()[variableFormat];
+        // pooled replicas are stateless; first replica is representative
+        final Bindings bindings = this.getScriptEngine().getBindings(variableScope);
 
         if ((bindings != null) &&
                 !bindings.isEmpty()) {
 
-            final XStream xstream = FormatUtils.getFormatXStream(dataFormat);
-
             for (final Map.Entry<String, Object> item : bindings.entrySet()) {
 
                 final String keyText = item.getKey().trim();
@@ -120,7 +213,8 @@ public class ScriptEngineJobExecutor extends AbstractJobExecutor {
 
                 if (!JobDataUtils.checkNullObject(valueObject, false)) {
 
-                    valueText = FormatUtils.formatObject(valueObject, xstream);
+                    valueText = this.formatVariable(variableScope,
+                            variableFormat, keyText, valueObject);
                 }
 
                 if (target.put(keyText, valueText) == null) {
@@ -139,21 +233,54 @@ public class ScriptEngineJobExecutor extends AbstractJobExecutor {
     private void init() {
 
         this.scriptEngineManager = new ScriptEngineManager();
+        this.compiledScripts = new CompiledScriptCache(
+                ScriptEngineJobExecutor.DEFAULT_MAX_COMPILED_SCRIPTS);
     }
 
     @Override
     protected void resetScriptEngineImpl() {
 
-        this.scriptEngine = this.createScriptEngine();
+        final AtomicReferenceArray<ScriptEngine> newScriptEngines =
+                new AtomicReferenceArray<>(this.getReplicaCount());
+        final AtomicReferenceArray<Map<String, Object>> newBaselineBindings =
+                new AtomicReferenceArray<>(newScriptEngines.length());
+
+        for (int ctr = 0; ctr < newScriptEngines.length(); ctr++) {
+
+            final ScriptEngine scriptEngine = this.createReplicaScriptEngine();
+
+            newScriptEngines.set(ctr, scriptEngine);
+            newBaselineBindings.set(ctr, ScriptEngineJobExecutor
+                    .snapshotBindings(scriptEngine));
+        }
+
+        this.scriptEngines = newScriptEngines;
+        this.baselineBindings = newBaselineBindings;
 
-        if (this.scriptEngine == null) {
+        // compiled scripts are bound to the engines they came from
+        if (this.compiledScripts != null) {
+
+            this.compiledScripts.invalidate();
+        }
+    }
+
+    /**
+     * Creates and populates a (replica) script engine.
+     *
+     * @return Script engine.
+     */
+    private ScriptEngine createReplicaScriptEngine() {
+
+        final ScriptEngine result = this.createScriptEngine();
+
+        if (result == null) {
 
             throw new IllegalStateException("Can't create script engine");
         }
 
         if (this.getExecutorData().getType().isVariablesReadable()) {
 
-            final Bindings engineBindings = this.scriptEngine
+            final Bindings engineBindings = result
                     .getBindings(ScriptContext.ENGINE_SCOPE);
 
             final Map<String, Object> executorObjects = new HashMap<>();
@@ -164,13 +291,139 @@ public class ScriptEngineJobExecutor extends AbstractJobExecutor {
                 engineBindings.put(item.getKey(), item.getValue());
             }
         }
+
+        return result;
     }
 
     @Override
-    protected Object runWorkImpl(final String inputText) throws Throwable {
+    protected void restoreBaselineImpl(final int replicaIndex) {
+
+        final Bindings engineBindings = this.getScriptEngine(replicaIndex)
+                .getBindings(ScriptContext.ENGINE_SCOPE);
+        final Map<String, Object> baseline = this.baselineBindings
+                .get(replicaIndex);
+
+        boolean isRestored = false;
+
+        try {
+
+            engineBindings.clear();
+            engineBindings.putAll(baseline);
+
+            // some engines keep declared globals through clear()
+            isRestored = engineBindings.keySet().equals(baseline.keySet());
+
+        } catch (final RuntimeException ex) {
+
+            ScriptEngineJobExecutor.LOGGER.log(Level.FINE,
+                    "Can't restore bindings (" + this.getExecutorData()
+                            + "; replica " + replicaIndex + ").", ex);
+        }
+
+        if (!isRestored) {
+
+            // engine won't take its bindings back; rebuild just this replica
+            ScriptEngineJobExecutor.LOGGER.log(Level.FINE,
+                    "Re-creating engine (" + this.getExecutorData()
+                            + "; replica " + replicaIndex + ").");
+
+            final ScriptEngine scriptEngine = this.createReplicaScriptEngine();
+
+            this.scriptEngines.set(replicaIndex, scriptEngine);
+            this.baselineBindings.set(replicaIndex,
+                    ScriptEngineJobExecutor.snapshotBindings(scriptEngine));
+            this.compiledScripts.invalidate();
+        }
+    }
+
+    /**
+     * Snapshots engine-scope bindings (shallow copy).
+     *
+     * @param scriptEngine Script engine.
+     * @return Unmodifiable bindings snapshot (empty if engine has none).
+     */
+    private static Map<String, Object> snapshotBindings(
+            final ScriptEngine scriptEngine) {
+
+        final Bindings engineBindings = scriptEngine
+                .getBindings(ScriptContext.ENGINE_SCOPE);
+
+        if (engineBindings == null) {
+
+            return Collections.emptyMap();
+        }
+
+        return Collections.unmodifiableMap(new HashMap<>(engineBindings));
+    }
+
+    /**
+     * Evaluates script (compiled, if engine supports it).
+     *
+     * @param replicaIndex Replica index.
+     * @param scriptEngine Script engine.
+     * @param inputText    Script text.
+     * @return Result object.
+     * @throws Throwable Any exception (caller handles).
+     */
+    private Object evalScript(final int replicaIndex,
+                              final ScriptEngine scriptEngine,
+                              final String inputText) throws Throwable {
+
+        if (!(scriptEngine instanceof Compilable)) {
+
+            return scriptEngine.eval(inputText);
+        }
+
+        final long generation = this.compiledScripts.getGeneration();
+        final String cacheKey = CompiledScriptCache.buildKey(replicaIndex, inputText);
+        CompiledScript compiledScript = this.compiledScripts.get(cacheKey);
+
+        if (compiledScript == null) {
+
+            compiledScript = ((Compilable) scriptEngine).compile(inputText);
+            this.compiledScripts.put(cacheKey, compiledScript, generation);
+        }
+
+        return compiledScript.eval();
+    }
+
+    @Override
+    protected Object runWorkImpl(final int replicaIndex,
+                                 final String inputText) throws Throwable {
 
         JobDataUtils.checkEmptyString(inputText, true);
-        return this.scriptEngine.eval(inputText);
+        final ScriptEngine scriptEngine = this.getScriptEngine(replicaIndex);
+
+        // engines that ignore context writers rely on System.out/System.err capture
+        final PrintStream outputStream = this.getExecutorData().getType().isContextOutput()
+                ? this.getJobManager().getThreadPrintStream() : null;
+
+        if (outputStream == null) {
+
+            return this.evalScript(replicaIndex, scriptEngine, inputText);
+        }
+
+        final ScriptContext scriptContext = scriptEngine.getContext();
+
+        final Writer lastWriter = scriptContext.getWriter();
+        final Writer lastErrorWriter = scriptContext.getErrorWriter();
+        final PrintWriter outputWriter = new PrintWriter(new OutputStreamWriter(
+                outputStream, JobOutputBuffer.DEFAULT_CHARSET), true);
+
+        try {
+
+            scriptContext.setWriter(outputWriter);
+            scriptContext.setErrorWriter(outputWriter);
+
+            return this.evalScript(replicaIndex, scriptEngine, inputText);
+
+        } finally {
+
+            outputWriter.flush();
+
+            scriptContext.setWriter(lastWriter);
+            scriptContext.setErrorWriter(lastErrorWriter);
+        }
     }
 
     @Override
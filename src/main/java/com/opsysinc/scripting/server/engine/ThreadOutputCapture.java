@@ -0,0 +1,604 @@
+package com.opsysinc.scripting.server.engine;
+
+import com.opsysinc.scripting.shared.JobDataUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Locale;
+
+/**
+ * Per-thread output capture (to catch scripting engine output written to
+ * System.out/System.err).
+ * <p/>
+ * Routing is thread-local and lock-free: threads that never registered go
+ * straight to the parent stream, registered threads write to their own
+ * buffer.
+ *
+ * @author mkitchin
+ */
+public class ThreadOutputCapture {
+
+    /**
+     * Output entries (registered threads only).
+     */
+    private final ThreadLocal<ThreadOutputCapture.OutputStreamEntry> outputEntries;
+
+    /**
+     * Basic ctor.
+     */
+    public ThreadOutputCapture() {
+
+        this.outputEntries = new ThreadLocal<>();
+    }
+
+    /**
+     * Creates print stream that routes through this capture.
+     *
+     * @param parentStream Parent stream (used by unregistered/disabled threads).
+     * @return Routing print stream.
+     */
+    public PrintStream createPrintStream(final PrintStream parentStream) {
+
+        JobDataUtils.checkNullObject(parentStream, true);
+        return new ThreadOutputCapture.OutputStreamHandler(parentStream);
+    }
+
+    /**
+     * De-register current thread.
+     *
+     * @return True if this thread was registered before, false otherwise.
+     */
+    public boolean deRegisterThread() {
+
+        final ThreadOutputCapture.OutputStreamEntry outputEntry = this.outputEntries.get();
+
+        if (outputEntry == null) {
+
+            return false;
+        }
+
+        this.outputEntries.remove();
+        outputEntry.close();
+
+        return true;
+    }
+
+    /**
+     * Disables output capture for current thread.
+     *
+     * @return True if status changed, false otherwise.
+     */
+    public boolean disableThreadOutput() {
+
+        final ThreadOutputCapture.OutputStreamEntry outputEntry = this.outputEntries.get();
+        boolean result = false;
+
+        if (outputEntry != null) {
+
+            result = outputEntry.isEnabled();
+            outputEntry.setEnabled(false);
+        }
+
+        return result;
+    }
+
+    /**
+     * Enables output capture for current thread.
+     *
+     * @return True if status changed, false otherwise.
+     */
+    public boolean enableThreadOutput() {
+
+        final ThreadOutputCapture.OutputStreamEntry outputEntry = this.outputEntries.get();
+        boolean result = false;
+
+        if (outputEntry != null) {
+
+            result = !outputEntry.isEnabled();
+            outputEntry.setEnabled(true);
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets capture buffer for current thread (the buffer set for it, or its
+     * default buffer, which each readThreadOutput() resets).
+     *
+     * @return Capture buffer if registered, null otherwise.
+     */
+    public JobOutputBuffer getThreadOutputBuffer() {
+
+        final ThreadOutputCapture.OutputStreamEntry outputEntry = this.outputEntries.get();
+
+        if (outputEntry != null) {
+
+            return outputEntry.getOutputBuffer();
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets capture stream for current thread (for engines that take their
+     * own writers).
+     *
+     * @return Capture stream if registered and enabled, null otherwise.
+     */
+    public PrintStream getThreadPrintStream() {
+
+        final ThreadOutputCapture.OutputStreamEntry outputEntry = this.outputEntries.get();
+
+        if ((outputEntry != null) && outputEntry.isEnabled()) {
+
+            return outputEntry.getPrintStream();
+        }
+
+        return null;
+    }
+
+    /**
+     * Fetch and clear captured output for current thread.
+     *
+     * @return Captured output if registered, null otherwise.
+     */
+    public String readThreadOutput() {
+
+        final ThreadOutputCapture.OutputStreamEntry outputEntry = this.outputEntries.get();
+        String result = null;
+
+        if (outputEntry != null) {
+
+            result = outputEntry.readOutput();
+        }
+
+        return result;
+    }
+
+    /**
+     * Sets capture buffer for current thread (e.g., per-job output budget).
+     *
+     * @param outputBuffer Output buffer.
+     * @return True if registered, false otherwise.
+     */
+    public boolean setThreadOutputBuffer(final JobOutputBuffer outputBuffer) {
+
+        JobDataUtils.checkNullObject(outputBuffer, true);
+        final ThreadOutputCapture.OutputStreamEntry outputEntry = this.outputEntries.get();
+
+        if (outputEntry == null) {
+
+            return false;
+        }
+
+        outputEntry.setOutputBuffer(outputBuffer);
+        return true;
+    }
+
+    /**
+     * Register current thread.
+     *
+     * @return True if this thread hasn't been registered before, false
+     * otherwise.
+     */
+    public boolean registerThread() {
+
+        if (this.outputEntries.get() != null) {
+
+            return false;
+        }
+
+        this.outputEntries.set(new ThreadOutputCapture.OutputStreamEntry());
+        return true;
+    }
+
+    /**
+     * Holder for printstream/joboutputbuffer pair.
+     * <p/>
+     * One print stream per thread, retargeted per buffer; between jobs,
+     * output goes to a default buffer that's allocated once (on first
+     * write) and reset w/each read.
+     *
+     * @author mkit
+     */
+    private static final class OutputStreamEntry {
+
+        /**
+         * Print stream (over current buffer).
+         */
+        private final PrintStream printStream;
+
+        /**
+         * Output buffer (null = default buffer).
+         */
+        private JobOutputBuffer outputBuffer;
+
+        /**
+         * Default output buffer (null until first needed).
+         */
+        private JobOutputBuffer defaultBuffer;
+
+        /**
+         * Is enabled? (only touched by owning thread)
+         */
+        private boolean isEnabled;
+
+        /**
+         * Basic ctor.
+         */
+        private OutputStreamEntry() {
+
+            this.isEnabled = false;
+
+            try {
+
+                this.printStream = new PrintStream(
+                        new ThreadOutputCapture.OutputStreamEntry.BufferStream(), true,
+                        JobOutputBuffer.DEFAULT_CHARSET.name());
+
+            } catch (final UnsupportedEncodingException ex) {
+
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        /**
+         * Close everything.
+         */
+        private void close() {
+
+            try {
+
+                this.printStream.close();
+
+            } catch (final Throwable ignore) {
+
+                // ignore;
+            }
+        }
+
+        /**
+         * Gets output buffer.
+         *
+         * @return Output buffer (default buffer, if none set).
+         */
+        private JobOutputBuffer getOutputBuffer() {
+
+            if (this.outputBuffer == null) {
+
+                if (this.defaultBuffer == null) {
+
+                    this.defaultBuffer = new JobOutputBuffer();
+                }
+
+                this.outputBuffer = this.defaultBuffer;
+            }
+
+            return this.outputBuffer;
+        }
+
+        /**
+         * Gets print stream.
+         *
+         * @return Print stream.
+         */
+        private PrintStream getPrintStream() {
+
+            return this.printStream;
+        }
+
+        /**
+         * Gets is enabled?
+         *
+         * @return Is enabled?
+         */
+        private boolean isEnabled() {
+
+            return this.isEnabled;
+        }
+
+        /**
+         * Read output and revert to default buffer (a set buffer is left
+         * intact; the default buffer is reset).
+         *
+         * @return Output.
+         */
+        private String readOutput() {
+
+            this.printStream.flush();
+
+            final String result = (this.outputBuffer == null)
+                    ? "" : this.outputBuffer.toString();
+
+            if (this.defaultBuffer != null) {
+
+                this.defaultBuffer.reset();
+            }
+
+            this.outputBuffer = null;
+
+            return result;
+        }
+
+        /**
+         * Sets buffer (pending output goes to the previous one first).
+         *
+         * @param outputBuffer Output buffer.
+         */
+        private void setOutputBuffer(final JobOutputBuffer outputBuffer) {
+
+            this.printStream.flush();
+            this.outputBuffer = outputBuffer;
+        }
+
+        /**
+         * Sets is enabled?
+         *
+         * @param isEnabled Is enabled?
+         */
+        private void setEnabled(final boolean isEnabled) {
+
+            this.isEnabled = isEnabled;
+        }
+
+        /**
+         * Stream over current output buffer.
+         *
+         * @author mkit
+         */
+        private final class BufferStream extends OutputStream {
+
+            @Override
+            public void write(final byte[] buf, final int off, final int len) {
+
+                ThreadOutputCapture.OutputStreamEntry.this.getOutputBuffer()
+                        .write(buf, off, len);
+            }
+
+            @Override
+            public void write(final int b) {
+
+                ThreadOutputCapture.OutputStreamEntry.this.getOutputBuffer().write(b);
+            }
+        }
+    }
+
+    /**
+     * Output stream handler.
+     *
+     * @author mkit
+     */
+    private final class OutputStreamHandler extends PrintStream {
+
+        /**
+         * Parent stream.
+         */
+        private final PrintStream parentStream;
+
+        /**
+         * Basic ctor.
+         *
+         * @param parentStream Parent stream.
+         */
+        private OutputStreamHandler(final PrintStream parentStream) {
+
+            super(parentStream, true);
+            this.parentStream = parentStream;
+        }
+
+        @Override
+        public PrintStream append(final char c) {
+
+            return this.getPrintStream().append(c);
+        }
+
+        @Override
+        public PrintStream append(final CharSequence csq) {
+
+            return this.getPrintStream().append(csq);
+        }
+
+        @Override
+        public PrintStream append(final CharSequence csq, final int start,
+                                  final int end) {
+
+            return this.getPrintStream().append(csq, start, end);
+        }
+
+        @Override
+        public boolean checkError() {
+
+            return this.getPrintStream().checkError();
+        }
+
+        @Override
+        public void close() {
+
+            this.getPrintStream().close();
+        }
+
+        @Override
+        public void flush() {
+
+            this.getPrintStream().flush();
+        }
+
+        @Override
+        public PrintStream format(final Locale l, final String format,
+                                  final Object... args) {
+
+            return this.getPrintStream().format(l, format, args);
+        }
+
+        @Override
+        public PrintStream format(final String format, final Object... args) {
+
+            return this.getPrintStream().format(format, args);
+        }
+
+        /**
+         * Gets print stream (no locking; unregistered threads get parent).
+         *
+         * @return Print stream.
+         */
+        private PrintStream getPrintStream() {
+
+            final ThreadOutputCapture.OutputStreamEntry outputEntry =
+                    ThreadOutputCapture.this.outputEntries.get();
+
+            if ((outputEntry != null) && outputEntry.isEnabled()) {
+
+                return outputEntry.getPrintStream();
+            }
+
+            return this.parentStream;
+        }
+
+        @Override
+        public void print(final boolean b) {
+
+            this.getPrintStream().print(b);
+        }
+
+        @Override
+        public void print(final char c) {
+
+            this.getPrintStream().print(c);
+        }
+
+        @Override
+        public void print(final char[] s) {
+
+            this.getPrintStream().print(s);
+        }
+
+        @Override
+        public void print(final double d) {
+
+            this.getPrintStream().print(d);
+        }
+
+        @Override
+        public void print(final float f) {
+
+            this.getPrintStream().print(f);
+        }
+
+        @Override
+        public void print(final int i) {
+
+            this.getPrintStream().print(i);
+        }
+
+        @Override
+        public void print(final long l) {
+
+            this.getPrintStream().print(l);
+        }
+
+        @Override
+        public void print(final Object obj) {
+
+            this.getPrintStream().print(obj);
+        }
+
+        @Override
+        public void print(final String s) {
+
+            this.getPrintStream().print(s);
+        }
+
+        @Override
+        public PrintStream printf(final Locale l, final String format,
+                                  final Object... args) {
+
+            return this.getPrintStream().printf(l, format, args);
+        }
+
+        @Override
+        public PrintStream printf(final String format, final Object... args) {
+
+            return this.getPrintStream().printf(format, args);
+        }
+
+        @Override
+        public void println() {
+
+            this.getPrintStream().println();
+        }
+
+        @Override
+        public void println(final boolean x) {
+
+            this.getPrintStream().println(x);
+        }
+
+        @Override
+        public void println(final char x) {
+
+            this.getPrintStream().println(x);
+        }
+
+        @Override
+        public void println(final char[] x) {
+
+            this.getPrintStream().println(x);
+        }
+
+        @Override
+        public void println(final double x) {
+
+            this.getPrintStream().println(x);
+        }
+
+        @Override
+        public void println(final float x) {
+
+            this.getPrintStream().println(x);
+        }
+
+        @Override
+        public void println(final int x) {
+
+            this.getPrintStream().println(x);
+        }
+
+        @Override
+        public void println(final long x) {
+
+            this.getPrintStream().println(x);
+        }
+
+        @Override
+        public void println(final Object x) {
+
+            this.getPrintStream().println(x);
+        }
+
+        @Override
+        public void println(final String x) {
+
+            this.getPrintStream().println(x);
+        }
+
+        @Override
+        public void write(final byte[] arg0) throws IOException {
+
+            this.getPrintStream().write(arg0);
+        }
+
+        @Override
+        public void write(final byte[] buf, final int off, final int len) {
+
+            this.getPrintStream().write(buf, off, len);
+        }
+
+        @Override
+        public void write(final int b) {
+
+            this.getPrintStream().write(b);
+        }
+    }
+}
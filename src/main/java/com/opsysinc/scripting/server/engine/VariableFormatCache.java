@@ -0,0 +1,600 @@
+package com.opsysinc.scripting.server.engine;
+
+import com.opsysinc.scripting.server.util.FormatUtils;
+import com.opsysinc.scripting.shared.JobDataFormat;
+import com.opsysinc.scripting.shared.JobDataUtils;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of formatted variable values, keyed by scope, format and
+ * binding name.
+ * <p/>
+ * Bounded by entry count and total chars; values over max value chars are
+ * returned, but not kept.
+ * <p/>
+ * Entries are valid for the same bound object (identity) in the same job
+ * generation; jobs may mutate bound objects in place, so the cache must be
+ * invalidated whenever a job completes or engines are replaced. Concurrent
+ * reads of the same entry share one formatting pass.
+ *
+ * @author mkitchin
+ */
+public class VariableFormatCache {
+
+    /**
+     * Max entries.
+     */
+    private final int maxEntries;
+
+    /**
+     * Max total chars (formatted values kept).
+     */
+    private final long maxChars;
+
+    /**
+     * Max chars of one formatted value kept.
+     */
+    private final int maxValueChars;
+
+    /**
+     * Cache entries (access-ordered).
+     */
+    private final Map<String, VariableFormatCache.CacheEntry> entries;
+
+    /**
+     * Hit count (includes reads that shared an in-flight pass).
+     */
+    private final AtomicLong hitCount;
+
+    /**
+     * Miss count.
+     */
+    private final AtomicLong missCount;
+
+    /**
+     * Eviction count.
+     */
+    private final AtomicLong evictionCount;
+
+    /**
+     * Job generation.
+     */
+    private final AtomicLong generation;
+
+    /**
+     * Total chars of kept values (guarded by entries).
+     */
+    private long totalChars;
+
+    /**
+     * Basic ctor.
+     *
+     * @param maxEntries    Max entries (>0).
+     * @param maxChars      Max total chars (>0).
+     * @param maxValueChars Max chars of one value kept (>0, <= maxChars).
+     */
+    public VariableFormatCache(final int maxEntries, final long maxChars,
+                               final int maxValueChars) {
+
+        if (maxEntries < 1) {
+
+            throw new IllegalArgumentException("invalid input (maxEntries)");
+        }
+
+        if (maxChars < 1L) {
+
+            throw new IllegalArgumentException("invalid input (maxChars)");
+        }
+
+        if ((maxValueChars < 1) || (maxValueChars > maxChars)) {
+
+            throw new IllegalArgumentException("invalid input (maxValueChars)");
+        }
+
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+        this.maxValueChars = maxValueChars;
+        this.totalChars = 0L;
+        this.hitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+        this.evictionCount = new AtomicLong();
+        this.generation = new AtomicLong();
+
+        this.entries = new LinkedHashMap<String, VariableFormatCache.CacheEntry>(
+                16, 0.75f, true) {
+
+            /**
+             * Default serial version UID.
+             */
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<String, VariableFormatCache.CacheEntry> eldest) {
+
+                final boolean result = this.size() > VariableFormatCache.this.maxEntries;
+
+                if (result) {
+
+                    VariableFormatCache.this.evictionCount.incrementAndGet();
+                    VariableFormatCache.this.totalChars -= eldest.getValue().getChars();
+                }
+
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Builds cache key.
+     *
+     * @param variableScope Variable scope.
+     * @param dataFormat    Data format.
+     * @param name          Variable name.
+     * @return Cache key.
+     */
+    private static String buildKey(final int variableScope,
+                                   final JobDataFormat dataFormat,
+                                   final String name) {
+
+        return variableScope + ":" + dataFormat.name() + ":" + name;
+    }
+
+    /**
+     * Formats variable value (cached).
+     *
+     * @param variableScope Variable scope.
+     * @param dataFormat    Data format.
+     * @param name          Variable name.
+     * @param valueObject   Bound object (may be null).
+     * @return Formatted value.
+     */
+    public String format(final int variableScope, final JobDataFormat dataFormat,
+                         final String name, final Object valueObject) {
+
+        JobDataUtils.checkNullObject(dataFormat, true);
+        JobDataUtils.checkNullObject(name, true);
+
+        final String key = VariableFormatCache.buildKey(variableScope, dataFormat, name);
+        FutureTask<String> formatTask = null;
+        boolean isOwner = false;
+
+        synchronized (this.entries) {
+
+            final VariableFormatCache.CacheEntry entry = this.entries.get(key);
+
+            if ((entry != null) && entry.isValid(valueObject, this.generation.get())) {
+
+                this.hitCount.incrementAndGet();
+                formatTask = entry.getFormatTask();
+
+            } else {
+
+                this.missCount.incrementAndGet();
+                formatTask = new FutureTask<>(new Callable<String>() {
+
+                    @Override
+                    public String call() {
+
+                        return FormatUtils.formatObject(valueObject, dataFormat);
+                    }
+                });
+
+                final VariableFormatCache.CacheEntry oldEntry = this.entries.put(key,
+                        new VariableFormatCache.CacheEntry(valueObject,
+                                this.generation.get(), formatTask));
+
+                if (oldEntry != null) {
+
+                    this.totalChars -= oldEntry.getChars();
+                }
+
+                isOwner = true;
+            }
+        }
+
+        if (isOwner) {
+
+            formatTask.run();
+        }
+
+        try {
+
+            final String result = formatTask.get();
+
+            if (isOwner) {
+
+                this.retain(key, formatTask, result.length());
+            }
+
+            return result;
+
+        } catch (final ExecutionException ex) {
+
+            synchronized (this.entries) {
+
+                final VariableFormatCache.CacheEntry entry = this.entries.get(key);
+
+                if ((entry != null) && (entry.getFormatTask() == formatTask)) {
+
+                    this.entries.remove(key);
+                    this.totalChars -= entry.getChars();
+                }
+            }
+
+            if (ex.getCause() instanceof RuntimeException) {
+
+                throw (RuntimeException) ex.getCause();
+            }
+
+            throw new IllegalStateException(ex.getCause());
+
+        } catch (final InterruptedException ex) {
+
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Gets formatted variable value, if cached (waits for an in-flight
+     * formatting pass).
+     *
+     * @param variableScope Variable scope.
+     * @param dataFormat    Data format.
+     * @param name          Variable name.
+     * @param valueObject   Bound object (may be null).
+     * @return Formatted value if cached, null otherwise.
+     */
+    public String getIfPresent(final int variableScope, final JobDataFormat dataFormat,
+                               final String name, final Object valueObject) {
+
+        JobDataUtils.checkNullObject(dataFormat, true);
+        JobDataUtils.checkNullObject(name, true);
+
+        final String key = VariableFormatCache.buildKey(variableScope, dataFormat, name);
+        final FutureTask<String> formatTask;
+
+        synchronized (this.entries) {
+
+            final VariableFormatCache.CacheEntry entry = this.entries.get(key);
+
+            if ((entry == null) || !entry.isValid(valueObject, this.generation.get())) {
+
+                this.missCount.incrementAndGet();
+                return null;
+            }
+
+            this.hitCount.incrementAndGet();
+            formatTask = entry.getFormatTask();
+        }
+
+        try {
+
+            return formatTask.get();
+
+        } catch (final ExecutionException ex) {
+
+            // owner drops failed entry
+            return null;
+
+        } catch (final InterruptedException ex) {
+
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Adds formatted variable value (formatted elsewhere; kept within char
+     * limits, as for format()).
+     *
+     * @param variableScope Variable scope.
+     * @param dataFormat    Data format.
+     * @param name          Variable name.
+     * @param valueObject   Bound object (may be null).
+     * @param valueText     Formatted value.
+     */
+    public void put(final int variableScope, final JobDataFormat dataFormat,
+                    final String name, final Object valueObject,
+                    final String valueText) {
+
+        JobDataUtils.checkNullObject(dataFormat, true);
+        JobDataUtils.checkNullObject(name, true);
+        JobDataUtils.checkNullObject(valueText, true);
+
+        final String key = VariableFormatCache.buildKey(variableScope, dataFormat, name);
+        final FutureTask<String> formatTask = new FutureTask<>(new Callable<String>() {
+
+            @Override
+            public String call() {
+
+                return valueText;
+            }
+        });
+
+        formatTask.run();
+
+        synchronized (this.entries) {
+
+            final VariableFormatCache.CacheEntry oldEntry = this.entries.put(key,
+                    new VariableFormatCache.CacheEntry(valueObject,
+                            this.generation.get(), formatTask));
+
+            if (oldEntry != null) {
+
+                this.totalChars -= oldEntry.getChars();
+            }
+
+            this.retain(key, formatTask, valueText.length());
+        }
+    }
+
+    /**
+     * Gets eviction count.
+     *
+     * @return Eviction count.
+     */
+    public long getEvictionCount() {
+
+        return this.evictionCount.get();
+    }
+
+    /**
+     * Gets job generation.
+     *
+     * @return Job generation (bumped by each invalidate()).
+     */
+    public long getGeneration() {
+
+        return this.generation.get();
+    }
+
+    /**
+     * Gets hit count.
+     *
+     * @return Hit count.
+     */
+    public long getHitCount() {
+
+        return this.hitCount.get();
+    }
+
+    /**
+     * Gets max total chars.
+     *
+     * @return Max total chars.
+     */
+    public long getMaxChars() {
+
+        return this.maxChars;
+    }
+
+    /**
+     * Gets max entries.
+     *
+     * @return Max entries.
+     */
+    public int getMaxEntries() {
+
+        return this.maxEntries;
+    }
+
+    /**
+     * Gets max chars of one value kept.
+     *
+     * @return Max value chars.
+     */
+    public int getMaxValueChars() {
+
+        return this.maxValueChars;
+    }
+
+    /**
+     * Gets miss count.
+     *
+     * @return Miss count.
+     */
+    public long getMissCount() {
+
+        return this.missCount.get();
+    }
+
+    /**
+     * Gets current size.
+     *
+     * @return Current entry count.
+     */
+    public int getSize() {
+
+        synchronized (this.entries) {
+
+            return this.entries.size();
+        }
+    }
+
+    /**
+     * Gets total chars of kept values.
+     *
+     * @return Total chars.
+     */
+    public long getTotalChars() {
+
+        synchronized (this.entries) {
+
+            return this.totalChars;
+        }
+    }
+
+    /**
+     * Drops all entries and starts a new job generation.
+     */
+    public void invalidate() {
+
+        synchronized (this.entries) {
+
+            this.entries.clear();
+            this.totalChars = 0L;
+            this.generation.incrementAndGet();
+        }
+    }
+
+    /**
+     * Keeps a finished value within char limits (drops it if it's over max
+     * value chars, otherwise evicts eldest entries until under max chars).
+     *
+     * @param key        Cache key.
+     * @param formatTask Finished formatting pass.
+     * @param valueChars Formatted value chars.
+     */
+    private void retain(final String key, final FutureTask<String> formatTask,
+                        final int valueChars) {
+
+        synchronized (this.entries) {
+
+            final VariableFormatCache.CacheEntry entry = this.entries.get(key);
+
+            if ((entry == null) || (entry.getFormatTask() != formatTask)) {
+
+                // invalidated or replaced meanwhile
+                return;
+            }
+
+            if (valueChars > this.maxValueChars) {
+
+                this.entries.remove(key);
+                return;
+            }
+
+            entry.setChars(valueChars);
+            this.totalChars += valueChars;
+
+            // eldest first (entry itself is now newest)
+            final Iterator<VariableFormatCache.CacheEntry> entryIter = this.entries
+                    .values().iterator();
+
+            while ((this.totalChars > this.maxChars) && entryIter.hasNext()) {
+
+                final VariableFormatCache.CacheEntry eldestEntry = entryIter.next();
+
+                if (eldestEntry == entry) {
+
+                    break;
+                }
+
+                entryIter.remove();
+                this.totalChars -= eldestEntry.getChars();
+                this.evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Cache entry (bound object + formatting pass).
+     *
+     * @author mkitchin
+     */
+    private static final class CacheEntry {
+
+        /**
+         * Bound object (weak; entry is stale once it's gone).
+         */
+        private final WeakReference<Object> valueReference;
+
+        /**
+         * Is bound object null?
+         */
+        private final boolean isNullValue;
+
+        /**
+         * Job generation.
+         */
+        private final long generation;
+
+        /**
+         * Formatting pass (may still be running).
+         */
+        private final FutureTask<String> formatTask;
+
+        /**
+         * Formatted value chars (0 while formatting; guarded by entries).
+         */
+        private int chars;
+
+        /**
+         * Basic ctor.
+         *
+         * @param valueObject Bound object (may be null).
+         * @param generation  Job generation.
+         * @param formatTask  Formatting pass.
+         */
+        private CacheEntry(final Object valueObject, final long generation,
+                           final FutureTask<String> formatTask) {
+
+            this.valueReference = new WeakReference<>(valueObject);
+            this.isNullValue = (valueObject == null);
+            this.generation = generation;
+            this.formatTask = formatTask;
+        }
+
+        /**
+         * Gets formatted value chars.
+         *
+         * @return Formatted value chars (0 while formatting).
+         */
+        private int getChars() {
+
+            return this.chars;
+        }
+
+        /**
+         * Sets formatted value chars.
+         *
+         * @param chars Formatted value chars.
+         */
+        private void setChars(final int chars) {
+
+            this.chars = chars;
+        }
+
+        /**
+         * Gets formatting pass.
+         *
+         * @return Formatting pass.
+         */
+        private FutureTask<String> getFormatTask() {
+
+            return this.formatTask;
+        }
+
+        /**
+         * Gets if entry is valid for bound object and generation.
+         *
+         * @param valueObject Bound object (may be null).
+         * @param generation  Current job generation.
+         * @return True if valid, false otherwise.
+         */
+        private boolean isValid(final Object valueObject, final long generation) {
+
+            if (this.generation != generation) {
+
+                return false;
+            }
+
+            if (valueObject == null) {
+
+                return this.isNullValue;
+            }
+
+            return this.valueReference.get() == valueObject;
+        }
+    }
+}
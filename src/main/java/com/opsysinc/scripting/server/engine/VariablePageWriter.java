@@ -0,0 +1,149 @@
+package com.opsysinc.scripting.server.engine;
+
+import java.io.Writer;
+
+/**
+ * Variable value page writer.
+ * <p/>
+ * Counts all chars written, but only keeps one page (from a char offset),
+ * plus the whole value while it's within max value chars (so small values
+ * can still be cached). Large values are thus paged w/o ever being held in
+ * full.
+ *
+ * @author mkitchin
+ */
+public class VariablePageWriter extends Writer {
+
+    /**
+     * Page start offset (chars).
+     */
+    private final long startOffset;
+
+    /**
+     * Max page chars.
+     */
+    private final int maxPageChars;
+
+    /**
+     * Max value chars kept whole.
+     */
+    private final int maxValueChars;
+
+    /**
+     * Page text.
+     */
+    private final StringBuilder pageText;
+
+    /**
+     * Whole value text (null once over max value chars).
+     */
+    private StringBuilder valueText;
+
+    /**
+     * Total chars written.
+     */
+    private long totalChars;
+
+    /**
+     * Basic ctor.
+     *
+     * @param startOffset   Page start offset (>=0).
+     * @param maxPageChars  Max page chars (>0).
+     * @param maxValueChars Max value chars kept whole (>=0).
+     */
+    public VariablePageWriter(final long startOffset, final int maxPageChars,
+                              final int maxValueChars) {
+
+        if (startOffset < 0L) {
+
+            throw new IllegalArgumentException("invalid input (startOffset)");
+        }
+
+        if (maxPageChars < 1) {
+
+            throw new IllegalArgumentException("invalid input (maxPageChars)");
+        }
+
+        if (maxValueChars < 0) {
+
+            throw new IllegalArgumentException("invalid input (maxValueChars)");
+        }
+
+        this.startOffset = startOffset;
+        this.maxPageChars = maxPageChars;
+        this.maxValueChars = maxValueChars;
+        this.pageText = new StringBuilder();
+        this.valueText = new StringBuilder();
+        this.totalChars = 0L;
+    }
+
+    @Override
+    public void close() {
+
+        // nothing to close
+    }
+
+    @Override
+    public void flush() {
+
+        // nothing to flush
+    }
+
+    /**
+     * Gets page text (chars from start offset, up to max page chars).
+     *
+     * @return Page text.
+     */
+    public String getPageText() {
+
+        return this.pageText.toString();
+    }
+
+    /**
+     * Gets total chars written.
+     *
+     * @return Total chars.
+     */
+    public long getTotalChars() {
+
+        return this.totalChars;
+    }
+
+    /**
+     * Gets whole value text.
+     *
+     * @return Value text if within max value chars, null otherwise.
+     */
+    public String getValueText() {
+
+        return (this.valueText == null) ? null : this.valueText.toString();
+    }
+
+    @Override
+    public void write(final char[] cbuf, final int off, final int len) {
+
+        if (this.valueText != null) {
+
+            if ((this.totalChars + len) <= this.maxValueChars) {
+
+                this.valueText.append(cbuf, off, len);
+
+            } else {
+
+                this.valueText = null;
+            }
+        }
+
+        final long pageEndOffset = this.startOffset + this.maxPageChars;
+        final long fromOffset = Math.max(this.totalChars, this.startOffset);
+        final long toOffset = Math.min(this.totalChars + len, pageEndOffset);
+
+        if (fromOffset < toOffset) {
+
+            this.pageText.append(cbuf, off + (int) (fromOffset - this.totalChars),
+                    (int) (toOffset - fromOffset));
+        }
+
+        this.totalChars += len;
+    }
+}
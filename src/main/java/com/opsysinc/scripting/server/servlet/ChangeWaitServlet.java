@@ -0,0 +1,220 @@
+package com.opsysinc.scripting.server.servlet;
+
+import com.opsysinc.scripting.server.engine.ChangeNotifier;
+import com.opsysinc.scripting.server.engine.JobManager;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Change wait servlet (async long poll).
+ * <p/>
+ * Waits for a job/executor change past a change sequence (request parameter
+ * "fromSequence"), then answers w/the last change sequence as plain text.
+ * The request goes async, so no container thread is held while waiting; the
+ * change notifier's callback (handed off to a container thread) or the
+ * timeout completes it. Answers -1 if
+ * too many clients are waiting (poll instead). Reads the job manager
+ * published by ScriptServiceImpl (load that servlet on startup).
+ *
+ * @author mkitchin
+ */
+public class ChangeWaitServlet extends HttpServlet {
+
+    /**
+     * Default serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Default from sequence parameter.
+     */
+    private static final String DEFAULT_FROM_SEQUENCE_PARAM = "fromSequence";
+
+    /**
+     * Default content type.
+     */
+    private static final String DEFAULT_CONTENT_TYPE = "text/plain";
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER;
+
+    static {
+
+        LOGGER = Logger.getLogger(ChangeWaitServlet.class.getName());
+    }
+
+    @Override
+    protected void doGet(final HttpServletRequest request,
+                         final HttpServletResponse response)
+            throws ServletException, IOException {
+
+        final JobManager jobManager = (JobManager) this.getServletContext()
+                .getAttribute(ScriptServiceImpl.DEFAULT_JOB_MANAGER_ATTR);
+
+        if (jobManager == null) {
+
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                    "Script service not started");
+            return;
+        }
+
+        final long fromSequence;
+
+        try {
+
+            fromSequence = Long.parseLong(request
+                    .getParameter(ChangeWaitServlet.DEFAULT_FROM_SEQUENCE_PARAM));
+
+        } catch (final NumberFormatException ex) {
+
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                    "invalid input (fromSequence)");
+            return;
+        }
+
+        response.setContentType(ChangeWaitServlet.DEFAULT_CONTENT_TYPE);
+        response.setHeader("Cache-Control", "no-cache");
+
+        final AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(ScriptServiceImpl.DEFAULT_CHANGE_WAIT_MS);
+
+        final ChangeWaitServlet.ChangeWaiter changeWaiter =
+                new ChangeWaitServlet.ChangeWaiter(jobManager, asyncContext);
+        asyncContext.addListener(changeWaiter);
+
+        if (!jobManager.addChangeWaiter(fromSequence, changeWaiter)) {
+
+            changeWaiter.complete(-1L);
+        }
+    }
+
+    /**
+     * Change waiter (completes its async request once: on change, timeout or
+     * error).
+     *
+     * @author mkitchin
+     */
+    private static final class ChangeWaiter implements ChangeNotifier.Waiter,
+            AsyncListener {
+
+        /**
+         * Job manager.
+         */
+        private final JobManager jobManager;
+
+        /**
+         * Async context.
+         */
+        private final AsyncContext asyncContext;
+
+        /**
+         * True once completed, false otherwise.
+         */
+        private boolean isComplete;
+
+        /**
+         * Basic ctor.
+         *
+         * @param jobManager   Job manager.
+         * @param asyncContext Async context.
+         */
+        private ChangeWaiter(final JobManager jobManager,
+                             final AsyncContext asyncContext) {
+
+            this.jobManager = jobManager;
+            this.asyncContext = asyncContext;
+            this.isComplete = false;
+        }
+
+        /**
+         * Completes request (once).
+         *
+         * @param sequence Change sequence to answer (null = no answer, e.g.,
+         *                 on error).
+         */
+        private synchronized void complete(final Long sequence) {
+
+            if (this.isComplete) {
+
+                return;
+            }
+
+            this.isComplete = true;
+
+            try {
+
+                if (sequence != null) {
+
+                    this.asyncContext.getResponse().getWriter().print(sequence);
+                }
+
+            } catch (final IOException ex) {
+
+                ChangeWaitServlet.LOGGER.log(Level.FINE, "Can't send change sequence", ex);
+
+            } finally {
+
+                this.asyncContext.complete();
+            }
+        }
+
+        @Override
+        public void onChange(final long sequence) {
+
+            // signalled from job workers: answer on a container thread
+            try {
+
+                this.asyncContext.start(new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        ChangeWaitServlet.ChangeWaiter.this.complete(sequence);
+                    }
+                });
+
+            } catch (final IllegalStateException ex) {
+
+                // already completed (e.g., timed out)
+                ChangeWaitServlet.LOGGER.log(Level.FINE, "Change waiter already complete", ex);
+            }
+        }
+
+        @Override
+        public void onComplete(final AsyncEvent event) {
+
+            this.jobManager.removeChangeWaiter(this);
+        }
+
+        @Override
+        public void onError(final AsyncEvent event) {
+
+            this.jobManager.removeChangeWaiter(this);
+            this.complete(null);
+        }
+
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+
+            // ignore
+        }
+
+        @Override
+        public void onTimeout(final AsyncEvent event) {
+
+            this.jobManager.removeChangeWaiter(this);
+            this.complete(this.jobManager.getChangeSequence());
+        }
+    }
+}
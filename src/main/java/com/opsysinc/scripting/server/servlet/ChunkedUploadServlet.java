@@ -0,0 +1,728 @@
+package com.opsysinc.scripting.server.servlet;
+
+import com.opsysinc.scripting.server.engine.JobFileUtils;
+import com.opsysinc.scripting.shared.JobDataUtils;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Chunked (resumable, parallel) upload servlet.
+ * <p/>
+ * Protocol (text/plain responses):
+ * <ul>
+ * <li>POST op=start, executorId, path (optional), name, size, chunkSize:
+ * returns upload id; creates a sparse part file in the executor's file
+ * area.</li>
+ * <li>PUT op=chunk, uploadId, index (body = chunk bytes): positional write;
+ * chunks may arrive in any order, in parallel, and be re-sent.</li>
+ * <li>GET op=status, uploadId: returns missing chunk indices (to resume).</li>
+ * <li>POST op=commit, uploadId, crc32 (optional, whole file): verifies all
+ * chunks and size (and checksum), then moves file into place
+ * atomically.</li>
+ * <li>POST op=abort, uploadId: drops upload and part file.</li>
+ * </ul>
+ * Idle uploads expire.
+ *
+ * @author mkitchin
+ */
+public class ChunkedUploadServlet extends HttpServlet {
+
+    /**
+     * Default serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Default max file size in bytes.
+     */
+    private static final long DEFAULT_MAX_FILE_SIZE_IN_BYTES = 16L * 1024L * 1024L * 1024L;
+
+    /**
+     * Default min chunk size in bytes.
+     */
+    private static final int DEFAULT_MIN_CHUNK_SIZE_IN_BYTES = 64 * 1024;
+
+    /**
+     * Default max chunk size in bytes.
+     */
+    private static final int DEFAULT_MAX_CHUNK_SIZE_IN_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * Default max open uploads.
+     */
+    private static final int DEFAULT_MAX_UPLOADS = 100;
+
+    /**
+     * Default upload idle time in ms (before expiring).
+     */
+    private static final long DEFAULT_UPLOAD_IDLE_MS = 60L * 60L * 1000L;
+
+    /**
+     * Default checksum buffer size in bytes.
+     */
+    private static final int DEFAULT_BUFFER_SIZE_IN_BYTES = 1024 * 1024;
+
+    /**
+     * Default partial file suffix.
+     */
+    private static final String DEFAULT_PART_FILE_SUFFIX = ".part";
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER;
+
+    static {
+
+        LOGGER = Logger.getLogger(ChunkedUploadServlet.class.getName());
+    }
+
+    /**
+     * Open uploads (by upload id).
+     */
+    private final Map<String, ChunkedUploadServlet.ChunkedUpload> uploads;
+
+    /**
+     * Basic ctor.
+     */
+    public ChunkedUploadServlet() {
+
+        this.uploads = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Computes file checksum.
+     *
+     * @param fileChannel File channel.
+     * @return CRC-32 value.
+     * @throws IOException I/O exception.
+     */
+    private static long computeChecksum(final FileChannel fileChannel) throws IOException {
+
+        final CRC32 checksum = new CRC32();
+        final ByteBuffer buffer = ByteBuffer.allocate(
+                ChunkedUploadServlet.DEFAULT_BUFFER_SIZE_IN_BYTES);
+        long position = 0L;
+
+        while (true) {
+
+            buffer.clear();
+            final int readSize = fileChannel.read(buffer, position);
+
+            if (readSize < 0) {
+
+                break;
+            }
+
+            checksum.update(buffer.array(), 0, readSize);
+            position += readSize;
+        }
+
+        return checksum.getValue();
+    }
+
+    /**
+     * Gets required long parameter.
+     *
+     * @param request   Request.
+     * @param paramName Parameter name.
+     * @return Parameter value.
+     */
+    private static long getLongParameter(final HttpServletRequest request,
+                                         final String paramName) {
+
+        final String paramText = request.getParameter(paramName);
+
+        try {
+
+            return Long.parseLong(String.valueOf(paramText).trim());
+
+        } catch (final NumberFormatException ex) {
+
+            throw new IllegalArgumentException("invalid input (" + paramName + ")");
+        }
+    }
+
+    /**
+     * Writes text response.
+     *
+     * @param response     Response.
+     * @param responseText Response text.
+     * @throws IOException I/O exception.
+     */
+    private static void writeResponse(final HttpServletResponse response,
+                                      final String responseText) throws IOException {
+
+        response.setContentType("text/plain");
+        response.setCharacterEncoding("UTF-8");
+
+        final PrintWriter responseWriter = response.getWriter();
+        responseWriter.write(responseText);
+        responseWriter.flush();
+    }
+
+    @Override
+    public void destroy() {
+
+        for (final ChunkedUploadServlet.ChunkedUpload item : this.uploads.values()) {
+
+            item.abort();
+        }
+
+        this.uploads.clear();
+    }
+
+    @Override
+    protected void doGet(final HttpServletRequest request,
+                         final HttpServletResponse response)
+            throws ServletException, IOException {
+
+        if (!"status".equals(request.getParameter("op"))) {
+
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown op");
+            return;
+        }
+
+        final ChunkedUploadServlet.ChunkedUpload upload = this.getUpload(request, response);
+
+        if (upload != null) {
+
+            ChunkedUploadServlet.writeResponse(response, upload.getMissingText());
+        }
+    }
+
+    @Override
+    protected void doPost(final HttpServletRequest request,
+                          final HttpServletResponse response)
+            throws ServletException, IOException {
+
+        final String opText = String.valueOf(request.getParameter("op"));
+
+        try {
+
+            if (opText.equals("start")) {
+
+                this.runStart(request, response);
+
+            } else if (opText.equals("commit")) {
+
+                this.runCommit(request, response);
+
+            } else if (opText.equals("abort")) {
+
+                final ChunkedUploadServlet.ChunkedUpload upload = this.getUpload(request, response);
+
+                if (upload != null) {
+
+                    this.uploads.remove(upload.getId());
+                    upload.abort();
+                    ChunkedUploadServlet.writeResponse(response, "aborted");
+                }
+
+            } else {
+
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown op");
+            }
+
+        } catch (final IllegalArgumentException ex) {
+
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+        }
+    }
+
+    @Override
+    protected void doPut(final HttpServletRequest request,
+                         final HttpServletResponse response)
+            throws ServletException, IOException {
+
+        if (!"chunk".equals(request.getParameter("op"))) {
+
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown op");
+            return;
+        }
+
+        final ChunkedUploadServlet.ChunkedUpload upload = this.getUpload(request, response);
+
+        if (upload == null) {
+
+            return;
+        }
+
+        try {
+
+            final int chunkIndex = (int) ChunkedUploadServlet.getLongParameter(request, "index");
+
+            if (upload.writeChunk(chunkIndex, request.getInputStream())) {
+
+                ChunkedUploadServlet.writeResponse(response, "ok");
+
+            } else {
+
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Chunk size mismatch");
+            }
+
+        } catch (final IllegalArgumentException ex) {
+
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+        }
+    }
+
+    /**
+     * Gets open upload (sends 404 if not found/expired).
+     *
+     * @param request  Request.
+     * @param response Response.
+     * @return Upload if found, null otherwise.
+     * @throws IOException I/O exception.
+     */
+    private ChunkedUploadServlet.ChunkedUpload getUpload(final HttpServletRequest request,
+                                                         final HttpServletResponse response)
+            throws IOException {
+
+        final String uploadId = request.getParameter("uploadId");
+        final ChunkedUploadServlet.ChunkedUpload result =
+                (uploadId == null) ? null : this.uploads.get(uploadId);
+
+        if (result == null) {
+
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Upload not found: " + uploadId);
+
+        } else {
+
+            result.touch();
+        }
+
+        return result;
+    }
+
+    /**
+     * Expires idle uploads.
+     */
+    private void removeExpiredUploads() {
+
+        final long expiredTime = System.currentTimeMillis()
+                - ChunkedUploadServlet.DEFAULT_UPLOAD_IDLE_MS;
+        final Iterator<ChunkedUploadServlet.ChunkedUpload> iter = this.uploads.values().iterator();
+
+        while (iter.hasNext()) {
+
+            final ChunkedUploadServlet.ChunkedUpload item = iter.next();
+
+            if (item.getAccessTime() < expiredTime) {
+
+                iter.remove();
+                item.abort();
+            }
+        }
+    }
+
+    /**
+     * Commits upload.
+     *
+     * @param request  Request.
+     * @param response Response.
+     * @throws IOException I/O exception.
+     */
+    private void runCommit(final HttpServletRequest request,
+                           final HttpServletResponse response) throws IOException {
+
+        final ChunkedUploadServlet.ChunkedUpload upload = this.getUpload(request, response);
+
+        if (upload == null) {
+
+            return;
+        }
+
+        final String missingText = upload.getMissingText();
+
+        if (!missingText.isEmpty()) {
+
+            response.sendError(HttpServletResponse.SC_CONFLICT, "Missing chunks: " + missingText);
+            return;
+        }
+
+        final String checksumText = request.getParameter("crc32");
+        final Long checksum = JobDataUtils.checkEmptyString(checksumText, false)
+                ? null : Long.valueOf(ChunkedUploadServlet.getLongParameter(request, "crc32"));
+
+        // one commit wins; others see upload gone
+        if (this.uploads.remove(upload.getId()) == null) {
+
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Upload not found: " + upload.getId());
+            return;
+        }
+
+        final String commitError = upload.commit(checksum);
+
+        if (commitError != null) {
+
+            response.sendError(HttpServletResponse.SC_CONFLICT, commitError);
+            return;
+        }
+
+        ChunkedUploadServlet.writeResponse(response,
+                upload.getTargetFile().getName() + "\t" + upload.getFileSize() + "\n");
+    }
+
+    /**
+     * Starts upload.
+     *
+     * @param request  Request.
+     * @param response Response.
+     * @throws IOException I/O exception.
+     */
+    private void runStart(final HttpServletRequest request,
+                          final HttpServletResponse response) throws IOException {
+
+        this.removeExpiredUploads();
+
+        if (this.uploads.size() >= ChunkedUploadServlet.DEFAULT_MAX_UPLOADS) {
+
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many uploads");
+            return;
+        }
+
+        final long fileSize = ChunkedUploadServlet.getLongParameter(request, "size");
+        final long chunkSize = ChunkedUploadServlet.getLongParameter(request, "chunkSize");
+
+        if ((fileSize < 0L) || (fileSize > ChunkedUploadServlet.DEFAULT_MAX_FILE_SIZE_IN_BYTES)) {
+
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                    "File is > than " + ChunkedUploadServlet.DEFAULT_MAX_FILE_SIZE_IN_BYTES);
+            return;
+        }
+
+        if ((chunkSize < ChunkedUploadServlet.DEFAULT_MIN_CHUNK_SIZE_IN_BYTES) ||
+                (chunkSize > ChunkedUploadServlet.DEFAULT_MAX_CHUNK_SIZE_IN_BYTES)) {
+
+            throw new IllegalArgumentException("invalid input (chunkSize)");
+        }
+
+        final String fileName = request.getParameter("name");
+        JobDataUtils.checkEmptyString(fileName, true);
+
+        if (fileName.contains("/") || fileName.contains("\\")) {
+
+            throw new IllegalArgumentException("invalid input (name)");
+        }
+
+        final File fileBase = JobFileUtils.getExecutorFileBase(request.getParameter("executorId"));
+
+        if (!fileBase.isDirectory()) {
+
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Executor not found");
+            return;
+        }
+
+        final File targetFolder = JobFileUtils.resolveFile(fileBase,
+                JobDataUtils.getAsString(request.getParameter("path"), ""));
+        final File targetFile = JobFileUtils.resolveFile(targetFolder, fileName);
+
+        if (!targetFolder.isDirectory() &&
+                !targetFolder.mkdirs()) {
+
+            throw new IOException("Can't create folder: " + targetFolder);
+        }
+
+        final String uploadId = UUID.randomUUID().toString();
+        final File partFile = new File(targetFolder, "." + targetFile.getName() + "."
+                + uploadId + ChunkedUploadServlet.DEFAULT_PART_FILE_SUFFIX);
+
+        this.uploads.put(uploadId, new ChunkedUploadServlet.ChunkedUpload(
+                uploadId, partFile, targetFile, fileSize, (int) chunkSize));
+
+        ChunkedUploadServlet.writeResponse(response, uploadId);
+    }
+
+    /**
+     * Chunked upload (one part file).
+     *
+     * @author mkitchin
+     */
+    private static final class ChunkedUpload {
+
+        /**
+         * Upload id.
+         */
+        private final String id;
+
+        /**
+         * Part file.
+         */
+        private final File partFile;
+
+        /**
+         * Target file.
+         */
+        private final File targetFile;
+
+        /**
+         * File size in bytes.
+         */
+        private final long fileSize;
+
+        /**
+         * Chunk size in bytes (last chunk may be shorter).
+         */
+        private final int chunkSize;
+
+        /**
+         * Chunk count.
+         */
+        private final int chunkCount;
+
+        /**
+         * Received chunks.
+         */
+        private final BitSet receivedChunks;
+
+        /**
+         * Part file channel (positional writes are thread-safe).
+         */
+        private final FileChannel fileChannel;
+
+        /**
+         * Last access time in ms.
+         */
+        private volatile long accessTime;
+
+        /**
+         * Basic ctor (creates sparse part file).
+         *
+         * @param id         Upload id.
+         * @param partFile   Part file.
+         * @param targetFile Target file.
+         * @param fileSize   File size in bytes.
+         * @param chunkSize  Chunk size in bytes.
+         * @throws IOException I/O exception.
+         */
+        private ChunkedUpload(final String id, final File partFile, final File targetFile,
+                              final long fileSize, final int chunkSize) throws IOException {
+
+            this.id = id;
+            this.partFile = partFile;
+            this.targetFile = targetFile;
+            this.fileSize = fileSize;
+            this.chunkSize = chunkSize;
+            this.chunkCount = (int) ((fileSize + chunkSize - 1L) / chunkSize);
+            this.receivedChunks = new BitSet(this.chunkCount);
+            this.accessTime = System.currentTimeMillis();
+
+            this.fileChannel = FileChannel.open(partFile.toPath(),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.SPARSE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            // extend w/o writing (sparse where supported)
+            if (fileSize > 0L) {
+
+                this.fileChannel.write(ByteBuffer.allocate(1), fileSize - 1L);
+            }
+        }
+
+        /**
+         * Drops upload and part file.
+         */
+        private void abort() {
+
+            try {
+
+                this.fileChannel.close();
+
+            } catch (final IOException ex) {
+
+                ChunkedUploadServlet.LOGGER.log(Level.FINE, "Can't close part file", ex);
+            }
+
+            if (this.partFile.exists() &&
+                    !this.partFile.delete()) {
+
+                ChunkedUploadServlet.LOGGER.log(Level.WARNING,
+                        "Can't remove partial upload: " + this.partFile);
+            }
+        }
+
+        /**
+         * Verifies and moves part file into place.
+         *
+         * @param checksum Expected CRC-32 (null = don't check).
+         * @return Error text if not committed (upload aborted), null otherwise.
+         * @throws IOException I/O exception.
+         */
+        private String commit(final Long checksum) throws IOException {
+
+            try {
+
+                if (this.fileChannel.size() != this.fileSize) {
+
+                    return "Size mismatch";
+                }
+
+                if ((checksum != null) &&
+                        (ChunkedUploadServlet.computeChecksum(this.fileChannel) != checksum)) {
+
+                    return "Checksum mismatch";
+                }
+
+                this.fileChannel.force(false);
+                this.fileChannel.close();
+
+                Files.move(this.partFile.toPath(), this.targetFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+
+                return null;
+
+            } finally {
+
+                this.abort();
+            }
+        }
+
+        /**
+         * Gets last access time.
+         *
+         * @return Last access time in ms.
+         */
+        private long getAccessTime() {
+
+            return this.accessTime;
+        }
+
+        /**
+         * Gets file size.
+         *
+         * @return File size in bytes.
+         */
+        private long getFileSize() {
+
+            return this.fileSize;
+        }
+
+        /**
+         * Gets upload id.
+         *
+         * @return Upload id.
+         */
+        private String getId() {
+
+            return this.id;
+        }
+
+        /**
+         * Gets missing chunk indices.
+         *
+         * @return Comma-separated indices (empty if complete).
+         */
+        private String getMissingText() {
+
+            final StringBuilder result = new StringBuilder();
+
+            synchronized (this.receivedChunks) {
+
+                for (int ctr = this.receivedChunks.nextClearBit(0);
+                     ctr < this.chunkCount;
+                     ctr = this.receivedChunks.nextClearBit(ctr + 1)) {
+
+                    if (result.length() > 0) {
+
+                        result.append(',');
+                    }
+
+                    result.append(ctr);
+                }
+            }
+
+            return result.toString();
+        }
+
+        /**
+         * Gets target file.
+         *
+         * @return Target file.
+         */
+        private File getTargetFile() {
+
+            return this.targetFile;
+        }
+
+        /**
+         * Marks upload as accessed.
+         */
+        private void touch() {
+
+            this.accessTime = System.currentTimeMillis();
+        }
+
+        /**
+         * Writes chunk at its position.
+         *
+         * @param chunkIndex  Chunk index.
+         * @param inputStream Chunk bytes.
+         * @return True if whole chunk was written, false if size didn't match.
+         * @throws IOException I/O exception.
+         */
+        private boolean writeChunk(final int chunkIndex, final InputStream inputStream)
+                throws IOException {
+
+            if ((chunkIndex < 0) || (chunkIndex >= this.chunkCount)) {
+
+                throw new IllegalArgumentException("invalid input (index)");
+            }
+
+            final long startPosition = ((long) chunkIndex) * this.chunkSize;
+            final long expectedSize = Math.min(this.chunkSize, this.fileSize - startPosition);
+            final ReadableByteChannel inputChannel = Channels.newChannel(inputStream);
+            long writtenSize = 0L;
+
+            while (writtenSize < expectedSize) {
+
+                final long transferSize = this.fileChannel.transferFrom(inputChannel,
+                        startPosition + writtenSize, expectedSize - writtenSize);
+
+                if (transferSize < 1L) {
+
+                    break;
+                }
+
+                writtenSize += transferSize;
+            }
+
+            // short or long body; leave chunk missing
+            if ((writtenSize != expectedSize) ||
+                    (inputStream.read() >= 0)) {
+
+                return false;
+            }
+
+            synchronized (this.receivedChunks) {
+
+                this.receivedChunks.set(chunkIndex);
+            }
+
+            this.touch();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package com.opsysinc.scripting.server.servlet;
+
+import com.opsysinc.scripting.server.engine.JobFileUtils;
+import com.opsysinc.scripting.shared.JobDataUtils;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * File download servlet.
+ * <p/>
+ * Serves files from an executor's file area (request parameters
+ * "executorId" and "path"), w/single byte ranges (RFC 7233) and
+ * conditional requests on last modified time/entity tag (RFC 7232). Uses
+ * container sendfile where offered, FileChannel.transferTo() otherwise.
+ *
+ * @author mkitchin
+ */
+public class FileDownloadServlet extends HttpServlet {
+
+    /**
+     * Default serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Default transfer size in bytes (per channel transfer).
+     */
+    private static final long DEFAULT_TRANSFER_SIZE_IN_BYTES = 8L * 1024L * 1024L;
+
+    /**
+     * Default executor id parameter.
+     */
+    private static final String DEFAULT_EXECUTOR_ID_PARAM = "executorId";
+
+    /**
+     * Default path parameter.
+     */
+    private static final String DEFAULT_PATH_PARAM = "path";
+
+    /**
+     * Default content type.
+     */
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    /**
+     * Default byte range prefix.
+     */
+    private static final String DEFAULT_RANGE_PREFIX = "bytes=";
+
+    /**
+     * Sendfile support attribute (Tomcat NIO/APR connectors).
+     */
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+
+    /**
+     * Sendfile file name attribute.
+     */
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+
+    /**
+     * Sendfile start attribute.
+     */
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+
+    /**
+     * Sendfile end attribute (exclusive).
+     */
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER;
+
+    static {
+
+        LOGGER = Logger.getLogger(FileDownloadServlet.class.getName());
+    }
+
+    /**
+     * Builds entity tag (size + last modified time).
+     *
+     * @param file File.
+     * @return Entity tag (quoted).
+     */
+    private static String buildEntityTag(final File file) {
+
+        return "\"" + Long.toHexString(file.length()) + "-"
+                + Long.toHexString(file.lastModified()) + "\"";
+    }
+
+    /**
+     * Gets date header, ignoring malformed dates.
+     *
+     * @param request    Request.
+     * @param headerName Header name.
+     * @return Header time in ms, or -1L if missing/malformed.
+     */
+    private static long getDateHeader(final HttpServletRequest request,
+                                      final String headerName) {
+
+        try {
+
+            return request.getDateHeader(headerName);
+
+        } catch (final IllegalArgumentException ex) {
+
+            return -1L;
+        }
+    }
+
+    /**
+     * Checks if entity tag matches a header list (If-Match/If-None-Match).
+     *
+     * @param headerText Header text (may be null).
+     * @param entityTag  Entity tag.
+     * @return True if header lists tag or "*", false otherwise.
+     */
+    private static boolean isEntityTagMatch(final String headerText,
+                                            final String entityTag) {
+
+        if (headerText == null) {
+
+            return false;
+        }
+
+        for (final String item : headerText.split(",")) {
+
+            String itemText = item.trim();
+
+            if (itemText.equals("*")) {
+
+                return true;
+            }
+
+            // weak comparison
+            if (itemText.startsWith("W/")) {
+
+                itemText = itemText.substring(2);
+            }
+
+            if (itemText.equals(entityTag)) {
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Parses single byte range.
+     *
+     * @param rangeText  Range header text.
+     * @param fileLength File length.
+     * @return {start, end (inclusive)}, null if not a single byte range
+     * (serve whole file), or empty if unsatisfiable.
+     */
+    static long[] parseRange(final String rangeText, final long fileLength) {
+
+        if (!rangeText.startsWith(FileDownloadServlet.DEFAULT_RANGE_PREFIX) ||
+                rangeText.contains(",")) {
+
+            return null;
+        }
+
+        final String specText = rangeText.substring(
+                FileDownloadServlet.DEFAULT_RANGE_PREFIX.length()).trim();
+        final int dashIndex = specText.indexOf('-');
+
+        if (dashIndex < 0) {
+
+            return null;
+        }
+
+        try {
+
+            final String startText = specText.substring(0, dashIndex).trim();
+            final String endText = specText.substring(dashIndex + 1).trim();
+            long start = 0L;
+            long end = fileLength - 1L;
+
+            if (startText.isEmpty()) {
+
+                // suffix range (last n bytes)
+                final long suffixLength = Long.parseLong(endText);
+
+                if (suffixLength < 1L) {
+
+                    return new long[0];
+                }
+
+                start = Math.max(fileLength - suffixLength, 0L);
+
+            } else {
+
+                start = Long.parseLong(startText);
+
+                if (!endText.isEmpty()) {
+
+                    final long lastByte = Long.parseLong(endText);
+
+                    // malformed (not unsatisfiable); ignore range
+                    if ((start < 0L) || (lastByte < start)) {
+
+                        return null;
+                    }
+
+                    end = Math.min(lastByte, fileLength - 1L);
+                }
+            }
+
+            if ((start < 0L) || (start >= fileLength)) {
+
+                return new long[0];
+            }
+
+            return new long[]{start, end};
+
+        } catch (final NumberFormatException ex) {
+
+            return null;
+        }
+    }
+
+    @Override
+    protected void doGet(final HttpServletRequest request,
+                         final HttpServletResponse response)
+            throws ServletException, IOException {
+
+        this.serveFile(request, response, true);
+    }
+
+    @Override
+    protected void doHead(final HttpServletRequest request,
+                          final HttpServletResponse response)
+            throws ServletException, IOException {
+
+        this.serveFile(request, response, false);
+    }
+
+    /**
+     * Resolves requested file.
+     *
+     * @param request Request.
+     * @return Requested file (may not exist).
+     * @throws IOException I/O exception.
+     */
+    private File resolveFile(final HttpServletRequest request) throws IOException {
+
+        final String filePath = request.getParameter(FileDownloadServlet.DEFAULT_PATH_PARAM);
+        JobDataUtils.checkEmptyString(filePath, true);
+
+        return JobFileUtils.resolveFile(JobFileUtils.getExecutorFileBase(
+                request.getParameter(FileDownloadServlet.DEFAULT_EXECUTOR_ID_PARAM)), filePath);
+    }
+
+    /**
+     * Serves file (or headers only).
+     *
+     * @param request    Request.
+     * @param response   Response.
+     * @param isWithBody True to send content, false for headers only.
+     * @throws IOException I/O exception.
+     */
+    private void serveFile(final HttpServletRequest request,
+                           final HttpServletResponse response,
+                           final boolean isWithBody) throws IOException {
+
+        File file = null;
+
+        try {
+
+            file = this.resolveFile(request);
+
+        } catch (final IllegalArgumentException ex) {
+
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+            return;
+        }
+
+        if (!file.isFile()) {
+
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        final long fileLength = file.length();
+        final long lastModified = (file.lastModified() / 1000L) * 1000L;
+        final String entityTag = FileDownloadServlet.buildEntityTag(file);
+
+        response.setHeader("Accept-Ranges", "bytes");
+        response.setHeader("ETag", entityTag);
+        response.setDateHeader("Last-Modified", lastModified);
+
+        // preconditions (RFC 7232, section 6)
+        final String ifMatchText = request.getHeader("If-Match");
+        final long ifUnmodifiedSince = FileDownloadServlet.getDateHeader(request, "If-Unmodified-Since");
+
+        if (((ifMatchText != null) && !FileDownloadServlet.isEntityTagMatch(ifMatchText, entityTag)) ||
+                ((ifMatchText == null) && (ifUnmodifiedSince >= 0L) && (lastModified > ifUnmodifiedSince))) {
+
+            response.sendError(HttpServletResponse.SC_PRECONDITION_FAILED);
+            return;
+        }
+
+        final String ifNoneMatchText = request.getHeader("If-None-Match");
+        final long ifModifiedSince = FileDownloadServlet.getDateHeader(request, "If-Modified-Since");
+
+        if (((ifNoneMatchText != null) && FileDownloadServlet.isEntityTagMatch(ifNoneMatchText, entityTag)) ||
+                ((ifNoneMatchText == null) && (ifModifiedSince >= 0L) && (lastModified <= ifModifiedSince))) {
+
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0L;
+        long end = fileLength - 1L;
+        final String rangeText = request.getHeader("Range");
+
+        if ((rangeText != null) && this.isRangeCurrent(request, entityTag, lastModified)) {
+
+            final long[] range = FileDownloadServlet.parseRange(rangeText.trim(), fileLength);
+
+            if ((range != null) && (range.length == 0)) {
+
+                response.setHeader("Content-Range", "bytes */" + fileLength);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+
+            if (range != null) {
+
+                start = range[0];
+                end = range[1];
+
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + fileLength);
+            }
+        }
+
+        final String contentType = this.getServletContext().getMimeType(file.getName());
+        final long contentLength = (end - start) + 1L;
+
+        response.setContentType((contentType == null)
+                ? FileDownloadServlet.DEFAULT_CONTENT_TYPE : contentType);
+        response.setHeader("Content-Disposition", "attachment; filename=\""
+                + file.getName().replace("\"", "") + "\"");
+
+        // servlet 2.5 has no long content length
+        response.setHeader("Content-Length", String.valueOf(contentLength));
+
+        if (!isWithBody ||
+                (contentLength < 1L)) {
+
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(FileDownloadServlet.SENDFILE_SUPPORT_ATTR))) {
+
+            // container writes file from kernel (after we return)
+            request.setAttribute(FileDownloadServlet.SENDFILE_FILENAME_ATTR, file.getCanonicalPath());
+            request.setAttribute(FileDownloadServlet.SENDFILE_START_ATTR, start);
+            request.setAttribute(FileDownloadServlet.SENDFILE_END_ATTR, end + 1L);
+            return;
+        }
+
+        this.transferFile(file, start, contentLength, response.getOutputStream());
+    }
+
+    /**
+     * Checks If-Range (range applies only to unchanged file).
+     *
+     * @param request      Request.
+     * @param entityTag    Entity tag.
+     * @param lastModified Last modified time in ms (whole seconds).
+     * @return True if range applies, false to serve whole file.
+     */
+    private boolean isRangeCurrent(final HttpServletRequest request,
+                                   final String entityTag,
+                                   final long lastModified) {
+
+        final String ifRangeText = request.getHeader("If-Range");
+
+        if (ifRangeText == null) {
+
+            return true;
+        }
+
+        if (ifRangeText.trim().startsWith("\"")) {
+
+            return ifRangeText.trim().equals(entityTag);
+        }
+
+        return FileDownloadServlet.getDateHeader(request, "If-Range") == lastModified;
+    }
+
+    /**
+     * Transfers file region to output.
+     *
+     * @param file         File.
+     * @param start        Start offset.
+     * @param count        Byte count.
+     * @param outputStream Output stream (not closed).
+     * @throws IOException I/O exception.
+     */
+    private void transferFile(final File file, final long start, final long count,
+                              final OutputStream outputStream) throws IOException {
+
+        final WritableByteChannel outputChannel = Channels.newChannel(outputStream);
+
+        try (final FileChannel inputChannel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+
+            long position = start;
+            final long endPosition = start + count;
+
+            while (position < endPosition) {
+
+                final long transferSize = inputChannel.transferTo(position,
+                        Math.min(endPosition - position,
+                                FileDownloadServlet.DEFAULT_TRANSFER_SIZE_IN_BYTES),
+                        outputChannel);
+
+                if (transferSize < 1L) {
+
+                    // file shrank under us; length was already sent
+                    FileDownloadServlet.LOGGER.log(Level.WARNING,
+                            "File truncated during download: " + file);
+                    break;
+                }
+
+                position += transferSize;
+            }
+        }
+
+        outputStream.flush();
+    }
+}
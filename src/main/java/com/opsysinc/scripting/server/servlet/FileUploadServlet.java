@@ -1,19 +1,39 @@
 package com.opsysinc.scripting.server.servlet;
 
+import com.opsysinc.scripting.server.engine.JobFileUtils;
+import com.opsysinc.scripting.shared.JobDataUtils;
 import org.apache.commons.fileupload.FileItemIterator;
 import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.fileupload.util.Streams;
+import org.apache.commons.io.FilenameUtils;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * File upload servlet.
+ * <p/>
+ * Streams each uploaded file straight to disk in the target executor's file
+ * area (request parameters "executorId" and optional "path", as query
+ * parameters or form fields ahead of the files). Files land under a
+ * temporary name and are moved into place once complete.
  *
  * @author mkit
  */
@@ -25,57 +45,256 @@ public class FileUploadServlet extends HttpServlet {
     private static final long serialVersionUID = 1L;
 
     /**
-     * Default max file size in bytes.
+     * Default max file size in bytes (override w/"maxFileSize" init param).
      */
-    private static final int DEFAULT_MAX_FILE_SIZE_IN_BYTES = 10 * 1024 * 1024;
+    private static final long DEFAULT_MAX_FILE_SIZE_IN_BYTES = 16L * 1024L * 1024L * 1024L;
 
     /**
-     * Default buffer size in bytes.
+     * Default transfer size in bytes (per channel transfer; size is checked
+     * between transfers).
      */
-    private static final int DEFAULT_BUFFER_SIZE_IN_BYTES = 8192;
+    private static final long DEFAULT_TRANSFER_SIZE_IN_BYTES = 1024L * 1024L;
+
+    /**
+     * Default executor id parameter.
+     */
+    private static final String DEFAULT_EXECUTOR_ID_PARAM = "executorId";
+
+    /**
+     * Default path parameter.
+     */
+    private static final String DEFAULT_PATH_PARAM = "path";
+
+    /**
+     * Default max file size init parameter.
+     */
+    private static final String DEFAULT_MAX_FILE_SIZE_PARAM = "maxFileSize";
+
+    /**
+     * Default partial file suffix.
+     */
+    private static final String DEFAULT_PART_FILE_SUFFIX = ".part";
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER;
+
+    static {
+
+        LOGGER = Logger.getLogger(FileUploadServlet.class.getName());
+    }
+
+    /**
+     * Max file size in bytes.
+     */
+    private long maxFileSize;
+
+    /**
+     * Copies upload stream to file (size checked while copying).
+     *
+     * @param inputStream Upload stream.
+     * @param targetFile  Target file (created/truncated).
+     * @return Bytes written.
+     * @throws IOException              I/O exception.
+     * @throws FileSizeExceededException If upload exceeds max file size.
+     */
+    long copyToFile(final InputStream inputStream, final File targetFile)
+            throws IOException, FileSizeExceededException {
+
+        final ReadableByteChannel inputChannel = Channels.newChannel(inputStream);
+
+        try (final FileChannel outputChannel = FileChannel.open(targetFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+
+            long position = 0L;
+
+            while (true) {
+
+                final long transferSize = outputChannel.transferFrom(inputChannel,
+                        position, FileUploadServlet.DEFAULT_TRANSFER_SIZE_IN_BYTES);
+
+                // stream channels block until data, so nothing means eof
+                if (transferSize < 1L) {
+
+                    break;
+                }
+
+                position = this.checkFileSize(position + transferSize);
+            }
+
+            outputChannel.force(false);
+            return position;
+        }
+    }
+
+    /**
+     * Checks file size.
+     *
+     * @param fileSize File size so far.
+     * @return File size.
+     * @throws FileSizeExceededException If file size exceeds max.
+     */
+    private long checkFileSize(final long fileSize) throws FileSizeExceededException {
+
+        if (fileSize > this.maxFileSize) {
+
+            throw new FileSizeExceededException();
+        }
+
+        return fileSize;
+    }
 
     /**
      * Post operation.
      */
     @Override
     public void doPost(final HttpServletRequest request,
-                             final HttpServletResponse response) throws ServletException,
+                       final HttpServletResponse response) throws ServletException,
             IOException {
 
-        final ServletFileUpload upload = new ServletFileUpload();
+        if (!ServletFileUpload.isMultipartContent(request)) {
+
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Multipart request required");
+            return;
+        }
+
+        String executorId = request.getParameter(FileUploadServlet.DEFAULT_EXECUTOR_ID_PARAM);
+        String filePath = JobDataUtils.getAsString(
+                request.getParameter(FileUploadServlet.DEFAULT_PATH_PARAM), "");
+
+        final StringBuilder resultText = new StringBuilder();
+        File partFile = null;
 
         try {
 
-            final FileItemIterator iter = upload.getItemIterator(request);
-            final int maxFileSize = FileUploadServlet.DEFAULT_MAX_FILE_SIZE_IN_BYTES;
+            final FileItemIterator iter = new ServletFileUpload().getItemIterator(request);
 
             while (iter.hasNext()) {
 
                 final FileItemStream fileItemStream = iter.next();
-                final String fieldName = fileItemStream.getFieldName();
-                final InputStream inputStream = fileItemStream.openStream();
 
-                // Process the input stream
-                final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                int readInBytes = 0;
-                final byte[] buffer = new byte[FileUploadServlet.DEFAULT_BUFFER_SIZE_IN_BYTES];
+                try (final InputStream inputStream = fileItemStream.openStream()) {
 
-                while ((readInBytes = inputStream
-                        .read(buffer, 0, buffer.length)) != -1) {
+                    if (fileItemStream.isFormField()) {
 
-                    outputStream.write(buffer, 0, readInBytes);
-                }
+                        final String fieldName = fileItemStream.getFieldName();
+
+                        if (FileUploadServlet.DEFAULT_EXECUTOR_ID_PARAM.equals(fieldName)) {
+
+                            executorId = Streams.asString(inputStream, "UTF-8");
+
+                        } else if (FileUploadServlet.DEFAULT_PATH_PARAM.equals(fieldName)) {
+
+                            filePath = Streams.asString(inputStream, "UTF-8");
+                        }
+
+                        continue;
+                    }
+
+                    final String fileName = FilenameUtils.getName(
+                            JobDataUtils.getAsString(fileItemStream.getName(), ""));
 
-                if (outputStream.size() > maxFileSize) {
+                    if (JobDataUtils.checkEmptyString(fileName, false)) {
 
-                    throw new RuntimeException("File is > than " + maxFileSize);
+                        // empty file input
+                        continue;
+                    }
+
+                    final File fileBase = JobFileUtils.getExecutorFileBase(executorId);
+
+                    if (!fileBase.isDirectory()) {
+
+                        response.sendError(HttpServletResponse.SC_NOT_FOUND,
+                                "Executor not found: " + executorId);
+                        return;
+                    }
+
+                    final File targetFolder = JobFileUtils.resolveFile(fileBase, filePath);
+                    final File targetFile = JobFileUtils.resolveFile(targetFolder, fileName);
+
+                    if (!targetFolder.isDirectory() &&
+                            !targetFolder.mkdirs()) {
+
+                        throw new IOException("Can't create folder: " + targetFolder);
+                    }
+
+                    partFile = new File(targetFolder, "." + fileName + "."
+                            + UUID.randomUUID() + FileUploadServlet.DEFAULT_PART_FILE_SUFFIX);
+
+                    final long fileSize = this.copyToFile(inputStream, partFile);
+
+                    Files.move(partFile.toPath(), targetFile.toPath(),
+                            StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                    partFile = null;
+
+                    resultText.append(fileName).append('\t').append(fileSize).append('\n');
                 }
             }
 
-        } catch (final Throwable ex) {
+        } catch (final FileSizeExceededException ex) {
+
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                    "File is > than " + this.maxFileSize);
+            return;
+
+        } catch (final IllegalArgumentException | FileUploadException ex) {
+
+            FileUploadServlet.LOGGER.log(Level.FINE, "Bad upload", ex);
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+            return;
+
+        } finally {
+
+            if ((partFile != null) &&
+                    !partFile.delete()) {
+
+                FileUploadServlet.LOGGER.log(Level.WARNING,
+                        "Can't remove partial upload: " + partFile);
+            }
+        }
+
+        response.setContentType("text/plain");
+        response.setCharacterEncoding("UTF-8");
+
+        final PrintWriter responseWriter = response.getWriter();
+        responseWriter.write(resultText.toString());
+        responseWriter.flush();
+    }
+
+    @Override
+    public void init() throws ServletException {
+
+        this.maxFileSize = FileUploadServlet.DEFAULT_MAX_FILE_SIZE_IN_BYTES;
+        final String maxFileSizeText = this.getInitParameter(
+                FileUploadServlet.DEFAULT_MAX_FILE_SIZE_PARAM);
+
+        if (!JobDataUtils.checkEmptyString(maxFileSizeText, false)) {
+
+            try {
+
+                this.maxFileSize = Long.parseLong(maxFileSizeText.trim());
+
+            } catch (final NumberFormatException ex) {
 
-            throw new RuntimeException(ex);
+                throw new ServletException("Bad init param: "
+                        + FileUploadServlet.DEFAULT_MAX_FILE_SIZE_PARAM, ex);
+            }
         }
+    }
+
+    /**
+     * File size exceeded exception (internal; aborts one upload).
+     *
+     * @author mkitchin
+     */
+    static final class FileSizeExceededException extends Exception {
 
+        /**
+         * Default serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
     }
-}
\ No newline at end of file
+}
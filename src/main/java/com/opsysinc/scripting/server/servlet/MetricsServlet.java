@@ -0,0 +1,299 @@
+package com.opsysinc.scripting.server.servlet;
+
+import com.opsysinc.scripting.server.engine.CompiledScriptCache;
+import com.opsysinc.scripting.server.engine.JobExecutor;
+import com.opsysinc.scripting.server.engine.JobHistogram;
+import com.opsysinc.scripting.server.engine.JobManager;
+import com.opsysinc.scripting.server.engine.JobMetrics;
+import com.opsysinc.scripting.shared.JobExecutorData;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Metrics servlet.
+ * <p/>
+ * Serves per executor queue depth, job counts, compiled script cache counts
+ * and queue wait/execution time/output size summaries as plain text (Prometheus text exposition
+ * format), for scraping. Reads the job manager published by
+ * ScriptServiceImpl (load that servlet on startup).
+ *
+ * @author mkitchin
+ */
+public class MetricsServlet extends HttpServlet {
+
+    /**
+     * Default serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Default content type.
+     */
+    private static final String DEFAULT_CONTENT_TYPE = "text/plain; version=0.0.4";
+
+    /**
+     * Default metric name prefix.
+     */
+    private static final String DEFAULT_METRIC_PREFIX = "scriptwebapp_executor_";
+
+    /**
+     * Default summary quantiles.
+     */
+    private static final double[] DEFAULT_QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /**
+     * Default ns per second.
+     */
+    private static final double DEFAULT_NANOS_PER_SECOND = 1.0e9;
+
+    /**
+     * Appends metric header.
+     *
+     * @param text       Target text.
+     * @param name       Metric name (w/o prefix).
+     * @param helpText   Help text.
+     * @param metricType Metric type.
+     */
+    private static void appendHeader(final StringBuilder text, final String name,
+                                     final String helpText, final String metricType) {
+
+        text.append("# HELP ").append(MetricsServlet.DEFAULT_METRIC_PREFIX).append(name)
+                .append(' ').append(helpText).append('\n');
+        text.append("# TYPE ").append(MetricsServlet.DEFAULT_METRIC_PREFIX).append(name)
+                .append(' ').append(metricType).append('\n');
+    }
+
+    /**
+     * Appends metric sample.
+     *
+     * @param text   Target text.
+     * @param name   Metric name (w/o prefix).
+     * @param labels Labels text (w/o braces).
+     * @param value  Value.
+     */
+    private static void appendSample(final StringBuilder text, final String name,
+                                     final String labels, final Object value) {
+
+        text.append(MetricsServlet.DEFAULT_METRIC_PREFIX).append(name)
+                .append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    /**
+     * Appends summary (quantiles, sum, count) plus max gauge.
+     *
+     * @param text       Target text.
+     * @param name       Metric name (w/o prefix).
+     * @param helpText   Help text.
+     * @param labels     Labels text (by executor).
+     * @param histograms Histograms (by executor).
+     * @param scale      Scale (recorded units per reported unit).
+     */
+    private static void appendSummary(final StringBuilder text, final String name,
+                                      final String helpText, final List<String> labels,
+                                      final List<JobHistogram> histograms, final double scale) {
+
+        MetricsServlet.appendHeader(text, name, helpText, "summary");
+
+        for (int ctr = 0; ctr < histograms.size(); ctr++) {
+
+            final JobHistogram histogram = histograms.get(ctr);
+
+            for (final double quantile : MetricsServlet.DEFAULT_QUANTILES) {
+
+                MetricsServlet.appendSample(text, name, labels.get(ctr)
+                                + ",quantile=\"" + quantile + "\"",
+                        histogram.getValueAtPercentile(quantile * 100.0) / scale);
+            }
+
+            MetricsServlet.appendSample(text, name + "_sum", labels.get(ctr),
+                    histogram.getSum() / scale);
+            MetricsServlet.appendSample(text, name + "_count", labels.get(ctr),
+                    histogram.getCount());
+        }
+
+        MetricsServlet.appendHeader(text, name + "_max", "Max " + helpText.substring(0, 1)
+                .toLowerCase() + helpText.substring(1), "gauge");
+
+        for (int ctr = 0; ctr < histograms.size(); ctr++) {
+
+            MetricsServlet.appendSample(text, name + "_max", labels.get(ctr),
+                    histograms.get(ctr).getMax() / scale);
+        }
+    }
+
+    /**
+     * Builds executor labels text.
+     *
+     * @param executorData Executor data.
+     * @return Labels text (w/o braces).
+     */
+    private static String buildLabels(final JobExecutorData executorData) {
+
+        return "executor=\"" + MetricsServlet.escapeLabel(executorData.getId())
+                + "\",type=\"" + executorData.getType().name()
+                + "\",title=\"" + MetricsServlet.escapeLabel(executorData.getTitle()) + "\"";
+    }
+
+    /**
+     * Escapes label value.
+     *
+     * @param input Input (may be null).
+     * @return Escaped value.
+     */
+    private static String escapeLabel(final String input) {
+
+        return String.valueOf(input).replace("\\", "\\\\")
+                .replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    @Override
+    protected void doGet(final HttpServletRequest request,
+                         final HttpServletResponse response)
+            throws ServletException, IOException {
+
+        final JobManager jobManager = (JobManager) this.getServletContext()
+                .getAttribute(ScriptServiceImpl.DEFAULT_JOB_MANAGER_ATTR);
+
+        if (jobManager == null) {
+
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                    "Script service not started");
+            return;
+        }
+
+        final List<JobExecutor> executors = new ArrayList<>();
+        jobManager.getAllExecutorInstances(executors, false);
+
+        Collections.sort(executors, new Comparator<JobExecutor>() {
+
+            @Override
+            public int compare(final JobExecutor o1, final JobExecutor o2) {
+
+                return String.valueOf(o1.getExecutorData().getId())
+                        .compareTo(String.valueOf(o2.getExecutorData().getId()));
+            }
+        });
+
+        final List<String> labels = new ArrayList<>();
+        final List<JobMetrics> metrics = new ArrayList<>();
+
+        for (final JobExecutor executor : executors) {
+
+            labels.add(MetricsServlet.buildLabels(executor.getExecutorData()));
+            metrics.add(executor.getMetrics());
+        }
+
+        final StringBuilder text = new StringBuilder();
+
+        MetricsServlet.appendHeader(text, "pending_jobs", "Jobs waiting in executor queue.", "gauge");
+
+        for (int ctr = 0; ctr < executors.size(); ctr++) {
+
+            MetricsServlet.appendSample(text, "pending_jobs", labels.get(ctr),
+                    executors.get(ctr).getPendingJobCount());
+        }
+
+        MetricsServlet.appendHeader(text, "running_jobs", "Jobs running on executor workers.", "gauge");
+
+        for (int ctr = 0; ctr < executors.size(); ctr++) {
+
+            MetricsServlet.appendSample(text, "running_jobs", labels.get(ctr),
+                    executors.get(ctr).getRunningJobCount());
+        }
+
+        MetricsServlet.appendHeader(text, "jobs_submitted_total", "Jobs submitted to executor.", "counter");
+
+        for (int ctr = 0; ctr < executors.size(); ctr++) {
+
+            MetricsServlet.appendSample(text, "jobs_submitted_total", labels.get(ctr),
+                    metrics.get(ctr).getSubmittedCount());
+        }
+
+        MetricsServlet.appendHeader(text, "jobs_completed_total", "Jobs completed by executor.", "counter");
+
+        for (int ctr = 0; ctr < executors.size(); ctr++) {
+
+            MetricsServlet.appendSample(text, "jobs_completed_total", labels.get(ctr)
+                    + ",status=\"success\"", metrics.get(ctr).getSuccessCount());
+            MetricsServlet.appendSample(text, "jobs_completed_total", labels.get(ctr)
+                    + ",status=\"failure\"", metrics.get(ctr).getFailureCount());
+            MetricsServlet.appendSample(text, "jobs_completed_total", labels.get(ctr)
+                    + ",status=\"drained\"", metrics.get(ctr).getDrainedCount());
+        }
+
+        final List<String> cacheLabels = new ArrayList<>();
+        final List<CompiledScriptCache> caches = new ArrayList<>();
+
+        for (int ctr = 0; ctr < executors.size(); ctr++) {
+
+            final CompiledScriptCache compiledScripts = executors.get(ctr).getCompiledScriptCache();
+
+            if (compiledScripts != null) {
+
+                cacheLabels.add(labels.get(ctr));
+                caches.add(compiledScripts);
+            }
+        }
+
+        MetricsServlet.appendHeader(text, "compiled_scripts", "Compiled scripts cached by executor.", "gauge");
+
+        for (int ctr = 0; ctr < caches.size(); ctr++) {
+
+            MetricsServlet.appendSample(text, "compiled_scripts", cacheLabels.get(ctr),
+                    caches.get(ctr).getSize());
+        }
+
+        MetricsServlet.appendHeader(text, "compiled_script_lookups_total", "Compiled script cache lookups.", "counter");
+
+        for (int ctr = 0; ctr < caches.size(); ctr++) {
+
+            MetricsServlet.appendSample(text, "compiled_script_lookups_total", cacheLabels.get(ctr)
+                    + ",result=\"hit\"", caches.get(ctr).getHitCount());
+            MetricsServlet.appendSample(text, "compiled_script_lookups_total", cacheLabels.get(ctr)
+                    + ",result=\"miss\"", caches.get(ctr).getMissCount());
+        }
+
+        MetricsServlet.appendHeader(text, "compiled_script_evictions_total", "Compiled scripts evicted from cache.", "counter");
+
+        for (int ctr = 0; ctr < caches.size(); ctr++) {
+
+            MetricsServlet.appendSample(text, "compiled_script_evictions_total", cacheLabels.get(ctr),
+                    caches.get(ctr).getEvictionCount());
+        }
+
+        final List<JobHistogram> queueWaitTimes = new ArrayList<>();
+        final List<JobHistogram> executionTimes = new ArrayList<>();
+        final List<JobHistogram> outputSizes = new ArrayList<>();
+
+        for (final JobMetrics item : metrics) {
+
+            queueWaitTimes.add(item.getQueueWaitTimes());
+            executionTimes.add(item.getExecutionTimes());
+            outputSizes.add(item.getOutputSizes());
+        }
+
+        MetricsServlet.appendSummary(text, "queue_wait_seconds", "Job queue wait time.",
+                labels, queueWaitTimes, MetricsServlet.DEFAULT_NANOS_PER_SECOND);
+        MetricsServlet.appendSummary(text, "execution_seconds", "Job execution time (dequeued to completed).",
+                labels, executionTimes, MetricsServlet.DEFAULT_NANOS_PER_SECOND);
+        MetricsServlet.appendSummary(text, "output_bytes", "Job output size.",
+                labels, outputSizes, 1.0);
+
+        response.setContentType(MetricsServlet.DEFAULT_CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+
+        final PrintWriter responseWriter = response.getWriter();
+        responseWriter.write(text.toString());
+        responseWriter.flush();
+    }
+}
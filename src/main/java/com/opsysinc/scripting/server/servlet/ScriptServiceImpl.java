@@ -8,10 +8,19 @@ import com.opsysinc.scripting.server.engine.JobExecutor;
 import com.opsysinc.scripting.server.engine.JobManager;
 import com.opsysinc.scripting.server.util.ThreadLocalKey;
 import com.opsysinc.scripting.server.util.ThreadLocalMap;
+import com.opsysinc.scripting.shared.JobChangesData;
 import com.opsysinc.scripting.shared.JobContentData;
+import com.opsysinc.scripting.shared.JobDataUtils;
 import com.opsysinc.scripting.shared.JobExecutorData;
-import com.opsysinc.scripting.shared.JobFileData;
-
+import com.opsysinc.scripting.shared.JobFilesData;
+import com.opsysinc.scripting.shared.JobOutputChunkData;
+import com.opsysinc.scripting.shared.JobSnapshotData;
+import com.opsysinc.scripting.shared.JobTimingStatsData;
+import com.opsysinc.scripting.shared.JobVariableData;
+import com.opsysinc.scripting.shared.JobVariableValueData;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
 import java.util.*;
 
 /**
@@ -24,6 +33,23 @@ public class ScriptServiceImpl extends RemoteServiceServlet implements ScriptSer
      */
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Default max change wait in ms (long poll; under typical proxy idle
+     * timeouts).
+     */
+    public static final long DEFAULT_CHANGE_WAIT_MS = 25000L;
+
+    /**
+     * Default host for calls made outside an HTTP request (in-process).
+     */
+    public static final String DEFAULT_LOCAL_HOST = "localhost";
+
+    /**
+     * Servlet context attribute holding the job manager (for non-RPC servlets).
+     */
+    public static final String DEFAULT_JOB_MANAGER_ATTR = ScriptServiceImpl.class.getName()
+            + ".jobManager";
+
     /**
      * Job manager.
      */
@@ -37,6 +63,17 @@ public class ScriptServiceImpl extends RemoteServiceServlet implements ScriptSer
         this.initService();
     }
 
+    /**
+     * Basic ctor (given job manager, e.g., tests).
+     *
+     * @param jobManager Job manager.
+     */
+    ScriptServiceImpl(final JobManager jobManager) {
+
+        JobDataUtils.checkNullObject(jobManager, true);
+        this.jobManager = jobManager;
+    }
+
     @Override
     public JobExecutorData addExecutor(final JobExecutorData executorData) {
 
@@ -182,16 +219,131 @@ public class ScriptServiceImpl extends RemoteServiceServlet implements ScriptSer
     }
 
     @Override
-    public JobFileData[] getExecutorFiles(final JobExecutorData executorData,
-                                          final String basePath) {
+    public JobVariableData[] getExecutorVariableInfo(final JobExecutorData executorData,
+                                                     final int variableScope) {
 
         this.checkThreadLocals();
 
-        final List<JobFileData> files = new ArrayList<>();
-        this.jobManager.getExecutorFiles(executorData,
-                basePath, files, false);
+        final List<JobVariableData> variables = new ArrayList<>();
+        this.jobManager.getExecutorVariableInfo(executorData, variableScope,
+                variables, false);
 
-        return files.toArray(new JobFileData[files.size()]);
+        return variables.toArray(new JobVariableData[variables.size()]);
+    }
+
+    @Override
+    public JobVariableValueData getExecutorVariableValue(final JobExecutorData executorData,
+                                                         final int variableScope,
+                                                         final int variableFormat,
+                                                         final String name,
+                                                         final int fromOffset) {
+
+        this.checkThreadLocals();
+        return this.jobManager.getExecutorVariableValue(executorData,
+                variableScope, variableFormat, name, fromOffset);
+    }
+
+    @Override
+    public JobFilesData getExecutorFiles(final JobExecutorData executorData,
+                                         final String basePath,
+                                         final long fromVersion,
+                                         final int fromIndex,
+                                         final int maxCount,
+                                         final int sortOrder,
+                                         final boolean isDescending) {
+
+        this.checkThreadLocals();
+        return this.jobManager.getExecutorFiles(executorData, basePath,
+                fromVersion, fromIndex, maxCount, sortOrder, isDescending);
+    }
+
+    @Override
+    public JobTimingStatsData getExecutorTimingStats(final JobExecutorData executorData) {
+
+        this.checkThreadLocals();
+        return this.jobManager.getExecutorTimingStats(executorData);
+    }
+
+    @Override
+    public JobChangesData getJobChanges(final long fromSequence) {
+
+        this.checkThreadLocals();
+
+        final long sequence = this.jobManager.getJobSequence();
+        final List<JobContentData> contentData = new ArrayList<>();
+        final List<String> removedJobIds = new ArrayList<>();
+        final boolean isReset = this.jobManager.getJobChanges(fromSequence,
+                sequence, contentData, removedJobIds, false);
+
+        return new JobChangesData(sequence, isReset,
+                contentData.toArray(new JobContentData[contentData.size()]),
+                removedJobIds.toArray(new String[removedJobIds.size()]));
+    }
+
+    @Override
+    public JobOutputChunkData getJobOutput(final JobExecutorData executorData,
+                                           final String jobId,
+                                           final long fromOffset) {
+
+        this.checkThreadLocals();
+        return this.jobManager.getJobOutput(executorData, jobId, fromOffset);
+    }
+
+    @Override
+    public JobSnapshotData getSnapshot(final long changeSequence,
+                                       final long executorSequence,
+                                       final long jobSequence) {
+
+        // read first, so later changes are caught by the next snapshot
+        final long nextChangeSequence = this.jobManager.getChangeSequence();
+
+        if (nextChangeSequence == changeSequence) {
+
+            return new JobSnapshotData(changeSequence, executorSequence,
+                    jobSequence, null, false, new JobContentData[0],
+                    new String[0]);
+        }
+
+        this.checkThreadLocals();
+
+        final long nextExecutorSequence = this.jobManager.getExecutorSequence();
+        JobExecutorData[] executors = null;
+
+        if (nextExecutorSequence != executorSequence) {
+
+            final List<JobExecutorData> executorData = new ArrayList<>();
+            this.jobManager.getAllExecutorData(executorData, false);
+
+            executors = executorData.toArray(new JobExecutorData[executorData.size()]);
+        }
+
+        final long nextJobSequence = this.jobManager.getJobSequence();
+        final List<JobContentData> contentData = new ArrayList<>();
+        final List<String> removedJobIds = new ArrayList<>();
+        final boolean isJobReset = this.jobManager.getJobChanges(jobSequence,
+                nextJobSequence, contentData, removedJobIds, false);
+
+        return new JobSnapshotData(nextChangeSequence, nextExecutorSequence,
+                nextJobSequence, executors, isJobReset,
+                contentData.toArray(new JobContentData[contentData.size()]),
+                removedJobIds.toArray(new String[removedJobIds.size()]));
+    }
+
+    @Override
+    public void destroy() {
+
+        this.getServletContext().removeAttribute(
+                ScriptServiceImpl.DEFAULT_JOB_MANAGER_ATTR);
+        this.jobManager.cleanUp();
+        super.destroy();
+    }
+
+    @Override
+    public void init() throws ServletException {
+
+        super.init();
+        this.getServletContext().setAttribute(
+                ScriptServiceImpl.DEFAULT_JOB_MANAGER_ATTR, this.jobManager);
     }
 
     /**
@@ -236,10 +388,12 @@ public class ScriptServiceImpl extends RemoteServiceServlet implements ScriptSer
 
         JobContentUtils.checkJobStateData(contentData, false);
 
-        contentData.getRequestData().setFromHost(
-                this.getThreadLocalRequest().getRemoteAddr());
-        contentData.getRequestData().setToHost(
-                this.getThreadLocalRequest().getRemoteAddr());
+        final HttpServletRequest request = this.getThreadLocalRequest();
+        final String remoteHost = (request == null)
+                ? ScriptServiceImpl.DEFAULT_LOCAL_HOST : request.getRemoteAddr();
+
+        contentData.getRequestData().setFromHost(remoteHost);
+        contentData.getRequestData().setToHost(remoteHost);
     }
 
     @Override
@@ -1,13 +1,33 @@
 package com.opsysinc.scripting.server.util;
 
+import com.opsysinc.scripting.shared.JobBinaryUtils;
 import com.opsysinc.scripting.shared.JobDataFormat;
+import com.opsysinc.scripting.shared.JobDataUtils;
 import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.HierarchicalStreamDriver;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.io.WriterWrapper;
 import com.thoughtworks.xstream.io.json.JsonHierarchicalStreamDriver;
 import com.thoughtworks.xstream.io.xml.Xpp3Driver;
+import org.renjin.sexp.DoubleVector;
+import org.renjin.sexp.IntVector;
+import org.renjin.sexp.LogicalVector;
+import org.renjin.sexp.StringVector;
+import org.renjin.sexp.Vector;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -17,17 +37,63 @@ import java.util.Map;
  */
 public final class FormatUtils {
 
+    /**
+     * Default estimated object header size in bytes.
+     */
+    public static final long DEFAULT_OBJECT_SIZE = 16L;
+
+    /**
+     * Default estimated reference size in bytes.
+     */
+    public static final long DEFAULT_REFERENCE_SIZE = 8L;
+
+    /**
+     * Default max formatted node depth.
+     */
+    public static final int DEFAULT_MAX_FORMAT_DEPTH = 32;
+
+    /**
+     * Default max formatted nodes (elements).
+     */
+    public static final int DEFAULT_MAX_FORMAT_NODES = 100000;
+
+    /**
+     * Default max formatted chars.
+     */
+    public static final int DEFAULT_MAX_FORMAT_CHARS = 4194304;
+
+    /**
+     * Default max binary value bytes, incl. header (~1M doubles).
+     */
+    public static final int DEFAULT_MAX_BINARY_BYTES = 8388608;
+
+    /**
+     * UTF-8 charset.
+     */
+    private static final Charset UTF8_CHARSET = Charset.forName("UTF-8");
 
     private static Map<JobDataFormat, XStream> formatXStreams;
 
+    /**
+     * Stream drivers (by data format).
+     */
+    private static Map<JobDataFormat, HierarchicalStreamDriver> formatDrivers;
+
     static {
 
         final EnumMap<JobDataFormat, XStream> tempDataFormats = new EnumMap<>(JobDataFormat.class);
+        final EnumMap<JobDataFormat, HierarchicalStreamDriver> tempDrivers = new EnumMap<>(JobDataFormat.class);
+
+        tempDrivers.put(JobDataFormat.xml, new Xpp3Driver());
+        tempDrivers.put(JobDataFormat.json, new JsonHierarchicalStreamDriver());
 
-        tempDataFormats.put(JobDataFormat.xml, new XStream(new Xpp3Driver()));
-        tempDataFormats.put(JobDataFormat.json, new XStream(new JsonHierarchicalStreamDriver()));
+        for (final Map.Entry<JobDataFormat, HierarchicalStreamDriver> item : tempDrivers.entrySet()) {
+
+            tempDataFormats.put(item.getKey(), new XStream(item.getValue()));
+        }
 
         FormatUtils.formatXStreams = Collections.unmodifiableMap(tempDataFormats);
+        FormatUtils.formatDrivers = Collections.unmodifiableMap(tempDrivers);
     }
 
     /**
@@ -36,6 +102,139 @@ public final class FormatUtils {
     private FormatUtils() {
     }
 
+    /**
+     * Estimates (shallow) object size, w/o serializing it. Containers count
+     * their elements as one object each.
+     *
+     * @param input Input object (may be null).
+     * @return Estimated size in bytes.
+     */
+    public static long estimateObjectSize(final Object input) {
+
+        if (input == null) {
+
+            return 0L;
+        }
+
+        final int length = FormatUtils.getObjectLength(input);
+
+        if (length < 0) {
+
+            return FormatUtils.DEFAULT_OBJECT_SIZE;
+        }
+
+        long elementSize = FormatUtils.DEFAULT_REFERENCE_SIZE
+                + FormatUtils.DEFAULT_OBJECT_SIZE;
+
+        if (input.getClass().isArray()) {
+
+            elementSize = FormatUtils.getElementSize(input.getClass().getComponentType());
+
+        } else if (input instanceof CharSequence) {
+
+            elementSize = 2L;
+
+        } else if (input instanceof Map) {
+
+            elementSize *= 2L;
+
+        } else if (input instanceof DoubleVector) {
+
+            elementSize = 8L;
+
+        } else if ((input instanceof IntVector)
+                || (input instanceof LogicalVector)) {
+
+            elementSize = 4L;
+        }
+
+        return FormatUtils.DEFAULT_OBJECT_SIZE + (length * elementSize);
+    }
+
+    /**
+     * Gets array element size.
+     *
+     * @param componentType Array component type.
+     * @return Element size in bytes (references count as one object each).
+     */
+    private static long getElementSize(final Class<?> componentType) {
+
+        if ((componentType == long.class) || (componentType == double.class)) {
+
+            return 8L;
+        }
+
+        if ((componentType == int.class) || (componentType == float.class)) {
+
+            return 4L;
+        }
+
+        if ((componentType == short.class) || (componentType == char.class)) {
+
+            return 2L;
+        }
+
+        if ((componentType == byte.class) || (componentType == boolean.class)) {
+
+            return 1L;
+        }
+
+        return FormatUtils.DEFAULT_REFERENCE_SIZE + FormatUtils.DEFAULT_OBJECT_SIZE;
+    }
+
+    /**
+     * Gets object element count (arrays, strings, collections, maps, Renjin
+     * vectors).
+     *
+     * @param input Input object (may be null).
+     * @return Element count (-1 if not a container).
+     */
+    public static int getObjectLength(final Object input) {
+
+        if (input == null) {
+
+            return -1;
+        }
+
+        if (input.getClass().isArray()) {
+
+            return Array.getLength(input);
+        }
+
+        if (input instanceof CharSequence) {
+
+            return ((CharSequence) input).length();
+        }
+
+        if (input instanceof Collection) {
+
+            return ((Collection<?>) input).size();
+        }
+
+        if (input instanceof Map) {
+
+            return ((Map<?, ?>) input).size();
+        }
+
+        if (input instanceof Vector) {
+
+            return ((Vector) input).length();
+        }
+
+        return -1;
+    }
+
+    /**
+     * Get stream driver for data format.
+     *
+     * @param dataFormat Data format (may be null).
+     * @return Stream driver if found, null otherwise (e.g., raw).
+     */
+    private static HierarchicalStreamDriver getFormatDriver(final JobDataFormat dataFormat) {
+
+        return ((dataFormat == null) ? null : FormatUtils.formatDrivers.get(dataFormat));
+    }
+
     /**
      * Get XStream for data format.
      *
@@ -48,41 +247,665 @@ public final class FormatUtils {
     }
 
     /**
-     * Formats an object as a string, per supplied format. Will be String.valueOf(input)
-     * if (a) input or xstream is null or (b) input is not serializable.
+     * Creates binary value buffer (header written; positioned after it).
+     *
+     * @param valueType   Value type.
+     * @param totalCount  Total element count.
+     * @param count       Encoded element count.
+     * @param dataSize    Encoded element data size in bytes.
+     * @return Binary value buffer (little-endian).
+     */
+    private static ByteBuffer createBinaryBuffer(final int valueType,
+                                                 final int totalCount,
+                                                 final int count,
+                                                 final int dataSize) {
+
+        final ByteBuffer result = ByteBuffer.allocate(JobBinaryUtils.HEADER_SIZE
+                + dataSize).order(ByteOrder.LITTLE_ENDIAN);
+
+        result.put((byte) 'J').put((byte) 'B')
+                .put((byte) JobBinaryUtils.FORMAT_VERSION).put((byte) valueType)
+                .putInt(totalCount).putInt(count);
+
+        return result;
+    }
+
+    /**
+     * Encodes an object as a binary value (see JobBinaryUtils). Primitive
+     * arrays, string arrays and Renjin double/int/logical/string vectors are
+     * packed little-endian; anything else is encoded as String.valueOf(input)
+     * text. Elements past the byte limit are dropped and the header records
+     * both counts.
+     *
+     * @param input    Input object (may be null).
+     * @param maxBytes Max bytes, incl. header (>=header size).
+     * @return Binary value.
+     */
+    public static byte[] encodeBinaryObject(final Object input, final int maxBytes) {
+
+        if (maxBytes < JobBinaryUtils.HEADER_SIZE) {
+
+            throw new IllegalArgumentException("invalid input (maxBytes)");
+        }
+
+        final int budget = maxBytes - JobBinaryUtils.HEADER_SIZE;
+
+        if (input == null) {
+
+            return FormatUtils.createBinaryBuffer(JobBinaryUtils.TYPE_NULL,
+                    0, 0, 0).array();
+        }
+
+        if (input instanceof double[]) {
+
+            final double[] values = (double[]) input;
+            final int count = Math.min(values.length, budget / 8);
+            final ByteBuffer buffer = FormatUtils.createBinaryBuffer(
+                    JobBinaryUtils.TYPE_DOUBLE, values.length, count, count * 8);
+
+            buffer.asDoubleBuffer().put(values, 0, count);
+            return buffer.array();
+        }
+
+        if (input instanceof float[]) {
+
+            final float[] values = (float[]) input;
+            final int count = Math.min(values.length, budget / 4);
+            final ByteBuffer buffer = FormatUtils.createBinaryBuffer(
+                    JobBinaryUtils.TYPE_FLOAT, values.length, count, count * 4);
+
+            buffer.asFloatBuffer().put(values, 0, count);
+            return buffer.array();
+        }
+
+        if (input instanceof long[]) {
+
+            final long[] values = (long[]) input;
+            final int count = Math.min(values.length, budget / 8);
+            final ByteBuffer buffer = FormatUtils.createBinaryBuffer(
+                    JobBinaryUtils.TYPE_LONG, values.length, count, count * 8);
+
+            buffer.asLongBuffer().put(values, 0, count);
+            return buffer.array();
+        }
+
+        if (input instanceof int[]) {
+
+            final int[] values = (int[]) input;
+            final int count = Math.min(values.length, budget / 4);
+            final ByteBuffer buffer = FormatUtils.createBinaryBuffer(
+                    JobBinaryUtils.TYPE_INT, values.length, count, count * 4);
+
+            buffer.asIntBuffer().put(values, 0, count);
+            return buffer.array();
+        }
+
+        if (input instanceof short[]) {
+
+            final short[] values = (short[]) input;
+            final int count = Math.min(values.length, budget / 2);
+            final ByteBuffer buffer = FormatUtils.createBinaryBuffer(
+                    JobBinaryUtils.TYPE_SHORT, values.length, count, count * 2);
+
+            buffer.asShortBuffer().put(values, 0, count);
+            return buffer.array();
+        }
+
+        if (input instanceof char[]) {
+
+            final char[] values = (char[]) input;
+            final int count = Math.min(values.length, budget / 2);
+            final ByteBuffer buffer = FormatUtils.createBinaryBuffer(
+                    JobBinaryUtils.TYPE_CHAR, values.length, count, count * 2);
+
+            buffer.asCharBuffer().put(values, 0, count);
+            return buffer.array();
+        }
+
+        if (input instanceof byte[]) {
+
+            final byte[] values = (byte[]) input;
+            final int count = Math.min(values.length, budget);
+
+            return FormatUtils.createBinaryBuffer(JobBinaryUtils.TYPE_BYTE,
+                    values.length, count, count).put(values, 0, count).array();
+        }
+
+        if (input instanceof boolean[]) {
+
+            final boolean[] values = (boolean[]) input;
+            final int count = Math.min(values.length, budget);
+            final ByteBuffer buffer = FormatUtils.createBinaryBuffer(
+                    JobBinaryUtils.TYPE_BOOLEAN, values.length, count, count);
+
+            for (int ctr = 0; ctr < count; ctr++) {
+
+                buffer.put((byte) (values[ctr] ? 1 : 0));
+            }
+
+            return buffer.array();
+        }
+
+        if (input instanceof DoubleVector) {
+
+            final Vector values = (Vector) input;
+            final int count = Math.min(values.length(), budget / 8);
+            final ByteBuffer buffer = FormatUtils.createBinaryBuffer(
+                    JobBinaryUtils.TYPE_DOUBLE, values.length(), count, count * 8);
+
+            for (int ctr = 0; ctr < count; ctr++) {
+
+                buffer.putDouble(values.getElementAsDouble(ctr));
+            }
+
+            return buffer.array();
+        }
+
+        if ((input instanceof IntVector)
+                || (input instanceof LogicalVector)) {
+
+            final Vector values = (Vector) input;
+            final int count = Math.min(values.length(), budget / 4);
+            final ByteBuffer buffer = FormatUtils.createBinaryBuffer(
+                    ((input instanceof LogicalVector)
+                            ? JobBinaryUtils.TYPE_LOGICAL : JobBinaryUtils.TYPE_INT),
+                    values.length(), count, count * 4);
+
+            // R NA is Integer.MIN_VALUE here too
+            for (int ctr = 0; ctr < count; ctr++) {
+
+                buffer.putInt(values.getElementAsInt(ctr));
+            }
+
+            return buffer.array();
+        }
+
+        if ((input instanceof String[])
+                || (input instanceof StringVector)) {
+
+            final int totalCount = (input instanceof String[])
+                    ? ((String[]) input).length : ((Vector) input).length();
+            final List<byte[]> values = new ArrayList<>();
+            int byteCount = 0;
+
+            for (int ctr = 0; ctr < totalCount; ctr++) {
+
+                final String value = (input instanceof String[])
+                        ? ((String[]) input)[ctr] : ((Vector) input).getElementAsString(ctr);
+                final byte[] valueBytes = (value == null)
+                        ? null : value.getBytes(FormatUtils.UTF8_CHARSET);
+                final int valueSize = 4 + ((valueBytes == null) ? 0 : valueBytes.length);
+
+                if ((byteCount + valueSize) > budget) {
+
+                    break;
+                }
+
+                values.add(valueBytes);
+                byteCount += valueSize;
+            }
+
+            final ByteBuffer buffer = FormatUtils.createBinaryBuffer(
+                    JobBinaryUtils.TYPE_STRING, totalCount, values.size(), byteCount);
+
+            for (final byte[] item : values) {
+
+                if (item == null) {
+
+                    buffer.putInt(-1);
+
+                } else {
+
+                    buffer.putInt(item.length).put(item);
+                }
+            }
+
+            return buffer.array();
+        }
+
+        final byte[] textBytes = String.valueOf(input).getBytes(FormatUtils.UTF8_CHARSET);
+        int count = Math.min(textBytes.length, budget);
+
+        // don't split UTF-8 sequences
+        while ((count < textBytes.length) && (count > 0)
+                && ((textBytes[count] & 0xc0) == 0x80)) {
+
+            count--;
+        }
+
+        return FormatUtils.createBinaryBuffer(JobBinaryUtils.TYPE_TEXT,
+                textBytes.length, count, count).put(textBytes, 0, count).array();
+    }
+
+    /**
+     * Gets if object is formatted by XStream (serializable, incl. arrays of).
      *
-     * @param input   Input Object (optional, may be  null; null/!serializable means result=String.valueOf(input)))
-     * @param xstream Input xstream (optional, may be null; null means result=String.valueOf(input))
-     * @return String representation of input object.
+     * @param input Input object (may be null).
+     * @return True if serializable, false otherwise.
+     */
+    private static boolean isSerializableObject(final Object input) {
+
+        if (input == null) {
+
+            return false;
+        }
+
+        Class inputClazz = input.getClass();
+
+        // catch n-dimensional arrays
+        while (inputClazz.isArray() &&
+                (inputClazz.getComponentType() != null)) {
+
+            inputClazz = inputClazz.getComponentType();
+        }
+
+        return Serializable.class.isAssignableFrom(inputClazz);
+    }
+
+    /**
+     * Formats an object as a string, per supplied format, w/default limits.
+     * Will be String.valueOf(input) if (a) input or format is null or (b)
+     * input is not serializable. Binary values are base64 text (see
+     * JobBinaryUtils).
+     * <p/>
+     * Only for callers that keep the text (e.g., caches); callers that
+     * stream or page it should write to their own writer instead.
+     *
+     * @param input      Input Object (optional, may be null; null/!serializable means result=String.valueOf(input)))
+     * @param dataFormat Data format (optional, may be null; null/raw means result=String.valueOf(input))
+     * @return String representation of input object (w/truncation marker, if limits were reached).
      */
     public static String formatObject(final Object input,
-                                      final XStream xstream) {
+                                      final JobDataFormat dataFormat) {
+
+        if ((dataFormat != JobDataFormat.binary) &&
+                ((FormatUtils.getFormatDriver(dataFormat) == null) ||
+                        !FormatUtils.isSerializableObject(input))) {
+
+            return String.valueOf(input);
+        }
+
+        final StringWriter writer = new StringWriter();
+
+        try {
+
+            FormatUtils.formatObject(input, dataFormat, writer);
+
+        } catch (final IOException ex) {
+
+            // string writers don't throw
+            throw new IllegalStateException(ex);
+        }
+
+        return writer.toString();
+    }
+
+    /**
+     * Formats an object to a writer, per supplied format, w/default limits
+     * (as formatObject(Object, JobDataFormat), w/o building a string).
+     *
+     * @param input      Input Object (optional, may be null; null/!serializable means String.valueOf(input) is written)
+     * @param dataFormat Data format (optional, may be null; null/raw means String.valueOf(input) is written)
+     * @param target     Target writer (not closed).
+     * @return True if output was truncated, false otherwise.
+     * @throws IOException I/O exception (from target).
+     */
+    public static boolean formatObject(final Object input,
+                                       final JobDataFormat dataFormat,
+                                       final Writer target)
+            throws IOException {
+
+        JobDataUtils.checkNullObject(target, true);
+
+        if (dataFormat == JobDataFormat.binary) {
+
+            final byte[] valueBytes = FormatUtils.encodeBinaryObject(input,
+                    FormatUtils.DEFAULT_MAX_BINARY_BYTES);
+
+            target.write(JobBinaryUtils.encodeBase64(valueBytes, valueBytes.length));
+
+            return JobBinaryUtils.getCount(valueBytes)
+                    < JobBinaryUtils.getTotalCount(valueBytes);
+        }
+
+        return FormatUtils.formatObject(input, dataFormat, target,
+                FormatUtils.DEFAULT_MAX_FORMAT_DEPTH,
+                FormatUtils.DEFAULT_MAX_FORMAT_NODES,
+                FormatUtils.DEFAULT_MAX_FORMAT_CHARS);
+    }
+
+    /**
+     * Formats an object to a writer, per supplied format, streaming (no
+     * intermediate document). Writing stops at the first limit reached, and
+     * a truncation marker is written in place of the remainder. Cycles and
+     * shared references are written as XStream references. Binary values
+     * are written as base64 text within max chars, w/truncation recorded in
+     * the value header (depth/node limits don't apply).
+     *
+     * @param input      Input Object (optional, may be null; null/!serializable means String.valueOf(input) is written)
+     * @param dataFormat Data format (optional, may be null; null/raw means String.valueOf(input) is written)
+     * @param target     Target writer (not closed).
+     * @param maxDepth   Max node depth (>0).
+     * @param maxNodes   Max nodes (>0).
+     * @param maxChars   Max chars, excl. truncation marker (>0).
+     * @return True if output was truncated, false otherwise.
+     * @throws IOException I/O exception (from target).
+     */
+    public static boolean formatObject(final Object input,
+                                       final JobDataFormat dataFormat,
+                                       final Writer target,
+                                       final int maxDepth,
+                                       final int maxNodes,
+                                       final int maxChars)
+            throws IOException {
+
+        JobDataUtils.checkNullObject(target, true);
+
+        if (maxDepth < 1) {
+
+            throw new IllegalArgumentException("invalid input (maxDepth)");
+        }
+
+        if (maxNodes < 1) {
+
+            throw new IllegalArgumentException("invalid input (maxNodes)");
+        }
+
+        if (maxChars < 1) {
+
+            throw new IllegalArgumentException("invalid input (maxChars)");
+        }
+
+        if (dataFormat == JobDataFormat.binary) {
+
+            final byte[] valueBytes = FormatUtils.encodeBinaryObject(input,
+                    Math.max((maxChars / 4) * 3, JobBinaryUtils.HEADER_SIZE));
+
+            target.write(JobBinaryUtils.encodeBase64(valueBytes, valueBytes.length));
+
+            return JobBinaryUtils.getCount(valueBytes)
+                    < JobBinaryUtils.getTotalCount(valueBytes);
+        }
+
+        final FormatUtils.BoundedWriter boundedWriter =
+                new FormatUtils.BoundedWriter(target, maxChars);
+
+        final HierarchicalStreamDriver streamDriver = FormatUtils.getFormatDriver(dataFormat);
+
+        if ((streamDriver == null) ||
+                !FormatUtils.isSerializableObject(input)) {
+
+            try {
+
+                boundedWriter.write(String.valueOf(input));
+
+            } catch (final FormatUtils.FormatLimitException ex) {
 
-        String result = null;
+                // marker follows
+            }
+
+        } else {
+
+            final HierarchicalStreamWriter streamWriter = new FormatUtils.BoundedStreamWriter(
+                    streamDriver.createWriter(boundedWriter),
+                    boundedWriter, maxDepth, maxNodes);
+
+            try {
+
+                FormatUtils.formatXStreams.get(dataFormat).marshal(input, streamWriter);
+                streamWriter.flush();
+
+            } catch (final RuntimeException ex) {
+
+                // limits surface wrapped by xstream's marshallers
+                if (boundedWriter.getTruncatedReason() == null) {
+
+                    throw ex;
+                }
+
+                // emit what was buffered before the limit (up to max chars)
+                streamWriter.flush();
+            }
+        }
+
+        final String truncatedReason = boundedWriter.getTruncatedReason();
+
+        if (truncatedReason != null) {
+
+            target.write("\n[... truncated: " + truncatedReason + " reached ...]");
+        }
+
+        return (truncatedReason != null);
+    }
+
+    /**
+     * Format limit exception (internal; unwinds formatting).
+     *
+     * @author mkitchin
+     */
+    private static final class FormatLimitException extends RuntimeException {
+
+        /**
+         * Default serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Basic ctor.
+         *
+         * @param message Message text.
+         */
+        private FormatLimitException(final String message) {
+
+            super(message, null, false, false);
+        }
+    }
+
+    /**
+     * Char-bounded writer. Writes up to the limit, then drops any further
+     * output. Holds truncation state for the whole format pass.
+     *
+     * @author mkitchin
+     */
+    private static final class BoundedWriter extends Writer {
+
+        /**
+         * Target writer.
+         */
+        private final Writer target;
+
+        /**
+         * Max chars.
+         */
+        private final int maxChars;
+
+        /**
+         * Chars written.
+         */
+        private int charCount;
+
+        /**
+         * Is char limit reached?
+         */
+        private boolean isFull;
+
+        /**
+         * Truncated reason (null if not truncated).
+         */
+        private String truncatedReason;
+
+        /**
+         * Basic ctor.
+         *
+         * @param target   Target writer.
+         * @param maxChars Max chars.
+         */
+        private BoundedWriter(final Writer target, final int maxChars) {
+
+            this.target = target;
+            this.maxChars = maxChars;
+            this.charCount = 0;
+            this.isFull = false;
+            this.truncatedReason = null;
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            // target isn't ours
+            this.flush();
+        }
+
+        @Override
+        public void flush() throws IOException {
 
-        if ((input != null) &&
-                (xstream != null)) {
+            this.target.flush();
+        }
+
+        /**
+         * Gets truncated reason.
+         *
+         * @return Truncated reason if truncated, null otherwise.
+         */
+        private String getTruncatedReason() {
+
+            return this.truncatedReason;
+        }
+
+        /**
+         * Marks output truncated and unwinds formatting (first limit only;
+         * later limits, e.g., while flushing, are recorded silently).
+         *
+         * @param truncatedReason Truncated reason.
+         */
+        private void truncate(final String truncatedReason) {
+
+            if (this.truncatedReason == null) {
+
+                this.truncatedReason = truncatedReason;
+                throw new FormatUtils.FormatLimitException(truncatedReason);
+            }
+        }
+
+        @Override
+        public void write(final char[] buffer, final int offset, final int length)
+                throws IOException {
+
+            if (this.isFull) {
+
+                return;
+            }
+
+            final int available = this.maxChars - this.charCount;
+
+            if (length <= available) {
+
+                this.target.write(buffer, offset, length);
+                this.charCount += length;
+
+            } else {
+
+                this.target.write(buffer, offset, available);
+                this.charCount += available;
+                this.isFull = true;
+
+                this.truncate("max chars (" + this.maxChars + ")");
+            }
+        }
+    }
+
+    /**
+     * Depth- and node-bounded stream writer.
+     *
+     * @author mkitchin
+     */
+    private static final class BoundedStreamWriter extends WriterWrapper {
+
+        /**
+         * Bounded writer (shared truncation state).
+         */
+        private final FormatUtils.BoundedWriter boundedWriter;
 
-            Class inputClazz = input.getClass();
+        /**
+         * Max node depth.
+         */
+        private final int maxDepth;
 
-            // catch n-dimensional arrays
-            while (inputClazz.isArray() &&
-                    (inputClazz.getComponentType() != null)) {
+        /**
+         * Max nodes.
+         */
+        private final int maxNodes;
 
-                inputClazz = inputClazz.getComponentType();
+        /**
+         * Current node depth.
+         */
+        private int depth;
+
+        /**
+         * Nodes started.
+         */
+        private int nodeCount;
+
+        /**
+         * Basic ctor.
+         *
+         * @param wrapped       Wrapped stream writer.
+         * @param boundedWriter Bounded writer (shared truncation state).
+         * @param maxDepth      Max node depth.
+         * @param maxNodes      Max nodes.
+         */
+        private BoundedStreamWriter(final HierarchicalStreamWriter wrapped,
+                                    final FormatUtils.BoundedWriter boundedWriter,
+                                    final int maxDepth, final int maxNodes) {
+
+            super(wrapped);
+
+            this.boundedWriter = boundedWriter;
+            this.maxDepth = maxDepth;
+            this.maxNodes = maxNodes;
+            this.depth = 0;
+            this.nodeCount = 0;
+        }
+
+        /**
+         * Checks limits before starting a node.
+         */
+        private void checkNodeLimits() {
+
+            if (this.depth >= this.maxDepth) {
+
+                this.boundedWriter.truncate("max depth (" + this.maxDepth + ")");
             }
 
-            if (Serializable.class.isAssignableFrom(inputClazz)) {
+            if (this.nodeCount >= this.maxNodes) {
 
-                result = xstream.toXML(input);
+                this.boundedWriter.truncate("max nodes (" + this.maxNodes + ")");
             }
+
+            this.depth++;
+            this.nodeCount++;
         }
 
-        if (result == null) {
+        @Override
+        public void endNode() {
 
-            result = String.valueOf(input);
+            this.depth--;
+            super.endNode();
         }
 
-        return result;
+        @Override
+        public void startNode(final String name) {
+
+            this.checkNodeLimits();
+            super.startNode(name);
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public void startNode(final String name, final Class clazz) {
+
+            this.checkNodeLimits();
+            super.startNode(name, clazz);
+        }
     }
 }
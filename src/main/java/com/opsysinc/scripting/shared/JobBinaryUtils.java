@@ -0,0 +1,728 @@
+package com.opsysinc.scripting.shared;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Job binary format utilities (binary variable values).
+ * <p/>
+ * Values are a 12-byte header (magic "JB", version, value type, total
+ * element count, encoded element count) followed by one packed
+ * little-endian block, base64-encoded for transfer. Decoding uses no
+ * longs or JRE bit conversions, so it runs in GWT clients as well as
+ * plain JVM clients.
+ *
+ * @author mkitchin
+ */
+public final class JobBinaryUtils {
+
+    /**
+     * Format version.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * Header size in bytes.
+     */
+    public static final int HEADER_SIZE = 12;
+
+    /**
+     * Null value (no elements).
+     */
+    public static final int TYPE_NULL = 0;
+
+    /**
+     * Text (UTF-8 bytes; counts are bytes).
+     */
+    public static final int TYPE_TEXT = 1;
+
+    /**
+     * Booleans (1 byte each).
+     */
+    public static final int TYPE_BOOLEAN = 2;
+
+    /**
+     * Bytes.
+     */
+    public static final int TYPE_BYTE = 3;
+
+    /**
+     * Chars (2 bytes each).
+     */
+    public static final int TYPE_CHAR = 4;
+
+    /**
+     * Shorts (2 bytes each).
+     */
+    public static final int TYPE_SHORT = 5;
+
+    /**
+     * Ints (4 bytes each).
+     */
+    public static final int TYPE_INT = 6;
+
+    /**
+     * Longs (8 bytes each).
+     */
+    public static final int TYPE_LONG = 7;
+
+    /**
+     * Floats (4 bytes each).
+     */
+    public static final int TYPE_FLOAT = 8;
+
+    /**
+     * Doubles (8 bytes each; R NA decodes as NaN).
+     */
+    public static final int TYPE_DOUBLE = 9;
+
+    /**
+     * Strings (4-byte UTF-8 length, -1 for null/NA, then bytes).
+     */
+    public static final int TYPE_STRING = 10;
+
+    /**
+     * R logicals (4 bytes each; 0, 1 or NA).
+     */
+    public static final int TYPE_LOGICAL = 11;
+
+    /**
+     * R integer/logical NA value.
+     */
+    public static final int NA_INT = Integer.MIN_VALUE;
+
+    /**
+     * Type names (by value type).
+     */
+    private static final String[] TYPE_NAMES = {"null", "text", "boolean",
+            "byte", "char", "short", "int", "long", "float", "double",
+            "string", "logical"};
+
+    /**
+     * Base64 chars.
+     */
+    private static final char[] BASE64_CHARS =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+                    .toCharArray();
+
+    /**
+     * Base64 char values (by char; -1 if not base64).
+     */
+    private static final int[] BASE64_VALUES;
+
+    /**
+     * Double scales (by biased exponent).
+     */
+    private static final double[] DOUBLE_SCALES;
+
+    static {
+
+        BASE64_VALUES = new int[128];
+
+        for (int ctr = 0; ctr < JobBinaryUtils.BASE64_VALUES.length; ctr++) {
+
+            JobBinaryUtils.BASE64_VALUES[ctr] = -1;
+        }
+
+        for (int ctr = 0; ctr < JobBinaryUtils.BASE64_CHARS.length; ctr++) {
+
+            JobBinaryUtils.BASE64_VALUES[JobBinaryUtils.BASE64_CHARS[ctr]] = ctr;
+        }
+
+        DOUBLE_SCALES = new double[2047];
+
+        for (int ctr = 1; ctr < JobBinaryUtils.DOUBLE_SCALES.length; ctr++) {
+
+            JobBinaryUtils.DOUBLE_SCALES[ctr] = Math.pow(2.0, ctr - 1075);
+        }
+    }
+
+    /**
+     * Checks header and value type.
+     *
+     * @param input         Input bytes.
+     * @param expectedTypes Expected value types.
+     * @return Value type.
+     */
+    private static int checkValueType(final byte[] input,
+                                      final int... expectedTypes) {
+
+        final int valueType = JobBinaryUtils.getValueType(input);
+
+        for (final int item : expectedTypes) {
+
+            if (item == valueType) {
+
+                return valueType;
+            }
+        }
+
+        throw new IllegalArgumentException("invalid input (value type: "
+                + JobBinaryUtils.getTypeName(valueType) + ")");
+    }
+
+    /**
+     * Decodes base64 text.
+     *
+     * @param input Base64 text (no line breaks).
+     * @return Decoded bytes.
+     */
+    public static byte[] decodeBase64(final String input) {
+
+        JobDataUtils.checkNullObject(input, true);
+
+        int inputLength = input.length();
+
+        if ((inputLength % 4) != 0) {
+
+            throw new IllegalArgumentException("invalid input (base64 length)");
+        }
+
+        int padCount = 0;
+
+        while ((padCount < 2) && (inputLength > 0)
+                && (input.charAt(inputLength - 1) == '=')) {
+
+            inputLength--;
+            padCount++;
+        }
+
+        final byte[] result = new byte[((input.length() / 4) * 3) - padCount];
+        int buffer = 0;
+        int bufferBits = 0;
+        int outputIndex = 0;
+
+        for (int ctr = 0; ctr < inputLength; ctr++) {
+
+            final char inputChar = input.charAt(ctr);
+            final int inputValue = (inputChar < 128)
+                    ? JobBinaryUtils.BASE64_VALUES[inputChar] : -1;
+
+            if (inputValue < 0) {
+
+                throw new IllegalArgumentException("invalid input (base64 char)");
+            }
+
+            buffer = (buffer << 6) | inputValue;
+            bufferBits += 6;
+
+            if (bufferBits >= 8) {
+
+                bufferBits -= 8;
+                result[outputIndex++] = (byte) (buffer >> bufferBits);
+                buffer &= (1 << bufferBits) - 1;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Decodes numeric elements as doubles (widening all numeric types).
+     *
+     * @param input Input bytes.
+     * @return Encoded elements (R NA ints/logicals as NaN).
+     */
+    public static double[] decodeDoubles(final byte[] input) {
+
+        final int valueType = JobBinaryUtils.checkValueType(input,
+                JobBinaryUtils.TYPE_DOUBLE, JobBinaryUtils.TYPE_FLOAT,
+                JobBinaryUtils.TYPE_LONG, JobBinaryUtils.TYPE_INT,
+                JobBinaryUtils.TYPE_LOGICAL, JobBinaryUtils.TYPE_SHORT,
+                JobBinaryUtils.TYPE_BYTE, JobBinaryUtils.TYPE_BOOLEAN);
+
+        final int count = JobBinaryUtils.getCount(input);
+        final double[] result = new double[count];
+        int offset = JobBinaryUtils.HEADER_SIZE;
+
+        for (int ctr = 0; ctr < count; ctr++) {
+
+            switch (valueType) {
+
+                case JobBinaryUtils.TYPE_DOUBLE:
+
+                    result[ctr] = JobBinaryUtils.toDouble(
+                            JobBinaryUtils.readInt(input, offset + 4),
+                            JobBinaryUtils.readInt(input, offset));
+                    offset += 8;
+                    break;
+
+                case JobBinaryUtils.TYPE_FLOAT:
+
+                    result[ctr] = JobBinaryUtils.toFloat(
+                            JobBinaryUtils.readInt(input, offset));
+                    offset += 4;
+                    break;
+
+                case JobBinaryUtils.TYPE_LONG:
+
+                    result[ctr] = (JobBinaryUtils.readInt(input, offset + 4) * 4294967296.0)
+                            + JobBinaryUtils.toUnsigned(JobBinaryUtils.readInt(input, offset));
+                    offset += 8;
+                    break;
+
+                case JobBinaryUtils.TYPE_INT:
+                case JobBinaryUtils.TYPE_LOGICAL:
+
+                    final int intValue = JobBinaryUtils.readInt(input, offset);
+                    result[ctr] = (intValue == JobBinaryUtils.NA_INT) ? Double.NaN : intValue;
+                    offset += 4;
+                    break;
+
+                case JobBinaryUtils.TYPE_SHORT:
+
+                    result[ctr] = (short) ((input[offset] & 0xff)
+                            | ((input[offset + 1] & 0xff) << 8));
+                    offset += 2;
+                    break;
+
+                default:
+
+                    result[ctr] = input[offset];
+                    offset++;
+                    break;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Decodes int-like elements (ints, R logicals, shorts, bytes, booleans,
+     * chars).
+     *
+     * @param input Input bytes.
+     * @return Encoded elements (R NA as NA_INT).
+     */
+    public static int[] decodeInts(final byte[] input) {
+
+        final int valueType = JobBinaryUtils.checkValueType(input,
+                JobBinaryUtils.TYPE_INT, JobBinaryUtils.TYPE_LOGICAL,
+                JobBinaryUtils.TYPE_SHORT, JobBinaryUtils.TYPE_CHAR,
+                JobBinaryUtils.TYPE_BYTE, JobBinaryUtils.TYPE_BOOLEAN);
+
+        final int count = JobBinaryUtils.getCount(input);
+        final int[] result = new int[count];
+        int offset = JobBinaryUtils.HEADER_SIZE;
+
+        for (int ctr = 0; ctr < count; ctr++) {
+
+            switch (valueType) {
+
+                case JobBinaryUtils.TYPE_INT:
+                case JobBinaryUtils.TYPE_LOGICAL:
+
+                    result[ctr] = JobBinaryUtils.readInt(input, offset);
+                    offset += 4;
+                    break;
+
+                case JobBinaryUtils.TYPE_SHORT:
+
+                    result[ctr] = (short) ((input[offset] & 0xff)
+                            | ((input[offset + 1] & 0xff) << 8));
+                    offset += 2;
+                    break;
+
+                case JobBinaryUtils.TYPE_CHAR:
+
+                    result[ctr] = (input[offset] & 0xff)
+                            | ((input[offset + 1] & 0xff) << 8);
+                    offset += 2;
+                    break;
+
+                default:
+
+                    result[ctr] = input[offset];
+                    offset++;
+                    break;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Decodes long elements.
+     *
+     * @param input Input bytes.
+     * @return Encoded elements.
+     */
+    public static long[] decodeLongs(final byte[] input) {
+
+        JobBinaryUtils.checkValueType(input, JobBinaryUtils.TYPE_LONG);
+
+        final int count = JobBinaryUtils.getCount(input);
+        final long[] result = new long[count];
+        int offset = JobBinaryUtils.HEADER_SIZE;
+
+        for (int ctr = 0; ctr < count; ctr++) {
+
+            result[ctr] = (((long) JobBinaryUtils.readInt(input, offset + 4)) << 32)
+                    | (JobBinaryUtils.readInt(input, offset) & 0xffffffffL);
+            offset += 8;
+        }
+
+        return result;
+    }
+
+    /**
+     * Decodes string elements.
+     *
+     * @param input Input bytes.
+     * @return Encoded elements (null for null/NA).
+     */
+    public static String[] decodeStrings(final byte[] input) {
+
+        JobBinaryUtils.checkValueType(input, JobBinaryUtils.TYPE_STRING);
+
+        final int count = JobBinaryUtils.getCount(input);
+        final String[] result = new String[count];
+        int offset = JobBinaryUtils.HEADER_SIZE;
+
+        for (int ctr = 0; ctr < count; ctr++) {
+
+            final int length = JobBinaryUtils.readInt(input, offset);
+            offset += 4;
+
+            if (length >= 0) {
+
+                result[ctr] = JobBinaryUtils.decodeUtf8(input, offset, length);
+                offset += length;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Decodes text.
+     *
+     * @param input Input bytes.
+     * @return Encoded text (possibly a truncated prefix).
+     */
+    public static String decodeText(final byte[] input) {
+
+        JobBinaryUtils.checkValueType(input, JobBinaryUtils.TYPE_TEXT);
+
+        return JobBinaryUtils.decodeUtf8(input, JobBinaryUtils.HEADER_SIZE,
+                JobBinaryUtils.getCount(input));
+    }
+
+    /**
+     * Decodes UTF-8 bytes.
+     *
+     * @param input  Input bytes.
+     * @param offset Start offset.
+     * @param length Length in bytes.
+     * @return Decoded text.
+     */
+    private static String decodeUtf8(final byte[] input, final int offset,
+                                     final int length) {
+
+        try {
+
+            return new String(input, offset, length, "UTF-8");
+
+        } catch (final UnsupportedEncodingException ex) {
+
+            throw new IllegalStateException("UTF-8 not supported");
+        }
+    }
+
+    /**
+     * Encodes bytes as base64 text.
+     *
+     * @param input  Input bytes.
+     * @param length Length in bytes (from start).
+     * @return Base64 text (padded, no line breaks).
+     */
+    public static String encodeBase64(final byte[] input, final int length) {
+
+        JobDataUtils.checkNullObject(input, true);
+
+        if ((length < 0) || (length > input.length)) {
+
+            throw new IllegalArgumentException("invalid input (length)");
+        }
+
+        final char[] result = new char[((length + 2) / 3) * 4];
+        int outputIndex = 0;
+
+        for (int ctr = 0; ctr < length; ctr += 3) {
+
+            final int remaining = length - ctr;
+            final int buffer = ((input[ctr] & 0xff) << 16)
+                    | ((remaining > 1) ? ((input[ctr + 1] & 0xff) << 8) : 0)
+                    | ((remaining > 2) ? (input[ctr + 2] & 0xff) : 0);
+
+            result[outputIndex++] = JobBinaryUtils.BASE64_CHARS[(buffer >> 18) & 0x3f];
+            result[outputIndex++] = JobBinaryUtils.BASE64_CHARS[(buffer >> 12) & 0x3f];
+            result[outputIndex++] = (remaining > 1)
+                    ? JobBinaryUtils.BASE64_CHARS[(buffer >> 6) & 0x3f] : '=';
+            result[outputIndex++] = (remaining > 2)
+                    ? JobBinaryUtils.BASE64_CHARS[buffer & 0x3f] : '=';
+        }
+
+        return new String(result);
+    }
+
+    /**
+     * Formats preview text (type, counts and leading elements).
+     *
+     * @param input       Base64 text.
+     * @param maxElements Max elements to show.
+     * @return Preview text.
+     */
+    public static String formatText(final String input, final int maxElements) {
+
+        final byte[] valueBytes = JobBinaryUtils.decodeBase64(input);
+        final int valueType = JobBinaryUtils.getValueType(valueBytes);
+        final int totalCount = JobBinaryUtils.getTotalCount(valueBytes);
+        final int count = JobBinaryUtils.getCount(valueBytes);
+
+        if (valueType == JobBinaryUtils.TYPE_NULL) {
+
+            return "null";
+        }
+
+        final StringBuilder result = new StringBuilder();
+
+        if (valueType == JobBinaryUtils.TYPE_TEXT) {
+
+            result.append(JobBinaryUtils.decodeText(valueBytes));
+
+        } else {
+
+            result.append(JobBinaryUtils.getTypeName(valueType))
+                    .append('[').append(totalCount).append("]: ");
+
+            final int showCount = Math.min(count, Math.max(maxElements, 0));
+            String[] stringValues = null;
+            double[] doubleValues = null;
+            long[] longValues = null;
+            int[] intValues = null;
+
+            if (valueType == JobBinaryUtils.TYPE_STRING) {
+
+                stringValues = JobBinaryUtils.decodeStrings(valueBytes);
+
+            } else if (valueType == JobBinaryUtils.TYPE_LONG) {
+
+                longValues = JobBinaryUtils.decodeLongs(valueBytes);
+
+            } else if ((valueType == JobBinaryUtils.TYPE_DOUBLE)
+                    || (valueType == JobBinaryUtils.TYPE_FLOAT)) {
+
+                doubleValues = JobBinaryUtils.decodeDoubles(valueBytes);
+
+            } else {
+
+                intValues = JobBinaryUtils.decodeInts(valueBytes);
+            }
+
+            for (int ctr = 0; ctr < showCount; ctr++) {
+
+                if (ctr > 0) {
+
+                    result.append(", ");
+                }
+
+                if (stringValues != null) {
+
+                    result.append((stringValues[ctr] == null)
+                            ? "NA" : ("\"" + stringValues[ctr] + "\""));
+
+                } else if (longValues != null) {
+
+                    result.append(longValues[ctr]);
+
+                } else if (doubleValues != null) {
+
+                    result.append(doubleValues[ctr]);
+
+                } else if (valueType == JobBinaryUtils.TYPE_BOOLEAN) {
+
+                    result.append(intValues[ctr] != 0);
+
+                } else if (valueType == JobBinaryUtils.TYPE_CHAR) {
+
+                    result.append('\'').append((char) intValues[ctr]).append('\'');
+
+                } else if (valueType == JobBinaryUtils.TYPE_LOGICAL) {
+
+                    result.append((intValues[ctr] == JobBinaryUtils.NA_INT)
+                            ? "NA" : ((intValues[ctr] != 0) ? "TRUE" : "FALSE"));
+
+                } else if ((valueType == JobBinaryUtils.TYPE_INT)
+                        && (intValues[ctr] == JobBinaryUtils.NA_INT)) {
+
+                    result.append("NA");
+
+                } else {
+
+                    result.append(intValues[ctr]);
+                }
+            }
+
+            if (showCount < totalCount) {
+
+                result.append(", ... (").append(totalCount - showCount)
+                        .append(" more)");
+            }
+        }
+
+        if (count < totalCount) {
+
+            result.append("\n[... truncated: ").append(count).append(" of ")
+                    .append(totalCount).append(" encoded ...]");
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Gets encoded element count.
+     *
+     * @param input Input bytes.
+     * @return Encoded element count (bytes for text).
+     */
+    public static int getCount(final byte[] input) {
+
+        JobBinaryUtils.getValueType(input);
+
+        return JobBinaryUtils.readInt(input, 8);
+    }
+
+    /**
+     * Gets total element count (before any truncation).
+     *
+     * @param input Input bytes.
+     * @return Total element count (bytes for text).
+     */
+    public static int getTotalCount(final byte[] input) {
+
+        JobBinaryUtils.getValueType(input);
+
+        return JobBinaryUtils.readInt(input, 4);
+    }
+
+    /**
+     * Gets value type name.
+     *
+     * @param valueType Value type.
+     * @return Type name.
+     */
+    public static String getTypeName(final int valueType) {
+
+        if ((valueType < 0) || (valueType >= JobBinaryUtils.TYPE_NAMES.length)) {
+
+            return "unknown(" + valueType + ")";
+        }
+
+        return JobBinaryUtils.TYPE_NAMES[valueType];
+    }
+
+    /**
+     * Gets value type (checks header).
+     *
+     * @param input Input bytes.
+     * @return Value type.
+     */
+    public static int getValueType(final byte[] input) {
+
+        JobDataUtils.checkNullObject(input, true);
+
+        if ((input.length < JobBinaryUtils.HEADER_SIZE)
+                || (input[0] != 'J') || (input[1] != 'B')
+                || (input[2] != JobBinaryUtils.FORMAT_VERSION)) {
+
+            throw new IllegalArgumentException("invalid input (binary header)");
+        }
+
+        return input[3];
+    }
+
+    /**
+     * Reads little-endian int.
+     *
+     * @param input  Input bytes.
+     * @param offset Offset.
+     * @return Int value.
+     */
+    private static int readInt(final byte[] input, final int offset) {
+
+        return (input[offset] & 0xff)
+                | ((input[offset + 1] & 0xff) << 8)
+                | ((input[offset + 2] & 0xff) << 16)
+                | (input[offset + 3] << 24);
+    }
+
+    /**
+     * Converts IEEE 754 double bits (as two ints) to double.
+     *
+     * @param highBits High 32 bits.
+     * @param lowBits  Low 32 bits.
+     * @return Double value.
+     */
+    private static double toDouble(final int highBits, final int lowBits) {
+
+        final int exponent = (highBits >>> 20) & 0x7ff;
+        final double mantissa = ((highBits & 0xfffff) * 4294967296.0)
+                + JobBinaryUtils.toUnsigned(lowBits);
+        final double sign = (highBits < 0) ? -1.0 : 1.0;
+
+        if (exponent == 0x7ff) {
+
+            return (mantissa == 0.0) ? (sign * Double.POSITIVE_INFINITY) : Double.NaN;
+        }
+
+        if (exponent == 0) {
+
+            return sign * mantissa * Double.MIN_VALUE;
+        }
+
+        return sign * (mantissa + 4503599627370496.0)
+                * JobBinaryUtils.DOUBLE_SCALES[exponent];
+    }
+
+    /**
+     * Converts IEEE 754 float bits to float (as double).
+     *
+     * @param bits Float bits.
+     * @return Float value.
+     */
+    private static double toFloat(final int bits) {
+
+        final int exponent = (bits >>> 23) & 0xff;
+        final int mantissa = bits & 0x7fffff;
+        final double sign = (bits < 0) ? -1.0 : 1.0;
+
+        if (exponent == 0xff) {
+
+            return (mantissa == 0) ? (sign * Double.POSITIVE_INFINITY) : Double.NaN;
+        }
+
+        if (exponent == 0) {
+
+            return sign * mantissa * Math.pow(2.0, -149);
+        }
+
+        return sign * (mantissa + 8388608.0) * Math.pow(2.0, exponent - 150);
+    }
+
+    /**
+     * Converts int to unsigned value.
+     *
+     * @param input Input int.
+     * @return Unsigned value.
+     */
+    private static double toUnsigned(final int input) {
+
+        return (input < 0) ? (input + 4294967296.0) : input;
+    }
+
+    /**
+     * Private ctor (utility class).
+     */
+    private JobBinaryUtils() {
+    }
+}
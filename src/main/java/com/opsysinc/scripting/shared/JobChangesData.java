@@ -0,0 +1,114 @@
+package com.opsysinc.scripting.shared;
+
+/**
+ * Job changes data (jobs changed or removed since a change sequence; all
+ * jobs if reset).
+ *
+ * @author mkitchin
+ */
+public class JobChangesData extends AbstractJobData {
+
+    /**
+     * Default serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Last change sequence covered (to request next).
+     */
+    private long sequence;
+
+    /**
+     * True if caller must drop all jobs first (jobs are then all jobs).
+     */
+    private boolean isReset;
+
+    /**
+     * Changed jobs.
+     */
+    private JobContentData[] jobs;
+
+    /**
+     * Removed job ids.
+     */
+    private String[] removedJobIds;
+
+    /**
+     * Basic ctor (GWT needs no-arg).
+     */
+    public JobChangesData() {
+
+        this.jobs = new JobContentData[0];
+        this.removedJobIds = new String[0];
+    }
+
+    /**
+     * Basic ctor.
+     *
+     * @param sequence      Last change sequence covered.
+     * @param isReset       True if caller must drop all jobs first, false
+     *                      otherwise.
+     * @param jobs          Changed jobs (all jobs if reset).
+     * @param removedJobIds Removed job ids.
+     */
+    public JobChangesData(final long sequence, final boolean isReset,
+                          final JobContentData[] jobs,
+                          final String[] removedJobIds) {
+
+        JobDataUtils.checkNullObject(jobs, true);
+        JobDataUtils.checkNullObject(removedJobIds, true);
+
+        this.sequence = sequence;
+        this.isReset = isReset;
+        this.jobs = jobs;
+        this.removedJobIds = removedJobIds;
+    }
+
+    /**
+     * Gets changed jobs.
+     *
+     * @return Changed jobs (all jobs if reset).
+     */
+    public synchronized JobContentData[] getJobs() {
+
+        return this.jobs;
+    }
+
+    /**
+     * Gets removed job ids.
+     *
+     * @return Removed job ids.
+     */
+    public synchronized String[] getRemovedJobIds() {
+
+        return this.removedJobIds;
+    }
+
+    /**
+     * Gets last change sequence covered.
+     *
+     * @return Last change sequence (to request next).
+     */
+    public synchronized long getSequence() {
+
+        return this.sequence;
+    }
+
+    /**
+     * Gets if caller must drop all jobs first.
+     *
+     * @return True if reset (jobs are all jobs), false otherwise.
+     */
+    public synchronized boolean isReset() {
+
+        return this.isReset;
+    }
+
+    @Override
+    public String toString() {
+
+        return "JobChangesData [sequence=" + this.sequence + ", isReset="
+                + this.isReset + ", jobs=" + this.jobs.length
+                + ", removedJobIds=" + this.removedJobIds.length + "]";
+    }
+}
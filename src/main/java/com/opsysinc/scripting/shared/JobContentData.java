@@ -54,6 +54,16 @@ public class JobContentData extends AbstractJobData {
      */
     private boolean isReset;
 
+    /**
+     * Time spent waiting in executor queue (ms).
+     */
+    private long queueWaitTime;
+
+    /**
+     * Job timing data (null until dequeued).
+     */
+    private JobTimingData timingData;
+
     /**
      * Basic ctor (GWT needs no-arg).
      */
@@ -157,6 +167,26 @@ public class JobContentData extends AbstractJobData {
         return this.responseData;
     }
 
+    /**
+     * Gets queue wait time.
+     *
+     * @return Time spent waiting in executor queue (ms).
+     */
+    public synchronized long getQueueWaitTime() {
+
+        return this.queueWaitTime;
+    }
+
+    /**
+     * Gets job timing data.
+     *
+     * @return Job timing data (null until dequeued).
+     */
+    public synchronized JobTimingData getTimingData() {
+
+        return this.timingData;
+    }
+
     /**
      * Gets state.
      *
@@ -258,6 +288,30 @@ public class JobContentData extends AbstractJobData {
         this.setModifiedTime(0L);
     }
 
+    /**
+     * Sets queue wait time.
+     *
+     * @param queueWaitTime Time spent waiting in executor queue (ms).
+     */
+    public synchronized void setQueueWaitTime(final long queueWaitTime) {
+
+        this.queueWaitTime = queueWaitTime;
+        this.setModifiedTime(0L);
+    }
+
+    /**
+     * Sets job timing data.
+     *
+     * @param timingData Job timing data.
+     */
+    public synchronized void setTimingData(final JobTimingData timingData) {
+
+        JobDataUtils.checkNullObject(timingData, true);
+        this.timingData = timingData;
+
+        this.setModifiedTime(0L);
+    }
+
     /**
      * Sets request data.
      *
@@ -7,7 +7,7 @@ package com.opsysinc.scripting.shared;
  */
 public enum JobDataFormat {
 
-    raw("Raw"), json("JSON"), xml("XML");
+    raw("Raw"), json("JSON"), xml("XML"), binary("Binary");
 
     /**
      * Basic ctor.
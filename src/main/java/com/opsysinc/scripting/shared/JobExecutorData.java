@@ -14,6 +14,41 @@ public class JobExecutorData extends AbstractJobData {
      */
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Default replica count (single-threaded session executor).
+     */
+    public static final int DEFAULT_REPLICA_COUNT = 1;
+
+    /**
+     * Auto replica count (pooled executor, one replica per core).
+     */
+    public static final int AUTO_REPLICA_COUNT = 0;
+
+    /**
+     * Default job output head size in bytes (first output kept in memory).
+     */
+    public static final int DEFAULT_OUTPUT_HEAD_SIZE = 65536;
+
+    /**
+     * Default job output tail size in bytes (latest output kept in memory).
+     */
+    public static final int DEFAULT_OUTPUT_TAIL_SIZE = 1048576;
+
+    /**
+     * Default max completed jobs retained.
+     */
+    public static final int DEFAULT_COMPLETED_JOB_COUNT = 5000;
+
+    /**
+     * Default max completed job bytes retained (estimated).
+     */
+    public static final long DEFAULT_COMPLETED_JOB_BYTES = 67108864L;
+
+    /**
+     * Default max completed job age in ms (0 = no limit).
+     */
+    public static final long DEFAULT_COMPLETED_JOB_AGE = 86400000L;
+
     /**
      * Executor id.
      */
@@ -29,10 +64,60 @@ public class JobExecutorData extends AbstractJobData {
      */
     private JobExecutorType type;
 
+    /**
+     * Is pooled (multi-replica) executor? False for single-threaded session
+     * executors.
+     */
+    private boolean isPooled;
+
+    /**
+     * Engine replica count.
+     */
+    private int replicaCount;
+
+    /**
+     * Job output head size in bytes.
+     */
+    private int outputHeadSize;
+
+    /**
+     * Job output tail size in bytes.
+     */
+    private int outputTailSize;
+
+    /**
+     * Spill full job output to executor files?
+     */
+    private boolean isOutputSpilled;
+
+    /**
+     * Max completed jobs retained.
+     */
+    private int completedJobCount;
+
+    /**
+     * Max completed job bytes retained (estimated).
+     */
+    private long completedJobBytes;
+
+    /**
+     * Max completed job age in ms (0 = no limit).
+     */
+    private long completedJobAge;
+
     /**
      * Basic ctor (GWT needs no-arg).
      */
     public JobExecutorData() {
+
+        this.isPooled = false;
+        this.replicaCount = JobExecutorData.DEFAULT_REPLICA_COUNT;
+        this.outputHeadSize = JobExecutorData.DEFAULT_OUTPUT_HEAD_SIZE;
+        this.outputTailSize = JobExecutorData.DEFAULT_OUTPUT_TAIL_SIZE;
+        this.isOutputSpilled = false;
+        this.completedJobCount = JobExecutorData.DEFAULT_COMPLETED_JOB_COUNT;
+        this.completedJobBytes = JobExecutorData.DEFAULT_COMPLETED_JOB_BYTES;
+        this.completedJobAge = JobExecutorData.DEFAULT_COMPLETED_JOB_AGE;
     }
 
     /**
@@ -43,8 +128,27 @@ public class JobExecutorData extends AbstractJobData {
      */
     public JobExecutorData(final String title, final JobExecutorType type) {
 
+        this(title, type, false, JobExecutorData.DEFAULT_REPLICA_COUNT);
+    }
+
+    /**
+     * Basic ctor.
+     *
+     * @param title        Title.
+     * @param type         Type.
+     * @param isPooled     True for pooled executor, false for session executor.
+     * @param replicaCount Replica count (0 = one per core; session executors
+     *                     always have 1).
+     */
+    public JobExecutorData(final String title, final JobExecutorType type,
+                           final boolean isPooled, final int replicaCount) {
+
+        this();
+
         this.setTitle(title);
         this.setType(type);
+        this.setPooled(isPooled);
+        this.setReplicaCount(replicaCount);
     }
 
     /*
@@ -66,6 +170,36 @@ public class JobExecutorData extends AbstractJobData {
                 String.valueOf(((JobExecutorData) obj).id));
     }
 
+    /**
+     * Gets max completed job age.
+     *
+     * @return Max completed job age in ms (0 = no limit).
+     */
+    public synchronized long getCompletedJobAge() {
+
+        return this.completedJobAge;
+    }
+
+    /**
+     * Gets max completed job bytes.
+     *
+     * @return Max completed job bytes retained (estimated).
+     */
+    public synchronized long getCompletedJobBytes() {
+
+        return this.completedJobBytes;
+    }
+
+    /**
+     * Gets max completed job count.
+     *
+     * @return Max completed jobs retained.
+     */
+    public synchronized int getCompletedJobCount() {
+
+        return this.completedJobCount;
+    }
+
     /**
      * Gets id.
      *
@@ -76,6 +210,37 @@ public class JobExecutorData extends AbstractJobData {
         return this.id;
     }
 
+    /**
+     * Gets job output head size.
+     *
+     * @return Output head size in bytes.
+     */
+    public synchronized int getOutputHeadSize() {
+
+        return this.outputHeadSize;
+    }
+
+    /**
+     * Gets job output tail size.
+     *
+     * @return Output tail size in bytes.
+     */
+    public synchronized int getOutputTailSize() {
+
+        return this.outputTailSize;
+    }
+
+    /**
+     * Gets replica count.
+     *
+     * @return Replica count (0 = one per core; session executors always
+     * have 1).
+     */
+    public synchronized int getReplicaCount() {
+
+        return this.replicaCount;
+    }
+
     /**
      * Gets title.
      *
@@ -107,6 +272,54 @@ public class JobExecutorData extends AbstractJobData {
         return String.valueOf(this.id).hashCode();
     }
 
+    /**
+     * Sets max completed job age.
+     *
+     * @param completedJobAge Max completed job age in ms (0 = no limit).
+     */
+    public synchronized void setCompletedJobAge(final long completedJobAge) {
+
+        if (completedJobAge < 0L) {
+
+            throw new IllegalArgumentException("invalid input (completedJobAge)");
+        }
+
+        this.completedJobAge = completedJobAge;
+        this.setModifiedTime(0L);
+    }
+
+    /**
+     * Sets max completed job bytes.
+     *
+     * @param completedJobBytes Max completed job bytes retained (>0).
+     */
+    public synchronized void setCompletedJobBytes(final long completedJobBytes) {
+
+        if (completedJobBytes < 1L) {
+
+            throw new IllegalArgumentException("invalid input (completedJobBytes)");
+        }
+
+        this.completedJobBytes = completedJobBytes;
+        this.setModifiedTime(0L);
+    }
+
+    /**
+     * Sets max completed job count.
+     *
+     * @param completedJobCount Max completed jobs retained (>0).
+     */
+    public synchronized void setCompletedJobCount(final int completedJobCount) {
+
+        if (completedJobCount < 1) {
+
+            throw new IllegalArgumentException("invalid input (completedJobCount)");
+        }
+
+        this.completedJobCount = completedJobCount;
+        this.setModifiedTime(0L);
+    }
+
     /**
      * Sets id.
      *
@@ -118,6 +331,97 @@ public class JobExecutorData extends AbstractJobData {
         this.setModifiedTime(0L);
     }
 
+    /**
+     * Gets if full job output is spilled to executor files.
+     *
+     * @return True if spilled, false otherwise.
+     */
+    public synchronized boolean isOutputSpilled() {
+
+        return this.isOutputSpilled;
+    }
+
+    /**
+     * Gets if this is a pooled (multi-replica) executor.
+     *
+     * @return True if pooled, false if single-threaded session executor.
+     */
+    public synchronized boolean isPooled() {
+
+        return this.isPooled;
+    }
+
+    /**
+     * Sets job output head size.
+     *
+     * @param outputHeadSize Output head size in bytes (>=0).
+     */
+    public synchronized void setOutputHeadSize(final int outputHeadSize) {
+
+        if (outputHeadSize < 0) {
+
+            throw new IllegalArgumentException("invalid input (outputHeadSize)");
+        }
+
+        this.outputHeadSize = outputHeadSize;
+        this.setModifiedTime(0L);
+    }
+
+    /**
+     * Sets if full job output is spilled to executor files.
+     *
+     * @param isOutputSpilled True to spill, false otherwise.
+     */
+    public synchronized void setOutputSpilled(final boolean isOutputSpilled) {
+
+        this.isOutputSpilled = isOutputSpilled;
+        this.setModifiedTime(0L);
+    }
+
+    /**
+     * Sets job output tail size.
+     *
+     * @param outputTailSize Output tail size in bytes (>=0).
+     */
+    public synchronized void setOutputTailSize(final int outputTailSize) {
+
+        if (outputTailSize < 0) {
+
+            throw new IllegalArgumentException("invalid input (outputTailSize)");
+        }
+
+        this.outputTailSize = outputTailSize;
+        this.setModifiedTime(0L);
+    }
+
+    /**
+     * Sets if this is a pooled (multi-replica) executor.
+     *
+     * @param isPooled True if pooled, false if single-threaded session executor.
+     */
+    public synchronized void setPooled(final boolean isPooled) {
+
+        this.isPooled = isPooled;
+        this.setModifiedTime(0L);
+    }
+
+    /**
+     * Sets replica count.
+     *
+     * @param replicaCount Replica count (0 = one per core; session executors
+     *                     always have 1).
+     */
+    public synchronized void setReplicaCount(final int replicaCount) {
+
+        if (replicaCount < 0) {
+
+            throw new IllegalArgumentException("invalid input (replicaCount)");
+        }
+
+        this.replicaCount = replicaCount;
+        this.setModifiedTime(0L);
+    }
+
     /**
      * Sets title.
      *
@@ -154,7 +458,7 @@ public class JobExecutorData extends AbstractJobData {
 
         return Arrays.asList(this.getClass().getSimpleName(),
                 String.valueOf(this.id), String.valueOf(this.title),
-                String.valueOf(this.type)).toString();
+                String.valueOf(this.type), this.replicaCount).toString();
     }
 
 }
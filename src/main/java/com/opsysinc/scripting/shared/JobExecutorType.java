@@ -7,12 +7,12 @@ package com.opsysinc.scripting.shared;
  */
 public enum JobExecutorType {
 
-    r_renjin("Renjin", "R", false),
-    python_jython("python", "Python", true),
-    javascript_rhino("js", "JavaScript", true),
-    groovy_groovy("groovy", "Groovy", true),
-    beanshell_beanshell("beanshell", "BeanShell", true),
-    lisp_abcl("lisp", "LISP", true);
+    r_renjin("Renjin", "R", false, false, false),
+    python_jython("python", "Python", true, true, true),
+    javascript_rhino("js", "JavaScript", true, true, true),
+    groovy_groovy("groovy", "Groovy", true, true, true),
+    beanshell_beanshell("beanshell", "BeanShell", true, false, false),
+    lisp_abcl("lisp", "LISP", true, false, false);
 
     /**
      * Scripting engine type.
@@ -29,26 +29,47 @@ public enum JobExecutorType {
      */
     private final boolean isVariablesReadable;
 
+    /**
+     * Can script engine be replicated (pooled)?
+     */
+    private final boolean isReplicable;
+
+    /**
+     * Does script engine write output to its context writers?
+     */
+    private final boolean isContextOutput;
+
     /**
      * Basic ctor (GWT needs no-arg).
      */
     private JobExecutorType() {
 
-        this(null, null, false);
+        this(null, null, false, false, false);
     }
 
     /**
      * Basic ctor.
      *
      * @param scriptingEngineName Scripting engine type.
+     * @param executorTitle       Executor title.
+     * @param isVariablesReadable True if variables are readable, false otherwise.
+     * @param isReplicable        True if engine may be replicated across
+     *                            workers, false otherwise.
+     * @param isContextOutput     True if engine output goes to its script
+     *                            context writers, false if it writes to
+     *                            System.out/System.err directly.
      */
     private JobExecutorType(final String scriptingEngineName,
                             final String executorTitle,
-                            final boolean isVariablesReadable) {
+                            final boolean isVariablesReadable,
+                            final boolean isReplicable,
+                            final boolean isContextOutput) {
 
         this.scriptingEngineName = scriptingEngineName;
         this.executorTitle = executorTitle;
         this.isVariablesReadable = isVariablesReadable;
+        this.isReplicable = isReplicable;
+        this.isContextOutput = isContextOutput;
     }
 
     /**
@@ -71,6 +92,17 @@ public enum JobExecutorType {
         return this.scriptingEngineName;
     }
 
+    /**
+     * Gets if script engine output goes to its context writers.
+     *
+     * @return True if engine honors script context writers, false if output
+     * needs System.out/System.err capture.
+     */
+    public boolean isContextOutput() {
+
+        return this.isContextOutput;
+    }
+
     /**
      * Gets if variables are readable.
      *
@@ -80,4 +112,14 @@ public enum JobExecutorType {
 
         return this.isVariablesReadable;
     }
+
+    /**
+     * Gets if script engine may be replicated (pooled).
+     *
+     * @return True if engine may be replicated across workers, false otherwise.
+     */
+    public boolean isReplicable() {
+
+        return this.isReplicable;
+    }
 }
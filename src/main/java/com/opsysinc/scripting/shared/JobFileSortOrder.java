@@ -0,0 +1,31 @@
+package com.opsysinc.scripting.shared;
+
+/**
+ * Job file sort order.
+ *
+ * @author mkitchin
+ */
+public enum JobFileSortOrder {
+
+    name("Name"), type("Type"), size("Size"), modified("Modified");
+
+    /**
+     * Basic ctor.
+     *
+     * @param sortTitle Sort title.
+     */
+    private JobFileSortOrder(final String sortTitle) {
+
+        this.sortTitle = sortTitle;
+    }
+
+    /**
+     * Sort title.
+     */
+    private final String sortTitle;
+
+    public String getSortTitle() {
+
+        return this.sortTitle;
+    }
+}
@@ -0,0 +1,147 @@
+package com.opsysinc.scripting.shared;
+
+/**
+ * Job files data (one folder listing page, or changes since an index version).
+ *
+ * @author mkitchin
+ */
+public class JobFilesData extends AbstractJobData {
+
+    /**
+     * Default serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Index version covered (to request changes after next).
+     */
+    private long version;
+
+    /**
+     * True if files are changes only (merge w/prior listing), false if
+     * files are a listing page (replace prior listing).
+     */
+    private boolean isDelta;
+
+    /**
+     * Total files in folder.
+     */
+    private int totalCount;
+
+    /**
+     * Index of first file w/in sorted folder listing (listing pages only).
+     */
+    private int fromIndex;
+
+    /**
+     * Files (added/changed, if delta).
+     */
+    private JobFileData[] files;
+
+    /**
+     * Removed file ids (deltas only).
+     */
+    private String[] removedIds;
+
+    /**
+     * Basic ctor (GWT needs no-arg).
+     */
+    public JobFilesData() {
+
+        this.files = new JobFileData[0];
+        this.removedIds = new String[0];
+    }
+
+    /**
+     * Basic ctor.
+     *
+     * @param version    Index version covered.
+     * @param isDelta    True if files are changes only, false otherwise.
+     * @param totalCount Total files in folder.
+     * @param fromIndex  Index of first file w/in sorted folder listing.
+     * @param files      Files.
+     * @param removedIds Removed file ids.
+     */
+    public JobFilesData(final long version, final boolean isDelta,
+                        final int totalCount, final int fromIndex,
+                        final JobFileData[] files, final String[] removedIds) {
+
+        JobDataUtils.checkNullObject(files, true);
+        JobDataUtils.checkNullObject(removedIds, true);
+
+        this.version = version;
+        this.isDelta = isDelta;
+        this.totalCount = totalCount;
+        this.fromIndex = fromIndex;
+        this.files = files;
+        this.removedIds = removedIds;
+    }
+
+    /**
+     * Gets files.
+     *
+     * @return Files (added/changed, if delta).
+     */
+    public synchronized JobFileData[] getFiles() {
+
+        return this.files;
+    }
+
+    /**
+     * Gets index of first file w/in sorted folder listing.
+     *
+     * @return Index of first file (listing pages only).
+     */
+    public synchronized int getFromIndex() {
+
+        return this.fromIndex;
+    }
+
+    /**
+     * Gets removed file ids.
+     *
+     * @return Removed file ids (deltas only).
+     */
+    public synchronized String[] getRemovedIds() {
+
+        return this.removedIds;
+    }
+
+    /**
+     * Gets total files in folder.
+     *
+     * @return Total files in folder.
+     */
+    public synchronized int getTotalCount() {
+
+        return this.totalCount;
+    }
+
+    /**
+     * Gets index version covered.
+     *
+     * @return Index version (to request changes after next).
+     */
+    public synchronized long getVersion() {
+
+        return this.version;
+    }
+
+    /**
+     * Gets if files are changes only.
+     *
+     * @return True if changes only (merge), false if listing page (replace).
+     */
+    public synchronized boolean isDelta() {
+
+        return this.isDelta;
+    }
+
+    @Override
+    public String toString() {
+
+        return "JobFilesData [version=" + this.version + ", isDelta=" + this.isDelta
+                + ", totalCount=" + this.totalCount + ", fromIndex=" + this.fromIndex
+                + ", files=" + this.files.length + ", removedIds=" + this.removedIds.length + "]";
+    }
+}
@@ -0,0 +1,145 @@
+package com.opsysinc.scripting.shared;
+
+/**
+ * Job output chunk data (output of a running job, from a byte offset).
+ *
+ * @author mkitchin
+ */
+public class JobOutputChunkData extends AbstractJobData {
+
+    /**
+     * Default serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Job id.
+     */
+    private String jobId;
+
+    /**
+     * Start offset (may be past requested offset, if output was dropped).
+     */
+    private long startOffset;
+
+    /**
+     * End offset (offset to request next).
+     */
+    private long endOffset;
+
+    /**
+     * Total output length at read time.
+     */
+    private long totalLength;
+
+    /**
+     * Output body.
+     */
+    private String outputBody;
+
+    /**
+     * Basic ctor (GWT needs no-arg).
+     */
+    public JobOutputChunkData() {
+    }
+
+    /**
+     * Basic ctor.
+     *
+     * @param startOffset Start offset.
+     * @param endOffset   End offset.
+     * @param totalLength Total output length at read time.
+     * @param outputBody  Output body.
+     */
+    public JobOutputChunkData(final long startOffset,
+                              final long endOffset,
+                              final long totalLength,
+                              final String outputBody) {
+
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.totalLength = totalLength;
+        this.outputBody = outputBody;
+    }
+
+    /**
+     * Gets end offset.
+     *
+     * @return End offset (offset to request next).
+     */
+    public synchronized long getEndOffset() {
+
+        return this.endOffset;
+    }
+
+    /**
+     * Gets job id.
+     *
+     * @return Job id.
+     */
+    public synchronized String getJobId() {
+
+        return this.jobId;
+    }
+
+    /**
+     * Gets output body.
+     *
+     * @return Output body.
+     */
+    public synchronized String getOutputBody() {
+
+        return this.outputBody;
+    }
+
+    /**
+     * Gets start offset.
+     *
+     * @return Start offset.
+     */
+    public synchronized long getStartOffset() {
+
+        return this.startOffset;
+    }
+
+    /**
+     * Gets total output length at read time.
+     *
+     * @return Total output length.
+     */
+    public synchronized long getTotalLength() {
+
+        return this.totalLength;
+    }
+
+    /**
+     * Gets if more output was available at read time.
+     *
+     * @return True if more output available, false otherwise.
+     */
+    public synchronized boolean isMore() {
+
+        return this.endOffset < this.totalLength;
+    }
+
+    /**
+     * Sets job id.
+     *
+     * @param jobId Job id.
+     */
+    public synchronized void setJobId(final String jobId) {
+
+        JobDataUtils.checkEmptyString(jobId, true);
+        this.jobId = jobId;
+
+        this.setModifiedTime(0L);
+    }
+
+    @Override
+    public String toString() {
+
+        return "JobOutputChunkData [jobId=" + this.jobId + ", startOffset="
+                + this.startOffset + ", endOffset=" + this.endOffset
+                + ", totalLength=" + this.totalLength + "]";
+    }
+}
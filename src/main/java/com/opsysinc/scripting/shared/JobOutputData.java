@@ -17,6 +17,16 @@ public class JobOutputData extends AbstractJobData {
      */
     private String outputBody;
 
+    /**
+     * Total output length in bytes (may exceed output body, if truncated).
+     */
+    private long outputLength;
+
+    /**
+     * Full output path w/in executor file system (null if not spilled).
+     */
+    private String outputPath;
+
     /**
      * Basic ctor.
      */
@@ -43,6 +53,27 @@ public class JobOutputData extends AbstractJobData {
         return this.outputBody;
     }
 
+    /**
+     * Gets total output length.
+     *
+     * @return Total output length in bytes.
+     */
+    public synchronized long getOutputLength() {
+
+        return this.outputLength;
+    }
+
+    /**
+     * Gets full output path.
+     *
+     * @return Full output path w/in executor file system (null if not
+     * spilled).
+     */
+    public synchronized String getOutputPath() {
+
+        return this.outputPath;
+    }
+
     /**
      * Sets output body.
      *
@@ -53,6 +84,29 @@ public class JobOutputData extends AbstractJobData {
         this.setOutputBody(outputBody, true);
     }
 
+    /**
+     * Sets total output length.
+     *
+     * @param outputLength Total output length in bytes.
+     */
+    public synchronized void setOutputLength(final long outputLength) {
+
+        this.outputLength = outputLength;
+        this.setModifiedTime(0L);
+    }
+
+    /**
+     * Sets full output path.
+     *
+     * @param outputPath Full output path w/in executor file system (may be
+     *                   null).
+     */
+    public synchronized void setOutputPath(final String outputPath) {
+
+        this.outputPath = outputPath;
+        this.setModifiedTime(0L);
+    }
+
     /**
      * Sets output body.
      *
@@ -0,0 +1,184 @@
+package com.opsysinc.scripting.shared;
+
+/**
+ * Job snapshot data (executor and job changes since a client's last
+ * snapshot, in one round trip).
+ *
+ * @author mkitchin
+ */
+public class JobSnapshotData extends AbstractJobData {
+
+    /**
+     * Default serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Change sequence covered (jobs and executors; to request next).
+     */
+    private long changeSequence;
+
+    /**
+     * Executor sequence covered (to request next).
+     */
+    private long executorSequence;
+
+    /**
+     * Job change sequence covered (to request next).
+     */
+    private long jobSequence;
+
+    /**
+     * All executors (null if unchanged).
+     */
+    private JobExecutorData[] executors;
+
+    /**
+     * True if client must drop all jobs first (jobs are then all jobs).
+     */
+    private boolean isJobReset;
+
+    /**
+     * Changed jobs.
+     */
+    private JobContentData[] jobs;
+
+    /**
+     * Removed job ids.
+     */
+    private String[] removedJobIds;
+
+    /**
+     * Basic ctor (GWT needs no-arg).
+     */
+    public JobSnapshotData() {
+
+        this.jobs = new JobContentData[0];
+        this.removedJobIds = new String[0];
+    }
+
+    /**
+     * Basic ctor.
+     *
+     * @param changeSequence   Change sequence covered.
+     * @param executorSequence Executor sequence covered.
+     * @param jobSequence      Job change sequence covered.
+     * @param executors        All executors (null if unchanged).
+     * @param isJobReset       True if client must drop all jobs first, false
+     *                         otherwise.
+     * @param jobs             Changed jobs (all jobs if reset).
+     * @param removedJobIds    Removed job ids.
+     */
+    public JobSnapshotData(final long changeSequence,
+                           final long executorSequence,
+                           final long jobSequence,
+                           final JobExecutorData[] executors,
+                           final boolean isJobReset,
+                           final JobContentData[] jobs,
+                           final String[] removedJobIds) {
+
+        JobDataUtils.checkNullObject(jobs, true);
+        JobDataUtils.checkNullObject(removedJobIds, true);
+
+        this.changeSequence = changeSequence;
+        this.executorSequence = executorSequence;
+        this.jobSequence = jobSequence;
+        this.executors = executors;
+        this.isJobReset = isJobReset;
+        this.jobs = jobs;
+        this.removedJobIds = removedJobIds;
+    }
+
+    /**
+     * Gets change sequence covered.
+     *
+     * @return Change sequence (to request next).
+     */
+    public synchronized long getChangeSequence() {
+
+        return this.changeSequence;
+    }
+
+    /**
+     * Gets executor sequence covered.
+     *
+     * @return Executor sequence (to request next).
+     */
+    public synchronized long getExecutorSequence() {
+
+        return this.executorSequence;
+    }
+
+    /**
+     * Gets all executors.
+     *
+     * @return All executors if changed, null otherwise.
+     */
+    public synchronized JobExecutorData[] getExecutors() {
+
+        return this.executors;
+    }
+
+    /**
+     * Gets job change sequence covered.
+     *
+     * @return Job change sequence (to request next).
+     */
+    public synchronized long getJobSequence() {
+
+        return this.jobSequence;
+    }
+
+    /**
+     * Gets changed jobs.
+     *
+     * @return Changed jobs (all jobs if reset).
+     */
+    public synchronized JobContentData[] getJobs() {
+
+        return this.jobs;
+    }
+
+    /**
+     * Gets removed job ids.
+     *
+     * @return Removed job ids.
+     */
+    public synchronized String[] getRemovedJobIds() {
+
+        return this.removedJobIds;
+    }
+
+    /**
+     * Gets if anything changed.
+     *
+     * @return True if executors or jobs changed, false otherwise.
+     */
+    public synchronized boolean isChanged() {
+
+        return (this.executors != null) || this.isJobReset
+                || (this.jobs.length > 0) || (this.removedJobIds.length > 0);
+    }
+
+    /**
+     * Gets if client must drop all jobs first.
+     *
+     * @return True if reset (jobs are all jobs), false otherwise.
+     */
+    public synchronized boolean isJobReset() {
+
+        return this.isJobReset;
+    }
+
+    @Override
+    public String toString() {
+
+        return "JobSnapshotData [changeSequence=" + this.changeSequence
+                + ", executorSequence=" + this.executorSequence
+                + ", jobSequence=" + this.jobSequence + ", executors="
+                + ((this.executors == null) ? "unchanged" : String.valueOf(this.executors.length))
+                + ", isJobReset=" + this.isJobReset + ", jobs="
+                + this.jobs.length + ", removedJobIds="
+                + this.removedJobIds.length + "]";
+    }
+}
@@ -0,0 +1,241 @@
+package com.opsysinc.scripting.shared;
+
+/**
+ * Job timing data (phase timestamps, as ns offsets from enqueue).
+ * <p/>
+ * Phases: queue (enqueued - dequeued), setup (dequeued - eval start; reset,
+ * output capture), eval (eval start - eval end; compile + eval), output
+ * (eval end - output drained; result toString(), output capture) and complete
+ * (output drained - completed).
+ *
+ * @author mkitchin
+ */
+public class JobTimingData extends AbstractJobData {
+
+    /**
+     * Default serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Enqueued time (ms since epoch).
+     */
+    private long enqueuedTime;
+
+    /**
+     * Dequeued offset (ns from enqueue).
+     */
+    private long dequeuedOffset;
+
+    /**
+     * Eval start offset (ns from enqueue).
+     */
+    private long evalStartOffset;
+
+    /**
+     * Eval end offset (ns from enqueue).
+     */
+    private long evalEndOffset;
+
+    /**
+     * Output drained offset (ns from enqueue).
+     */
+    private long outputDrainedOffset;
+
+    /**
+     * Completed offset (ns from enqueue).
+     */
+    private long completedOffset;
+
+    /**
+     * Basic ctor (GWT needs no-arg).
+     */
+    public JobTimingData() {
+    }
+
+    /**
+     * Basic ctor.
+     *
+     * @param enqueuedTime   Enqueued time (ms since epoch).
+     * @param dequeuedOffset Dequeued offset (ns from enqueue).
+     */
+    public JobTimingData(final long enqueuedTime, final long dequeuedOffset) {
+
+        this.enqueuedTime = enqueuedTime;
+        this.dequeuedOffset = dequeuedOffset;
+    }
+
+    /**
+     * Gets completed offset.
+     *
+     * @return Completed offset (ns from enqueue; 0L = not yet).
+     */
+    public synchronized long getCompletedOffset() {
+
+        return this.completedOffset;
+    }
+
+    /**
+     * Gets dequeued offset.
+     *
+     * @return Dequeued offset (ns from enqueue).
+     */
+    public synchronized long getDequeuedOffset() {
+
+        return this.dequeuedOffset;
+    }
+
+    /**
+     * Gets enqueued time.
+     *
+     * @return Enqueued time (ms since epoch).
+     */
+    public synchronized long getEnqueuedTime() {
+
+        return this.enqueuedTime;
+    }
+
+    /**
+     * Gets eval end offset.
+     *
+     * @return Eval end offset (ns from enqueue; 0L = not yet).
+     */
+    public synchronized long getEvalEndOffset() {
+
+        return this.evalEndOffset;
+    }
+
+    /**
+     * Gets eval start offset.
+     *
+     * @return Eval start offset (ns from enqueue; 0L = not yet).
+     */
+    public synchronized long getEvalStartOffset() {
+
+        return this.evalStartOffset;
+    }
+
+    /**
+     * Gets output drained offset.
+     *
+     * @return Output drained offset (ns from enqueue; 0L = not yet).
+     */
+    public synchronized long getOutputDrainedOffset() {
+
+        return this.outputDrainedOffset;
+    }
+
+    /**
+     * Gets phase time.
+     *
+     * @param phase Phase.
+     * @return Phase time (ns; 0L if phase not (yet) run).
+     */
+    public synchronized long getPhaseTime(final JobTimingPhase phase) {
+
+        JobDataUtils.checkNullObject(phase, true);
+
+        switch (phase) {
+
+            case queue:
+                return this.dequeuedOffset;
+
+            case setup:
+                return JobTimingData.getSpan(this.dequeuedOffset, this.evalStartOffset);
+
+            case eval:
+                return JobTimingData.getSpan(this.evalStartOffset, this.evalEndOffset);
+
+            case output:
+                return JobTimingData.getSpan(this.evalEndOffset, this.outputDrainedOffset);
+
+            case complete:
+                return JobTimingData.getSpan(this.outputDrainedOffset, this.completedOffset);
+
+            case total:
+                return this.completedOffset;
+
+            default:
+                throw new IllegalArgumentException("invalid input (phase)");
+        }
+    }
+
+    /**
+     * Gets span between offsets.
+     *
+     * @param fromOffset From offset.
+     * @param toOffset   To offset (0L = not yet).
+     * @return Span (ns; 0L if either end not yet reached).
+     */
+    private static long getSpan(final long fromOffset, final long toOffset) {
+
+        long result = 0L;
+
+        if (fromOffset > 0L && toOffset > 0L) {
+
+            result = (toOffset - fromOffset);
+        }
+
+        return result;
+    }
+
+    /**
+     * Sets completed offset.
+     *
+     * @param completedOffset Completed offset (ns from enqueue).
+     */
+    public synchronized void setCompletedOffset(final long completedOffset) {
+
+        this.completedOffset = completedOffset;
+        this.setModifiedTime(0L);
+    }
+
+    /**
+     * Sets eval end offset.
+     *
+     * @param evalEndOffset Eval end offset (ns from enqueue).
+     */
+    public synchronized void setEvalEndOffset(final long evalEndOffset) {
+
+        this.evalEndOffset = evalEndOffset;
+        this.setModifiedTime(0L);
+    }
+
+    /**
+     * Sets eval start offset.
+     *
+     * @param evalStartOffset Eval start offset (ns from enqueue).
+     */
+    public synchronized void setEvalStartOffset(final long evalStartOffset) {
+
+        this.evalStartOffset = evalStartOffset;
+        this.setModifiedTime(0L);
+    }
+
+    /**
+     * Sets output drained offset.
+     *
+     * @param outputDrainedOffset Output drained offset (ns from enqueue).
+     */
+    public synchronized void setOutputDrainedOffset(final long outputDrainedOffset) {
+
+        this.outputDrainedOffset = outputDrainedOffset;
+        this.setModifiedTime(0L);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+
+        return "JobTimingData [enqueuedTime=" + this.enqueuedTime
+                + ", dequeuedOffset=" + this.dequeuedOffset
+                + ", evalStartOffset=" + this.evalStartOffset
+                + ", evalEndOffset=" + this.evalEndOffset
+                + ", outputDrainedOffset=" + this.outputDrainedOffset
+                + ", completedOffset=" + this.completedOffset + "]";
+    }
+}
@@ -0,0 +1,31 @@
+package com.opsysinc.scripting.shared;
+
+/**
+ * Job timing phase.
+ *
+ * @author mkitchin
+ */
+public enum JobTimingPhase {
+
+    queue("Queue"), setup("Setup"), eval("Eval"), output("Output"), complete("Complete"), total("Total");
+
+    /**
+     * Basic ctor.
+     *
+     * @param phaseTitle Phase title.
+     */
+    private JobTimingPhase(final String phaseTitle) {
+
+        this.phaseTitle = phaseTitle;
+    }
+
+    /**
+     * Phase title.
+     */
+    private final String phaseTitle;
+
+    public String getPhaseTitle() {
+
+        return this.phaseTitle;
+    }
+}
@@ -0,0 +1,129 @@
+package com.opsysinc.scripting.shared;
+
+/**
+ * Job timing stats data (per executor phase totals/maxes, see JobTimingPhase).
+ *
+ * @author mkitchin
+ */
+public class JobTimingStatsData extends AbstractJobData {
+
+    /**
+     * Default serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Completed job count.
+     */
+    private long jobCount;
+
+    /**
+     * Phase total times (ns; by phase ordinal).
+     */
+    private long[] totalTimes;
+
+    /**
+     * Phase max times (ns; by phase ordinal).
+     */
+    private long[] maxTimes;
+
+    /**
+     * Basic ctor (GWT needs no-arg).
+     */
+    public JobTimingStatsData() {
+
+        this(0L, new long[JobTimingPhase.values().length],
+                new long[JobTimingPhase.values().length]);
+    }
+
+    /**
+     * Basic ctor.
+     *
+     * @param jobCount   Completed job count.
+     * @param totalTimes Phase total times (ns; by phase ordinal).
+     * @param maxTimes   Phase max times (ns; by phase ordinal).
+     */
+    public JobTimingStatsData(final long jobCount, final long[] totalTimes,
+                              final long[] maxTimes) {
+
+        JobDataUtils.checkNullObject(totalTimes, true);
+        JobDataUtils.checkNullObject(maxTimes, true);
+
+        this.jobCount = jobCount;
+        this.totalTimes = totalTimes;
+        this.maxTimes = maxTimes;
+    }
+
+    /**
+     * Gets phase average time.
+     *
+     * @param phase Phase.
+     * @return Average time (ns; 0L if no jobs).
+     */
+    public synchronized long getAverageTime(final JobTimingPhase phase) {
+
+        long result = 0L;
+
+        if (this.jobCount > 0L) {
+
+            result = (this.getTotalTime(phase) / this.jobCount);
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets completed job count.
+     *
+     * @return Completed job count.
+     */
+    public synchronized long getJobCount() {
+
+        return this.jobCount;
+    }
+
+    /**
+     * Gets phase max time.
+     *
+     * @param phase Phase.
+     * @return Max time (ns).
+     */
+    public synchronized long getMaxTime(final JobTimingPhase phase) {
+
+        JobDataUtils.checkNullObject(phase, true);
+        return this.maxTimes[phase.ordinal()];
+    }
+
+    /**
+     * Gets phase total time.
+     *
+     * @param phase Phase.
+     * @return Total time (ns).
+     */
+    public synchronized long getTotalTime(final JobTimingPhase phase) {
+
+        JobDataUtils.checkNullObject(phase, true);
+        return this.totalTimes[phase.ordinal()];
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+
+        final StringBuilder result = new StringBuilder("JobTimingStatsData [jobCount=")
+                .append(this.jobCount);
+
+        for (final JobTimingPhase phase : JobTimingPhase.values()) {
+
+            result.append(", ").append(phase).append("=")
+                    .append(this.getAverageTime(phase)).append("/")
+                    .append(this.getMaxTime(phase));
+        }
+
+        return result.append("]").toString();
+    }
+}
@@ -0,0 +1,137 @@
+package com.opsysinc.scripting.shared;
+
+/**
+ * Job variable data (name, type and estimated size; no value).
+ *
+ * @author mkitchin
+ */
+public class JobVariableData extends AbstractJobData {
+
+    /**
+     * Default serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Unknown length (not a container).
+     */
+    public static final int UNKNOWN_LENGTH = -1;
+
+    /**
+     * Variable name.
+     */
+    private String name;
+
+    /**
+     * Value type name (null if value is null).
+     */
+    private String typeName;
+
+    /**
+     * Value element count (-1 if not a container).
+     */
+    private int length;
+
+    /**
+     * Estimated (shallow) value size in bytes.
+     */
+    private long estimatedSize;
+
+    /**
+     * Basic ctor (GWT needs no-arg).
+     */
+    public JobVariableData() {
+
+        this.length = JobVariableData.UNKNOWN_LENGTH;
+    }
+
+    /**
+     * Basic ctor.
+     *
+     * @param name          Variable name.
+     * @param typeName      Value type name (null if value is null).
+     * @param length        Value element count (-1 if not a container).
+     * @param estimatedSize Estimated value size in bytes.
+     */
+    public JobVariableData(final String name, final String typeName,
+                           final int length, final long estimatedSize) {
+
+        JobDataUtils.checkEmptyString(name, true);
+
+        this.name = name;
+        this.typeName = typeName;
+        this.length = length;
+        this.estimatedSize = estimatedSize;
+    }
+
+    /**
+     * Gets estimated value size.
+     *
+     * @return Estimated value size in bytes.
+     */
+    public synchronized long getEstimatedSize() {
+
+        return this.estimatedSize;
+    }
+
+    /**
+     * Gets value element count.
+     *
+     * @return Element count (-1 if not a container).
+     */
+    public synchronized int getLength() {
+
+        return this.length;
+    }
+
+    /**
+     * Gets variable name.
+     *
+     * @return Variable name.
+     */
+    public synchronized String getName() {
+
+        return this.name;
+    }
+
+    /**
+     * Gets summary text (type, length, size).
+     *
+     * @return Summary text.
+     */
+    public synchronized String getSummaryText() {
+
+        if (this.typeName == null) {
+
+            return "null";
+        }
+
+        final StringBuilder result = new StringBuilder(this.typeName);
+
+        if (this.length != JobVariableData.UNKNOWN_LENGTH) {
+
+            result.append('[').append(this.length).append(']');
+        }
+
+        return result.append(" (~").append(this.estimatedSize)
+                .append(" bytes)").toString();
+    }
+
+    /**
+     * Gets value type name.
+     *
+     * @return Type name (null if value is null).
+     */
+    public synchronized String getTypeName() {
+
+        return this.typeName;
+    }
+
+    @Override
+    public String toString() {
+
+        return "JobVariableData [name=" + this.name + ", typeName="
+                + this.typeName + ", length=" + this.length
+                + ", estimatedSize=" + this.estimatedSize + "]";
+    }
+}
@@ -0,0 +1,135 @@
+package com.opsysinc.scripting.shared;
+
+/**
+ * Job variable value data (one page of a formatted variable value).
+ *
+ * @author mkitchin
+ */
+public class JobVariableValueData extends AbstractJobData {
+
+    /**
+     * Default serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Variable name.
+     */
+    private String name;
+
+    /**
+     * Start offset (chars).
+     */
+    private int startOffset;
+
+    /**
+     * End offset (chars; offset to request next).
+     */
+    private int endOffset;
+
+    /**
+     * Total formatted length (chars).
+     */
+    private int totalLength;
+
+    /**
+     * Value body (this page).
+     */
+    private String valueBody;
+
+    /**
+     * Basic ctor (GWT needs no-arg).
+     */
+    public JobVariableValueData() {
+    }
+
+    /**
+     * Basic ctor.
+     *
+     * @param name        Variable name.
+     * @param startOffset Start offset.
+     * @param endOffset   End offset.
+     * @param totalLength Total formatted length.
+     * @param valueBody   Value body (this page).
+     */
+    public JobVariableValueData(final String name, final int startOffset,
+                                final int endOffset, final int totalLength,
+                                final String valueBody) {
+
+        JobDataUtils.checkEmptyString(name, true);
+
+        this.name = name;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.totalLength = totalLength;
+        this.valueBody = valueBody;
+    }
+
+    /**
+     * Gets end offset.
+     *
+     * @return End offset (offset to request next).
+     */
+    public synchronized int getEndOffset() {
+
+        return this.endOffset;
+    }
+
+    /**
+     * Gets variable name.
+     *
+     * @return Variable name.
+     */
+    public synchronized String getName() {
+
+        return this.name;
+    }
+
+    /**
+     * Gets start offset.
+     *
+     * @return Start offset.
+     */
+    public synchronized int getStartOffset() {
+
+        return this.startOffset;
+    }
+
+    /**
+     * Gets total formatted length.
+     *
+     * @return Total length (chars).
+     */
+    public synchronized int getTotalLength() {
+
+        return this.totalLength;
+    }
+
+    /**
+     * Gets value body.
+     *
+     * @return Value body (this page).
+     */
+    public synchronized String getValueBody() {
+
+        return this.valueBody;
+    }
+
+    /**
+     * Gets if more pages follow.
+     *
+     * @return True if more pages, false otherwise.
+     */
+    public synchronized boolean isMore() {
+
+        return this.endOffset < this.totalLength;
+    }
+
+    @Override
+    public String toString() {
+
+        return "JobVariableValueData [name=" + this.name + ", startOffset="
+                + this.startOffset + ", endOffset=" + this.endOffset
+                + ", totalLength=" + this.totalLength + "]";
+    }
+}
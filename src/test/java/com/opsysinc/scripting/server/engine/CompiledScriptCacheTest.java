@@ -0,0 +1,123 @@
+package com.opsysinc.scripting.server.engine;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+
+/**
+ * Compiled script cache tests (LRU eviction, generation invalidation).
+ *
+ * @author mkitchin
+ */
+public class CompiledScriptCacheTest {
+
+    /**
+     * Builds compiled script (placeholder; never evaluated).
+     *
+     * @return Compiled script.
+     */
+    private static CompiledScript buildScript() {
+
+        return new CompiledScript() {
+
+            @Override
+            public Object eval(final ScriptContext context) {
+
+                return null;
+            }
+
+            @Override
+            public ScriptEngine getEngine() {
+
+                return null;
+            }
+        };
+    }
+
+    @Test
+    public void testHitAndMiss() {
+
+        final CompiledScriptCache cache = new CompiledScriptCache(4);
+        final CompiledScript script = CompiledScriptCacheTest.buildScript();
+        final String key = CompiledScriptCache.buildKey(0, "1+1");
+
+        Assert.assertNull(cache.get(key));
+        Assert.assertTrue(cache.put(key, script, cache.getGeneration()));
+
+        Assert.assertSame(script, cache.get(CompiledScriptCache.buildKey(0, "1+1")));
+        Assert.assertNull(cache.get(CompiledScriptCache.buildKey(1, "1+1")));
+        Assert.assertNull(cache.get(CompiledScriptCache.buildKey(0, "1+2")));
+
+        Assert.assertEquals(1L, cache.getHitCount());
+        Assert.assertEquals(3L, cache.getMissCount());
+        Assert.assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void testKeys() {
+
+        // per replica, per text; same text, same key
+        Assert.assertEquals(CompiledScriptCache.buildKey(0, "a"),
+                CompiledScriptCache.buildKey(0, "a"));
+        Assert.assertNotEquals(CompiledScriptCache.buildKey(0, "a"),
+                CompiledScriptCache.buildKey(1, "a"));
+        Assert.assertNotEquals(CompiledScriptCache.buildKey(0, "a"),
+                CompiledScriptCache.buildKey(0, "b"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+
+        final CompiledScriptCache cache = new CompiledScriptCache(2);
+        final long generation = cache.getGeneration();
+        final String keyA = CompiledScriptCache.buildKey(0, "a");
+        final String keyB = CompiledScriptCache.buildKey(0, "b");
+        final String keyC = CompiledScriptCache.buildKey(0, "c");
+
+        cache.put(keyA, CompiledScriptCacheTest.buildScript(), generation);
+        cache.put(keyB, CompiledScriptCacheTest.buildScript(), generation);
+
+        // touch "a", so "b" is eldest
+        Assert.assertNotNull(cache.get(keyA));
+        cache.put(keyC, CompiledScriptCacheTest.buildScript(), generation);
+
+        Assert.assertEquals(2, cache.getSize());
+        Assert.assertEquals(1L, cache.getEvictionCount());
+        Assert.assertNotNull(cache.get(keyA));
+        Assert.assertNull(cache.get(keyB));
+        Assert.assertNotNull(cache.get(keyC));
+    }
+
+    @Test
+    public void testInvalidateStartsNewGeneration() {
+
+        final CompiledScriptCache cache = new CompiledScriptCache(4);
+        final long generation = cache.getGeneration();
+        final String key = CompiledScriptCache.buildKey(0, "a");
+
+        cache.put(key, CompiledScriptCacheTest.buildScript(), generation);
+        cache.invalidate();
+
+        Assert.assertEquals(generation + 1L, cache.getGeneration());
+        Assert.assertEquals(0, cache.getSize());
+        Assert.assertNull(cache.get(key));
+
+        // compiled under the old engines
+        Assert.assertFalse(cache.put(key, CompiledScriptCacheTest.buildScript(),
+                generation));
+        Assert.assertEquals(0, cache.getSize());
+
+        Assert.assertTrue(cache.put(key, CompiledScriptCacheTest.buildScript(),
+                cache.getGeneration()));
+        Assert.assertEquals(1, cache.getSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxEntries() {
+
+        new CompiledScriptCache(0);
+    }
+}
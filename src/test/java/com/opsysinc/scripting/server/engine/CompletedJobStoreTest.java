@@ -0,0 +1,227 @@
+package com.opsysinc.scripting.server.engine;
+
+import com.opsysinc.scripting.shared.JobContentData;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Completed job store tests (retention limits, range queries, removal
+ * listener).
+ *
+ * @author mkitchin
+ */
+public class CompletedJobStoreTest {
+
+    /**
+     * Builds job.
+     *
+     * @param id           Job id.
+     * @param modifiedTime Modified time in ms.
+     * @return Job.
+     */
+    private static JobContentData buildJob(final String id, final long modifiedTime) {
+
+        final JobContentData result = new JobContentData("1+1", false);
+
+        result.setId(id);
+        result.setModifiedTime(modifiedTime);
+
+        return result;
+    }
+
+    /**
+     * Gets job ids (in order).
+     *
+     * @param jobs Jobs.
+     * @return Job ids.
+     */
+    private static List<String> getIds(final List<JobContentData> jobs) {
+
+        final List<String> result = new ArrayList<>();
+
+        for (final JobContentData item : jobs) {
+
+            result.add(item.getId());
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets all job ids (oldest first).
+     *
+     * @param store Store.
+     * @return Job ids.
+     */
+    private static List<String> getAllIds(final CompletedJobStore store) {
+
+        final List<JobContentData> jobs = new ArrayList<>();
+        store.getAll(jobs, false);
+
+        return CompletedJobStoreTest.getIds(jobs);
+    }
+
+    @Test
+    public void testCountLimit() {
+
+        final CompletedJobStore store = new CompletedJobStore(3, Long.MAX_VALUE, 0L);
+
+        for (int ctr = 1; ctr <= 5; ctr++) {
+
+            store.add(CompletedJobStoreTest.buildJob("job" + ctr, 1000L * ctr));
+        }
+
+        Assert.assertEquals(3, store.getSize());
+        Assert.assertEquals("[job3, job4, job5]",
+                CompletedJobStoreTest.getAllIds(store).toString());
+        Assert.assertNull(store.get("job2"));
+        Assert.assertEquals("job4", store.get("job4").getId());
+    }
+
+    @Test
+    public void testBytesLimit() {
+
+        // "1+1" request body: overhead + 2 bytes/char
+        final long jobBytes = CompletedJobStore.DEFAULT_JOB_OVERHEAD_BYTES + 6L;
+        final CompletedJobStore store = new CompletedJobStore(100, (2L * jobBytes) + 1L, 0L);
+
+        for (int ctr = 1; ctr <= 4; ctr++) {
+
+            store.add(CompletedJobStoreTest.buildJob("job" + ctr, 1000L * ctr));
+        }
+
+        Assert.assertEquals(2, store.getSize());
+        Assert.assertEquals(2L * jobBytes, store.getTotalBytes());
+        Assert.assertEquals("[job3, job4]", CompletedJobStoreTest.getAllIds(store).toString());
+    }
+
+    @Test
+    public void testReplaceKeepsOneCopy() {
+
+        final long jobBytes = CompletedJobStore.DEFAULT_JOB_OVERHEAD_BYTES + 6L;
+        final CompletedJobStore store = new CompletedJobStore(10, Long.MAX_VALUE, 0L);
+
+        store.add(CompletedJobStoreTest.buildJob("job1", 1000L));
+        store.add(CompletedJobStoreTest.buildJob("job2", 2000L));
+        store.add(CompletedJobStoreTest.buildJob("job1", 3000L));
+
+        Assert.assertEquals(2, store.getSize());
+        Assert.assertEquals(2L * jobBytes, store.getTotalBytes());
+        Assert.assertEquals("[job2, job1]", CompletedJobStoreTest.getAllIds(store).toString());
+    }
+
+    @Test
+    public void testAgeLimit() throws InterruptedException {
+
+        final CompletedJobStore store = new CompletedJobStore(10, Long.MAX_VALUE, 1000L);
+        final long nowInMS = System.currentTimeMillis();
+
+        // expired on add
+        store.add(CompletedJobStoreTest.buildJob("old", nowInMS - 5000L));
+        Assert.assertEquals(0, store.getSize());
+
+        // expires while stored (removed before reads)
+        store.add(CompletedJobStoreTest.buildJob("aging", nowInMS - 900L));
+        store.add(CompletedJobStoreTest.buildJob("new", nowInMS + 5000L));
+        Thread.sleep(200L);
+
+        Assert.assertEquals("[new]", CompletedJobStoreTest.getAllIds(store).toString());
+        Assert.assertEquals(1, store.getSize());
+    }
+
+    @Test
+    public void testFromTime() {
+
+        final CompletedJobStore store = new CompletedJobStore(10, Long.MAX_VALUE, 0L);
+
+        store.add(CompletedJobStoreTest.buildJob("job1", 100L));
+        store.add(CompletedJobStoreTest.buildJob("job2", 200L));
+        store.add(CompletedJobStoreTest.buildJob("job3a", 300L));
+        store.add(CompletedJobStoreTest.buildJob("job3b", 300L));
+        store.add(CompletedJobStoreTest.buildJob("job4", 400L));
+
+        final List<JobContentData> jobs = new ArrayList<>();
+
+        Assert.assertTrue(store.getFromTime(200L, 10, jobs, true));
+        Assert.assertEquals("[job3a, job3b, job4]",
+                CompletedJobStoreTest.getIds(jobs).toString());
+
+        // newest kept, oldest first
+        store.getFromTime(0L, 2, jobs, true);
+        Assert.assertEquals("[job3b, job4]", CompletedJobStoreTest.getIds(jobs).toString());
+
+        // equal times are all before a later read from that time
+        store.getFromTime(300L, 10, jobs, true);
+        Assert.assertEquals("[job4]", CompletedJobStoreTest.getIds(jobs).toString());
+
+        Assert.assertTrue(store.getFromTime(400L, 10, jobs, true));
+        Assert.assertTrue(jobs.isEmpty());
+        Assert.assertFalse(store.getFromTime(400L, 10, jobs, true));
+    }
+
+    @Test
+    public void testRemovalListener() throws InterruptedException {
+
+        final List<String> removedIds = new ArrayList<>();
+        final CompletedJobStore store = new CompletedJobStore(2, Long.MAX_VALUE, 0L,
+                new CompletedJobStore.RemovalListener() {
+
+                    @Override
+                    public void jobRemoved(final JobContentData contentData) {
+
+                        removedIds.add(contentData.getId());
+                    }
+                });
+
+        store.add(CompletedJobStoreTest.buildJob("job1", 1000L));
+        store.add(CompletedJobStoreTest.buildJob("job2", 2000L));
+        store.add(CompletedJobStoreTest.buildJob("job2", 2500L));
+        Assert.assertTrue(removedIds.isEmpty());
+
+        store.add(CompletedJobStoreTest.buildJob("job3", 3000L));
+        Assert.assertEquals("[job1]", removedIds.toString());
+
+        Assert.assertEquals("job2", store.removeFirst(false).getId());
+        Assert.assertEquals("[job1, job2]", removedIds.toString());
+
+        Assert.assertTrue(store.clear());
+        Assert.assertEquals("[job1, job2, job3]", removedIds.toString());
+        Assert.assertEquals(0L, store.getTotalBytes());
+        Assert.assertNull(store.removeFirst(false));
+    }
+
+    @Test
+    public void testRemovalListenerOutsideLock() throws InterruptedException {
+
+        // listeners signal change waiters, so must not hold up the store
+        final CompletedJobStore[] storeHolder = new CompletedJobStore[1];
+        final List<Boolean> lockStates = new ArrayList<>();
+
+        storeHolder[0] = new CompletedJobStore(1, Long.MAX_VALUE, 0L,
+                new CompletedJobStore.RemovalListener() {
+
+                    @Override
+                    public void jobRemoved(final JobContentData contentData) {
+
+                        lockStates.add(Thread.holdsLock(storeHolder[0]));
+                    }
+                });
+
+        storeHolder[0].add(CompletedJobStoreTest.buildJob("job1", 1000L));
+        storeHolder[0].add(CompletedJobStoreTest.buildJob("job2", 2000L));
+        Assert.assertEquals("job2", storeHolder[0].removeFirst(false).getId());
+        storeHolder[0].add(CompletedJobStoreTest.buildJob("job3", 3000L));
+        Assert.assertTrue(storeHolder[0].clear());
+
+        Assert.assertEquals("[false, false, false]", lockStates.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxCount() {
+
+        new CompletedJobStore(0, 1L, 0L);
+    }
+}
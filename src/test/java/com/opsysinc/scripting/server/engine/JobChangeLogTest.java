@@ -0,0 +1,128 @@
+package com.opsysinc.scripting.server.engine;
+
+import com.opsysinc.scripting.shared.JobExecutorData;
+import com.opsysinc.scripting.shared.JobExecutorType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Job change log tests (sequencing, dedup by job, trim resync).
+ *
+ * @author mkitchin
+ */
+public class JobChangeLogTest {
+
+    /**
+     * Executor data (records only carry it).
+     */
+    private final JobExecutorData executorData = new JobExecutorData("Test",
+            JobExecutorType.javascript_rhino);
+
+    /**
+     * Describes records (job id + kind, in order).
+     *
+     * @param records Change records.
+     * @return Description.
+     */
+    private static String describe(final List<JobChangeLog.ChangeRecord> records) {
+
+        final List<String> result = new ArrayList<>();
+
+        for (final JobChangeLog.ChangeRecord item : records) {
+
+            result.add(item.getJobId() + ":" + item.getChangeKind());
+        }
+
+        return result.toString();
+    }
+
+    @Test
+    public void testSequencing() {
+
+        final JobChangeLog changeLog = new JobChangeLog(10);
+        final List<JobChangeLog.ChangeRecord> records = new ArrayList<>();
+
+        Assert.assertEquals(0L, changeLog.getSequence());
+        Assert.assertEquals(1L, changeLog.add(this.executorData, "job1",
+                JobChangeLog.ChangeKind.changed));
+        Assert.assertEquals(2L, changeLog.add(this.executorData, "job2",
+                JobChangeLog.ChangeKind.changed));
+        Assert.assertEquals(3L, changeLog.add(this.executorData, "job3",
+                JobChangeLog.ChangeKind.removed));
+        Assert.assertEquals(3L, changeLog.getSequence());
+
+        Assert.assertFalse(changeLog.getFromSequence(1L, 3L, records, true));
+        Assert.assertEquals("[job2:changed, job3:removed]",
+                JobChangeLogTest.describe(records));
+        Assert.assertEquals(2L, records.get(0).getSequence());
+        Assert.assertSame(this.executorData, records.get(0).getExecutorData());
+
+        // up to a given sequence only
+        Assert.assertFalse(changeLog.getFromSequence(1L, 2L, records, true));
+        Assert.assertEquals("[job2:changed]", JobChangeLogTest.describe(records));
+
+        // nothing new
+        Assert.assertFalse(changeLog.getFromSequence(3L, 3L, records, true));
+        Assert.assertTrue(records.isEmpty());
+    }
+
+    @Test
+    public void testDedupKeepsLatestChange() {
+
+        final JobChangeLog changeLog = new JobChangeLog(10);
+        final List<JobChangeLog.ChangeRecord> records = new ArrayList<>();
+
+        changeLog.add(this.executorData, "job1", JobChangeLog.ChangeKind.changed);
+        changeLog.add(this.executorData, "job2", JobChangeLog.ChangeKind.changed);
+        changeLog.add(this.executorData, "job1", JobChangeLog.ChangeKind.changed);
+        changeLog.add(this.executorData, "job2", JobChangeLog.ChangeKind.removed);
+
+        Assert.assertEquals(2, changeLog.getSize());
+        Assert.assertFalse(changeLog.getFromSequence(1L, changeLog.getSequence(),
+                records, true));
+        Assert.assertEquals("[job1:changed, job2:removed]",
+                JobChangeLogTest.describe(records));
+
+        // dedup isn't trimming, so old readers needn't resync
+        Assert.assertEquals(0L, changeLog.getTrimmedSequence());
+    }
+
+    @Test
+    public void testResync() {
+
+        final JobChangeLog changeLog = new JobChangeLog(2);
+        final List<JobChangeLog.ChangeRecord> records = new ArrayList<>();
+
+        // nothing seen yet
+        Assert.assertTrue(changeLog.getFromSequence(0L, 0L, records, true));
+
+        for (int ctr = 1; ctr <= 4; ctr++) {
+
+            changeLog.add(this.executorData, "job" + ctr, JobChangeLog.ChangeKind.changed);
+        }
+
+        Assert.assertEquals(2, changeLog.getSize());
+        Assert.assertEquals(2L, changeLog.getTrimmedSequence());
+
+        // missed trimmed changes
+        Assert.assertTrue(changeLog.getFromSequence(1L, 4L, records, true));
+        Assert.assertTrue(records.isEmpty());
+
+        // saw everything trimmed
+        Assert.assertFalse(changeLog.getFromSequence(2L, 4L, records, true));
+        Assert.assertEquals("[job3:changed, job4:changed]",
+                JobChangeLogTest.describe(records));
+
+        // past last sequence (e.g., server restart)
+        Assert.assertTrue(changeLog.getFromSequence(10L, 4L, records, true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxSize() {
+
+        new JobChangeLog(0);
+    }
+}
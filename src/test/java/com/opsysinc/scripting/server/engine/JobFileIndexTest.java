@@ -0,0 +1,264 @@
+package com.opsysinc.scripting.server.engine;
+
+import com.opsysinc.scripting.shared.JobExecutorData;
+import com.opsysinc.scripting.shared.JobExecutorType;
+import com.opsysinc.scripting.shared.JobFileData;
+import com.opsysinc.scripting.shared.JobFileSortOrder;
+import com.opsysinc.scripting.shared.JobFilesData;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Job file index tests (listings, deltas, tombstone expiry). The index isn't
+ * started, so each read rescans and results don't wait on the watch
+ * service.
+ *
+ * @author mkitchin
+ */
+public class JobFileIndexTest {
+
+    /**
+     * Executor data.
+     */
+    private final JobExecutorData executorData = new JobExecutorData("Test",
+            JobExecutorType.javascript_rhino);
+
+    /**
+     * File area.
+     */
+    private File fileBase;
+
+    /**
+     * Deletes file or folder tree.
+     *
+     * @param file File or folder.
+     */
+    private static void deleteTree(final File file) {
+
+        final File[] children = file.listFiles();
+
+        if (children != null) {
+
+            for (final File item : children) {
+
+                JobFileIndexTest.deleteTree(item);
+            }
+        }
+
+        if (!file.delete()) {
+
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Gets file ids (in order).
+     *
+     * @param filesData Files data.
+     * @return File ids.
+     */
+    private static List<String> getIds(final JobFilesData filesData) {
+
+        final List<String> result = new ArrayList<>();
+
+        for (final JobFileData item : filesData.getFiles()) {
+
+            result.add(item.getId());
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes file text.
+     *
+     * @param filePath File path (w/in file area).
+     * @param text     File text.
+     * @throws IOException I/O exception.
+     */
+    private void writeFile(final String filePath, final String text) throws IOException {
+
+        Files.write(new File(this.fileBase, filePath).toPath(),
+                text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Before
+    public void setUp() throws IOException {
+
+        this.fileBase = Files.createTempDirectory("files").toFile();
+
+        this.writeFile("a.txt", "aaa");
+        this.writeFile("b.txt", "b");
+        Assert.assertTrue(new File(this.fileBase, "sub").mkdir());
+        this.writeFile("sub/c.txt", "cc");
+    }
+
+    @After
+    public void tearDown() {
+
+        JobFileIndexTest.deleteTree(this.fileBase);
+    }
+
+    @Test
+    public void testListing() throws IOException {
+
+        final JobFileIndex fileIndex = new JobFileIndex(this.executorData, this.fileBase);
+        final JobFilesData rootData = fileIndex.getFiles("", 0L, 0, 100,
+                JobFileSortOrder.name, false);
+
+        Assert.assertFalse(rootData.isDelta());
+        Assert.assertEquals(3, rootData.getTotalCount());
+        Assert.assertEquals("[a.txt, b.txt, sub]", JobFileIndexTest.getIds(rootData).toString());
+        Assert.assertEquals(fileIndex.getVersion(), rootData.getVersion());
+
+        // by size, largest first (folders are -1), one per page
+        final JobFilesData pageData = fileIndex.getFiles("./", 0L, 1, 1,
+                JobFileSortOrder.size, true);
+
+        Assert.assertEquals(1, pageData.getFromIndex());
+        Assert.assertEquals("[b.txt]", JobFileIndexTest.getIds(pageData).toString());
+
+        final JobFilesData subData = fileIndex.getFiles("sub/", 0L, 0, 100,
+                JobFileSortOrder.name, false);
+
+        Assert.assertEquals("[sub/c.txt]", JobFileIndexTest.getIds(subData).toString());
+        Assert.assertEquals(2L, subData.getFiles()[0].getSize());
+    }
+
+    @Test
+    public void testDeltas() throws IOException {
+
+        final JobFileIndex fileIndex = new JobFileIndex(this.executorData, this.fileBase);
+        final long fromVersion = fileIndex.getFiles("", 0L, 0, 100,
+                JobFileSortOrder.name, false).getVersion();
+
+        // unchanged
+        final JobFilesData sameData = fileIndex.getFiles("", fromVersion, 0, 100,
+                JobFileSortOrder.name, false);
+
+        Assert.assertTrue(sameData.isDelta());
+        Assert.assertEquals(fromVersion, sameData.getVersion());
+        Assert.assertEquals(0, sameData.getFiles().length);
+        Assert.assertEquals(0, sameData.getRemovedIds().length);
+
+        this.writeFile("a.txt", "aaaaaa");
+        this.writeFile("d.txt", "d");
+        this.writeFile("sub/e.txt", "e");
+        Assert.assertTrue(new File(this.fileBase, "b.txt").delete());
+
+        // folder modified time may not tick w/in the same ms
+        Assert.assertTrue(new File(this.fileBase, "sub").setLastModified(1000L));
+
+        final JobFilesData deltaData = fileIndex.getFiles("", fromVersion, 0, 100,
+                JobFileSortOrder.name, false);
+
+        Assert.assertTrue(deltaData.isDelta());
+        Assert.assertTrue(deltaData.getVersion() > fromVersion);
+        Assert.assertEquals(3, deltaData.getTotalCount());
+        Assert.assertEquals("[a.txt, d.txt, sub]", JobFileIndexTest.getIds(deltaData).toString());
+        Assert.assertEquals(6L, deltaData.getFiles()[0].getSize());
+        Assert.assertEquals("[b.txt]", Arrays.toString(deltaData.getRemovedIds()));
+
+        // other folders' changes aren't included
+        Assert.assertEquals("[sub/e.txt]", JobFileIndexTest.getIds(fileIndex.getFiles("sub",
+                fromVersion, 0, 100, JobFileSortOrder.name, false)).toString());
+
+        // re-created file clears its tombstone
+        this.writeFile("b.txt", "b");
+
+        final JobFilesData againData = fileIndex.getFiles("", fromVersion, 0, 100,
+                JobFileSortOrder.name, false);
+
+        Assert.assertEquals("[a.txt, b.txt, d.txt, sub]",
+                JobFileIndexTest.getIds(againData).toString());
+        Assert.assertEquals(0, againData.getRemovedIds().length);
+    }
+
+    @Test
+    public void testRemovedFolder() throws IOException {
+
+        final JobFileIndex fileIndex = new JobFileIndex(this.executorData, this.fileBase);
+        final long fromVersion = fileIndex.getFiles("", 0L, 0, 100,
+                JobFileSortOrder.name, false).getVersion();
+
+        JobFileIndexTest.deleteTree(new File(this.fileBase, "sub"));
+
+        Assert.assertEquals("[sub]", Arrays.toString(fileIndex.getFiles("", fromVersion, 0, 100,
+                JobFileSortOrder.name, false).getRemovedIds()));
+        Assert.assertEquals("[sub/c.txt]", Arrays.toString(fileIndex.getFiles("sub", fromVersion,
+                0, 100, JobFileSortOrder.name, false).getRemovedIds()));
+    }
+
+    @Test
+    public void testListingInsteadOfDelta() throws IOException {
+
+        final JobFileIndex fileIndex = new JobFileIndex(this.executorData, this.fileBase);
+        final long fromVersion = fileIndex.getFiles("", 0L, 0, 100,
+                JobFileSortOrder.name, false).getVersion();
+
+        this.writeFile("d.txt", "d");
+        this.writeFile("e.txt", "e");
+
+        // too many changes for one page
+        Assert.assertFalse(fileIndex.getFiles("", fromVersion, 0, 1,
+                JobFileSortOrder.name, false).isDelta());
+
+        // unknown (newer) version, e.g., after restart
+        Assert.assertFalse(fileIndex.getFiles("", fromVersion + 100L, 0, 100,
+                JobFileSortOrder.name, false).isDelta());
+    }
+
+    @Test
+    public void testTombstoneExpiry() throws IOException {
+
+        final JobFileIndex fileIndex = new JobFileIndex(this.executorData, this.fileBase, 2);
+        final long fromVersion = fileIndex.getFiles("", 0L, 0, 100,
+                JobFileSortOrder.name, false).getVersion();
+
+        this.writeFile("d.txt", "d");
+        this.writeFile("e.txt", "e");
+
+        final long addedVersion = fileIndex.getFiles("", 0L, 0, 100,
+                JobFileSortOrder.name, false).getVersion();
+
+        Assert.assertTrue(new File(this.fileBase, "a.txt").delete());
+
+        final long firstRemovedVersion = fileIndex.getFiles("", 0L, 0, 100,
+                JobFileSortOrder.name, false).getVersion();
+
+        Assert.assertTrue(new File(this.fileBase, "b.txt").delete());
+        Assert.assertTrue(new File(this.fileBase, "d.txt").delete());
+
+        // a.txt's tombstone dropped: older readers get a listing
+        final JobFilesData oldData = fileIndex.getFiles("", fromVersion, 0, 100,
+                JobFileSortOrder.name, false);
+
+        Assert.assertFalse(oldData.isDelta());
+        Assert.assertEquals("[e.txt, sub]", JobFileIndexTest.getIds(oldData).toString());
+        Assert.assertFalse(fileIndex.getFiles("", addedVersion, 0, 100,
+                JobFileSortOrder.name, false).isDelta());
+
+        // readers that saw the dropped removal still get deltas
+        final JobFilesData deltaData = fileIndex.getFiles("", firstRemovedVersion, 0, 100,
+                JobFileSortOrder.name, false);
+
+        Assert.assertTrue(deltaData.isDelta());
+        Assert.assertEquals("[b.txt, d.txt]", Arrays.toString(deltaData.getRemovedIds()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxRemovedEntries() throws IOException {
+
+        new JobFileIndex(this.executorData, this.fileBase, 0);
+    }
+}
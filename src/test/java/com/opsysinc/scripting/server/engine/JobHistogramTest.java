@@ -0,0 +1,139 @@
+package com.opsysinc.scripting.server.engine;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Job histogram tests (bucket bounds, percentiles).
+ *
+ * @author mkitchin
+ */
+public class JobHistogramTest {
+
+    /**
+     * Checks bucket of value (contains it, is within precision, and is
+     * contiguous w/the next bucket).
+     *
+     * @param value Value.
+     */
+    private static void checkBucket(final long value) {
+
+        final int index = JobHistogram.getBucketIndex(value);
+        final long highValue = JobHistogram.getBucketValue(index);
+
+        Assert.assertTrue("bucket below value: " + value, highValue >= value);
+        Assert.assertTrue("bucket too wide: " + value,
+                (highValue - value) <= (value / JobHistogram.DEFAULT_SUB_BUCKET_COUNT));
+        Assert.assertEquals(index, JobHistogram.getBucketIndex(highValue));
+
+        if (highValue < Long.MAX_VALUE) {
+
+            Assert.assertEquals(index + 1, JobHistogram.getBucketIndex(highValue + 1L));
+        }
+    }
+
+    @Test
+    public void testBuckets() {
+
+        // exact below sub-bucket count
+        for (int ctr = 0; ctr < JobHistogram.DEFAULT_SUB_BUCKET_COUNT; ctr++) {
+
+            Assert.assertEquals(ctr, JobHistogram.getBucketIndex(ctr));
+            Assert.assertEquals(ctr, JobHistogram.getBucketValue(ctr));
+        }
+
+        // first power of 2 past that is still exact, next one pairs values
+        Assert.assertEquals(32L, JobHistogram.getBucketValue(JobHistogram.getBucketIndex(32L)));
+        Assert.assertEquals(63L, JobHistogram.getBucketValue(JobHistogram.getBucketIndex(63L)));
+        Assert.assertEquals(65L, JobHistogram.getBucketValue(JobHistogram.getBucketIndex(64L)));
+
+        Assert.assertEquals(JobHistogram.DEFAULT_BUCKET_COUNT - 1,
+                JobHistogram.getBucketIndex(Long.MAX_VALUE));
+        Assert.assertEquals(Long.MAX_VALUE,
+                JobHistogram.getBucketValue(JobHistogram.DEFAULT_BUCKET_COUNT - 1));
+
+        for (int ctr = 0; ctr < 63; ctr++) {
+
+            JobHistogramTest.checkBucket(1L << ctr);
+            JobHistogramTest.checkBucket((1L << ctr) - 1L);
+            JobHistogramTest.checkBucket((1L << ctr) + 1L);
+        }
+
+        final Random random = new Random(42L);
+
+        for (int ctr = 0; ctr < 10000; ctr++) {
+
+            JobHistogramTest.checkBucket((random.nextLong() >>> 1) >>> random.nextInt(63));
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+
+        final JobHistogram histogram = new JobHistogram();
+
+        Assert.assertEquals(0L, histogram.getValueAtPercentile(50.0));
+
+        for (int ctr = 1; ctr <= 100; ctr++) {
+
+            histogram.recordValue(ctr);
+        }
+
+        Assert.assertEquals(100L, histogram.getCount());
+        Assert.assertEquals(5050L, histogram.getSum());
+        Assert.assertEquals(100L, histogram.getMax());
+
+        // nearest rank; 1-63 exact, then 2-value buckets (high value)
+        Assert.assertEquals(1L, histogram.getValueAtPercentile(0.0));
+        Assert.assertEquals(1L, histogram.getValueAtPercentile(1.0));
+        Assert.assertEquals(50L, histogram.getValueAtPercentile(50.0));
+        Assert.assertEquals(51L, histogram.getValueAtPercentile(50.5));
+        Assert.assertEquals(91L, histogram.getValueAtPercentile(90.0));
+        Assert.assertEquals(99L, histogram.getValueAtPercentile(99.0));
+
+        // capped at max
+        Assert.assertEquals(100L, histogram.getValueAtPercentile(100.0));
+    }
+
+    @Test
+    public void testLargeValues() {
+
+        final JobHistogram histogram = new JobHistogram();
+
+        histogram.recordValue(1000000L);
+        histogram.recordValue(1000000000L);
+
+        final long lowValue = histogram.getValueAtPercentile(50.0);
+
+        Assert.assertTrue(lowValue >= 1000000L);
+        Assert.assertTrue(lowValue <= (1000000L + (1000000L / JobHistogram.DEFAULT_SUB_BUCKET_COUNT)));
+        Assert.assertEquals(1000000000L, histogram.getValueAtPercentile(99.9));
+    }
+
+    @Test
+    public void testNegativeAndReset() {
+
+        final JobHistogram histogram = new JobHistogram();
+
+        histogram.recordValue(-5L);
+
+        Assert.assertEquals(1L, histogram.getCount());
+        Assert.assertEquals(0L, histogram.getSum());
+        Assert.assertEquals(0L, histogram.getValueAtPercentile(100.0));
+
+        histogram.recordValue(10L);
+        histogram.reset();
+
+        Assert.assertEquals(0L, histogram.getCount());
+        Assert.assertEquals(0L, histogram.getMax());
+        Assert.assertEquals(0L, histogram.getValueAtPercentile(100.0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+
+        new JobHistogram().getValueAtPercentile(100.5);
+    }
+}
@@ -0,0 +1,244 @@
+package com.opsysinc.scripting.server.engine;
+
+import com.opsysinc.scripting.shared.JobOutputChunkData;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Job output buffer tests (head/tail retention, spill file and limit, UTF-8
+ * chunk boundaries).
+ *
+ * @author mkitchin
+ */
+public class JobOutputBufferTest {
+
+    /**
+     * Builds repeated text.
+     *
+     * @param ch    Character.
+     * @param count Repeat count.
+     * @return Text.
+     */
+    private static String repeat(final char ch, final int count) {
+
+        final char[] result = new char[count];
+        Arrays.fill(result, ch);
+
+        return new String(result);
+    }
+
+    /**
+     * Writes text (UTF-8).
+     *
+     * @param outputBuffer Output buffer.
+     * @param text         Text.
+     */
+    private static void write(final JobOutputBuffer outputBuffer, final String text) {
+
+        final byte[] bytes = text.getBytes(JobOutputBuffer.DEFAULT_CHARSET);
+        outputBuffer.write(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void testSmallOutputKeptWhole() {
+
+        final JobOutputBuffer outputBuffer = new JobOutputBuffer(16, 8192, null);
+        JobOutputBufferTest.write(outputBuffer, "hello, ");
+        JobOutputBufferTest.write(outputBuffer, "world");
+
+        Assert.assertEquals(12L, outputBuffer.getEndOffset());
+        Assert.assertEquals(0L, outputBuffer.getDroppedLength());
+        Assert.assertEquals("hello, world", outputBuffer.toString());
+
+        final JobOutputChunkData chunkData = outputBuffer.readChunk(7L, 100);
+
+        Assert.assertEquals(7L, chunkData.getStartOffset());
+        Assert.assertEquals(12L, chunkData.getEndOffset());
+        Assert.assertEquals("world", chunkData.getOutputBody());
+    }
+
+    @Test
+    public void testHeadAndTailRetained() {
+
+        final JobOutputBuffer outputBuffer = new JobOutputBuffer(16, 8192, null);
+        final String headText = JobOutputBufferTest.repeat('h', 16);
+        final String tailText = JobOutputBufferTest.repeat('t', 100);
+
+        JobOutputBufferTest.write(outputBuffer, headText);
+        JobOutputBufferTest.write(outputBuffer, JobOutputBufferTest.repeat('m', 2 * 8192));
+        JobOutputBufferTest.write(outputBuffer, tailText);
+
+        // one tail chunk retained (starts on a chunk boundary past the head)
+        final long tailOffset = 16L + (2L * 8192L);
+
+        Assert.assertEquals(tailOffset + 100L, outputBuffer.getEndOffset());
+        Assert.assertEquals(tailOffset - 16L, outputBuffer.getDroppedLength());
+        Assert.assertEquals(headText + "\n[... " + (tailOffset - 16L)
+                + " bytes omitted ...]\n" + tailText, outputBuffer.toString());
+
+        // head reads stop at the gap
+        final JobOutputChunkData headData = outputBuffer.readChunk(0L, 1000);
+
+        Assert.assertEquals(0L, headData.getStartOffset());
+        Assert.assertEquals(headText, headData.getOutputBody());
+
+        // dropped offsets skip to the tail
+        final JobOutputChunkData tailData = outputBuffer.readChunk(20L, 1000);
+
+        Assert.assertEquals(tailOffset, tailData.getStartOffset());
+        Assert.assertEquals(tailOffset + 100L, tailData.getEndOffset());
+        Assert.assertEquals(tailText, tailData.getOutputBody());
+    }
+
+    @Test
+    public void testSingleByteWritesMatchArrayWrites() {
+
+        final JobOutputBuffer arrayBuffer = new JobOutputBuffer(100, 8192, null);
+        final JobOutputBuffer byteBuffer = new JobOutputBuffer(100, 8192, null);
+        final byte[] bytes = new byte[3 * 8192];
+
+        for (int ctr = 0; ctr < bytes.length; ctr++) {
+
+            bytes[ctr] = (byte) ('a' + (ctr % 26));
+        }
+
+        arrayBuffer.write(bytes, 0, bytes.length);
+
+        for (final byte item : bytes) {
+
+            byteBuffer.write(item);
+        }
+
+        Assert.assertEquals(arrayBuffer.getEndOffset(), byteBuffer.getEndOffset());
+        Assert.assertEquals(arrayBuffer.getDroppedLength(), byteBuffer.getDroppedLength());
+        Assert.assertEquals(arrayBuffer.toString(), byteBuffer.toString());
+    }
+
+    @Test
+    public void testMultiByteCharsKeptWhole() {
+
+        // 2-byte chars, no head
+        final JobOutputBuffer outputBuffer = new JobOutputBuffer(0, 65536, null);
+        JobOutputBufferTest.write(outputBuffer, "\u00e9\u00e9\u00e9");
+
+        final JobOutputChunkData endData = outputBuffer.readChunk(0L, 3);
+
+        Assert.assertEquals(2L, endData.getEndOffset());
+        Assert.assertEquals("\u00e9", endData.getOutputBody());
+
+        final JobOutputChunkData startData = outputBuffer.readChunk(1L, 10);
+
+        Assert.assertEquals(2L, startData.getStartOffset());
+        Assert.assertEquals("\u00e9\u00e9", startData.getOutputBody());
+    }
+
+    @Test
+    public void testMultiByteCharAcrossChunks() {
+
+        final JobOutputBuffer outputBuffer = new JobOutputBuffer(0, 65536, null);
+        final int charOffset = JobOutputBuffer.DEFAULT_CHUNK_SIZE - 1;
+
+        JobOutputBufferTest.write(outputBuffer, JobOutputBufferTest.repeat('a', charOffset));
+        JobOutputBufferTest.write(outputBuffer, "\u00e9b");
+
+        Assert.assertEquals("", outputBuffer.readChunk(charOffset, 1).getOutputBody());
+        Assert.assertEquals("\u00e9", outputBuffer.readChunk(charOffset, 2).getOutputBody());
+        Assert.assertEquals("\u00e9b", outputBuffer.readChunk(charOffset, 10).getOutputBody());
+        Assert.assertEquals(JobOutputBufferTest.repeat('a', charOffset) + "\u00e9b",
+                outputBuffer.toString());
+    }
+
+    @Test
+    public void testSpillKeepsFullOutput() throws IOException {
+
+        final File spillFile = File.createTempFile("output", ".log");
+
+        try {
+
+            final JobOutputBuffer outputBuffer = new JobOutputBuffer(16, 8192, spillFile);
+            final StringBuilder text = new StringBuilder();
+
+            for (int ctr = 0; ctr < 5000; ctr++) {
+
+                text.append("line ").append(ctr).append('\n');
+            }
+
+            JobOutputBufferTest.write(outputBuffer, text.toString());
+            outputBuffer.close();
+
+            Assert.assertTrue(outputBuffer.getDroppedLength() > 0L);
+            Assert.assertEquals(spillFile, outputBuffer.getSpillFile());
+            Assert.assertEquals(text.toString(), new String(Files.readAllBytes(
+                    spillFile.toPath()), JobOutputBuffer.DEFAULT_CHARSET));
+
+        } finally {
+
+            Files.deleteIfExists(spillFile.toPath());
+        }
+    }
+
+    @Test
+    public void testSpillLimit() throws IOException {
+
+        final File spillFile = File.createTempFile("output", ".log");
+
+        try {
+
+            final JobOutputBuffer outputBuffer = new JobOutputBuffer(16, 8192, spillFile, 10L);
+
+            JobOutputBufferTest.write(outputBuffer, "abcdef");
+            outputBuffer.write('g');
+            JobOutputBufferTest.write(outputBuffer, "hijkl");
+            outputBuffer.write('m');
+            outputBuffer.close();
+
+            // memory isn't limited by the spill
+            Assert.assertEquals("abcdefghijklm", outputBuffer.toString());
+            Assert.assertEquals("abcdefghij" + JobOutputBuffer.DEFAULT_SPILL_TRUNCATED_TEXT,
+                    new String(Files.readAllBytes(spillFile.toPath()),
+                            JobOutputBuffer.DEFAULT_CHARSET));
+
+            // exactly at the limit isn't truncated
+            final JobOutputBuffer fullBuffer = new JobOutputBuffer(16, 8192, spillFile, 3L);
+
+            fullBuffer.write('a');
+            JobOutputBufferTest.write(fullBuffer, "bc");
+            fullBuffer.close();
+
+            Assert.assertEquals("abc", new String(Files.readAllBytes(spillFile.toPath()),
+                    JobOutputBuffer.DEFAULT_CHARSET));
+
+        } finally {
+
+            Files.deleteIfExists(spillFile.toPath());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxSpillBytes() {
+
+        new JobOutputBuffer(16, 8192, null, 0L);
+    }
+
+    @Test
+    public void testResetForReuse() {
+
+        final JobOutputBuffer outputBuffer = new JobOutputBuffer(16, 8192, null);
+
+        JobOutputBufferTest.write(outputBuffer, JobOutputBufferTest.repeat('x', 20000));
+        outputBuffer.reset();
+
+        Assert.assertEquals(0L, outputBuffer.getEndOffset());
+        Assert.assertEquals("", outputBuffer.toString());
+
+        JobOutputBufferTest.write(outputBuffer, "again");
+
+        Assert.assertEquals("again", outputBuffer.toString());
+        Assert.assertEquals("again", outputBuffer.readChunk(0L, 100).getOutputBody());
+    }
+}
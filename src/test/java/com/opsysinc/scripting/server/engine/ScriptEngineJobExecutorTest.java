@@ -0,0 +1,570 @@
+package com.opsysinc.scripting.server.engine;
+
+import com.opsysinc.scripting.shared.JobContentData;
+import com.opsysinc.scripting.shared.JobDataFormat;
+import com.opsysinc.scripting.shared.JobExecutorData;
+import com.opsysinc.scripting.shared.JobExecutorType;
+import com.opsysinc.scripting.shared.JobOutputChunkData;
+import com.opsysinc.scripting.shared.JobState;
+import com.opsysinc.scripting.shared.JobTimingData;
+import com.opsysinc.scripting.shared.JobTimingPhase;
+import com.opsysinc.scripting.shared.JobTimingStatsData;
+import com.opsysinc.scripting.shared.JobStatus;
+import com.opsysinc.scripting.shared.JobVariableData;
+import com.opsysinc.scripting.shared.JobVariableValueData;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import java.io.File;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Script engine executor tests (dispatch, wakeup and order, queue wait,
+ * phase timings, pooled replicas, resize, baseline reset, context and streaming output,
+ * variable paging, spill files), run against the JDK's JavaScript engine.
+ *
+ * @author mkitchin
+ */
+public class ScriptEngineJobExecutorTest {
+
+    /**
+     * Max wait for a job (ms).
+     */
+    private static final long DEFAULT_JOB_WAIT_MS = 10000L;
+
+    /**
+     * Job manager (no default executors).
+     */
+    private BasicJobManager jobManager;
+
+    /**
+     * Adds executor.
+     *
+     * @param replicaCount Replica count (pooled if > 1).
+     * @return Executor.
+     */
+    private JobExecutor addExecutor(final int replicaCount) {
+
+        final JobExecutorData executorData = new JobExecutorData("Test",
+                JobExecutorType.javascript_rhino);
+
+        executorData.setPooled(replicaCount > 1);
+        executorData.setReplicaCount(replicaCount);
+
+        return this.jobManager.addExecutorInstance(executorData);
+    }
+
+    /**
+     * Adds executor w/output spilled to files.
+     *
+     * @param completedJobCount Completed jobs retained.
+     * @return Executor.
+     */
+    private JobExecutor addSpilledExecutor(final int completedJobCount) {
+
+        final JobExecutorData executorData = new JobExecutorData("Test",
+                JobExecutorType.javascript_rhino);
+
+        executorData.setOutputSpilled(true);
+        executorData.setCompletedJobCount(completedJobCount);
+
+        return this.jobManager.addExecutorInstance(executorData);
+    }
+
+    /**
+     * Submits job.
+     *
+     * @param executor   Executor.
+     * @param scriptText Script text.
+     * @param isReset    True to reset prior to exec, false otherwise.
+     * @return Submitted job.
+     */
+    private JobContentData submit(final JobExecutor executor,
+                                  final String scriptText, final boolean isReset) {
+
+        final JobContentData contentData = new JobContentData(scriptText, isReset);
+
+        contentData.setExecutorData(executor.getExecutorData());
+
+        return this.jobManager.submitJob(contentData);
+    }
+
+    /**
+     * Waits for job to complete (fails after DEFAULT_JOB_WAIT_MS).
+     *
+     * @param contentData Job.
+     * @return Job response text.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    private static String waitFor(final JobContentData contentData)
+            throws InterruptedException {
+
+        final long endAt = System.currentTimeMillis()
+                + ScriptEngineJobExecutorTest.DEFAULT_JOB_WAIT_MS;
+
+        while (contentData.getState() != JobState.completed) {
+
+            Assert.assertTrue("job timed out: " + contentData,
+                    System.currentTimeMillis() < endAt);
+            Thread.sleep(10L);
+        }
+
+        return contentData.getResponseData().getResponseBody();
+    }
+
+    /**
+     * Waits for job to leave the queue (fails after DEFAULT_JOB_WAIT_MS).
+     *
+     * @param contentData Job.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    private static void waitForStart(final JobContentData contentData)
+            throws InterruptedException {
+
+        final long endAt = System.currentTimeMillis()
+                + ScriptEngineJobExecutorTest.DEFAULT_JOB_WAIT_MS;
+
+        while (contentData.getState() == JobState.pending) {
+
+            Assert.assertTrue("job not started: " + contentData,
+                    System.currentTimeMillis() < endAt);
+            Thread.sleep(10L);
+        }
+    }
+
+    @Before
+    public void setUp() {
+
+        this.jobManager = new BasicJobManager(false);
+    }
+
+    @After
+    public void tearDown() {
+
+        this.jobManager.cleanUp();
+    }
+
+    @Test
+    public void testDispatch() throws InterruptedException {
+
+        final JobExecutor executor = this.addExecutor(1);
+        final JobContentData contentData = this.submit(executor, "6 * 7", false);
+
+        Assert.assertEquals("42", ScriptEngineJobExecutorTest.waitFor(contentData));
+        Assert.assertEquals(JobStatus.success, contentData.getStatus());
+
+        final JobContentData failedData = this.submit(executor, "no_such_name", false);
+
+        Assert.assertTrue(ScriptEngineJobExecutorTest.waitFor(failedData).startsWith(
+                AbstractJobExecutor.DEFAULT_ERROR_PREFIX_TEXT));
+        Assert.assertEquals(JobStatus.failure, failedData.getStatus());
+        Assert.assertEquals(2L, executor.getMetrics().getSubmittedCount());
+    }
+
+    @Test
+    public void testWakeOnSubmit() throws InterruptedException {
+
+        final JobExecutor executor = this.addExecutor(1);
+
+        ScriptEngineJobExecutorTest.waitFor(this.submit(executor, "order = []", false));
+
+        // idle worker starts the next job right away (no polling interval)
+        Thread.sleep(100L);
+
+        final JobContentData idleData = this.submit(executor, "1", false);
+
+        ScriptEngineJobExecutorTest.waitFor(idleData);
+        Assert.assertTrue("queue wait: " + idleData.getQueueWaitTime(),
+                idleData.getQueueWaitTime() < 100L);
+
+        // queued jobs run in submit order, one at a time
+        final JobContentData blockingData = this.submit(executor,
+                "java.lang.Thread.sleep(200)", false);
+
+        ScriptEngineJobExecutorTest.waitForStart(blockingData);
+
+        for (int ctr = 1; ctr <= 5; ctr++) {
+
+            this.submit(executor, "order.push(" + ctr + ")", false);
+        }
+
+        Assert.assertEquals(5, executor.getPendingJobCount());
+        Assert.assertEquals(1, executor.getRunningJobCount());
+        Assert.assertEquals("1,2,3,4,5", ScriptEngineJobExecutorTest.waitFor(
+                this.submit(executor, "order.join()", false)));
+        Assert.assertEquals(JobState.completed, blockingData.getState());
+        Assert.assertEquals(0, executor.getPendingJobCount());
+    }
+
+    @Test
+    public void testQueueWait() throws InterruptedException {
+
+        final JobExecutor executor = this.addExecutor(1);
+        final JobContentData blockingData = this.submit(executor,
+                "java.lang.Thread.sleep(300)", false);
+        final long fromSequence = this.jobManager.getJobSequence();
+        final JobContentData waitingData = this.submit(executor, "1 + 1", false);
+
+        Assert.assertEquals("2", ScriptEngineJobExecutorTest.waitFor(waitingData));
+        Assert.assertEquals(JobState.completed, blockingData.getState());
+
+        // queued behind the blocked worker
+        Assert.assertTrue("queue wait: " + waitingData.getQueueWaitTime(),
+                waitingData.getQueueWaitTime() > 0L);
+        Assert.assertTrue(waitingData.getTimingData().getDequeuedOffset() > 0L);
+
+        // starting a job isn't a removal
+        final List<JobContentData> changedJobs = new ArrayList<>();
+        final List<String> removedIds = new ArrayList<>();
+
+        Assert.assertFalse(this.jobManager.getJobChanges(fromSequence,
+                this.jobManager.getJobSequence(), changedJobs, removedIds, true));
+        Assert.assertTrue(removedIds.isEmpty());
+        Assert.assertTrue(changedJobs.contains(waitingData));
+    }
+
+    @Test
+    public void testTimings() throws InterruptedException {
+
+        final JobExecutor executor = this.addExecutor(1);
+        final JobContentData contentData = this.submit(executor,
+                "java.lang.Thread.sleep(50); 'done'", false);
+
+        Assert.assertEquals("done", ScriptEngineJobExecutorTest.waitFor(contentData));
+
+        // offsets are set in phase order, all > 0L once completed
+        final JobTimingData timingData = contentData.getTimingData();
+
+        Assert.assertTrue(timingData.getDequeuedOffset() > 0L);
+        Assert.assertTrue(timingData.getDequeuedOffset() <= timingData.getEvalStartOffset());
+        Assert.assertTrue(timingData.getEvalStartOffset() <= timingData.getEvalEndOffset());
+        Assert.assertTrue(timingData.getEvalEndOffset() <= timingData.getOutputDrainedOffset());
+        Assert.assertTrue(timingData.getOutputDrainedOffset() <= timingData.getCompletedOffset());
+        Assert.assertTrue("eval: " + timingData, timingData.getPhaseTime(JobTimingPhase.eval)
+                >= TimeUnit.MILLISECONDS.toNanos(50L));
+
+        // phases add up to the total
+        long phaseTotal = 0L;
+
+        for (final JobTimingPhase phase : JobTimingPhase.values()) {
+
+            if (phase != JobTimingPhase.total) {
+
+                phaseTotal += timingData.getPhaseTime(phase);
+            }
+        }
+
+        Assert.assertEquals(timingData.getCompletedOffset(), phaseTotal);
+        Assert.assertEquals(timingData.getCompletedOffset(),
+                timingData.getPhaseTime(JobTimingPhase.total));
+
+        // stats are recorded just after the job is marked completed
+        final long endAt = System.currentTimeMillis()
+                + ScriptEngineJobExecutorTest.DEFAULT_JOB_WAIT_MS;
+
+        while (executor.getTimingStats().getJobCount() < 1L) {
+
+            Assert.assertTrue("stats not recorded", System.currentTimeMillis() < endAt);
+            Thread.sleep(10L);
+        }
+
+        final JobTimingStatsData statsData = executor.getTimingStats();
+
+        Assert.assertEquals(1L, statsData.getJobCount());
+        Assert.assertEquals(timingData.getPhaseTime(JobTimingPhase.eval),
+                statsData.getTotalTime(JobTimingPhase.eval));
+        Assert.assertEquals(timingData.getPhaseTime(JobTimingPhase.eval),
+                statsData.getMaxTime(JobTimingPhase.eval));
+        Assert.assertEquals(timingData.getCompletedOffset(),
+                statsData.getAverageTime(JobTimingPhase.total));
+
+        executor.resetStats();
+
+        Assert.assertEquals(0L, executor.getTimingStats().getJobCount());
+        Assert.assertEquals(0L, executor.getTimingStats().getMaxTime(JobTimingPhase.eval));
+    }
+
+    @Test
+    public void testPooledReplicas() throws InterruptedException {
+
+        final ScriptEngineJobExecutor executor = (ScriptEngineJobExecutor) this.addExecutor(3);
+        final List<Thread> workers = new ArrayList<>();
+
+        Assert.assertEquals(3, executor.getReplicaCount());
+        Assert.assertTrue(executor.getWorkerThreads(workers, true));
+        Assert.assertEquals(3, workers.size());
+
+        // one engine per replica
+        Assert.assertNotSame(executor.getScriptEngine(0), executor.getScriptEngine(1));
+        Assert.assertNotSame(executor.getScriptEngine(1), executor.getScriptEngine(2));
+
+        // replicas share one queue, and run together
+        final List<JobContentData> blockingJobs = new ArrayList<>();
+
+        for (int ctr = 0; ctr < 3; ctr++) {
+
+            blockingJobs.add(this.submit(executor, "java.lang.Thread.sleep(300)", false));
+        }
+
+        for (final JobContentData item : blockingJobs) {
+
+            ScriptEngineJobExecutorTest.waitForStart(item);
+        }
+
+        Assert.assertEquals(3, executor.getRunningJobCount());
+
+        for (final JobContentData item : blockingJobs) {
+
+            ScriptEngineJobExecutorTest.waitFor(item);
+        }
+
+        // session executors keep one replica, whatever was asked for
+        final JobExecutorData sessionData = new JobExecutorData("Session",
+                JobExecutorType.javascript_rhino);
+
+        sessionData.setPooled(false);
+        sessionData.setReplicaCount(3);
+
+        Assert.assertEquals(1, this.jobManager.addExecutorInstance(sessionData)
+                .getReplicaCount());
+    }
+
+    @Test
+    public void testResize() throws InterruptedException {
+
+        final JobExecutor executor = this.addExecutor(2);
+        final JobExecutorMXBean executorBean = new BasicJobExecutorMXBean(executor);
+        final List<Thread> workers = new ArrayList<>();
+
+        // idle pool restarts right away
+        Assert.assertEquals(3, executorBean.resizePool(3));
+        Assert.assertEquals(3, executor.getExecutorData().getReplicaCount());
+        Assert.assertTrue(executor.getWorkerThreads(workers, true));
+        Assert.assertEquals(3, workers.size());
+
+        // busy pool restarts once running jobs finish; queued jobs wait for it
+        final JobContentData blockingData = this.submit(executor,
+                "var endAt = Date.now() + 300; while (Date.now() < endAt) {}", false);
+
+        ScriptEngineJobExecutorTest.waitForStart(blockingData);
+        executorBean.resizePool(1);
+
+        final JobContentData waitingData = this.submit(executor, "1 + 1", false);
+
+        Assert.assertEquals("2", ScriptEngineJobExecutorTest.waitFor(waitingData));
+        Assert.assertEquals(JobStatus.success, blockingData.getStatus());
+        Assert.assertEquals(1, executor.getReplicaCount());
+        Assert.assertTrue(executor.getWorkerThreads(workers, true));
+        Assert.assertEquals(1, workers.size());
+
+        // session executors don't resize
+        final JobExecutorData sessionData = new JobExecutorData("Session",
+                JobExecutorType.javascript_rhino);
+
+        sessionData.setPooled(false);
+
+        Assert.assertEquals(1, new BasicJobExecutorMXBean(this.jobManager
+                .addExecutorInstance(sessionData)).resizePool(3));
+    }
+
+    @Test
+    public void testBaselineReset() throws InterruptedException {
+
+        final ScriptEngineJobExecutor executor = (ScriptEngineJobExecutor) this.addExecutor(1);
+
+        Assert.assertEquals("set", ScriptEngineJobExecutorTest.waitFor(
+                this.submit(executor, "x = 'set'; x", false)));
+        Assert.assertEquals("string", ScriptEngineJobExecutorTest.waitFor(
+                this.submit(executor, "typeof x", false)));
+
+        final ScriptEngine scriptEngine = executor.getScriptEngine(0);
+
+        // reset job starts from the baseline (restored in place)
+        Assert.assertEquals("undefined", ScriptEngineJobExecutorTest.waitFor(
+                this.submit(executor, "typeof x", true)));
+        Assert.assertSame(scriptEngine, executor.getScriptEngine(0));
+
+        // declared globals may outlive clear(); engine is rebuilt instead
+        ScriptEngineJobExecutorTest.waitFor(this.submit(executor, "var y = 'set'", false));
+
+        Assert.assertEquals("undefined", ScriptEngineJobExecutorTest.waitFor(
+                this.submit(executor, "typeof y", true)));
+        Assert.assertNull(executor.getScriptEngine(0).get("y"));
+    }
+
+    @Test
+    public void testContextOutput() throws InterruptedException {
+
+        final ScriptEngineJobExecutor executor = (ScriptEngineJobExecutor) this.addExecutor(1);
+        final Writer lastWriter = executor.getScriptEngine().getContext().getWriter();
+        final Writer lastErrorWriter = executor.getScriptEngine().getContext().getErrorWriter();
+        final JobContentData contentData = this.submit(executor,
+                "print('hello'); 'done'", false);
+
+        Assert.assertEquals("done", ScriptEngineJobExecutorTest.waitFor(contentData));
+        Assert.assertEquals("hello\n", contentData.getOutputData().getOutputBody());
+
+        // writers are only swapped for the job
+        Assert.assertSame(lastWriter, executor.getScriptEngine().getContext().getWriter());
+        Assert.assertSame(lastErrorWriter,
+                executor.getScriptEngine().getContext().getErrorWriter());
+
+        // each job gets its own output
+        final JobContentData nextData = this.submit(executor, "print('again')", false);
+
+        ScriptEngineJobExecutorTest.waitFor(nextData);
+        Assert.assertEquals("again\n", nextData.getOutputData().getOutputBody());
+    }
+
+    @Test
+    public void testStreamingOutput() throws InterruptedException {
+
+        final JobExecutor executor = this.addExecutor(1);
+        final JobContentData contentData = this.submit(executor,
+                "print('first'); java.lang.Thread.sleep(300); print('second');"
+                        + " java.lang.Thread.sleep(1000)", false);
+
+        ScriptEngineJobExecutorTest.waitForStart(contentData);
+
+        // output is readable while the job runs (buffer comes w/its first eval)
+        final long endAt = System.currentTimeMillis()
+                + ScriptEngineJobExecutorTest.DEFAULT_JOB_WAIT_MS;
+        JobOutputChunkData chunkData = executor.getJobOutput(contentData.getId(), 0L);
+
+        while ((chunkData == null) || (chunkData.getEndOffset() == 0L)) {
+
+            Assert.assertTrue("no output: " + contentData,
+                    System.currentTimeMillis() < endAt);
+            Thread.sleep(10L);
+
+            chunkData = executor.getJobOutput(contentData.getId(), 0L);
+        }
+
+        Assert.assertEquals(JobState.started, contentData.getState());
+        Assert.assertEquals(contentData.getId(), chunkData.getJobId());
+        Assert.assertEquals("first\n", chunkData.getOutputBody());
+
+        // later reads pick up from the last offset
+        JobOutputChunkData nextData = executor.getJobOutput(contentData.getId(),
+                chunkData.getEndOffset());
+
+        while (nextData.getEndOffset() == chunkData.getEndOffset()) {
+
+            Assert.assertTrue("no more output: " + contentData,
+                    System.currentTimeMillis() < endAt);
+            Thread.sleep(10L);
+
+            nextData = executor.getJobOutput(contentData.getId(), chunkData.getEndOffset());
+        }
+
+        Assert.assertEquals(JobState.started, contentData.getState());
+        Assert.assertEquals(chunkData.getEndOffset(), nextData.getStartOffset());
+        Assert.assertEquals("second\n", nextData.getOutputBody());
+        Assert.assertFalse(nextData.isMore());
+
+        // completed jobs carry their whole output instead
+        ScriptEngineJobExecutorTest.waitFor(contentData);
+
+        Assert.assertEquals("first\nsecond\n", contentData.getOutputData().getOutputBody());
+        Assert.assertNull(executor.getJobOutput(contentData.getId(), 0L));
+    }
+
+    @Test
+    public void testVariablePaging() throws InterruptedException {
+
+        final JobExecutor executor = this.addExecutor(1);
+        final int totalLength = (AbstractJobExecutor.DEFAULT_MAX_VARIABLE_READ_CHARS * 2) + 100;
+
+        ScriptEngineJobExecutorTest.waitFor(this.submit(executor,
+                "big = new Array(" + (totalLength + 1) + ").join('x'); small = 'abc'", false));
+
+        // names, types and lengths first (no values)
+        final List<JobVariableData> variables = new ArrayList<>();
+        final Map<String, JobVariableData> variablesByName = new HashMap<>();
+
+        Assert.assertTrue(executor.getVariableInfo(ScriptContext.ENGINE_SCOPE, variables, true));
+
+        for (final JobVariableData item : variables) {
+
+            variablesByName.put(item.getName(), item);
+        }
+
+        Assert.assertEquals(totalLength, variablesByName.get("big").getLength());
+        Assert.assertEquals(String.class.getName(), variablesByName.get("big").getTypeName());
+        Assert.assertEquals(3, variablesByName.get("small").getLength());
+
+        // values are paged from an offset
+        final int rawFormat = JobDataFormat.raw.ordinal();
+        final StringBuilder valueText = new StringBuilder();
+        int fromOffset = 0;
+        JobVariableValueData valueData;
+
+        do {
+
+            valueData = executor.getVariableValue(ScriptContext.ENGINE_SCOPE,
+                    rawFormat, "big", fromOffset);
+
+            Assert.assertEquals(fromOffset, valueData.getStartOffset());
+            Assert.assertEquals(totalLength, valueData.getTotalLength());
+            Assert.assertTrue(valueData.getValueBody().length()
+                    <= AbstractJobExecutor.DEFAULT_MAX_VARIABLE_READ_CHARS);
+
+            valueText.append(valueData.getValueBody());
+            fromOffset = valueData.getEndOffset();
+
+        } while (valueData.isMore());
+
+        Assert.assertEquals(totalLength, valueText.length());
+        Assert.assertEquals("", valueText.toString().replace("x", ""));
+
+        final JobVariableValueData smallData = executor.getVariableValue(
+                ScriptContext.ENGINE_SCOPE, rawFormat, "small", 0);
+
+        Assert.assertEquals("abc", smallData.getValueBody());
+        Assert.assertFalse(smallData.isMore());
+
+        // past the end: empty last page
+        final JobVariableValueData endData = executor.getVariableValue(
+                ScriptContext.ENGINE_SCOPE, rawFormat, "small", 10);
+
+        Assert.assertEquals(3, endData.getStartOffset());
+        Assert.assertEquals("", endData.getValueBody());
+    }
+
+    @Test
+    public void testSpillFileDeleted() throws InterruptedException {
+
+        final JobExecutor executor = this.addSpilledExecutor(1);
+        final JobContentData firstData = this.submit(executor, "print('first')", false);
+
+        ScriptEngineJobExecutorTest.waitFor(firstData);
+
+        final File spillFile = new File(JobFileUtils.getExecutorFileBase(
+                executor.getExecutorData().getId()),
+                firstData.getOutputData().getOutputPath());
+
+        Assert.assertTrue(spillFile.isFile());
+
+        // evicted by the next job (one retained)
+        ScriptEngineJobExecutorTest.waitFor(this.submit(executor, "print('second')", false));
+
+        final long endAt = System.currentTimeMillis()
+                + ScriptEngineJobExecutorTest.DEFAULT_JOB_WAIT_MS;
+
+        while (spillFile.exists()) {
+
+            Assert.assertTrue("spill file kept: " + spillFile,
+                    System.currentTimeMillis() < endAt);
+            Thread.sleep(10L);
+        }
+    }
+}
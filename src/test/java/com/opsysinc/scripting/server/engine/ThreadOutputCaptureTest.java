@@ -0,0 +1,159 @@
+package com.opsysinc.scripting.server.engine;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Thread output capture tests (routing by thread registration and enabled
+ * state, per-job buffers).
+ *
+ * @author mkitchin
+ */
+public class ThreadOutputCaptureTest {
+
+    /**
+     * Parent stream bytes.
+     */
+    private ByteArrayOutputStream parentBytes;
+
+    /**
+     * Capture under test.
+     */
+    private ThreadOutputCapture outputCapture;
+
+    /**
+     * Routing stream (as installed behind System.out).
+     */
+    private PrintStream printStream;
+
+    /**
+     * Gets (and clears) parent stream text.
+     *
+     * @return Parent stream text.
+     */
+    private String readParent() {
+
+        final String result = new String(this.parentBytes.toByteArray(),
+                StandardCharsets.UTF_8);
+
+        this.parentBytes.reset();
+        return result;
+    }
+
+    @Before
+    public void setUp() {
+
+        this.parentBytes = new ByteArrayOutputStream();
+        this.outputCapture = new ThreadOutputCapture();
+        this.printStream = this.outputCapture.createPrintStream(
+                new PrintStream(this.parentBytes, true));
+    }
+
+    @After
+    public void tearDown() {
+
+        this.outputCapture.deRegisterThread();
+    }
+
+    @Test
+    public void testUnregistered() {
+
+        this.printStream.print("parent");
+
+        Assert.assertEquals("parent", this.readParent());
+        Assert.assertNull(this.outputCapture.readThreadOutput());
+        Assert.assertNull(this.outputCapture.getThreadPrintStream());
+        Assert.assertFalse(this.outputCapture.enableThreadOutput());
+    }
+
+    @Test
+    public void testRegistered() {
+
+        Assert.assertTrue(this.outputCapture.registerThread());
+        Assert.assertFalse(this.outputCapture.registerThread());
+
+        // registered, but not enabled
+        this.printStream.print("parent");
+
+        Assert.assertEquals("parent", this.readParent());
+        Assert.assertNull(this.outputCapture.getThreadPrintStream());
+
+        Assert.assertTrue(this.outputCapture.enableThreadOutput());
+        this.printStream.print("captured");
+        this.printStream.println(42);
+
+        Assert.assertEquals("", this.readParent());
+        Assert.assertNotNull(this.outputCapture.getThreadPrintStream());
+        Assert.assertEquals("captured42" + System.lineSeparator(),
+                this.outputCapture.readThreadOutput());
+
+        // each read resets the default buffer
+        Assert.assertEquals("", this.outputCapture.readThreadOutput());
+
+        Assert.assertTrue(this.outputCapture.disableThreadOutput());
+        this.printStream.print("parent");
+
+        Assert.assertEquals("parent", this.readParent());
+
+        Assert.assertTrue(this.outputCapture.deRegisterThread());
+        Assert.assertFalse(this.outputCapture.deRegisterThread());
+        Assert.assertNull(this.outputCapture.readThreadOutput());
+    }
+
+    @Test
+    public void testOtherThreads() throws InterruptedException {
+
+        this.outputCapture.registerThread();
+        this.outputCapture.enableThreadOutput();
+
+        // other threads aren't captured by this thread's registration
+        final Thread otherThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+
+                ThreadOutputCaptureTest.this.printStream.print("other");
+            }
+        });
+
+        otherThread.start();
+        otherThread.join();
+
+        this.printStream.print("captured");
+
+        Assert.assertEquals("other", this.readParent());
+        Assert.assertEquals("captured", this.outputCapture.readThreadOutput());
+    }
+
+    @Test
+    public void testJobBuffer() {
+
+        final JobOutputBuffer outputBuffer = new JobOutputBuffer();
+
+        Assert.assertFalse(this.outputCapture.setThreadOutputBuffer(outputBuffer));
+
+        this.outputCapture.registerThread();
+        this.outputCapture.enableThreadOutput();
+
+        Assert.assertTrue(this.outputCapture.setThreadOutputBuffer(outputBuffer));
+        Assert.assertSame(outputBuffer, this.outputCapture.getThreadOutputBuffer());
+
+        this.printStream.print("job");
+
+        Assert.assertEquals("job", outputBuffer.toString());
+        Assert.assertEquals("job", this.outputCapture.readThreadOutput());
+
+        // later output goes to the default buffer; job buffer is kept
+        this.printStream.print("between");
+
+        Assert.assertNotSame(outputBuffer, this.outputCapture.getThreadOutputBuffer());
+        Assert.assertEquals("job", outputBuffer.toString());
+        Assert.assertEquals("between", this.outputCapture.readThreadOutput());
+    }
+}
@@ -0,0 +1,154 @@
+package com.opsysinc.scripting.server.engine;
+
+import com.opsysinc.scripting.shared.JobDataFormat;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Variable format cache tests (identity and generation checks, entry and
+ * char limits).
+ *
+ * @author mkitchin
+ */
+public class VariableFormatCacheTest {
+
+    /**
+     * Variable scope (any value; part of the key only).
+     */
+    private static final int DEFAULT_SCOPE = 100;
+
+    /**
+     * Builds value text.
+     *
+     * @param length Text length.
+     * @return Text (new instance).
+     */
+    private static String buildText(final int length) {
+
+        final StringBuilder result = new StringBuilder(length);
+
+        for (int ctr = 0; ctr < length; ctr++) {
+
+            result.append('x');
+        }
+
+        return result.toString();
+    }
+
+    @Test
+    public void testHits() {
+
+        final VariableFormatCache formatCache = new VariableFormatCache(8, 1000L, 100);
+        final String valueObject = "value";
+
+        Assert.assertEquals("value", formatCache.format(VariableFormatCacheTest.DEFAULT_SCOPE,
+                JobDataFormat.raw, "a", valueObject));
+        Assert.assertEquals("value", formatCache.format(VariableFormatCacheTest.DEFAULT_SCOPE,
+                JobDataFormat.raw, "a", valueObject));
+
+        Assert.assertEquals(1L, formatCache.getMissCount());
+        Assert.assertEquals(1L, formatCache.getHitCount());
+        Assert.assertEquals(1, formatCache.getSize());
+        Assert.assertEquals(5L, formatCache.getTotalChars());
+
+        // scope, format and name are all part of the key
+        formatCache.format(VariableFormatCacheTest.DEFAULT_SCOPE + 100,
+                JobDataFormat.raw, "a", valueObject);
+        formatCache.format(VariableFormatCacheTest.DEFAULT_SCOPE,
+                JobDataFormat.xml, "a", valueObject);
+        formatCache.format(VariableFormatCacheTest.DEFAULT_SCOPE,
+                JobDataFormat.raw, "b", valueObject);
+
+        Assert.assertEquals(4L, formatCache.getMissCount());
+        Assert.assertEquals(4, formatCache.getSize());
+    }
+
+    @Test
+    public void testInvalidation() {
+
+        final VariableFormatCache formatCache = new VariableFormatCache(8, 1000L, 100);
+        final String valueObject = VariableFormatCacheTest.buildText(3);
+
+        formatCache.format(VariableFormatCacheTest.DEFAULT_SCOPE,
+                JobDataFormat.raw, "a", valueObject);
+
+        // rebound to an equal, but different, object
+        Assert.assertNull(formatCache.getIfPresent(VariableFormatCacheTest.DEFAULT_SCOPE,
+                JobDataFormat.raw, "a", VariableFormatCacheTest.buildText(3)));
+        Assert.assertEquals("xxx", formatCache.getIfPresent(VariableFormatCacheTest.DEFAULT_SCOPE,
+                JobDataFormat.raw, "a", valueObject));
+
+        // a job completed (same object may have been mutated)
+        final long generation = formatCache.getGeneration();
+
+        formatCache.invalidate();
+
+        Assert.assertEquals(generation + 1L, formatCache.getGeneration());
+        Assert.assertEquals(0, formatCache.getSize());
+        Assert.assertEquals(0L, formatCache.getTotalChars());
+        Assert.assertNull(formatCache.getIfPresent(VariableFormatCacheTest.DEFAULT_SCOPE,
+                JobDataFormat.raw, "a", valueObject));
+
+        // values formatted elsewhere (e.g., while paging) are kept the same way
+        formatCache.put(VariableFormatCacheTest.DEFAULT_SCOPE,
+                JobDataFormat.raw, "a", valueObject, "paged");
+
+        Assert.assertEquals("paged", formatCache.getIfPresent(VariableFormatCacheTest.DEFAULT_SCOPE,
+                JobDataFormat.raw, "a", valueObject));
+    }
+
+    @Test
+    public void testEntryLimit() {
+
+        final VariableFormatCache formatCache = new VariableFormatCache(2, 1000L, 100);
+        final String valueObject = "value";
+
+        formatCache.format(VariableFormatCacheTest.DEFAULT_SCOPE, JobDataFormat.raw, "a", valueObject);
+        formatCache.format(VariableFormatCacheTest.DEFAULT_SCOPE, JobDataFormat.raw, "b", valueObject);
+
+        // least recently read goes first
+        formatCache.format(VariableFormatCacheTest.DEFAULT_SCOPE, JobDataFormat.raw, "a", valueObject);
+        formatCache.format(VariableFormatCacheTest.DEFAULT_SCOPE, JobDataFormat.raw, "c", valueObject);
+
+        Assert.assertEquals(2, formatCache.getSize());
+        Assert.assertEquals(1L, formatCache.getEvictionCount());
+        Assert.assertEquals(10L, formatCache.getTotalChars());
+        Assert.assertNotNull(formatCache.getIfPresent(VariableFormatCacheTest.DEFAULT_SCOPE,
+                JobDataFormat.raw, "a", valueObject));
+        Assert.assertNull(formatCache.getIfPresent(VariableFormatCacheTest.DEFAULT_SCOPE,
+                JobDataFormat.raw, "b", valueObject));
+    }
+
+    @Test
+    public void testCharLimits() {
+
+        final VariableFormatCache formatCache = new VariableFormatCache(8, 100L, 60);
+        final String largeObject = VariableFormatCacheTest.buildText(61);
+
+        // over max value chars: returned, not kept
+        Assert.assertEquals(largeObject, formatCache.format(VariableFormatCacheTest.DEFAULT_SCOPE,
+                JobDataFormat.raw, "large", largeObject));
+        Assert.assertEquals(0, formatCache.getSize());
+        Assert.assertEquals(0L, formatCache.getTotalChars());
+
+        // over max total chars: eldest evicted
+        final String firstObject = VariableFormatCacheTest.buildText(60);
+        final String secondObject = VariableFormatCacheTest.buildText(50);
+
+        formatCache.format(VariableFormatCacheTest.DEFAULT_SCOPE,
+                JobDataFormat.raw, "first", firstObject);
+        formatCache.format(VariableFormatCacheTest.DEFAULT_SCOPE,
+                JobDataFormat.raw, "second", secondObject);
+
+        Assert.assertEquals(1, formatCache.getSize());
+        Assert.assertEquals(50L, formatCache.getTotalChars());
+        Assert.assertNull(formatCache.getIfPresent(VariableFormatCacheTest.DEFAULT_SCOPE,
+                JobDataFormat.raw, "first", firstObject));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxValueChars() {
+
+        new VariableFormatCache(8, 100L, 101);
+    }
+}
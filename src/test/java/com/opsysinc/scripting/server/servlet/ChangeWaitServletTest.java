@@ -0,0 +1,325 @@
+package com.opsysinc.scripting.server.servlet;
+
+import com.opsysinc.scripting.server.engine.BasicJobManager;
+import com.opsysinc.scripting.shared.JobExecutorData;
+import com.opsysinc.scripting.shared.JobExecutorType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Change wait servlet tests (long-poll wakeups, hand-off to container
+ * threads, timeouts). Servlet API objects are proxies that record calls.
+ *
+ * @author mkitchin
+ */
+public class ChangeWaitServletTest {
+
+    /**
+     * Executor data (removal records only carry it).
+     */
+    private final JobExecutorData executorData = new JobExecutorData("Test",
+            JobExecutorType.javascript_rhino);
+
+    /**
+     * Job manager (no executors).
+     */
+    private BasicJobManager jobManager;
+
+    /**
+     * Servlet under test.
+     */
+    private ChangeWaitServlet servlet;
+
+    /**
+     * Response text.
+     */
+    private StringWriter responseText;
+
+    /**
+     * Tasks handed to the async context (not yet run).
+     */
+    private List<Runnable> startedTasks;
+
+    /**
+     * Async listeners added.
+     */
+    private List<AsyncListener> asyncListeners;
+
+    /**
+     * Async context proxy.
+     */
+    private AsyncContext asyncContext;
+
+    /**
+     * True once async context completed, false otherwise.
+     */
+    private boolean isComplete;
+
+    /**
+     * Builds proxy (unhandled methods answer null/false/0).
+     *
+     * @param proxyClass Interface to proxy.
+     * @param handler    Handler (returns Void.TYPE for unhandled methods).
+     * @param <T>        Interface type.
+     * @return Proxy.
+     */
+    private static <T> T buildProxy(final Class<T> proxyClass,
+                                    final InvocationHandler handler) {
+
+        return proxyClass.cast(Proxy.newProxyInstance(
+                ChangeWaitServletTest.class.getClassLoader(),
+                new Class<?>[]{proxyClass}, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(final Object proxy, final Method method,
+                                         final Object[] args) throws Throwable {
+
+                        final Object result = handler.invoke(proxy, method, args);
+
+                        if (result != Void.TYPE) {
+
+                            return result;
+                        }
+
+                        if (method.getReturnType() == Boolean.TYPE) {
+
+                            return false;
+                        }
+
+                        if (method.getReturnType() == Integer.TYPE) {
+
+                            return 0;
+                        }
+
+                        if (method.getReturnType() == Long.TYPE) {
+
+                            return 0L;
+                        }
+
+                        return null;
+                    }
+                }));
+    }
+
+    /**
+     * Long polls (runs doGet() w/a fresh response).
+     *
+     * @param fromSequence From sequence parameter text.
+     * @throws ServletException Servlet exception.
+     * @throws IOException      I/O exception.
+     */
+    private void poll(final String fromSequence) throws ServletException, IOException {
+
+        this.responseText = new StringWriter();
+        this.startedTasks = new ArrayList<>();
+        this.asyncListeners = new ArrayList<>();
+        this.isComplete = false;
+
+        final HttpServletResponse response = ChangeWaitServletTest.buildProxy(
+                HttpServletResponse.class, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(final Object proxy, final Method method,
+                                         final Object[] args) {
+
+                        if (method.getName().equals("getWriter")) {
+
+                            return new PrintWriter(ChangeWaitServletTest.this.responseText);
+                        }
+
+                        return Void.TYPE;
+                    }
+                });
+
+        this.asyncContext = ChangeWaitServletTest.buildProxy(AsyncContext.class,
+                new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(final Object proxy, final Method method,
+                                         final Object[] args) {
+
+                        switch (method.getName()) {
+
+                            case "getResponse":
+                                return response;
+
+                            case "addListener":
+                                ChangeWaitServletTest.this.asyncListeners.add(
+                                        (AsyncListener) args[0]);
+                                return null;
+
+                            case "start":
+                                ChangeWaitServletTest.this.startedTasks.add((Runnable) args[0]);
+                                return null;
+
+                            case "complete":
+                                ChangeWaitServletTest.this.isComplete = true;
+                                return null;
+
+                            default:
+                                return Void.TYPE;
+                        }
+                    }
+                });
+
+        final HttpServletRequest request = ChangeWaitServletTest.buildProxy(
+                HttpServletRequest.class, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(final Object proxy, final Method method,
+                                         final Object[] args) {
+
+                        switch (method.getName()) {
+
+                            case "getParameter":
+                                return fromSequence;
+
+                            case "startAsync":
+                                return ChangeWaitServletTest.this.asyncContext;
+
+                            default:
+                                return Void.TYPE;
+                        }
+                    }
+                });
+
+        this.servlet.doGet(request, response);
+    }
+
+    /**
+     * Runs tasks handed to the async context (as the container would).
+     */
+    private void runStartedTasks() {
+
+        for (final Runnable item : this.startedTasks) {
+
+            item.run();
+        }
+    }
+
+    @Before
+    public void setUp() throws ServletException {
+
+        this.jobManager = new BasicJobManager(false);
+
+        final ServletContext servletContext = ChangeWaitServletTest.buildProxy(
+                ServletContext.class, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(final Object proxy, final Method method,
+                                         final Object[] args) {
+
+                        if (method.getName().equals("getAttribute")
+                                && ScriptServiceImpl.DEFAULT_JOB_MANAGER_ATTR.equals(args[0])) {
+
+                            return ChangeWaitServletTest.this.jobManager;
+                        }
+
+                        return Void.TYPE;
+                    }
+                });
+
+        this.servlet = new ChangeWaitServlet();
+        this.servlet.init(ChangeWaitServletTest.buildProxy(ServletConfig.class,
+                new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(final Object proxy, final Method method,
+                                         final Object[] args) {
+
+                        if (method.getName().equals("getServletContext")) {
+
+                            return servletContext;
+                        }
+
+                        return Void.TYPE;
+                    }
+                }));
+    }
+
+    @After
+    public void tearDown() {
+
+        this.jobManager.cleanUp();
+    }
+
+    @Test
+    public void testWakeup() throws ServletException, IOException {
+
+        final long fromSequence = this.jobManager.getChangeSequence();
+
+        this.poll(String.valueOf(fromSequence));
+
+        // parked; nothing answered
+        Assert.assertTrue(this.startedTasks.isEmpty());
+        Assert.assertFalse(this.isComplete);
+
+        this.jobManager.recordJobRemoval(this.executorData, "job1");
+
+        // signalling thread only hands off
+        Assert.assertEquals(1, this.startedTasks.size());
+        Assert.assertFalse(this.isComplete);
+        Assert.assertEquals("", this.responseText.toString());
+
+        this.runStartedTasks();
+
+        Assert.assertTrue(this.isComplete);
+        Assert.assertEquals(String.valueOf(fromSequence + 1L), this.responseText.toString());
+
+        // called back once
+        this.jobManager.recordJobRemoval(this.executorData, "job2");
+        Assert.assertEquals(1, this.startedTasks.size());
+    }
+
+    @Test
+    public void testAlreadyPast() throws ServletException, IOException {
+
+        this.jobManager.recordJobRemoval(this.executorData, "job1");
+        this.jobManager.recordJobRemoval(this.executorData, "job2");
+        this.poll("1");
+
+        Assert.assertEquals(1, this.startedTasks.size());
+        this.runStartedTasks();
+
+        Assert.assertTrue(this.isComplete);
+        Assert.assertEquals("2", this.responseText.toString());
+    }
+
+    @Test
+    public void testTimeout() throws ServletException, IOException {
+
+        this.poll(String.valueOf(this.jobManager.getChangeSequence()));
+
+        for (final AsyncListener item : this.asyncListeners) {
+
+            item.onTimeout(new AsyncEvent(this.asyncContext));
+        }
+
+        Assert.assertTrue(this.isComplete);
+        Assert.assertEquals(String.valueOf(this.jobManager.getChangeSequence()),
+                this.responseText.toString());
+
+        // no longer waiting
+        this.jobManager.recordJobRemoval(this.executorData, "job1");
+        Assert.assertTrue(this.startedTasks.isEmpty());
+    }
+}
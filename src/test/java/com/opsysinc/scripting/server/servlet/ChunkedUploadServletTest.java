@@ -0,0 +1,385 @@
+package com.opsysinc.scripting.server.servlet;
+
+import com.opsysinc.scripting.server.engine.BasicJobManager;
+import com.opsysinc.scripting.server.engine.JobFileUtils;
+import com.opsysinc.scripting.shared.JobExecutorData;
+import com.opsysinc.scripting.shared.JobExecutorType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Chunked upload servlet tests (out-of-order and re-sent chunks, resume
+ * status, verified commit, abort). Servlet API objects are proxies.
+ *
+ * @author mkitchin
+ */
+public class ChunkedUploadServletTest {
+
+    /**
+     * Chunk size (servlet minimum).
+     */
+    private static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Job manager (no default executors).
+     */
+    private BasicJobManager jobManager;
+
+    /**
+     * Executor file area.
+     */
+    private File fileBase;
+
+    /**
+     * Servlet under test.
+     */
+    private ChunkedUploadServlet servlet;
+
+    /**
+     * Last response status (200 unless an error was sent).
+     */
+    private int responseStatus;
+
+    /**
+     * Last response text.
+     */
+    private StringWriter responseText;
+
+    /**
+     * Builds test bytes.
+     *
+     * @param length Byte count.
+     * @return Bytes.
+     */
+    private static byte[] buildBytes(final int length) {
+
+        final byte[] result = new byte[length];
+
+        for (int ctr = 0; ctr < length; ctr++) {
+
+            result[ctr] = (byte) (ctr * 31);
+        }
+
+        return result;
+    }
+
+    /**
+     * Runs request (sets response status and text).
+     *
+     * @param method Request method (GET, POST or PUT).
+     * @param params Request parameters (name, value pairs).
+     * @param body   Request body (optional, may be null).
+     * @return Response text.
+     * @throws ServletException Servlet exception.
+     * @throws IOException      I/O exception.
+     */
+    private String run(final String method, final String[] params, final byte[] body)
+            throws ServletException, IOException {
+
+        final Map<String, String> paramMap = new HashMap<>();
+
+        for (int ctr = 0; ctr < params.length; ctr += 2) {
+
+            paramMap.put(params[ctr], params[ctr + 1]);
+        }
+
+        final ByteArrayInputStream bodyStream = new ByteArrayInputStream(
+                (body == null) ? new byte[0] : body);
+        final ServletInputStream inputStream = new ServletInputStream() {
+
+            @Override
+            public int read() {
+
+                return bodyStream.read();
+            }
+
+            @Override
+            public int read(final byte[] buffer, final int offset, final int length) {
+
+                return bodyStream.read(buffer, offset, length);
+            }
+        };
+
+        final HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(
+                ChunkedUploadServletTest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(final Object proxy, final Method method,
+                                         final Object[] args) {
+
+                        switch (method.getName()) {
+
+                            case "getParameter":
+                                return paramMap.get(args[0]);
+
+                            case "getInputStream":
+                                return inputStream;
+
+                            default:
+                                return null;
+                        }
+                    }
+                });
+
+        this.responseStatus = HttpServletResponse.SC_OK;
+        this.responseText = new StringWriter();
+
+        final HttpServletResponse response = (HttpServletResponse) Proxy.newProxyInstance(
+                ChunkedUploadServletTest.class.getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class}, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(final Object proxy, final Method method,
+                                         final Object[] args) {
+
+                        switch (method.getName()) {
+
+                            case "sendError":
+                                ChunkedUploadServletTest.this.responseStatus = (Integer) args[0];
+                                return null;
+
+                            case "getWriter":
+                                return new PrintWriter(ChunkedUploadServletTest.this.responseText);
+
+                            default:
+                                return null;
+                        }
+                    }
+                });
+
+        switch (method) {
+
+            case "GET":
+                this.servlet.doGet(request, response);
+                break;
+
+            case "PUT":
+                this.servlet.doPut(request, response);
+                break;
+
+            default:
+                this.servlet.doPost(request, response);
+                break;
+        }
+
+        return this.responseText.toString();
+    }
+
+    /**
+     * Starts upload.
+     *
+     * @param fileName File name.
+     * @param fileSize File size.
+     * @return Upload id.
+     * @throws ServletException Servlet exception.
+     * @throws IOException      I/O exception.
+     */
+    private String start(final String fileName, final int fileSize)
+            throws ServletException, IOException {
+
+        final String result = this.run("POST", new String[]{"op", "start",
+                "executorId", this.fileBase.getName(), "name", fileName,
+                "size", String.valueOf(fileSize),
+                "chunkSize", String.valueOf(ChunkedUploadServletTest.DEFAULT_CHUNK_SIZE)}, null);
+
+        Assert.assertEquals(HttpServletResponse.SC_OK, this.responseStatus);
+        return result;
+    }
+
+    /**
+     * Sends chunk.
+     *
+     * @param uploadId   Upload id.
+     * @param chunkIndex Chunk index.
+     * @param fileBytes  Whole file bytes.
+     * @param length     Chunk bytes sent (from chunk start).
+     * @return Response status.
+     * @throws ServletException Servlet exception.
+     * @throws IOException      I/O exception.
+     */
+    private int sendChunk(final String uploadId, final int chunkIndex,
+                          final byte[] fileBytes, final int length)
+            throws ServletException, IOException {
+
+        final int startOffset = chunkIndex * ChunkedUploadServletTest.DEFAULT_CHUNK_SIZE;
+
+        this.run("PUT", new String[]{"op", "chunk", "uploadId", uploadId,
+                        "index", String.valueOf(chunkIndex)},
+                Arrays.copyOfRange(fileBytes, startOffset, startOffset + length));
+
+        return this.responseStatus;
+    }
+
+    /**
+     * Gets missing chunks.
+     *
+     * @param uploadId Upload id.
+     * @return Missing chunk indices text.
+     * @throws ServletException Servlet exception.
+     * @throws IOException      I/O exception.
+     */
+    private String getStatus(final String uploadId) throws ServletException, IOException {
+
+        return this.run("GET", new String[]{"op", "status", "uploadId", uploadId}, null);
+    }
+
+    /**
+     * Counts part files left in file area.
+     *
+     * @return Part file count.
+     */
+    private int countPartFiles() {
+
+        int result = 0;
+
+        for (final String item : this.fileBase.list()) {
+
+            if (item.endsWith(".part")) {
+
+                result++;
+            }
+        }
+
+        return result;
+    }
+
+    @Before
+    public void setUp() {
+
+        this.jobManager = new BasicJobManager(false);
+        this.fileBase = JobFileUtils.getExecutorFileBase(this.jobManager.addExecutorInstance(
+                new JobExecutorData("Test", JobExecutorType.javascript_rhino))
+                .getExecutorData().getId());
+        this.servlet = new ChunkedUploadServlet();
+    }
+
+    @After
+    public void tearDown() {
+
+        this.servlet.destroy();
+        this.jobManager.cleanUp();
+
+        for (final File item : this.fileBase.listFiles()) {
+
+            if (!item.delete()) {
+
+                item.deleteOnExit();
+            }
+        }
+    }
+
+    @Test
+    public void testResumeAndCommit() throws ServletException, IOException {
+
+        final byte[] fileBytes = ChunkedUploadServletTest.buildBytes(
+                (ChunkedUploadServletTest.DEFAULT_CHUNK_SIZE * 2) + 100);
+        final String uploadId = this.start("data.bin", fileBytes.length);
+
+        Assert.assertEquals("0,1,2", this.getStatus(uploadId));
+        Assert.assertEquals(1, this.countPartFiles());
+
+        // any order; last chunk is short
+        Assert.assertEquals(HttpServletResponse.SC_OK, this.sendChunk(uploadId, 2, fileBytes, 100));
+        Assert.assertEquals(HttpServletResponse.SC_OK, this.sendChunk(uploadId, 0, fileBytes,
+                ChunkedUploadServletTest.DEFAULT_CHUNK_SIZE));
+        Assert.assertEquals("1", this.getStatus(uploadId));
+
+        // cut-off chunk stays missing
+        Assert.assertEquals(HttpServletResponse.SC_BAD_REQUEST,
+                this.sendChunk(uploadId, 1, fileBytes, 100));
+        Assert.assertEquals("1", this.getStatus(uploadId));
+
+        this.run("POST", new String[]{"op", "commit", "uploadId", uploadId}, null);
+        Assert.assertEquals(HttpServletResponse.SC_CONFLICT, this.responseStatus);
+
+        // resume, re-sending one chunk
+        Assert.assertEquals(HttpServletResponse.SC_OK, this.sendChunk(uploadId, 1, fileBytes,
+                ChunkedUploadServletTest.DEFAULT_CHUNK_SIZE));
+        Assert.assertEquals(HttpServletResponse.SC_OK, this.sendChunk(uploadId, 0, fileBytes,
+                ChunkedUploadServletTest.DEFAULT_CHUNK_SIZE));
+        Assert.assertEquals("", this.getStatus(uploadId));
+
+        final CRC32 checksum = new CRC32();
+        checksum.update(fileBytes);
+
+        Assert.assertEquals("data.bin\t" + fileBytes.length + "\n", this.run("POST",
+                new String[]{"op", "commit", "uploadId", uploadId,
+                        "crc32", String.valueOf(checksum.getValue())}, null));
+        Assert.assertTrue(Arrays.equals(fileBytes, Files.readAllBytes(
+                new File(this.fileBase, "data.bin").toPath())));
+        Assert.assertEquals(0, this.countPartFiles());
+
+        // committed once
+        this.getStatus(uploadId);
+        Assert.assertEquals(HttpServletResponse.SC_NOT_FOUND, this.responseStatus);
+    }
+
+    @Test
+    public void testChecksumMismatch() throws ServletException, IOException {
+
+        final byte[] fileBytes = ChunkedUploadServletTest.buildBytes(100);
+        final String uploadId = this.start("data.bin", fileBytes.length);
+
+        Assert.assertEquals(HttpServletResponse.SC_OK, this.sendChunk(uploadId, 0, fileBytes, 100));
+
+        this.run("POST", new String[]{"op", "commit", "uploadId", uploadId, "crc32", "1"}, null);
+
+        Assert.assertEquals(HttpServletResponse.SC_CONFLICT, this.responseStatus);
+        Assert.assertFalse(new File(this.fileBase, "data.bin").exists());
+        Assert.assertEquals(0, this.countPartFiles());
+    }
+
+    @Test
+    public void testAbort() throws ServletException, IOException {
+
+        final String uploadId = this.start("data.bin", 100);
+
+        Assert.assertEquals("aborted", this.run("POST",
+                new String[]{"op", "abort", "uploadId", uploadId}, null));
+        Assert.assertEquals(0, this.countPartFiles());
+
+        this.getStatus(uploadId);
+        Assert.assertEquals(HttpServletResponse.SC_NOT_FOUND, this.responseStatus);
+    }
+
+    @Test
+    public void testInvalidStart() throws ServletException, IOException {
+
+        this.run("POST", new String[]{"op", "start", "executorId", this.fileBase.getName(),
+                "name", "data.bin", "size", "100", "chunkSize", "1"}, null);
+        Assert.assertEquals(HttpServletResponse.SC_BAD_REQUEST, this.responseStatus);
+
+        this.run("POST", new String[]{"op", "start", "executorId", this.fileBase.getName(),
+                "name", "../data.bin", "size", "100",
+                "chunkSize", String.valueOf(ChunkedUploadServletTest.DEFAULT_CHUNK_SIZE)}, null);
+        Assert.assertEquals(HttpServletResponse.SC_BAD_REQUEST, this.responseStatus);
+
+        this.run("POST", new String[]{"op", "start", "executorId", "no_such_executor",
+                "name", "data.bin", "size", "100",
+                "chunkSize", String.valueOf(ChunkedUploadServletTest.DEFAULT_CHUNK_SIZE)}, null);
+        Assert.assertEquals(HttpServletResponse.SC_NOT_FOUND, this.responseStatus);
+
+        Assert.assertEquals(0, this.countPartFiles());
+    }
+}
@@ -0,0 +1,94 @@
+package com.opsysinc.scripting.server.servlet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * File download servlet tests (Range header parsing).
+ *
+ * @author mkitchin
+ */
+public class FileDownloadServletTest {
+
+    /**
+     * Parses range against a 100-byte file.
+     *
+     * @param rangeText Range header text.
+     * @return Range text ("start-end"), "unsatisfiable" or "whole".
+     */
+    private static String parse(final String rangeText) {
+
+        final long[] result = FileDownloadServlet.parseRange(rangeText, 100L);
+
+        if (result == null) {
+
+            return "whole";
+        }
+
+        if (result.length == 0) {
+
+            return "unsatisfiable";
+        }
+
+        return result[0] + "-" + result[1];
+    }
+
+    @Test
+    public void testBoundedRange() {
+
+        Assert.assertEquals("0-0", FileDownloadServletTest.parse("bytes=0-0"));
+        Assert.assertEquals("10-19", FileDownloadServletTest.parse("bytes=10-19"));
+        Assert.assertEquals("10-19", FileDownloadServletTest.parse("bytes= 10 - 19"));
+        Assert.assertEquals("0-99", FileDownloadServletTest.parse("bytes=0-99"));
+    }
+
+    @Test
+    public void testOpenRange() {
+
+        Assert.assertEquals("0-99", FileDownloadServletTest.parse("bytes=0-"));
+        Assert.assertEquals("99-99", FileDownloadServletTest.parse("bytes=99-"));
+    }
+
+    @Test
+    public void testSuffixRange() {
+
+        Assert.assertEquals("90-99", FileDownloadServletTest.parse("bytes=-10"));
+        Assert.assertEquals("99-99", FileDownloadServletTest.parse("bytes=-1"));
+
+        // longer than file
+        Assert.assertEquals("0-99", FileDownloadServletTest.parse("bytes=-500"));
+
+        // zero-length suffix
+        Assert.assertEquals("unsatisfiable", FileDownloadServletTest.parse("bytes=-0"));
+    }
+
+    @Test
+    public void testPastEnd() {
+
+        // last byte past end is clamped
+        Assert.assertEquals("50-99", FileDownloadServletTest.parse("bytes=50-1000"));
+
+        // first byte past end
+        Assert.assertEquals("unsatisfiable", FileDownloadServletTest.parse("bytes=100-"));
+        Assert.assertEquals("unsatisfiable", FileDownloadServletTest.parse("bytes=100-200"));
+
+        // nothing in an empty file
+        Assert.assertEquals(0, FileDownloadServlet.parseRange("bytes=0-", 0L).length);
+        Assert.assertEquals(0, FileDownloadServlet.parseRange("bytes=-5", 0L).length);
+    }
+
+    @Test
+    public void testIgnoredRange() {
+
+        // multi-range (whole file, not multipart)
+        Assert.assertEquals("whole", FileDownloadServletTest.parse("bytes=0-9,20-29"));
+        Assert.assertEquals("whole", FileDownloadServletTest.parse("bytes=-5,0-1"));
+
+        // malformed
+        Assert.assertEquals("whole", FileDownloadServletTest.parse("bytes=20-10"));
+        Assert.assertEquals("whole", FileDownloadServletTest.parse("bytes=abc-"));
+        Assert.assertEquals("whole", FileDownloadServletTest.parse("bytes=10"));
+        Assert.assertEquals("whole", FileDownloadServletTest.parse("bytes=-"));
+        Assert.assertEquals("whole", FileDownloadServletTest.parse("items=0-9"));
+    }
+}
@@ -0,0 +1,159 @@
+package com.opsysinc.scripting.server.servlet;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * File upload servlet tests (streamed copy, size limit enforced while
+ * streaming).
+ *
+ * @author mkitchin
+ */
+public class FileUploadServletTest {
+
+    /**
+     * Target file.
+     */
+    private File targetFile;
+
+    /**
+     * Builds servlet.
+     *
+     * @param maxFileSizeText Max file size init param (null = default).
+     * @return Initialized servlet.
+     * @throws ServletException Servlet exception.
+     */
+    private static FileUploadServlet buildServlet(final String maxFileSizeText)
+            throws ServletException {
+
+        final FileUploadServlet result = new FileUploadServlet();
+
+        result.init((ServletConfig) Proxy.newProxyInstance(
+                FileUploadServletTest.class.getClassLoader(),
+                new Class<?>[]{ServletConfig.class}, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(final Object proxy, final Method method,
+                                         final Object[] args) {
+
+                        if (method.getName().equals("getInitParameter")
+                                && "maxFileSize".equals(args[0])) {
+
+                            return maxFileSizeText;
+                        }
+
+                        return null;
+                    }
+                }));
+
+        return result;
+    }
+
+    /**
+     * Builds test bytes.
+     *
+     * @param length Byte count.
+     * @return Bytes.
+     */
+    private static byte[] buildBytes(final int length) {
+
+        final byte[] result = new byte[length];
+
+        for (int ctr = 0; ctr < length; ctr++) {
+
+            result[ctr] = (byte) ctr;
+        }
+
+        return result;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+
+        this.targetFile = File.createTempFile("upload", ".part");
+    }
+
+    @After
+    public void tearDown() {
+
+        if (!this.targetFile.delete()) {
+
+            this.targetFile.deleteOnExit();
+        }
+    }
+
+    @Test
+    public void testCopy() throws Exception {
+
+        final FileUploadServlet servlet = FileUploadServletTest.buildServlet("1000");
+        final byte[] uploadBytes = FileUploadServletTest.buildBytes(1000);
+
+        Assert.assertEquals(1000L, servlet.copyToFile(
+                new ByteArrayInputStream(uploadBytes), this.targetFile));
+        Assert.assertTrue(Arrays.equals(uploadBytes,
+                Files.readAllBytes(this.targetFile.toPath())));
+
+        // existing file is replaced, not appended to
+        Assert.assertEquals(0L, servlet.copyToFile(
+                new ByteArrayInputStream(new byte[0]), this.targetFile));
+        Assert.assertEquals(0L, this.targetFile.length());
+    }
+
+    @Test(expected = FileUploadServlet.FileSizeExceededException.class)
+    public void testSizeLimit() throws Exception {
+
+        FileUploadServletTest.buildServlet("1000").copyToFile(new ByteArrayInputStream(
+                FileUploadServletTest.buildBytes(1001)), this.targetFile);
+    }
+
+    @Test(timeout = 10000L)
+    public void testSizeLimitWhileStreaming() throws Exception {
+
+        // never ends; only the limit stops the copy
+        final InputStream endlessStream = new InputStream() {
+
+            @Override
+            public int read() {
+
+                return 0;
+            }
+
+            @Override
+            public int read(final byte[] buffer, final int offset, final int length) {
+
+                return length;
+            }
+        };
+
+        try {
+
+            FileUploadServletTest.buildServlet("10").copyToFile(endlessStream, this.targetFile);
+            Assert.fail("copied past limit");
+
+        } catch (final FileUploadServlet.FileSizeExceededException ex) {
+
+            // checked per transfer, so at most one transfer past the limit
+            Assert.assertTrue(this.targetFile.length() <= (2L * 1024L * 1024L));
+        }
+    }
+
+    @Test(expected = ServletException.class)
+    public void testInvalidMaxFileSize() throws ServletException {
+
+        FileUploadServletTest.buildServlet("abc");
+    }
+}
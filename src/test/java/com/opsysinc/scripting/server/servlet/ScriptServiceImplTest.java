@@ -0,0 +1,166 @@
+package com.opsysinc.scripting.server.servlet;
+
+import com.opsysinc.scripting.server.engine.AbstractJobExecutor;
+import com.opsysinc.scripting.server.engine.BasicJobManager;
+import com.opsysinc.scripting.shared.JobChangesData;
+import com.opsysinc.scripting.shared.JobContentData;
+import com.opsysinc.scripting.shared.JobExecutorData;
+import com.opsysinc.scripting.shared.JobExecutorType;
+import com.opsysinc.scripting.shared.JobSnapshotData;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+
+/**
+ * Script service tests (snapshot short-circuit, capped resyncs), w/a job
+ * manager that has no default executors.
+ *
+ * @author mkitchin
+ */
+public class ScriptServiceImplTest {
+
+    /**
+     * Job manager (no default executors).
+     */
+    private BasicJobManager jobManager;
+
+    /**
+     * Service under test.
+     */
+    private ScriptServiceImpl scriptService;
+
+    @Before
+    public void setUp() throws ServletException {
+
+        this.jobManager = new BasicJobManager(false);
+        this.scriptService = new ScriptServiceImpl(this.jobManager);
+
+        final ServletContext servletContext = (ServletContext) Proxy.newProxyInstance(
+                ScriptServiceImplTest.class.getClassLoader(),
+                new Class<?>[]{ServletContext.class}, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(final Object proxy, final Method method,
+                                         final Object[] args) {
+
+                        if (method.getName().equals("getRealPath")) {
+
+                            return System.getProperty("java.io.tmpdir");
+                        }
+
+                        return null;
+                    }
+                });
+
+        this.scriptService.init((ServletConfig) Proxy.newProxyInstance(
+                ScriptServiceImplTest.class.getClassLoader(),
+                new Class<?>[]{ServletConfig.class}, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(final Object proxy, final Method method,
+                                         final Object[] args) {
+
+                        if (method.getName().equals("getServletContext")) {
+
+                            return servletContext;
+                        }
+
+                        return null;
+                    }
+                }));
+    }
+
+    @After
+    public void tearDown() {
+
+        this.scriptService.destroy();
+    }
+
+    @Test
+    public void testSnapshotShortCircuit() {
+
+        // nothing changed: sequences echoed, nothing read
+        final JobSnapshotData sameData = this.scriptService.getSnapshot(0L, 0L, 0L);
+
+        Assert.assertFalse(sameData.isChanged());
+        Assert.assertEquals(0L, sameData.getChangeSequence());
+
+        this.jobManager.addExecutorInstance(new JobExecutorData("Test",
+                JobExecutorType.javascript_rhino));
+
+        final JobSnapshotData changedData = this.scriptService.getSnapshot(0L, 0L, 0L);
+
+        Assert.assertTrue(changedData.isChanged());
+        Assert.assertTrue(changedData.getChangeSequence() > 0L);
+        Assert.assertEquals(1, changedData.getExecutors().length);
+
+        // executors only sent when they change
+        final JobSnapshotData nextData = this.scriptService.getSnapshot(
+                changedData.getChangeSequence(), changedData.getExecutorSequence(),
+                changedData.getJobSequence());
+
+        Assert.assertFalse(nextData.isChanged());
+        Assert.assertNull(nextData.getExecutors());
+
+        // job changes only (0 = resync, so start past it)
+        this.jobManager.recordJobRemoval(changedData.getExecutors()[0], "job1");
+
+        final JobSnapshotData resetData = this.scriptService.getSnapshot(
+                changedData.getChangeSequence(), changedData.getExecutorSequence(),
+                changedData.getJobSequence());
+
+        Assert.assertTrue(resetData.isJobReset());
+        Assert.assertNull(resetData.getExecutors());
+
+        this.jobManager.recordJobRemoval(changedData.getExecutors()[0], "job2");
+
+        final JobSnapshotData removedData = this.scriptService.getSnapshot(
+                resetData.getChangeSequence(), resetData.getExecutorSequence(),
+                resetData.getJobSequence());
+
+        Assert.assertFalse(removedData.isJobReset());
+        Assert.assertEquals("[job2]", Arrays.toString(removedData.getRemovedJobIds()));
+    }
+
+    @Test
+    public void testResyncCap() {
+
+        final JobExecutorData executorData = new JobExecutorData("Test",
+                JobExecutorType.javascript_rhino);
+
+        this.jobManager.addExecutorInstance(executorData);
+
+        // one runs (blocked), the rest queue behind it
+        final int jobCount = AbstractJobExecutor.DEFAULT_MAX_PENDING_READ_JOBS + 50;
+
+        for (int ctr = 0; ctr < jobCount; ctr++) {
+
+            final JobContentData contentData = new JobContentData(
+                    (ctr == 0) ? "java.lang.Thread.sleep(10000)" : "1", false);
+
+            contentData.setExecutorData(executorData);
+            this.jobManager.submitJob(contentData);
+        }
+
+        final JobChangesData changesData = this.scriptService.getJobChanges(0L);
+
+        Assert.assertTrue(changesData.isReset());
+        Assert.assertEquals(AbstractJobExecutor.DEFAULT_MAX_PENDING_READ_JOBS,
+                changesData.getJobs().length);
+
+        // deltas aren't capped
+        final JobChangesData deltaData = this.scriptService.getJobChanges(1L);
+
+        Assert.assertFalse(deltaData.isReset());
+        Assert.assertTrue(deltaData.getJobs().length >= (jobCount - 1));
+    }
+}
@@ -0,0 +1,165 @@
+package com.opsysinc.scripting.server.util;
+
+import com.opsysinc.scripting.shared.JobDataFormat;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Format utility tests (char, depth and node limits; default-limit
+ * overloads).
+ *
+ * @author mkitchin
+ */
+public class FormatUtilsTest {
+
+    /**
+     * Builds nested lists.
+     *
+     * @param depth Nesting depth (>0).
+     * @return Outermost list.
+     */
+    private static List<Object> buildNestedList(final int depth) {
+
+        final List<Object> result = new ArrayList<>();
+        List<Object> currentList = result;
+
+        for (int ctr = 1; ctr < depth; ctr++) {
+
+            final List<Object> nextList = new ArrayList<>();
+
+            currentList.add(nextList);
+            currentList = nextList;
+        }
+
+        currentList.add("leaf");
+
+        return result;
+    }
+
+    /**
+     * Formats object to a string writer.
+     *
+     * @param input      Input object.
+     * @param dataFormat Data format.
+     * @param maxDepth   Max node depth.
+     * @param maxNodes   Max nodes.
+     * @param maxChars   Max chars.
+     * @return Formatted text.
+     * @throws IOException I/O exception.
+     */
+    private static String format(final Object input, final JobDataFormat dataFormat,
+                                 final int maxDepth, final int maxNodes,
+                                 final int maxChars) throws IOException {
+
+        final StringWriter writer = new StringWriter();
+
+        FormatUtils.formatObject(input, dataFormat, writer, maxDepth, maxNodes, maxChars);
+
+        return writer.toString();
+    }
+
+    @Test
+    public void testCharLimit() throws IOException {
+
+        final StringWriter writer = new StringWriter();
+
+        Assert.assertFalse(FormatUtils.formatObject("0123456789", JobDataFormat.raw,
+                writer, 1, 1, 10));
+        Assert.assertEquals("0123456789", writer.toString());
+
+        Assert.assertEquals("01234\n[... truncated: max chars (5) reached ...]",
+                FormatUtilsTest.format("0123456789", JobDataFormat.raw, 1, 1, 5));
+
+        // structured output is cut at the same limit
+        final String valueText = FormatUtilsTest.format(Arrays.asList("a", "b", "c"),
+                JobDataFormat.xml, 32, 100, 8);
+
+        final String markerText = "\n[... truncated: max chars (8) reached ...]";
+
+        Assert.assertTrue(valueText, valueText.endsWith(markerText));
+        Assert.assertEquals(8, valueText.length() - markerText.length());
+    }
+
+    @Test
+    public void testDepthLimit() throws IOException {
+
+        final String valueText = FormatUtilsTest.format(FormatUtilsTest.buildNestedList(10),
+                JobDataFormat.xml, 5, 100, 10000);
+
+        Assert.assertTrue(valueText, valueText.startsWith("<list>"));
+        Assert.assertTrue(valueText, valueText.endsWith(
+                "\n[... truncated: max depth (5) reached ...]"));
+        Assert.assertFalse(valueText, valueText.contains("leaf"));
+
+        Assert.assertFalse(FormatUtils.formatObject(FormatUtilsTest.buildNestedList(4),
+                JobDataFormat.xml, new StringWriter(), 5, 100, 10000));
+    }
+
+    @Test
+    public void testNodeLimit() throws IOException {
+
+        final List<String> input = new ArrayList<>();
+
+        for (int ctr = 0; ctr < 100; ctr++) {
+
+            input.add("item" + ctr);
+        }
+
+        final String valueText = FormatUtilsTest.format(input, JobDataFormat.xml, 32, 10, 10000);
+
+        Assert.assertTrue(valueText, valueText.endsWith(
+                "\n[... truncated: max nodes (10) reached ...]"));
+        Assert.assertTrue(valueText, valueText.contains("item8"));
+        Assert.assertFalse(valueText, valueText.contains("item9"));
+    }
+
+    @Test
+    public void testDefaultLimits() throws IOException {
+
+        final Object[] inputs = {null, "text", Arrays.asList("a", "b"),
+                FormatUtilsTest.buildNestedList(FormatUtils.DEFAULT_MAX_FORMAT_DEPTH + 1),
+                new double[]{1.0, 2.0}};
+
+        // string overload is the writer overload, collected
+        for (final JobDataFormat dataFormat : JobDataFormat.values()) {
+
+            for (final Object item : inputs) {
+
+                final StringWriter writer = new StringWriter();
+
+                FormatUtils.formatObject(item, dataFormat, writer);
+                Assert.assertEquals(dataFormat + ": " + item, writer.toString(),
+                        FormatUtils.formatObject(item, dataFormat));
+            }
+        }
+
+        Assert.assertTrue(FormatUtils.formatObject(
+                FormatUtilsTest.buildNestedList(FormatUtils.DEFAULT_MAX_FORMAT_DEPTH + 1),
+                JobDataFormat.xml).endsWith("\n[... truncated: max depth ("
+                + FormatUtils.DEFAULT_MAX_FORMAT_DEPTH + ") reached ...]"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxDepth() throws IOException {
+
+        FormatUtils.formatObject("text", JobDataFormat.xml, new StringWriter(), 0, 1, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxNodes() throws IOException {
+
+        FormatUtils.formatObject("text", JobDataFormat.xml, new StringWriter(), 1, 0, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxChars() throws IOException {
+
+        FormatUtils.formatObject("text", JobDataFormat.xml, new StringWriter(), 1, 1, 0);
+    }
+}
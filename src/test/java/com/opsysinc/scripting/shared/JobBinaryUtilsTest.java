@@ -0,0 +1,206 @@
+package com.opsysinc.scripting.shared;
+
+import com.opsysinc.scripting.server.util.FormatUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Job binary format tests (server encode, client decode round-trip;
+ * base64; truncation).
+ *
+ * @author mkitchin
+ */
+public class JobBinaryUtilsTest {
+
+    /**
+     * Encodes object and passes it through base64, as sent to clients.
+     *
+     * @param input    Input object.
+     * @param maxBytes Max bytes, incl. header.
+     * @return Decoded binary value.
+     */
+    private static byte[] roundTrip(final Object input, final int maxBytes) {
+
+        final byte[] valueBytes = FormatUtils.encodeBinaryObject(input, maxBytes);
+
+        return JobBinaryUtils.decodeBase64(JobBinaryUtils.encodeBase64(
+                valueBytes, valueBytes.length));
+    }
+
+    /**
+     * Encodes object (no truncation) and passes it through base64.
+     *
+     * @param input Input object.
+     * @return Decoded binary value.
+     */
+    private static byte[] roundTrip(final Object input) {
+
+        return JobBinaryUtilsTest.roundTrip(input, FormatUtils.DEFAULT_MAX_BINARY_BYTES);
+    }
+
+    @Test
+    public void testBase64() {
+
+        final byte[] input = {0, 1, 2, -1, -128, 127, 64};
+
+        // every padding case
+        for (int ctr = 0; ctr <= input.length; ctr++) {
+
+            final byte[] expected = new byte[ctr];
+            System.arraycopy(input, 0, expected, 0, ctr);
+
+            final String text = JobBinaryUtils.encodeBase64(input, ctr);
+
+            Assert.assertEquals(0, text.length() % 4);
+            Assert.assertArrayEquals(expected, JobBinaryUtils.decodeBase64(text));
+        }
+
+        Assert.assertEquals("TWFu", JobBinaryUtils.encodeBase64(new byte[]{'M', 'a', 'n'}, 3));
+        Assert.assertEquals("TQ==", JobBinaryUtils.encodeBase64(new byte[]{'M'}, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBase64() {
+
+        JobBinaryUtils.decodeBase64("TW*u");
+    }
+
+    @Test
+    public void testDoubles() {
+
+        final double[] input = {0.0, -0.0, 1.5, -2.25, Math.PI, Double.MAX_VALUE,
+                Double.MIN_VALUE, Double.MIN_NORMAL, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NaN, 1.0e-300};
+        final byte[] valueBytes = JobBinaryUtilsTest.roundTrip(input);
+
+        Assert.assertEquals(JobBinaryUtils.TYPE_DOUBLE, JobBinaryUtils.getValueType(valueBytes));
+
+        final double[] output = JobBinaryUtils.decodeDoubles(valueBytes);
+
+        Assert.assertEquals(input.length, output.length);
+
+        // exact bits (decoding doesn't use JRE bit conversions)
+        for (int ctr = 0; ctr < input.length; ctr++) {
+
+            Assert.assertEquals(Double.doubleToLongBits(input[ctr]),
+                    Double.doubleToLongBits(output[ctr]));
+        }
+    }
+
+    @Test
+    public void testFloats() {
+
+        final float[] input = {0.0f, 1.5f, -3.75f, Float.MAX_VALUE, Float.MIN_VALUE,
+                Float.NEGATIVE_INFINITY, Float.NaN};
+        final double[] output = JobBinaryUtils.decodeDoubles(
+                JobBinaryUtilsTest.roundTrip(input));
+
+        for (int ctr = 0; ctr < input.length; ctr++) {
+
+            Assert.assertEquals(Double.doubleToLongBits(input[ctr]),
+                    Double.doubleToLongBits(output[ctr]));
+        }
+    }
+
+    @Test
+    public void testLongs() {
+
+        final long[] input = {0L, 1L, -1L, 4294967296L, -4294967297L,
+                Long.MAX_VALUE, Long.MIN_VALUE};
+
+        Assert.assertArrayEquals(input, JobBinaryUtils.decodeLongs(
+                JobBinaryUtilsTest.roundTrip(input)));
+    }
+
+    @Test
+    public void testIntLikes() {
+
+        final int[] intInput = {0, 1, -1, Integer.MAX_VALUE, JobBinaryUtils.NA_INT};
+
+        Assert.assertArrayEquals(intInput, JobBinaryUtils.decodeInts(
+                JobBinaryUtilsTest.roundTrip(intInput)));
+        Assert.assertArrayEquals(new int[]{0, -1, Short.MAX_VALUE, Short.MIN_VALUE},
+                JobBinaryUtils.decodeInts(JobBinaryUtilsTest.roundTrip(
+                        new short[]{0, -1, Short.MAX_VALUE, Short.MIN_VALUE})));
+        Assert.assertArrayEquals(new int[]{'a', 0xe9, 0xffff},
+                JobBinaryUtils.decodeInts(JobBinaryUtilsTest.roundTrip(
+                        new char[]{'a', '\u00e9', '\uffff'})));
+        Assert.assertArrayEquals(new int[]{0, -1, 127, -128},
+                JobBinaryUtils.decodeInts(JobBinaryUtilsTest.roundTrip(
+                        new byte[]{0, -1, 127, -128})));
+        Assert.assertArrayEquals(new int[]{1, 0, 1},
+                JobBinaryUtils.decodeInts(JobBinaryUtilsTest.roundTrip(
+                        new boolean[]{true, false, true})));
+
+        // R NA widens to NaN
+        final double[] output = JobBinaryUtils.decodeDoubles(
+                JobBinaryUtilsTest.roundTrip(intInput));
+
+        Assert.assertEquals((double) Integer.MAX_VALUE, output[3], 0.0);
+        Assert.assertTrue(Double.isNaN(output[4]));
+    }
+
+    @Test
+    public void testStringsAndText() {
+
+        final String[] input = {"one", null, "", "caf\u00e9 \u20ac"};
+
+        Assert.assertArrayEquals(input, JobBinaryUtils.decodeStrings(
+                JobBinaryUtilsTest.roundTrip(input)));
+        Assert.assertEquals("caf\u00e9 \u20ac", JobBinaryUtils.decodeText(
+                JobBinaryUtilsTest.roundTrip(new StringBuilder("caf\u00e9 \u20ac"))));
+
+        final byte[] nullBytes = JobBinaryUtilsTest.roundTrip(null);
+
+        Assert.assertEquals(JobBinaryUtils.TYPE_NULL, JobBinaryUtils.getValueType(nullBytes));
+        Assert.assertEquals(0, JobBinaryUtils.getCount(nullBytes));
+    }
+
+    @Test
+    public void testTruncation() {
+
+        // header + 3 doubles
+        final byte[] valueBytes = JobBinaryUtilsTest.roundTrip(
+                new double[]{1.0, 2.0, 3.0, 4.0, 5.0}, JobBinaryUtils.HEADER_SIZE + 28);
+
+        Assert.assertEquals(5, JobBinaryUtils.getTotalCount(valueBytes));
+        Assert.assertEquals(3, JobBinaryUtils.getCount(valueBytes));
+        Assert.assertEquals(3, JobBinaryUtils.decodeDoubles(valueBytes).length);
+
+        // 2-byte chars aren't split
+        final byte[] textBytes = JobBinaryUtilsTest.roundTrip("\u00e9\u00e9\u00e9",
+                JobBinaryUtils.HEADER_SIZE + 5);
+
+        Assert.assertEquals(6, JobBinaryUtils.getTotalCount(textBytes));
+        Assert.assertEquals("\u00e9\u00e9", JobBinaryUtils.decodeText(textBytes));
+
+        // whole strings only
+        final byte[] stringBytes = JobBinaryUtilsTest.roundTrip(
+                new String[]{"ab", "cd", "ef"}, JobBinaryUtils.HEADER_SIZE + 13);
+
+        Assert.assertArrayEquals(new String[]{"ab", "cd"},
+                JobBinaryUtils.decodeStrings(stringBytes));
+    }
+
+    @Test
+    public void testFormatText() {
+
+        final byte[] valueBytes = FormatUtils.encodeBinaryObject(new int[]{1, 2, 3},
+                FormatUtils.DEFAULT_MAX_BINARY_BYTES);
+
+        Assert.assertEquals("int[3]: 1, 2, ... (1 more)", JobBinaryUtils.formatText(
+                JobBinaryUtils.encodeBase64(valueBytes, valueBytes.length), 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongValueType() {
+
+        JobBinaryUtils.decodeLongs(JobBinaryUtilsTest.roundTrip(new int[]{1}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidHeader() {
+
+        JobBinaryUtils.getValueType(new byte[JobBinaryUtils.HEADER_SIZE]);
+    }
+}